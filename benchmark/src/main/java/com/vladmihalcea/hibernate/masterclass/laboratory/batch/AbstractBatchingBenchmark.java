@@ -0,0 +1,153 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Comment;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Post;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.PostDetails;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.dialect.Dialect;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.openjdk.jmh.annotations.*;
+
+import javax.sql.DataSource;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * AbstractBatchingBenchmark - Runs the NoBatchingTest workloads against HSQLDB
+ * for every batch_size, order_inserts/order_updates, batch_versioned_data and row count combination.
+ * A zero batchSize leaves hibernate.jdbc.batch_size unset, just like NoBatchingTest.
+ *
+ * @author Vlad Mihalcea
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public abstract class AbstractBatchingBenchmark {
+
+    @Param({"0", "15", "50", "100"})
+    protected int batchSize;
+
+    @Param({"false", "true"})
+    protected boolean orderStatements;
+
+    @Param({"false", "true"})
+    protected boolean batchVersionedData;
+
+    @Param({"100", "1000"})
+    protected int rowCount;
+
+    private SessionFactory sessionFactory;
+
+    @Setup(Level.Trial)
+    public void init() {
+        Properties properties = getProperties();
+        Configuration configuration = new Configuration().addProperties(properties);
+        for (Class<?> entityClass : entities()) {
+            configuration.addAnnotatedClass(entityClass);
+        }
+        sessionFactory = configuration.buildSessionFactory(
+                new StandardServiceRegistryBuilder()
+                        .applySettings(properties)
+                        .build()
+        );
+    }
+
+    @TearDown(Level.Trial)
+    public void destroy() {
+        sessionFactory.close();
+    }
+
+    protected Class<?>[] entities() {
+        return new Class<?>[]{
+            Post.class,
+            PostDetails.class,
+            Comment.class
+        };
+    }
+
+    protected Properties getProperties() {
+        Properties properties = new Properties();
+        properties.put("hibernate.dialect", "org.hibernate.dialect.HSQLDialect");
+        properties.put("hibernate.hbm2ddl.auto", "create-drop");
+        if (batchSize > 0) {
+            properties.put("hibernate.jdbc.batch_size", String.valueOf(batchSize));
+        }
+        properties.put("hibernate.order_inserts", String.valueOf(orderStatements));
+        properties.put("hibernate.order_updates", String.valueOf(orderStatements));
+        properties.put("hibernate.jdbc.batch_versioned_data", String.valueOf(batchVersionedData));
+        properties.put("hibernate.connection.datasource", newDataSource());
+        return properties;
+    }
+
+    protected DataSource newDataSource() {
+        JDBCDataSource dataSource = new JDBCDataSource();
+        dataSource.setUrl("jdbc:hsqldb:mem:benchmark");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        return dataSource;
+    }
+
+    protected int flushSize() {
+        return batchSize > 0 ? batchSize : Integer.valueOf(Dialect.DEFAULT_BATCH_SIZE);
+    }
+
+    protected SessionFactory getSessionFactory() {
+        return sessionFactory;
+    }
+
+    protected void doInTransaction(Consumer<Session> callable) {
+        Session session = null;
+        Transaction txn = null;
+        try {
+            session = sessionFactory.openSession();
+            txn = session.beginTransaction();
+            callable.accept(session);
+            txn.commit();
+        } catch (RuntimeException e) {
+            if ( txn != null && txn.isActive() ) txn.rollback();
+            throw e;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    protected void insertPosts(boolean withDetails) {
+        doInTransaction(session -> {
+            int flushSize = flushSize();
+            for (int i = 0; i < rowCount; i++) {
+                Post post = new Post(String.format("Post no. %d", i));
+                int j = 0;
+                post.addComment(new Comment(
+                        String.format("Post comment %d:%d", i, j++)));
+                post.addComment(new Comment(
+                        String.format("Post comment %d:%d", i, j++)));
+                if (withDetails) {
+                    post.addDetails(new PostDetails());
+                }
+                session.persist(post);
+                if (i % flushSize == 0 && i > 0) {
+                    session.flush();
+                    session.clear();
+                }
+            }
+        });
+    }
+
+    protected void deletePosts() {
+        doInTransaction(session -> {
+            session.createQuery("delete from Comment").executeUpdate();
+            session.createQuery("delete from PostDetails").executeUpdate();
+            session.createQuery("delete from Post").executeUpdate();
+        });
+    }
+}
@@ -0,0 +1,74 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Comment;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Post;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.PostDetails;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AggregateBulkDeleter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+
+/**
+ * AggregateBulkDeleteBenchmark - Compares the NoBatchingTest.testCascadeDelete approach,
+ * which loads every Post aggregate prior to deleting it, with the {@link AggregateBulkDeleter}
+ * set-based DELETE statements, which never hydrate entities.
+ *
+ * @author Vlad Mihalcea
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class AggregateBulkDeleteBenchmark extends AbstractBatchingBenchmark {
+
+    @Param({"cascade", "bulk"})
+    private String mode;
+
+    @Param({"1000"})
+    private int chunkSize;
+
+    @Setup(Level.Iteration)
+    public void addRows() {
+        deletePosts();
+        insertPosts(true);
+    }
+
+    @Benchmark
+    public void delete() {
+        switch (mode) {
+            case "cascade":
+                cascadeDelete();
+                break;
+            case "bulk":
+                bulkDelete();
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported mode " + mode);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void cascadeDelete() {
+        doInTransaction(session -> {
+            List<Post> posts = session.createQuery(
+                "select distinct p " +
+                "from Post p " +
+                "join fetch p.details d " +
+                "join fetch p.comments c")
+            .list();
+            for (Post post : posts) {
+                session.delete(post);
+            }
+        });
+    }
+
+    private void bulkDelete() {
+        doInTransaction(session -> new AggregateBulkDeleter(Post.class)
+            .child(Comment.class, "post")
+            .child(PostDetails.class, "post")
+            .setChunkSize(chunkSize)
+            .delete(session, session.createQuery(
+                "select p.id " +
+                "from Post p"))
+        );
+    }
+}
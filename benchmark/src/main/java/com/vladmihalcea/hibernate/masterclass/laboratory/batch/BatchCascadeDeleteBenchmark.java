@@ -0,0 +1,37 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Post;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.util.List;
+
+/**
+ * BatchCascadeDeleteBenchmark - Benchmark for NoBatchingTest.testCascadeDelete
+ *
+ * @author Vlad Mihalcea
+ */
+public class BatchCascadeDeleteBenchmark extends AbstractBatchingBenchmark {
+
+    @Setup(Level.Invocation)
+    public void addRows() {
+        insertPosts(true);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public void cascadeDelete() {
+        doInTransaction(session -> {
+            List<Post> posts = session.createQuery(
+                "select distinct p " +
+                "from Post p " +
+                "join fetch p.details d " +
+                "join fetch p.comments c")
+            .list();
+            for (Post post : posts) {
+                session.delete(post);
+            }
+        });
+    }
+}
@@ -0,0 +1,23 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * BatchInsertBenchmark - Benchmark for the NoBatchingTest.testInsertAndUpdate insert phase
+ *
+ * @author Vlad Mihalcea
+ */
+public class BatchInsertBenchmark extends AbstractBatchingBenchmark {
+
+    @TearDown(Level.Invocation)
+    public void clean() {
+        deletePosts();
+    }
+
+    @Benchmark
+    public void insert() {
+        insertPosts(false);
+    }
+}
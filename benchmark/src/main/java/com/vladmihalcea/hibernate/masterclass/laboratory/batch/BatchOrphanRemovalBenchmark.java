@@ -0,0 +1,47 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Comment;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Post;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * BatchOrphanRemovalBenchmark - Benchmark for NoBatchingTest.testOrphanRemoval
+ *
+ * @author Vlad Mihalcea
+ */
+public class BatchOrphanRemovalBenchmark extends AbstractBatchingBenchmark {
+
+    @Setup(Level.Invocation)
+    public void addRows() {
+        insertPosts(true);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public void orphanRemoval() {
+        doInTransaction(session -> {
+            List<Post> posts = session.createQuery(
+                "select distinct p " +
+                "from Post p " +
+                "join fetch p.details d " +
+                "join fetch p.comments c")
+            .list();
+            posts.forEach(Post::removeDetails);
+            session.flush();
+            posts.forEach(post -> {
+                for (Iterator<Comment> commentIterator = post.getComments().iterator(); commentIterator.hasNext(); ) {
+                    Comment comment = commentIterator.next();
+                    comment.setPost(null);
+                    commentIterator.remove();
+                }
+            });
+            session.flush();
+            posts.forEach(session::delete);
+        });
+    }
+}
@@ -0,0 +1,47 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Comment;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Post;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+
+/**
+ * BatchUpdateBenchmark - Benchmark for the NoBatchingTest.testInsertAndUpdate update phase
+ *
+ * @author Vlad Mihalcea
+ */
+public class BatchUpdateBenchmark extends AbstractBatchingBenchmark {
+
+    @Setup(Level.Invocation)
+    public void addRows() {
+        insertPosts(false);
+    }
+
+    @TearDown(Level.Invocation)
+    public void clean() {
+        deletePosts();
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public void update() {
+        doInTransaction(session -> {
+            List<Post> posts = session.createQuery(
+                "select distinct p " +
+                "from Post p " +
+                "join fetch p.comments c").list();
+
+            for (Post post : posts) {
+                post.setTitle("Blog " + post.getTitle());
+                for (Comment comment : post.getComments()) {
+                    comment.setReview("Blog " + comment.getReview());
+                }
+            }
+            session.flush();
+        });
+    }
+}
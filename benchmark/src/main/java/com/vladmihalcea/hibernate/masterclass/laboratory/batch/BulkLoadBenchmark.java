@@ -0,0 +1,119 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.jpa.EntityGraphMapperTest;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.JdbcBulkLoader;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.providers.BlogEntityProvider;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.Configuration;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BulkLoadBenchmark - Loads postCount posts, each one having POST_COMMENT_COUNT comments, with the
+ * {@link JdbcBulkLoader}, for various JDBC batch sizes and multi-row VALUES rewriting settings.
+ * The score is the load time, while the rows/s throughput of every iteration is printed afterwards.
+ *
+ * @author Vlad Mihalcea
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BulkLoadBenchmark {
+
+    private static final int POST_COMMENT_COUNT = 10;
+
+    @Param({"100000"})
+    private int postCount;
+
+    @Param({"1", "100", "1000"})
+    private int batchSize;
+
+    @Param({"1", "10", "100"})
+    private int rowsPerStatement;
+
+    @Param({"10000"})
+    private int commitSize;
+
+    private SessionFactory sessionFactory;
+
+    private JDBCDataSource dataSource;
+
+    private JdbcBulkLoader.Report report;
+
+    @Setup(Level.Trial)
+    public void init() {
+        Properties properties = getProperties();
+        Configuration configuration = new Configuration().addProperties(properties);
+        for (Class<?> entityClass : new BlogEntityProvider().entities()) {
+            configuration.addAnnotatedClass(entityClass);
+        }
+        sessionFactory = configuration.buildSessionFactory(
+                new StandardServiceRegistryBuilder()
+                        .applySettings(properties)
+                        .build()
+        );
+    }
+
+    @TearDown(Level.Trial)
+    public void destroy() {
+        sessionFactory.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void truncate() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE SCHEMA PUBLIC AND COMMIT NO CHECK");
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void printReport() {
+        System.out.printf("%n%s%n", report);
+    }
+
+    @Benchmark
+    public long load() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            report = new JdbcBulkLoader()
+                .setBatchSize(batchSize)
+                .setRowsPerStatement(rowsPerStatement)
+                .setCommitSize(commitSize)
+                .table(EntityGraphMapperTest.INSERT_POST, postCount, (i, parameters) -> parameters
+                    .setString(String.format("Post no. %1$d", i))
+                    .setInt(0)
+                    .setLong(i)
+                )
+                .table(EntityGraphMapperTest.INSERT_POST_COMMENT, (long) postCount * POST_COMMENT_COUNT, (i, parameters) -> parameters
+                    .setLong(i / POST_COMMENT_COUNT)
+                    .setString(String.format("Post comment %1$d", i % POST_COMMENT_COUNT))
+                    .setInt(0)
+                    .setLong(i)
+                )
+                .load(connection);
+            return report.getRowCount();
+        }
+    }
+
+    protected Properties getProperties() {
+        Properties properties = new Properties();
+        properties.put("hibernate.dialect", "org.hibernate.dialect.HSQLDialect");
+        properties.put("hibernate.hbm2ddl.auto", "create-drop");
+        dataSource = new JDBCDataSource();
+        dataSource.setUrl("jdbc:hsqldb:mem:benchmark");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        properties.put("hibernate.connection.datasource", dataSource);
+        return properties;
+    }
+}
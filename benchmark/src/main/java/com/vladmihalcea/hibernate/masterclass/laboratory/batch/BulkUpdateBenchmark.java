@@ -0,0 +1,81 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Comment;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Post;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.BulkUpdater;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+
+/**
+ * BulkUpdateBenchmark - Compares the NoBatchingTest.testInsertAndUpdate update phase, which loads every Post
+ * along with its Comment entities, with the {@link BulkUpdater} versioned set-based UPDATE statements
+ * and with its batched per-row fallback.
+ *
+ * @author Vlad Mihalcea
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class BulkUpdateBenchmark extends AbstractBatchingBenchmark {
+
+    @Param({"entity", "bulk", "fallback"})
+    private String mode;
+
+    @Setup(Level.Iteration)
+    public void addRows() {
+        deletePosts();
+        insertPosts(false);
+    }
+
+    @Benchmark
+    public void update() {
+        switch (mode) {
+            case "entity":
+                entityUpdate();
+                break;
+            case "bulk":
+                doInTransaction(session -> {
+                    new BulkUpdater<>(Post.class, "p")
+                        .set("title", "concat('Blog ', p.title)")
+                        .execute(session);
+                    new BulkUpdater<>(Comment.class, "c")
+                        .set("review", "concat('Blog ', c.review)")
+                        .execute(session);
+                });
+                break;
+            case "fallback":
+                doInTransaction(session -> {
+                    new BulkUpdater<>(Post.class, "p")
+                        .set("title", post -> "Blog " + post.getTitle())
+                        .setBatchSize(flushSize())
+                        .execute(session);
+                    new BulkUpdater<>(Comment.class, "c")
+                        .set("review", comment -> "Blog " + comment.getReview())
+                        .setBatchSize(flushSize())
+                        .execute(session);
+                });
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported mode " + mode);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void entityUpdate() {
+        doInTransaction(session -> {
+            List<Post> posts = session.createQuery(
+                "select distinct p " +
+                "from Post p " +
+                "join fetch p.comments c").list();
+
+            for (Post post : posts) {
+                post.setTitle("Blog " + post.getTitle());
+                for (Comment comment : post.getComments()) {
+                    comment.setReview("Blog " + comment.getReview());
+                }
+            }
+            session.flush();
+        });
+    }
+}
@@ -0,0 +1,131 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoFetchingTest.Comment;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoFetchingTest.Post;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.ParallelBatchInserter;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.Configuration;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * ParallelInsertBenchmark - Inserts postCount Post aggregates, each one having two Comment entities,
+ * with the {@link ParallelBatchInserter}, for various worker counts, using either stateful or stateless sessions.
+ * The HSQLDB database uses MVCC, as otherwise the table locks would serialize the workers.
+ * The score is the insert time, while the per-worker throughput of every iteration is printed afterwards.
+ *
+ * @author Vlad Mihalcea
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParallelInsertBenchmark {
+
+    private static final int BATCH_SIZE = 50;
+
+    @Param({"stateful", "stateless"})
+    private String session;
+
+    @Param({"1", "2", "4", "8"})
+    private int workerCount;
+
+    @Param({"100000"})
+    private int postCount;
+
+    @Param({"1000"})
+    private int chunkSize;
+
+    private SessionFactory sessionFactory;
+
+    private JDBCDataSource dataSource;
+
+    private ParallelBatchInserter.Report report;
+
+    @Setup(Level.Trial)
+    public void init() {
+        Properties properties = getProperties();
+        Configuration configuration = new Configuration().addProperties(properties);
+        configuration.addAnnotatedClass(Post.class);
+        configuration.addAnnotatedClass(Comment.class);
+        sessionFactory = configuration.buildSessionFactory(
+                new StandardServiceRegistryBuilder()
+                        .applySettings(properties)
+                        .build()
+        );
+    }
+
+    @TearDown(Level.Trial)
+    public void destroy() {
+        sessionFactory.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void truncate() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE SCHEMA PUBLIC AND COMMIT NO CHECK");
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void printReport() {
+        System.out.printf("%n%s%n", report);
+    }
+
+    @Benchmark
+    public long insert() {
+        ParallelBatchInserter<Post> inserter = new ParallelBatchInserter<Post>(sessionFactory)
+            .setWorkerCount(workerCount)
+            .setBatchSize(BATCH_SIZE)
+            .setChunkSize(chunkSize);
+        switch (session) {
+            case "stateful":
+                report = inserter.insert(posts(), (session, post) -> session.persist(post));
+                break;
+            case "stateless":
+                report = inserter.insertStateless(posts(), (session, post) -> {
+                    session.insert(post);
+                    post.getComments().forEach(session::insert);
+                });
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported session " + session);
+        }
+        return report.getAggregateCount();
+    }
+
+    protected Properties getProperties() {
+        Properties properties = new Properties();
+        properties.put("hibernate.dialect", "org.hibernate.dialect.HSQLDialect");
+        properties.put("hibernate.hbm2ddl.auto", "create-drop");
+        properties.put("hibernate.jdbc.batch_size", String.valueOf(BATCH_SIZE));
+        properties.put("hibernate.order_inserts", "true");
+        dataSource = new JDBCDataSource();
+        dataSource.setUrl("jdbc:hsqldb:mem:benchmark;hsqldb.tx=mvcc");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        properties.put("hibernate.connection.datasource", dataSource);
+        return properties;
+    }
+
+    private Iterator<Post> posts() {
+        return IntStream.range(0, postCount).mapToObj(i -> {
+            Post post = new Post(String.format("Post no. %d", i));
+            post.addComment(new Comment(String.format("Post comment %d:%d", i, 0)));
+            post.addComment(new Comment(String.format("Post comment %d:%d", i, 1)));
+            return post;
+        }).iterator();
+    }
+}
@@ -0,0 +1,147 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoFetchingTest.Comment;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoFetchingTest.Post;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.Configuration;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ReadOnlyFetchBenchmark - Fetches rowCount Post entities, along with two Comment entities each, just like
+ * NoFetchingTest, using either a regular session or a read-only one, as opened by
+ * AbstractTest#doInReadOnlyTransaction. The score is the fetch time, while the heap retained by the session
+ * at the end of the fetch is printed after every iteration, so the loaded state snapshot overhead can be compared.
+ *
+ * @author Vlad Mihalcea
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ReadOnlyFetchBenchmark {
+
+    private static final int BATCH_SIZE = 50;
+
+    @Param({"false", "true"})
+    private boolean readOnly;
+
+    @Param({"100000"})
+    private int rowCount;
+
+    private SessionFactory sessionFactory;
+
+    private Session session;
+
+    private Transaction transaction;
+
+    private List<?> posts;
+
+    private long baselineHeap;
+
+    @Setup(Level.Trial)
+    public void init() {
+        Properties properties = getProperties();
+        Configuration configuration = new Configuration().addProperties(properties);
+        configuration.addAnnotatedClass(Post.class);
+        configuration.addAnnotatedClass(Comment.class);
+        sessionFactory = configuration.buildSessionFactory(
+                new StandardServiceRegistryBuilder()
+                        .applySettings(properties)
+                        .build()
+        );
+        insertPosts();
+    }
+
+    @TearDown(Level.Trial)
+    public void destroy() {
+        sessionFactory.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void openSession() {
+        baselineHeap = usedHeap();
+        session = sessionFactory.openSession();
+        if (readOnly) {
+            session.setDefaultReadOnly(true);
+            session.setFlushMode(FlushMode.MANUAL);
+        }
+        transaction = session.beginTransaction();
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeSession() {
+        long retainedHeap = usedHeap() - baselineHeap;
+        System.out.printf("%nreadOnly=%s: %d posts retained %d KB of heap%n", readOnly, posts.size(), retainedHeap / 1024);
+        transaction.commit();
+        session.close();
+        posts = null;
+    }
+
+    @Benchmark
+    public List<?> fetch() {
+        posts = session.createQuery(
+            "select distinct p " +
+            "from Post p " +
+            "join fetch p.comments ")
+            .list();
+        return posts;
+    }
+
+    protected Properties getProperties() {
+        Properties properties = new Properties();
+        properties.put("hibernate.dialect", "org.hibernate.dialect.HSQLDialect");
+        properties.put("hibernate.hbm2ddl.auto", "create-drop");
+        properties.put("hibernate.jdbc.batch_size", String.valueOf(BATCH_SIZE));
+        properties.put("hibernate.order_inserts", "true");
+        JDBCDataSource dataSource = new JDBCDataSource();
+        dataSource.setUrl("jdbc:hsqldb:mem:benchmark");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        properties.put("hibernate.connection.datasource", dataSource);
+        return properties;
+    }
+
+    private void insertPosts() {
+        Session session = sessionFactory.openSession();
+        Transaction txn = session.beginTransaction();
+        try {
+            for (int i = 0; i < rowCount; i++) {
+                Post post = new Post(String.format("Post no. %d", i));
+                post.addComment(new Comment(String.format("Post comment %d:%d", i, 0)));
+                post.addComment(new Comment(String.format("Post comment %d:%d", i, 1)));
+                session.persist(post);
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    session.flush();
+                    session.clear();
+                }
+            }
+            txn.commit();
+        } catch (RuntimeException e) {
+            txn.rollback();
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+
+    private long usedHeap() {
+        MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            memoryMXBean.gc();
+        }
+        return memoryMXBean.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,202 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Comment;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.Post;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoBatchingTest.PostDetails;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * StatelessBatchingBenchmark - Compares the NoBatchingTest insert, update and cascade delete workloads,
+ * using either a stateful Session or a StatelessSession, like the NoBatchingTest stateless test variants do.
+ * The score is the time it takes to process rowCount posts, so the throughput is rowCount / score,
+ * while the peak heap usage of every iteration is printed afterwards.
+ * The in-memory HSQLDB tables live in the same heap, so only the difference between the two modes is relevant.
+ *
+ * @author Vlad Mihalcea
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class StatelessBatchingBenchmark extends AbstractBatchingBenchmark {
+
+    @Param({"session", "stateless"})
+    private String mode;
+
+    @Param({"insert", "update", "delete"})
+    private String operation;
+
+    @Setup(Level.Iteration)
+    public void addRows() {
+        deletePosts();
+        if ("update".equals(operation)) {
+            insertPosts(false);
+        } else if ("delete".equals(operation)) {
+            insertPosts(true);
+        }
+        ManagementFactory.getMemoryMXBean().gc();
+        for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (memoryPool.getType() == MemoryType.HEAP) {
+                memoryPool.resetPeakUsage();
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void printPeakHeap() {
+        long peakHeap = 0;
+        for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (memoryPool.getType() == MemoryType.HEAP) {
+                peakHeap += memoryPool.getPeakUsage().getUsed();
+            }
+        }
+        System.out.printf("%n%s %s: %d posts peak heap %d KB%n", mode, operation, rowCount, peakHeap / 1024);
+    }
+
+    @Benchmark
+    public void execute() {
+        switch (mode + " " + operation) {
+            case "session insert":
+                insertPosts(false);
+                break;
+            case "session update":
+                update();
+                break;
+            case "session delete":
+                cascadeDelete();
+                break;
+            case "stateless insert":
+                doInStatelessTransaction(this::statelessInsert);
+                break;
+            case "stateless update":
+                doInStatelessTransaction(this::statelessUpdate);
+                break;
+            case "stateless delete":
+                doInStatelessTransaction(this::statelessDelete);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported " + mode + " " + operation);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void update() {
+        doInTransaction(session -> {
+            List<Post> posts = session.createQuery(
+                "select distinct p " +
+                "from Post p " +
+                "join fetch p.comments c").list();
+
+            for (Post post : posts) {
+                post.setTitle("Blog " + post.getTitle());
+                for (Comment comment : post.getComments()) {
+                    comment.setReview("Blog " + comment.getReview());
+                }
+            }
+            session.flush();
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void cascadeDelete() {
+        doInTransaction(session -> {
+            List<Post> posts = session.createQuery(
+                "select distinct p " +
+                "from Post p " +
+                "join fetch p.details d " +
+                "join fetch p.comments c")
+            .list();
+            for (Post post : posts) {
+                session.delete(post);
+            }
+        });
+    }
+
+    private void statelessInsert(StatelessSession session) {
+        int flushSize = flushSize();
+        List<Comment> comments = new ArrayList<>();
+        for (int i = 0; i < rowCount; i++) {
+            Post post = new Post(String.format("Post no. %d", i));
+            session.insert(post);
+            for (int j = 0; j < 2; j++) {
+                Comment comment = new Comment(
+                        String.format("Post comment %d:%d", i, j));
+                comment.setPost(post);
+                comments.add(comment);
+            }
+            if ((i + 1) % flushSize == 0) {
+                comments.forEach(session::insert);
+                comments.clear();
+            }
+        }
+        comments.forEach(session::insert);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void statelessUpdate(StatelessSession session) {
+        List<Post> posts = session.createQuery(
+            "select p " +
+            "from Post p " +
+            "left join fetch p.details").list();
+        for (Post post : posts) {
+            post.setTitle("Blog " + post.getTitle());
+            session.update(post);
+        }
+
+        List<Comment> comments = session.createQuery(
+            "select c " +
+            "from Comment c " +
+            "join fetch c.post p " +
+            "left join fetch p.details").list();
+        for (Comment comment : comments) {
+            comment.setReview("Blog " + comment.getReview());
+            session.update(comment);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void statelessDelete(StatelessSession session) {
+        List<Post> posts = session.createQuery(
+            "select p " +
+            "from Post p " +
+            "left join fetch p.details").list();
+        List<Comment> comments = session.createQuery(
+            "select c " +
+            "from Comment c " +
+            "join fetch c.post p " +
+            "left join fetch p.details").list();
+        List<PostDetails> details = session.createQuery(
+            "select d " +
+            "from PostDetails d").list();
+        comments.forEach(session::delete);
+        details.forEach(session::delete);
+        posts.forEach(session::delete);
+    }
+
+    private void doInStatelessTransaction(Consumer<StatelessSession> callable) {
+        StatelessSession session = null;
+        Transaction txn = null;
+        try {
+            session = getSessionFactory().openStatelessSession();
+            txn = session.beginTransaction();
+            callable.accept(session);
+            txn.commit();
+        } catch (RuntimeException e) {
+            if ( txn != null && txn.isActive() ) txn.rollback();
+            throw e;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoFetchingTest.Comment;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoFetchingTest.Post;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.ScrollableResultsStreamer;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.criterion.CriteriaSpecification;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StreamingFetchBenchmark - Processes postCount Post entities, along with their two Comment entities,
+ * either by loading the NoFetchingTest join fetch query result into a List or by streaming it with the
+ * {@link ScrollableResultsStreamer}. The score is the processing time, so the throughput is postCount / score,
+ * while the peak heap usage of every iteration is printed afterwards.
+ * The in-memory HSQLDB tables live in the same heap, so only the difference between the two modes is relevant.
+ * Use the <code>-jvmArgsAppend -Xmx</code> option to check which postCount still fits a given heap.
+ *
+ * @author Vlad Mihalcea
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StreamingFetchBenchmark {
+
+    private static final int BATCH_SIZE = 50;
+
+    private static final String QUERY =
+        "select p " +
+        "from Post p " +
+        "join fetch p.comments " +
+        "order by p.id";
+
+    @Param({"list", "scroll"})
+    private String mode;
+
+    @Param({"10000", "100000", "1000000"})
+    private int postCount;
+
+    @Param({"100"})
+    private int fetchSize;
+
+    private SessionFactory sessionFactory;
+
+    @Setup(Level.Trial)
+    public void init() {
+        Properties properties = getProperties();
+        Configuration configuration = new Configuration().addProperties(properties);
+        configuration.addAnnotatedClass(Post.class);
+        configuration.addAnnotatedClass(Comment.class);
+        sessionFactory = configuration.buildSessionFactory(
+                new StandardServiceRegistryBuilder()
+                        .applySettings(properties)
+                        .build()
+        );
+        insertPosts();
+    }
+
+    @TearDown(Level.Trial)
+    public void destroy() {
+        sessionFactory.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPeakHeap() {
+        ManagementFactory.getMemoryMXBean().gc();
+        for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (memoryPool.getType() == MemoryType.HEAP) {
+                memoryPool.resetPeakUsage();
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void printPeakHeap() {
+        long peakHeap = 0;
+        for (MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (memoryPool.getType() == MemoryType.HEAP) {
+                peakHeap += memoryPool.getPeakUsage().getUsed();
+            }
+        }
+        System.out.printf("%n%s: %d posts peak heap %d KB%n", mode, postCount, peakHeap / 1024);
+    }
+
+    @Benchmark
+    public long fetch() {
+        Session session = sessionFactory.openSession();
+        session.setDefaultReadOnly(true);
+        session.setFlushMode(FlushMode.MANUAL);
+        Transaction txn = session.beginTransaction();
+        try {
+            long commentCount = 0;
+            switch (mode) {
+                case "list":
+                    List<Post> posts = session.createQuery(QUERY)
+                        .setFetchSize(fetchSize)
+                        .setResultTransformer(CriteriaSpecification.DISTINCT_ROOT_ENTITY)
+                        .list();
+                    for (Post post : posts) {
+                        commentCount += post.getComments().size();
+                    }
+                    break;
+                case "scroll":
+                    long[] counter = new long[1];
+                    new ScrollableResultsStreamer(session)
+                        .setFetchSize(fetchSize)
+                        .<Post>stream(QUERY, post -> counter[0] += post.getComments().size());
+                    commentCount = counter[0];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported mode " + mode);
+            }
+            txn.commit();
+            return commentCount;
+        } catch (RuntimeException e) {
+            txn.rollback();
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+
+    protected Properties getProperties() {
+        Properties properties = new Properties();
+        properties.put("hibernate.dialect", "org.hibernate.dialect.HSQLDialect");
+        properties.put("hibernate.hbm2ddl.auto", "create-drop");
+        properties.put("hibernate.jdbc.batch_size", String.valueOf(BATCH_SIZE));
+        properties.put("hibernate.order_inserts", "true");
+        JDBCDataSource dataSource = new JDBCDataSource();
+        dataSource.setUrl("jdbc:hsqldb:mem:benchmark");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        properties.put("hibernate.connection.datasource", dataSource);
+        return properties;
+    }
+
+    private void insertPosts() {
+        Session session = sessionFactory.openSession();
+        Transaction txn = session.beginTransaction();
+        try {
+            for (int i = 0; i < postCount; i++) {
+                Post post = new Post(String.format("Post no. %d", i));
+                post.addComment(new Comment(String.format("Post comment %d:%d", i, 0)));
+                post.addComment(new Comment(String.format("Post comment %d:%d", i, 1)));
+                session.persist(post);
+                if ((i + 1) % BATCH_SIZE == 0) {
+                    session.flush();
+                    session.clear();
+                }
+            }
+            txn.commit();
+        } catch (RuntimeException e) {
+            txn.rollback();
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.CollectionCacheTest.Change;
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.CollectionCacheTest.Commit;
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.CollectionCacheTest.Repository;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.CacheEntryCodec;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.SerializableCacheEntryCodec;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.TaggedCacheEntryCodec;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.TinyLfuRegionFactory;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.TypeAwareCacheEntryCodec;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CacheEntryCodecBenchmark - Measures the encode and decode latency of the Java serialization, tagged and
+ * persister Type-aware cache entry codecs, the latter with and without its codec-local string dictionary,
+ * for the CollectionCacheTest Repository and Commit entities, and for their collections.
+ *
+ * @author Vlad Mihalcea
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CacheEntryCodecBenchmark {
+
+    @Param({"serializable", "tagged", "type-aware", "type-aware-local-dictionary"})
+    private String codec;
+
+    @Param({"Repository", "Repository.commits", "Commit", "Commit.changes"})
+    private String region;
+
+    @Param({"10"})
+    private int commitCount;
+
+    private SessionFactory sessionFactory;
+
+    private CacheEntryCodec cacheEntryCodec;
+
+    private Object key;
+
+    private Object value;
+
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void init() {
+        Properties properties = getProperties();
+        Configuration configuration = new Configuration().addProperties(properties);
+        configuration.addAnnotatedClass(Repository.class);
+        configuration.addAnnotatedClass(Commit.class);
+        sessionFactory = configuration.buildSessionFactory(
+                new StandardServiceRegistryBuilder()
+                        .applySettings(properties)
+                        .build()
+        );
+        cacheEntryCodec = cacheEntryCodec();
+        Map.Entry<Object, Object> entry = insertRepository()
+                .get(CollectionCacheTest.class.getName() + "$" + region).entrySet().iterator().next();
+        key = entry.getKey();
+        value = entry.getValue();
+        encoded = cacheEntryCodec.encode(key, value);
+    }
+
+    @TearDown(Level.Trial)
+    public void destroy() {
+        sessionFactory.close();
+    }
+
+    protected Properties getProperties() {
+        Properties properties = new Properties();
+        properties.put("hibernate.dialect", "org.hibernate.dialect.HSQLDialect");
+        properties.put("hibernate.hbm2ddl.auto", "create-drop");
+        properties.put("hibernate.cache.use_second_level_cache", Boolean.TRUE.toString());
+        properties.put("hibernate.cache.region.factory_class", TinyLfuRegionFactory.class.getName());
+        JDBCDataSource dataSource = new JDBCDataSource();
+        dataSource.setUrl("jdbc:hsqldb:mem:benchmark");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        properties.put("hibernate.connection.datasource", dataSource);
+        return properties;
+    }
+
+    private CacheEntryCodec cacheEntryCodec() {
+        switch (codec) {
+            case "tagged":
+                return new TaggedCacheEntryCodec();
+            case "type-aware":
+                return new TypeAwareCacheEntryCodec((SessionFactoryImplementor) sessionFactory);
+            case "type-aware-local-dictionary":
+                return new TypeAwareCacheEntryCodec((SessionFactoryImplementor) sessionFactory,
+                    TypeAwareCacheEntryCodec.LOCAL_DICTIONARY_SIZE);
+            default:
+                return new SerializableCacheEntryCodec();
+        }
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return cacheEntryCodec.encode(key, value);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return cacheEntryCodec.decode(key, encoded);
+    }
+
+    private Map<String, Map<Object, Object>> insertRepository() {
+        Session session = sessionFactory.openSession();
+        Transaction txn = session.beginTransaction();
+        try {
+            Repository repository = new Repository("Hibernate-Master-Class");
+            session.persist(repository);
+            for (int i = 0; i < commitCount; i++) {
+                Commit commit = new Commit();
+                commit.getChanges().add(new Change("README.txt", "0a1,5..."));
+                commit.getChanges().add(new Change(String.format("src/main/java/Post%d.java", i), "17c17..."));
+                repository.addCommit(commit);
+                session.persist(commit);
+            }
+            session.flush();
+            session.clear();
+            repository = (Repository) session.get(Repository.class, repository.getId());
+            for (Commit commit : repository.getCommits()) {
+                commit.getChanges().size();
+            }
+            Map<String, Map<Object, Object>> entriesByRegion = CacheEntryCodecTest.cacheEntries(session);
+            txn.commit();
+            return entriesByRegion;
+        } catch (RuntimeException e) {
+            txn.rollback();
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+}
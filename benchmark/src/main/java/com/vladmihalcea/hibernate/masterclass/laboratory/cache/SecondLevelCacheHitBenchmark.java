@@ -0,0 +1,128 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.NearCacheRegionFactoryTest.Post;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.NearCacheRegionFactory;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.TinyLfuRegionFactory;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cache.ehcache.EhCacheRegionFactory;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SecondLevelCacheHitBenchmark - Measures the Session#get latency of a second-level cache hit,
+ * using either the EhCacheRegionFactory, the NearCacheRegionFactory in front of it, or the TinyLfuRegionFactory,
+ * whose regions are stored off-heap with the offheap option, so every hit decodes the cache entry.
+ * Every Session runs outside of a transaction, so no JDBC Connection is acquired on a cache hit.
+ *
+ * @author Vlad Mihalcea
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SecondLevelCacheHitBenchmark {
+
+    @Param({"ehcache", "near", "tinylfu", "offheap"})
+    private String regionFactory;
+
+    @Param({"100"})
+    private int postCount;
+
+    private SessionFactory sessionFactory;
+
+    private long[] postIds;
+
+    @Setup(Level.Trial)
+    public void init() {
+        Properties properties = getProperties();
+        Configuration configuration = new Configuration().addProperties(properties);
+        configuration.addAnnotatedClass(Post.class);
+        sessionFactory = configuration.buildSessionFactory(
+                new StandardServiceRegistryBuilder()
+                        .applySettings(properties)
+                        .build()
+        );
+        insertPosts();
+        for (long postId : postIds) {
+            get(postId);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void destroy() {
+        sessionFactory.close();
+    }
+
+    protected Properties getProperties() {
+        Properties properties = new Properties();
+        properties.put("hibernate.dialect", "org.hibernate.dialect.HSQLDialect");
+        properties.put("hibernate.hbm2ddl.auto", "create-drop");
+        properties.put("hibernate.cache.use_second_level_cache", Boolean.TRUE.toString());
+        properties.put("hibernate.cache.region.factory_class", regionFactoryClass().getName());
+        if ("offheap".equals(regionFactory)) {
+            properties.put(TinyLfuRegionFactory.OFF_HEAP_MAXIMUM_BYTES, String.valueOf(64 * 1024 * 1024));
+        }
+        JDBCDataSource dataSource = new JDBCDataSource();
+        dataSource.setUrl("jdbc:hsqldb:mem:benchmark");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        properties.put("hibernate.connection.datasource", dataSource);
+        return properties;
+    }
+
+    private Class<? extends RegionFactory> regionFactoryClass() {
+        switch (regionFactory) {
+            case "near":
+                return NearCacheRegionFactory.class;
+            case "tinylfu":
+            case "offheap":
+                return TinyLfuRegionFactory.class;
+            default:
+                return EhCacheRegionFactory.class;
+        }
+    }
+
+    @Benchmark
+    public Post get() {
+        return get(postIds[ThreadLocalRandom.current().nextInt(postIds.length)]);
+    }
+
+    private Post get(long postId) {
+        Session session = sessionFactory.openSession();
+        try {
+            return (Post) session.get(Post.class, postId);
+        } finally {
+            session.close();
+        }
+    }
+
+    private void insertPosts() {
+        postIds = new long[postCount];
+        Session session = sessionFactory.openSession();
+        Transaction txn = session.beginTransaction();
+        try {
+            for (int i = 0; i < postCount; i++) {
+                Post post = new Post(String.format("Post no. %1$d", i));
+                session.persist(post);
+                postIds[i] = post.getId();
+            }
+            txn.commit();
+        } catch (RuntimeException e) {
+            txn.rollback();
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.flushing;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DirtyAwareBenchmark - Compares the {@link SelfDirtyCheckingEntity} stack-walking dirty tracking of the
+ * {@link OrderLine} entity with the {@link IndexedDirtyCheckingEntity} one of the {@link IndexedOrderLine} entity.
+ * The update benchmark calls all setters on an existing entity and reads the dirty properties, like a flush does,
+ * while the create benchmark also includes the entity instantiation.
+ *
+ * @author Vlad Mihalcea
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DirtyAwareBenchmark {
+
+    @Param({"self-dirty-checking", "indexed"})
+    private String entity;
+
+    private final Date orderedOn = new Date();
+
+    private OrderLine orderLine;
+
+    private IndexedOrderLine indexedOrderLine;
+
+    @Setup(Level.Trial)
+    public void init() {
+        orderLine = new OrderLine();
+        indexedOrderLine = new IndexedOrderLine();
+    }
+
+    @Benchmark
+    public int update() {
+        switch (entity) {
+            case "self-dirty-checking":
+                return update(orderLine);
+            case "indexed":
+                return update(indexedOrderLine);
+            default:
+                throw new IllegalArgumentException("Unsupported entity " + entity);
+        }
+    }
+
+    @Benchmark
+    public int create() {
+        switch (entity) {
+            case "self-dirty-checking":
+                return update(new OrderLine());
+            case "indexed":
+                return update(new IndexedOrderLine());
+            default:
+                throw new IllegalArgumentException("Unsupported entity " + entity);
+        }
+    }
+
+    private int update(OrderLine orderLine) {
+        orderLine.setNumber(123L);
+        orderLine.setOrderedBy("Vlad");
+        orderLine.setOrderedOn(orderedOn);
+        int dirtyPropertyCount = orderLine.getDirtyProperties().size();
+        orderLine.clearDirtyProperties();
+        return dirtyPropertyCount;
+    }
+
+    private int update(IndexedOrderLine orderLine) {
+        orderLine.setNumber(123L);
+        orderLine.setOrderedBy("Vlad");
+        orderLine.setOrderedOn(orderedOn);
+        int dirtyPropertyCount = orderLine.getDirtyProperties().size();
+        orderLine.clearDirtyProperties();
+        return dirtyPropertyCount;
+    }
+}
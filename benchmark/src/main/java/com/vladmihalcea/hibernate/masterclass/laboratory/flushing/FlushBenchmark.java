@@ -0,0 +1,221 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.flushing;
+
+import org.hibernate.Interceptor;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.Configuration;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FlushBenchmark - Measures the flush latency of a session holding entityCount entities,
+ * out of which modifiedPercentage percent have been modified, for every dirty checking mechanism:
+ * <ul>
+ * <li>auto - the default deep comparison ({@link AutoDirtyCheckingTest})</li>
+ * <li>interceptor - {@link InterceptorDirtyCheckingTest.DirtyCheckingInterceptor}</li>
+ * <li>dirtiness-strategy - {@link CustomEntityDirtinessStrategyTest.EntityDirtinessStrategy}</li>
+ * <li>dirty-mask-interceptor - {@link DirtyMaskInterceptorDirtyCheckingTest.DirtyMaskInterceptor}</li>
+ * <li>dirty-mask-strategy - {@link DirtyMaskEntityDirtinessStrategyTest.DirtyMaskEntityDirtinessStrategy}</li>
+ * <li>bytecode-enhancement - the maven-bytecode-enhance {@link EnhancedOrderLine} dirty tracking</li>
+ * </ul>
+ * Loading and modifying the entities is done in the iteration set-up, so only the flush is measured,
+ * and the transaction is rolled back afterwards. Use <code>-prof gc</code> to get the allocation rate per flush.
+ * <p>
+ * Every iteration checks that all modified entities were flushed and prints the mismatch otherwise.
+ * With Hibernate 4.3, EntityEntry#requiresDirtyCheck skips the enhanced entities having dirty attributes
+ * and deep compares the other ones, so the bytecode-enhancement results don't include the modified entity updates.
+ *
+ * @author Vlad Mihalcea
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FlushBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"auto", "interceptor", "dirtiness-strategy", "dirty-mask-interceptor", "dirty-mask-strategy", "bytecode-enhancement"})
+    private String mechanism;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int entityCount;
+
+    @Param({"0", "1", "100"})
+    private int modifiedPercentage;
+
+    private SessionFactory sessionFactory;
+
+    private Session session;
+
+    private Transaction transaction;
+
+    private int modifiedCount;
+
+    @Setup(Level.Trial)
+    public void init() {
+        Properties properties = getProperties();
+        Configuration configuration = new Configuration().addProperties(properties);
+        configuration.addAnnotatedClass(entityClass());
+        Interceptor interceptor = interceptor();
+        if (interceptor != null) {
+            configuration.setInterceptor(interceptor);
+        }
+        sessionFactory = configuration.buildSessionFactory(
+                new StandardServiceRegistryBuilder()
+                        .applySettings(properties)
+                        .build()
+        );
+        insertEntities();
+    }
+
+    @TearDown(Level.Trial)
+    public void destroy() {
+        sessionFactory.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void loadEntities() {
+        session = sessionFactory.openSession();
+        transaction = session.beginTransaction();
+        List<?> entities = session.createQuery("from " + entityClass().getName()).list();
+        modifiedCount = 0;
+        for (int i = 0; i < entities.size(); i++) {
+            if (i % 100 < modifiedPercentage) {
+                modify(entities.get(i));
+                modifiedCount++;
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearEntities() {
+        Long flushedCount = (Long) session.createQuery(
+            "select count(o) from " + entityClass().getName() + " o where o.orderedBy = 'Alex'")
+            .uniqueResult();
+        if (flushedCount != modifiedCount) {
+            System.out.printf("%n%s flushed %d out of %d modified entities%n", mechanism, flushedCount, modifiedCount);
+        }
+        transaction.rollback();
+        session.close();
+    }
+
+    @Benchmark
+    public void flush() {
+        session.flush();
+    }
+
+    private Class<?> entityClass() {
+        switch (mechanism) {
+            case "auto":
+            case "interceptor":
+            case "dirtiness-strategy":
+                return OrderLine.class;
+            case "dirty-mask-interceptor":
+            case "dirty-mask-strategy":
+                return IndexedOrderLine.class;
+            case "bytecode-enhancement":
+                return EnhancedOrderLine.class;
+            default:
+                throw new IllegalArgumentException("Unsupported mechanism " + mechanism);
+        }
+    }
+
+    private Interceptor interceptor() {
+        switch (mechanism) {
+            case "interceptor":
+                return new InterceptorDirtyCheckingTest().new DirtyCheckingInterceptor();
+            case "dirty-mask-interceptor":
+                return new DirtyMaskInterceptorDirtyCheckingTest.DirtyMaskInterceptor();
+            default:
+                return null;
+        }
+    }
+
+    protected Properties getProperties() {
+        Properties properties = new Properties();
+        properties.put("hibernate.dialect", "org.hibernate.dialect.HSQLDialect");
+        properties.put("hibernate.hbm2ddl.auto", "create-drop");
+        properties.put("hibernate.jdbc.batch_size", String.valueOf(BATCH_SIZE));
+        switch (mechanism) {
+            case "dirtiness-strategy":
+                properties.put("hibernate.entity_dirtiness_strategy",
+                    CustomEntityDirtinessStrategyTest.EntityDirtinessStrategy.class.getName());
+                break;
+            case "dirty-mask-strategy":
+                properties.put("hibernate.entity_dirtiness_strategy",
+                    DirtyMaskEntityDirtinessStrategyTest.DirtyMaskEntityDirtinessStrategy.class.getName());
+                break;
+        }
+        JDBCDataSource dataSource = new JDBCDataSource();
+        dataSource.setUrl("jdbc:hsqldb:mem:benchmark");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        properties.put("hibernate.connection.datasource", dataSource);
+        return properties;
+    }
+
+    private void insertEntities() {
+        StatelessSession statelessSession = sessionFactory.openStatelessSession();
+        Transaction txn = statelessSession.beginTransaction();
+        try {
+            Date orderedOn = new Date();
+            for (long i = 0; i < entityCount; i++) {
+                statelessSession.insert(newEntity(i, orderedOn));
+            }
+            txn.commit();
+        } catch (RuntimeException e) {
+            txn.rollback();
+            throw e;
+        } finally {
+            statelessSession.close();
+        }
+    }
+
+    private Object newEntity(long number, Date orderedOn) {
+        switch (mechanism) {
+            case "dirty-mask-interceptor":
+            case "dirty-mask-strategy":
+                IndexedOrderLine indexedOrderLine = new IndexedOrderLine();
+                indexedOrderLine.setNumber(number);
+                indexedOrderLine.setOrderedBy("Vlad");
+                indexedOrderLine.setOrderedOn(orderedOn);
+                return indexedOrderLine;
+            case "bytecode-enhancement":
+                EnhancedOrderLine enhancedOrderLine = new EnhancedOrderLine();
+                enhancedOrderLine.setNumber(number);
+                enhancedOrderLine.setOrderedBy("Vlad");
+                enhancedOrderLine.setOrderedOn(orderedOn);
+                return enhancedOrderLine;
+            default:
+                OrderLine orderLine = new OrderLine();
+                orderLine.setNumber(number);
+                orderLine.setOrderedBy("Vlad");
+                orderLine.setOrderedOn(orderedOn);
+                return orderLine;
+        }
+    }
+
+    private void modify(Object entity) {
+        if (entity instanceof OrderLine) {
+            OrderLine orderLine = (OrderLine) entity;
+            orderLine.setOrderedBy("Alex");
+        } else if (entity instanceof IndexedOrderLine) {
+            IndexedOrderLine orderLine = (IndexedOrderLine) entity;
+            orderLine.setOrderedBy("Alex");
+        } else {
+            EnhancedOrderLine orderLine = (EnhancedOrderLine) entity;
+            orderLine.setOrderedBy("Alex");
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.idgenerator;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import java.io.Serializable;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PooledOptimizerBenchmark - Compares the enhanced-sequence identifier throughput of the pooled,
+ * pooled-lo and {@link StripedPooledLoOptimizer} optimizers, using an increment_size of 50.
+ * Every benchmark thread generates identifiers through its own Session, just like concurrent writers would.
+ * Run the main method to go through 1, 2, 4, 8, 16, 32 and 64 threads.
+ *
+ * @author Vlad Mihalcea
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PooledOptimizerBenchmark {
+
+    public static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32, 64};
+
+    @Param({"pooled", "pooled-lo", "striped-pooled-lo"})
+    private String optimizer;
+
+    private SessionFactory sessionFactory;
+
+    private IdentifierGenerator identifierGenerator;
+
+    @State(Scope.Thread)
+    public static class SessionHolder {
+
+        private Session session;
+
+        @Setup(Level.Trial)
+        public void open(PooledOptimizerBenchmark benchmark) {
+            session = benchmark.sessionFactory.openSession();
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            if (session.isOpen()) {
+                session.close();
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void init() {
+        Properties properties = getProperties();
+        Configuration configuration = new Configuration().addProperties(properties);
+        configuration.addAnnotatedClass(PooledIdentifier.class);
+        configuration.addAnnotatedClass(PooledLoIdentifier.class);
+        configuration.addAnnotatedClass(StripedPooledLoIdentifier.class);
+        sessionFactory = configuration.buildSessionFactory(
+                new StandardServiceRegistryBuilder()
+                        .applySettings(properties)
+                        .build()
+        );
+        identifierGenerator = ((SessionFactoryImplementor) sessionFactory).getIdentifierGenerator(entityName());
+    }
+
+    @TearDown(Level.Trial)
+    public void destroy() {
+        sessionFactory.close();
+    }
+
+    private String entityName() {
+        switch (optimizer) {
+            case "pooled":
+                return PooledIdentifier.class.getName();
+            case "pooled-lo":
+                return PooledLoIdentifier.class.getName();
+            case "striped-pooled-lo":
+                return StripedPooledLoIdentifier.class.getName();
+            default:
+                throw new IllegalArgumentException("Unsupported optimizer " + optimizer);
+        }
+    }
+
+    protected Properties getProperties() {
+        Properties properties = new Properties();
+        properties.put("hibernate.dialect", "org.hibernate.dialect.HSQLDialect");
+        properties.put("hibernate.hbm2ddl.auto", "create-drop");
+        properties.put("hibernate.id.new_generator_mappings", "true");
+        JDBCDataSource dataSource = new JDBCDataSource();
+        dataSource.setUrl("jdbc:hsqldb:mem:benchmark");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        properties.put("hibernate.connection.datasource", dataSource);
+        return properties;
+    }
+
+    @Benchmark
+    public Serializable generate(SessionHolder sessionHolder) {
+        return identifierGenerator.generate((SessionImplementor) sessionHolder.session, null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threadCount : THREAD_COUNTS) {
+            new Runner(new OptionsBuilder()
+                    .include(PooledOptimizerBenchmark.class.getSimpleName())
+                    .threads(threadCount)
+                    .build()
+            ).run();
+        }
+    }
+
+    @Entity(name = "PooledIdentifier")
+    public static class PooledIdentifier {
+
+        @Id
+        @GenericGenerator(name = "pooledGenerator", strategy = "enhanced-sequence",
+                parameters = {
+                        @org.hibernate.annotations.Parameter(name = "sequence_name", value = "pooled_sequence"),
+                        @org.hibernate.annotations.Parameter(name = "optimizer", value = "pooled"),
+                        @org.hibernate.annotations.Parameter(name = "initial_value", value = "1"),
+                        @org.hibernate.annotations.Parameter(name = "increment_size", value = "50")
+                }
+        )
+        @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pooledGenerator")
+        private Long id;
+    }
+
+    @Entity(name = "PooledLoIdentifier")
+    public static class PooledLoIdentifier {
+
+        @Id
+        @GenericGenerator(name = "pooledLoGenerator", strategy = "enhanced-sequence",
+                parameters = {
+                        @org.hibernate.annotations.Parameter(name = "sequence_name", value = "pooled_lo_sequence"),
+                        @org.hibernate.annotations.Parameter(name = "optimizer", value = "pooled-lo"),
+                        @org.hibernate.annotations.Parameter(name = "initial_value", value = "1"),
+                        @org.hibernate.annotations.Parameter(name = "increment_size", value = "50")
+                }
+        )
+        @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pooledLoGenerator")
+        private Long id;
+    }
+
+    @Entity(name = "StripedPooledLoIdentifier")
+    public static class StripedPooledLoIdentifier {
+
+        @Id
+        @GenericGenerator(name = "stripedPooledLoGenerator", strategy = "enhanced-sequence",
+                parameters = {
+                        @org.hibernate.annotations.Parameter(name = "sequence_name", value = "striped_pooled_lo_sequence"),
+                        @org.hibernate.annotations.Parameter(name = "optimizer",
+                                value = "com.vladmihalcea.hibernate.masterclass.laboratory.idgenerator.StripedPooledLoOptimizer"
+                        ),
+                        @org.hibernate.annotations.Parameter(name = "initial_value", value = "1"),
+                        @org.hibernate.annotations.Parameter(name = "increment_size", value = "50")
+                }
+        )
+        @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stripedPooledLoGenerator")
+        private Long id;
+    }
+}
@@ -0,0 +1,155 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.idgenerator;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import java.io.Serializable;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TableGeneratorBenchmark - Compares the identifier throughput of the {@link AssignedTableGenerator},
+ * which uses a separate transaction for every table access, the enhanced-table generator using the pooled-lo
+ * optimizer and the {@link BatchedTableGenerator}. Use the <code>-t</code> option to set the number of threads.
+ *
+ * @author Vlad Mihalcea
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TableGeneratorBenchmark {
+
+    @Param({"assigned-table", "pooled-lo-table", "batched-table"})
+    private String generator;
+
+    private SessionFactory sessionFactory;
+
+    private IdentifierGenerator identifierGenerator;
+
+    @State(Scope.Thread)
+    public static class SessionHolder {
+
+        private Session session;
+
+        @Setup(Level.Trial)
+        public void open(TableGeneratorBenchmark benchmark) {
+            session = benchmark.sessionFactory.openSession();
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            if (session.isOpen()) {
+                session.close();
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void init() {
+        Properties properties = getProperties();
+        Configuration configuration = new Configuration().addProperties(properties);
+        configuration.addAnnotatedClass(AssignedTableIdentifier.class);
+        configuration.addAnnotatedClass(PooledLoTableIdentifier.class);
+        configuration.addAnnotatedClass(BatchedTableIdentifier.class);
+        sessionFactory = configuration.buildSessionFactory(
+                new StandardServiceRegistryBuilder()
+                        .applySettings(properties)
+                        .build()
+        );
+        identifierGenerator = ((SessionFactoryImplementor) sessionFactory).getIdentifierGenerator(entityName());
+    }
+
+    @TearDown(Level.Trial)
+    public void destroy() {
+        sessionFactory.close();
+    }
+
+    private String entityName() {
+        switch (generator) {
+            case "assigned-table":
+                return AssignedTableIdentifier.class.getName();
+            case "pooled-lo-table":
+                return PooledLoTableIdentifier.class.getName();
+            case "batched-table":
+                return BatchedTableIdentifier.class.getName();
+            default:
+                throw new IllegalArgumentException("Unsupported generator " + generator);
+        }
+    }
+
+    protected Properties getProperties() {
+        Properties properties = new Properties();
+        properties.put("hibernate.dialect", "org.hibernate.dialect.HSQLDialect");
+        properties.put("hibernate.hbm2ddl.auto", "create-drop");
+        JDBCDataSource dataSource = new JDBCDataSource();
+        dataSource.setUrl("jdbc:hsqldb:mem:benchmark");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        properties.put("hibernate.connection.datasource", dataSource);
+        return properties;
+    }
+
+    @Benchmark
+    public Serializable generate(SessionHolder sessionHolder) {
+        return identifierGenerator.generate((SessionImplementor) sessionHolder.session, null);
+    }
+
+    @Entity(name = "AssignedTableIdentifier")
+    public static class AssignedTableIdentifier {
+
+        @Id
+        @GenericGenerator(name = "assignedTableGenerator",
+                strategy = "com.vladmihalcea.hibernate.masterclass.laboratory.idgenerator.AssignedTableGenerator",
+                parameters = {
+                        @org.hibernate.annotations.Parameter(name = "table_name", value = "assigned_sequence_table")
+                }
+        )
+        @GeneratedValue(generator = "assignedTableGenerator", strategy = GenerationType.TABLE)
+        private Long id;
+    }
+
+    @Entity(name = "PooledLoTableIdentifier")
+    public static class PooledLoTableIdentifier {
+
+        @Id
+        @GenericGenerator(name = "pooledLoTableGenerator", strategy = "enhanced-table",
+                parameters = {
+                        @org.hibernate.annotations.Parameter(name = "table_name", value = "pooled_lo_sequence_table"),
+                        @org.hibernate.annotations.Parameter(name = "optimizer", value = "pooled-lo"),
+                        @org.hibernate.annotations.Parameter(name = "increment_size", value = "50")
+                }
+        )
+        @GeneratedValue(generator = "pooledLoTableGenerator", strategy = GenerationType.TABLE)
+        private Long id;
+    }
+
+    @Entity(name = "BatchedTableIdentifier")
+    public static class BatchedTableIdentifier {
+
+        @Id
+        @GenericGenerator(name = "batchedTableGenerator",
+                strategy = "com.vladmihalcea.hibernate.masterclass.laboratory.idgenerator.BatchedTableGenerator",
+                parameters = {
+                        @org.hibernate.annotations.Parameter(name = "table_name", value = "batched_sequence_table"),
+                        @org.hibernate.annotations.Parameter(name = "block_size", value = "1000")
+                }
+        )
+        @GeneratedValue(generator = "batchedTableGenerator", strategy = GenerationType.TABLE)
+        private Long id;
+    }
+}
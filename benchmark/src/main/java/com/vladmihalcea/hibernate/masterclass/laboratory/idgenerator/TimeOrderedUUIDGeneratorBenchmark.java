@@ -0,0 +1,33 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.idgenerator;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TimeOrderedUUIDGeneratorBenchmark - Compares the {@link TimeOrderedUUIDGenerator} throughput with the
+ * random {@link UUID#randomUUID()} one. The time-ordered values take their random bits from the
+ * ThreadLocalRandom and keep a per-thread counter, so the -t option shows how it scales with the number of
+ * threads, while the SecureRandom of the random UUIDs is shared.
+ *
+ * @author Vlad Mihalcea
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TimeOrderedUUIDGeneratorBenchmark {
+
+    @Benchmark
+    public UUID timeOrdered() {
+        return TimeOrderedUUIDGenerator.generateUUID();
+    }
+
+    @Benchmark
+    public UUID random() {
+        return UUID.randomUUID();
+    }
+}
@@ -0,0 +1,197 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.idgenerator;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.Configuration;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.openjdk.jmh.annotations.*;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * UUIDInsertBenchmark - Inserts rowCount rows into a disk-based (CACHED) HSQLDB table using the uuid,
+ * uuid2 and {@link TimeOrderedUUIDGenerator} identifiers. The score is the time it takes to insert all rows,
+ * so the insert rate is rowCount / score. At the end of every iteration, the used and the lost (fragmented)
+ * bytes of the HSQLDB data file are printed after a checkpoint. HSQLDB stores the primary key AVL index nodes
+ * along with the rows, so the data file usage is used as a proxy for the index size.
+ *
+ * @author Vlad Mihalcea
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class UUIDInsertBenchmark {
+
+    private static final Path DATABASE_DIRECTORY = Paths.get("target", "uuid-benchmark");
+
+    private static final int BATCH_SIZE = 100;
+
+    private static final int COMMIT_SIZE = 10_000;
+
+    @Param({"uuid", "uuid2", "time-ordered"})
+    private String strategy;
+
+    @Param({"1000000"})
+    private int rowCount;
+
+    private SessionFactory sessionFactory;
+
+    @Setup(Level.Iteration)
+    public void init() throws IOException {
+        deleteDatabase();
+        Properties properties = getProperties();
+        Configuration configuration = new Configuration().addProperties(properties);
+        configuration.addAnnotatedClass(UUIDIdentifier.class);
+        configuration.addAnnotatedClass(UUID2Identifier.class);
+        configuration.addAnnotatedClass(TimeOrderedUUIDIdentifier.class);
+        sessionFactory = configuration.buildSessionFactory(
+                new StandardServiceRegistryBuilder()
+                        .applySettings(properties)
+                        .build()
+        );
+    }
+
+    @TearDown(Level.Iteration)
+    public void destroy() throws IOException {
+        doInTransaction(session -> {
+            session.createSQLQuery("CHECKPOINT").executeUpdate();
+            Object[] cacheInfo = (Object[]) session.createSQLQuery(
+                "select file_free_pos, file_lost_bytes from information_schema.system_cacheinfo")
+                .uniqueResult();
+            System.out.printf("%n%s storage: %s bytes used, %s bytes lost%n", strategy, cacheInfo[0], cacheInfo[1]);
+        });
+        doInTransaction(session -> session.createSQLQuery("SHUTDOWN").executeUpdate());
+        sessionFactory.close();
+        deleteDatabase();
+    }
+
+    protected Properties getProperties() {
+        Properties properties = new Properties();
+        properties.put("hibernate.dialect", "org.hibernate.dialect.HSQLDialect");
+        properties.put("hibernate.hbm2ddl.auto", "create");
+        properties.put("hibernate.jdbc.batch_size", String.valueOf(BATCH_SIZE));
+        JDBCDataSource dataSource = new JDBCDataSource();
+        dataSource.setUrl("jdbc:hsqldb:file:" + DATABASE_DIRECTORY.resolve("db") +
+                ";hsqldb.default_table_type=cached;hsqldb.log_data=false");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        properties.put("hibernate.connection.datasource", dataSource);
+        return properties;
+    }
+
+    @Benchmark
+    public void insert() {
+        Supplier<Object> entitySupplier = entitySupplier();
+        int inserted = 0;
+        while (inserted < rowCount) {
+            int commitSize = Math.min(COMMIT_SIZE, rowCount - inserted);
+            doInTransaction(session -> {
+                for (int i = 0; i < commitSize; i++) {
+                    session.persist(entitySupplier.get());
+                    if ((i + 1) % BATCH_SIZE == 0) {
+                        session.flush();
+                        session.clear();
+                    }
+                }
+            });
+            inserted += commitSize;
+        }
+    }
+
+    private Supplier<Object> entitySupplier() {
+        switch (strategy) {
+            case "uuid":
+                return UUIDIdentifier::new;
+            case "uuid2":
+                return UUID2Identifier::new;
+            case "time-ordered":
+                return TimeOrderedUUIDIdentifier::new;
+            default:
+                throw new IllegalArgumentException("Unsupported strategy " + strategy);
+        }
+    }
+
+    private void doInTransaction(Consumer<Session> callable) {
+        Session session = null;
+        Transaction txn = null;
+        try {
+            session = sessionFactory.openSession();
+            txn = session.beginTransaction();
+            callable.accept(session);
+            txn.commit();
+        } catch (RuntimeException e) {
+            if ( txn != null && txn.isActive() ) txn.rollback();
+            throw e;
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    private void deleteDatabase() throws IOException {
+        if (Files.exists(DATABASE_DIRECTORY)) {
+            try (Stream<Path> paths = Files.walk(DATABASE_DIRECTORY)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    @Entity(name = "UUIDIdentifier")
+    public static class UUIDIdentifier {
+
+        @GeneratedValue(generator = "uuid")
+        @GenericGenerator(name = "uuid", strategy = "uuid")
+        @Column(columnDefinition = "CHAR(32)")
+        @Id
+        private String uuidHex;
+
+        private String title = "High-Performance Java Persistence";
+    }
+
+    @Entity(name = "UUID2Identifier")
+    public static class UUID2Identifier {
+
+        @GeneratedValue(generator = "uuid2")
+        @GenericGenerator(name = "uuid2", strategy = "uuid2")
+        @Column(columnDefinition = "BINARY(16)")
+        @Id
+        private UUID uuid;
+
+        private String title = "High-Performance Java Persistence";
+    }
+
+    @Entity(name = "TimeOrderedUUIDIdentifier")
+    public static class TimeOrderedUUIDIdentifier {
+
+        @GeneratedValue(generator = "timeOrderedUuid")
+        @GenericGenerator(name = "timeOrderedUuid",
+                strategy = "com.vladmihalcea.hibernate.masterclass.laboratory.idgenerator.TimeOrderedUUIDGenerator")
+        @Column(columnDefinition = "BINARY(16)")
+        @Id
+        private UUID uuid;
+
+        private String title = "High-Performance Java Persistence";
+    }
+}
@@ -0,0 +1,177 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.jpa;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.JdbcBulkLoader;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.providers.BlogEntityProvider;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.providers.BlogEntityProvider.Post;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.Configuration;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.vladmihalcea.hibernate.masterclass.laboratory.util.providers.BlogEntityProvider.POST_COMMENTS_MAPPER;
+
+/**
+ * EntityGraphMapperBenchmark - Compares the EntityGraphMapperTest ways of fetching pageSize posts
+ * along with their comments: the hand-rolled EntityGraphMapperTest#toPosts JDBC mapping, the
+ * BlogEntityProvider#POST_COMMENTS_MAPPER {@link com.vladmihalcea.hibernate.masterclass.laboratory.util.ResultSetGraphMapper}
+ * and the testJPAParameterBinding join fetch query.
+ *
+ * @author Vlad Mihalcea
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EntityGraphMapperBenchmark {
+
+    private static final String SQL =
+        "SELECT * " +
+        "FROM post AS p " +
+        "JOIN post_comment AS pc ON p.id = pc.post_id " +
+        "WHERE " +
+        "   p.id BETWEEN ? AND ?";
+
+    private static final String JPQL =
+        "select distinct p " +
+        "from Post p " +
+        "join fetch p.comments " +
+        "where " +
+        "   p.id BETWEEN :startId AND :endId";
+
+    private static final int POST_COUNT = 1000;
+
+    @Param({"jdbc-linked-hash-map", "result-set-graph-mapper", "jpa"})
+    private String mapper;
+
+    @Param({"2", "100"})
+    private int pageSize;
+
+    @Param({"10"})
+    private int postCommentCount;
+
+    private SessionFactory sessionFactory;
+
+    private int startId;
+
+    @Setup(Level.Trial)
+    public void init() {
+        Properties properties = getProperties();
+        Configuration configuration = new Configuration().addProperties(properties);
+        for (Class<?> entityClass : new BlogEntityProvider().entities()) {
+            configuration.addAnnotatedClass(entityClass);
+        }
+        sessionFactory = configuration.buildSessionFactory(
+                new StandardServiceRegistryBuilder()
+                        .applySettings(properties)
+                        .build()
+        );
+        insertPosts();
+    }
+
+    @TearDown(Level.Trial)
+    public void destroy() {
+        sessionFactory.close();
+    }
+
+    protected Properties getProperties() {
+        Properties properties = new Properties();
+        properties.put("hibernate.dialect", "org.hibernate.dialect.HSQLDialect");
+        properties.put("hibernate.hbm2ddl.auto", "create-drop");
+        JDBCDataSource dataSource = new JDBCDataSource();
+        dataSource.setUrl("jdbc:hsqldb:mem:benchmark");
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        properties.put("hibernate.connection.datasource", dataSource);
+        return properties;
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public List<Post> fetch() {
+        int startId = nextStartId();
+        int endId = startId + pageSize - 1;
+        Session session = sessionFactory.openSession();
+        Transaction txn = session.beginTransaction();
+        try {
+            List<Post> posts;
+            if ("jpa".equals(mapper)) {
+                posts = session.createQuery(JPQL)
+                    .setParameter("startId", (long) startId)
+                    .setParameter("endId", (long) endId)
+                    .list();
+            } else {
+                AtomicReference<List<Post>> result = new AtomicReference<>();
+                session.doWork(connection -> {
+                    try (PreparedStatement statement = connection.prepareStatement(SQL)) {
+                        statement.setInt(1, startId);
+                        statement.setInt(2, endId);
+                        try (ResultSet resultSet = statement.executeQuery()) {
+                            result.set("jdbc-linked-hash-map".equals(mapper) ?
+                                EntityGraphMapperTest.toPosts(resultSet) :
+                                POST_COMMENTS_MAPPER.map(SQL, resultSet));
+                        }
+                    }
+                });
+                posts = result.get();
+            }
+            txn.commit();
+            return posts;
+        } catch (RuntimeException e) {
+            txn.rollback();
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+
+    private int nextStartId() {
+        int id = startId;
+        startId = (startId + pageSize) % (POST_COUNT - pageSize);
+        return id;
+    }
+
+    private void insertPosts() {
+        Session session = sessionFactory.openSession();
+        Transaction txn = session.beginTransaction();
+        try {
+            session.doWork(connection -> new JdbcBulkLoader()
+                .table(EntityGraphMapperTest.INSERT_POST, POST_COUNT, (i, parameters) -> parameters
+                    .setString(String.format("Post no. %1$d", i))
+                    .setInt((int) i)
+                    .setLong(i)
+                )
+                .table(EntityGraphMapperTest.INSERT_POST_DETAILS, POST_COUNT, (i, parameters) -> parameters
+                    .setLong(i)
+                    .setTimestamp(new Timestamp(System.currentTimeMillis()))
+                    .setInt((int) i)
+                )
+                .table(EntityGraphMapperTest.INSERT_POST_COMMENT, (long) POST_COUNT * postCommentCount, (i, parameters) -> parameters
+                    .setLong(i / postCommentCount)
+                    .setString(String.format("Post comment %1$d", i % postCommentCount))
+                    .setInt((int) (i / postCommentCount))
+                    .setLong(i)
+                )
+                .load(connection)
+            );
+            txn.commit();
+        } catch (RuntimeException e) {
+            txn.rollback();
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AggregateBulkDeleter;
+import org.hibernate.Cache;
+import org.hibernate.JDBCException;
+import org.hibernate.Session;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.persistence.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * AggregateBulkDeleteTest - Test to check the AggregateBulkDeleter set-based aggregate removal
+ *
+ * @author Vlad Mihalcea
+ */
+public class AggregateBulkDeleteTest extends AbstractTest {
+
+    private static final int POST_COUNT = 3;
+
+    private final List<Long> postIds = new ArrayList<>();
+
+    private final List<Long> commentIds = new ArrayList<>();
+
+    private final List<Long> detailsIds = new ArrayList<>();
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[]{
+            Post.class,
+            Comment.class,
+            PostDetails.class
+        };
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.cache.use_second_level_cache", Boolean.TRUE.toString());
+        properties.put("hibernate.cache.region.factory_class", "org.hibernate.cache.ehcache.EhCacheRegionFactory");
+        properties.put("hibernate.cache.use_query_cache", Boolean.TRUE.toString());
+        properties.put("hibernate.generate_statistics", Boolean.TRUE.toString());
+        return properties;
+    }
+
+    @Before
+    public void init() {
+        super.init();
+        doInTransaction(session -> {
+            for (int i = 0; i < POST_COUNT; i++) {
+                Post post = new Post(String.format("Post no. %d", i));
+                post.addComment(new Comment(String.format("Post comment %d:%d", i, 0)));
+                post.addComment(new Comment(String.format("Post comment %d:%d", i, 1)));
+                post.addDetails(new PostDetails());
+                session.persist(post);
+                session.flush();
+                postIds.add(post.getId());
+                for (Comment comment : post.getComments()) {
+                    commentIds.add(comment.getId());
+                }
+                detailsIds.add(post.getDetails().getId());
+            }
+        });
+        doInTransaction(session -> {
+            LOGGER.info("Load aggregates into the second-level cache");
+            for (Long postId : postIds) {
+                Post post = (Post) session.get(Post.class, postId);
+                assertEquals(2, post.getComments().size());
+            }
+        });
+        for (int i = 0; i < POST_COUNT; i++) {
+            assertCached(i, true);
+        }
+        getSessionFactory().getStatistics().clear();
+    }
+
+    @Test
+    public void testDeleteByIds() {
+        doInTransaction(session -> {
+            long deleteCount = new AggregateBulkDeleter(Post.class)
+                .child(Comment.class, "post")
+                .child(PostDetails.class, "post")
+                .delete(session, Arrays.asList(postIds.get(0), postIds.get(1)));
+            assertEquals(2, deleteCount);
+        });
+        assertEquals(0, getSessionFactory().getStatistics().getEntityLoadCount());
+        assertCached(0, false);
+        assertCached(1, false);
+        assertCached(2, true);
+        assertRowCount(1);
+    }
+
+    @Test
+    public void testDeleteByQueryEvictsManagedEntities() {
+        doInTransaction(session -> {
+            Post post = (Post) session.get(Post.class, postIds.get(0));
+            Comment comment = post.getComments().get(0);
+            PostDetails details = post.getDetails();
+            Post survivor = (Post) session.get(Post.class, postIds.get(2));
+
+            long deleteCount = new AggregateBulkDeleter(Post.class)
+                .child(Comment.class, "post")
+                .child(PostDetails.class, "post")
+                .setChunkSize(1)
+                .delete(session, session.createQuery(
+                    "select p.id " +
+                    "from Post p " +
+                    "where p.id <> :id")
+                .setParameter("id", postIds.get(2)));
+            assertEquals(2, deleteCount);
+
+            assertFalse(session.contains(post));
+            assertFalse(session.contains(comment));
+            assertFalse(session.contains(details));
+            assertTrue(session.contains(survivor));
+        });
+        assertCached(0, false);
+        assertCached(1, false);
+        assertCached(2, true);
+        assertRowCount(1);
+    }
+
+    @Test
+    public void testFailedDeleteInvalidatesQueryCache() {
+        doInTransaction(session -> {
+            assertEquals(POST_COUNT, getPosts(session).size());
+        });
+        try {
+            doInTransaction(session -> {
+                LOGGER.info("The Comment child is missing, so the Post delete violates its foreign key");
+                new AggregateBulkDeleter(Post.class)
+                    .child(PostDetails.class, "post")
+                    .delete(session, Arrays.asList(postIds.get(0)));
+            });
+            fail("The Post delete should have failed");
+        } catch (JDBCException expected) {
+            LOGGER.info("Delete failed", expected);
+        }
+        doInTransaction(session -> {
+            LOGGER.info("The pre-invalidated query spaces were invalidated after the rollback");
+            assertEquals(POST_COUNT, getPosts(session).size());
+        });
+        long hitCount = getSessionFactory().getStatistics().getQueryCacheHitCount();
+        doInTransaction(session -> {
+            assertEquals(POST_COUNT, getPosts(session).size());
+        });
+        assertEquals(hitCount + 1, getSessionFactory().getStatistics().getQueryCacheHitCount());
+        assertRowCount(POST_COUNT);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Post> getPosts(Session session) {
+        return (List<Post>) session.createQuery(
+            "select p " +
+            "from Post p")
+            .setCacheable(true)
+            .list();
+    }
+
+    private void assertCached(int postIndex, boolean cached) {
+        Cache cache = getSessionFactory().getCache();
+        assertEquals(cached, cache.containsEntity(Post.class, postIds.get(postIndex)));
+        assertEquals(cached, cache.containsCollection(
+            Post.class.getName() + ".comments", postIds.get(postIndex)));
+        assertEquals(cached, cache.containsEntity(Comment.class, commentIds.get(2 * postIndex)));
+        assertEquals(cached, cache.containsEntity(Comment.class, commentIds.get(2 * postIndex + 1)));
+        assertEquals(cached, cache.containsEntity(PostDetails.class, detailsIds.get(postIndex)));
+    }
+
+    private void assertRowCount(int postCount) {
+        doInTransaction(session -> {
+            assertEquals(postCount, ((Long) session.createQuery(
+                "select count(p) from Post p").uniqueResult()).intValue());
+            assertEquals(2 * postCount, ((Long) session.createQuery(
+                "select count(c) from Comment c").uniqueResult()).intValue());
+            assertEquals(postCount, ((Long) session.createQuery(
+                "select count(d) from PostDetails d").uniqueResult()).intValue());
+        });
+    }
+
+    @Entity(name = "Post")
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    public static class Post {
+
+        @Id
+        @GeneratedValue(strategy = GenerationType.AUTO)
+        private Long id;
+
+        private String title;
+
+        @OneToMany(cascade = CascadeType.ALL, mappedBy = "post")
+        @OrderBy("id")
+        @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+        private List<Comment> comments = new ArrayList<>();
+
+        @OneToOne(cascade = CascadeType.ALL, mappedBy = "post")
+        private PostDetails details;
+
+        private Post() {
+        }
+
+        public Post(String title) {
+            this.title = title;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public List<Comment> getComments() {
+            return comments;
+        }
+
+        public PostDetails getDetails() {
+            return details;
+        }
+
+        public void addComment(Comment comment) {
+            comments.add(comment);
+            comment.post = this;
+        }
+
+        public void addDetails(PostDetails details) {
+            this.details = details;
+            details.post = this;
+        }
+    }
+
+    @Entity(name = "Comment")
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    public static class Comment {
+
+        @Id
+        @GeneratedValue(strategy = GenerationType.AUTO)
+        private Long id;
+
+        @ManyToOne(fetch = FetchType.LAZY)
+        private Post post;
+
+        private String review;
+
+        private Comment() {
+        }
+
+        public Comment(String review) {
+            this.review = review;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getReview() {
+            return review;
+        }
+    }
+
+    @Entity(name = "PostDetails")
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    public static class PostDetails {
+
+        @Id
+        @GeneratedValue(strategy = GenerationType.AUTO)
+        private Long id;
+
+        @OneToOne(fetch = FetchType.LAZY)
+        private Post post;
+
+        public Long getId() {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoFetchingTest.Comment;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoFetchingTest.Post;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.BatchSizeController;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * BatchSizeControllerTest - Test to check the BatchSizeController flush/clear cadence tuning
+ *
+ * @author Vlad Mihalcea
+ */
+public class BatchSizeControllerTest extends AbstractTest {
+
+    private static final int MAX_BATCH_SIZE = 500;
+
+    private static final int POST_COUNT = 10000;
+
+    /**
+     * Fixed round trip cost, per row cost, and a quadratic penalty for large batches,
+     * so the optimum is sqrt(100_000 / 20), around 71 rows.
+     */
+    private static long latency(String table, int rows) {
+        return 100_000L + 1_000L * rows + 20L * rows * rows;
+    }
+
+    private final BatchSizeController controller = new BatchSizeController()
+        .setMaxBatchSize(MAX_BATCH_SIZE)
+        .setLatencyModel(BatchSizeControllerTest::latency);
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[]{
+            Post.class,
+            Comment.class
+        };
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.jdbc.batch_size", String.valueOf(MAX_BATCH_SIZE));
+        properties.put("hibernate.order_inserts", "true");
+        return properties;
+    }
+
+    @Override
+    protected DataSource newDataSource() {
+        return ProxyDataSourceBuilder
+            .create(super.newDataSource())
+            .listener(controller)
+            .build();
+    }
+
+    @Test
+    public void testConvergeToOptimum() {
+        BatchSizeController controller = new BatchSizeController().setSampleCount(1);
+        for (int i = 0; i < 100 && !controller.isConverged("post"); i++) {
+            int batchSize = controller.getBatchSize("post");
+            controller.record("post", batchSize, latency("post", batchSize));
+        }
+        LOGGER.info("{}", controller);
+        assertTrue(controller.isConverged("post"));
+        assertTrue(Math.abs(controller.getBatchSize("post") - 71) <= 2);
+    }
+
+    @Test
+    public void testRespectHardLimit() {
+        BatchSizeController controller = new BatchSizeController()
+            .setSampleCount(1)
+            .setMaxBatchSize(40);
+        for (int i = 0; i < 100 && !controller.isConverged("post"); i++) {
+            int batchSize = controller.getBatchSize("post");
+            assertTrue(batchSize <= 40);
+            controller.record("post", batchSize, latency("post", batchSize));
+        }
+        assertTrue(controller.isConverged("post"));
+        assertEquals(40, controller.getBatchSize("post"));
+    }
+
+    @Test
+    public void testTuneFlushCadence() {
+        doInTransaction(session -> {
+            BatchSizeController.Cadence cadence = controller.cadence(session, "Post");
+            for (int i = 0; i < POST_COUNT; i++) {
+                Post post = new Post(String.format("Post no. %d", i));
+                post.addComment(new Comment(String.format("Post comment %d:%d", i, 0)));
+                post.addComment(new Comment(String.format("Post comment %d:%d", i, 1)));
+                session.persist(post);
+                cadence.next();
+            }
+        });
+        LOGGER.info("{}", controller);
+        assertTrue(controller.isConverged("post"));
+        assertTrue(Math.abs(controller.getBatchSize("post") - 71) <= 2);
+        doInTransaction(session -> {
+            assertEquals(POST_COUNT, ((Long) session.createQuery(
+                "select count(p) from Post p").uniqueResult()).intValue());
+        });
+    }
+}
@@ -0,0 +1,281 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.BulkUpdater;
+import org.hibernate.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.persistence.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * BulkUpdateTest - Test to check the BulkUpdater versioned set-based and batched fallback updates
+ *
+ * @author Vlad Mihalcea
+ */
+public class BulkUpdateTest extends AbstractTest {
+
+    private static final int POST_COUNT = 10;
+
+    private final List<Long> postIds = new ArrayList<>();
+
+    private final List<Long> commentIds = new ArrayList<>();
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[]{
+            Post.class,
+            Comment.class
+        };
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.cache.use_second_level_cache", Boolean.TRUE.toString());
+        properties.put("hibernate.cache.region.factory_class", "org.hibernate.cache.ehcache.EhCacheRegionFactory");
+        properties.put("hibernate.jdbc.batch_size", "5");
+        properties.put("hibernate.jdbc.batch_versioned_data", Boolean.TRUE.toString());
+        properties.put("hibernate.generate_statistics", Boolean.TRUE.toString());
+        return properties;
+    }
+
+    @Before
+    public void init() {
+        super.init();
+        doInTransaction(session -> {
+            for (int i = 0; i < POST_COUNT; i++) {
+                Post post = new Post(String.format("Post no. %d", i));
+                post.addComment(new Comment(String.format("Post comment %d:%d", i, 0)));
+                post.addComment(new Comment(String.format("Post comment %d:%d", i, 1)));
+                session.persist(post);
+                session.flush();
+                postIds.add(post.getId());
+                for (Comment comment : post.getComments()) {
+                    commentIds.add(comment.getId());
+                }
+            }
+        });
+        doInTransaction(session -> {
+            for (Long postId : postIds) {
+                Post post = (Post) session.get(Post.class, postId);
+                assertEquals(2, post.getComments().size());
+            }
+        });
+        getSessionFactory().getStatistics().clear();
+    }
+
+    @Test
+    public void testBulkUpdate() {
+        doInTransaction(session -> {
+            BulkUpdater<Post> postUpdater = new BulkUpdater<>(Post.class, "p")
+                .set("title", "concat('Blog ', p.title)");
+            assertTrue(postUpdater.isBulk());
+            assertEquals(POST_COUNT, postUpdater.execute(session));
+
+            assertEquals(2 * POST_COUNT - 2, new BulkUpdater<>(Comment.class, "c")
+                .set("review", "concat('Blog ', c.review)")
+                .where("c.post.id <> :postId")
+                .setParameter("postId", postIds.get(0))
+                .execute(session));
+        });
+        assertEquals(0, getSessionFactory().getStatistics().getEntityLoadCount());
+
+        Cache cache = getSessionFactory().getCache();
+        assertFalse(cache.containsEntity(Post.class, postIds.get(0)));
+        assertFalse(cache.containsEntity(Comment.class, commentIds.get(0)));
+        assertFalse(cache.containsCollection(Post.class.getName() + ".comments", postIds.get(0)));
+
+        assertUpdated(0, 2 * (POST_COUNT - 1));
+    }
+
+    @Test
+    public void testBatchedFallbackUpdate() {
+        doInTransaction(session -> {
+            BulkUpdater<Post> postUpdater = new BulkUpdater<>(Post.class, "p")
+                .set("title", post -> "Blog " + post.getTitle())
+                .set("likes", "p.likes + 1");
+            assertFalse(postUpdater.isBulk());
+            assertEquals(POST_COUNT, postUpdater.execute(session));
+
+            assertEquals(2 * POST_COUNT - 2, new BulkUpdater<>(Comment.class, "c")
+                .set("review", comment -> "Blog " + comment.getReview())
+                .where("c.post.id <> :postId")
+                .setParameter("postId", postIds.get(0))
+                .setBatchSize(5)
+                .execute(session));
+        });
+        assertEquals(0, getSessionFactory().getStatistics().getOptimisticFailureCount());
+
+        Cache cache = getSessionFactory().getCache();
+        assertTrue(cache.containsEntity(Post.class, postIds.get(0)));
+        assertTrue(cache.containsEntity(Comment.class, commentIds.get(0)));
+
+        assertUpdated(1, 2 * (POST_COUNT - 1));
+    }
+
+    @Test
+    public void testBulkUpdateEvictsManagedEntities() {
+        doInTransaction(session -> {
+            Post post = (Post) session.get(Post.class, postIds.get(0));
+            post.likes = 5;
+            assertEquals(POST_COUNT, new BulkUpdater<>(Post.class, "p")
+                .set("title", "concat('Blog ', p.title)")
+                .execute(session));
+            assertFalse(session.contains(post));
+
+            Post updatedPost = (Post) session.get(Post.class, postIds.get(0));
+            assertEquals("Blog Post no. 0", updatedPost.getTitle());
+            assertEquals(5, updatedPost.getLikes());
+            assertEquals(2, updatedPost.getVersion());
+            updatedPost.likes = 6;
+        });
+        doInTransaction(session -> {
+            Post post = (Post) session.get(Post.class, postIds.get(0));
+            assertEquals(6, post.getLikes());
+            assertEquals(3, post.getVersion());
+        });
+    }
+
+    @Test
+    public void testBatchedFallbackUpdateKeepsOtherManagedEntities() {
+        doInTransaction(session -> {
+            Post post = (Post) session.get(Post.class, postIds.get(0));
+            Comment comment = (Comment) session.get(Comment.class, commentIds.get(0));
+            assertEquals(POST_COUNT, new BulkUpdater<>(Post.class, "p")
+                .set("title", p -> "Blog " + p.getTitle())
+                .setBatchSize(3)
+                .execute(session));
+            assertFalse(session.contains(post));
+            assertTrue(session.contains(comment));
+            comment.review = "Edited comment";
+        });
+        doInTransaction(session -> {
+            for (Long postId : postIds) {
+                Post post = (Post) session.get(Post.class, postId);
+                assertTrue(post.getTitle().startsWith("Blog Post no. "));
+                assertEquals(1, post.getVersion());
+            }
+            Comment comment = (Comment) session.get(Comment.class, commentIds.get(0));
+            assertEquals("Edited comment", comment.getReview());
+            assertEquals(1, comment.getVersion());
+        });
+    }
+
+    private void assertUpdated(int likes, int updatedCommentCount) {
+        doInTransaction(session -> {
+            for (Long postId : postIds) {
+                Post post = (Post) session.get(Post.class, postId);
+                assertTrue(post.getTitle().startsWith("Blog Post no. "));
+                assertEquals(likes, post.getLikes());
+                assertEquals(1, post.getVersion());
+            }
+            assertEquals(updatedCommentCount, ((Long) session.createQuery(
+                "select count(c) " +
+                "from Comment c " +
+                "where c.review like 'Blog %' and c.version = 1")
+                .uniqueResult()).intValue());
+            assertEquals(2 * POST_COUNT - updatedCommentCount, ((Long) session.createQuery(
+                "select count(c) " +
+                "from Comment c " +
+                "where c.review like 'Post %' and c.version = 0")
+                .uniqueResult()).intValue());
+        });
+    }
+
+    @Entity(name = "Post")
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    public static class Post {
+
+        @Id
+        @GeneratedValue(strategy = GenerationType.AUTO)
+        private Long id;
+
+        private String title;
+
+        private int likes;
+
+        @Version
+        private int version;
+
+        @OneToMany(cascade = CascadeType.ALL, mappedBy = "post")
+        @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+        private List<Comment> comments = new ArrayList<>();
+
+        private Post() {
+        }
+
+        public Post(String title) {
+            this.title = title;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public int getLikes() {
+            return likes;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public List<Comment> getComments() {
+            return comments;
+        }
+
+        public void addComment(Comment comment) {
+            comments.add(comment);
+            comment.post = this;
+        }
+    }
+
+    @Entity(name = "Comment")
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    public static class Comment {
+
+        @Id
+        @GeneratedValue(strategy = GenerationType.AUTO)
+        private Long id;
+
+        @ManyToOne(fetch = FetchType.LAZY)
+        private Post post;
+
+        private String review;
+
+        @Version
+        private int version;
+
+        private Comment() {
+        }
+
+        public Comment(String review) {
+            this.review = review;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getReview() {
+            return review;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.jpa.EntityGraphMapperTest;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.JdbcBulkLoader;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.providers.BlogEntityProvider;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * JdbcBulkLoaderTest - Test to check the JdbcBulkLoader batching and multi-row VALUES rewriting
+ *
+ * @author Vlad Mihalcea
+ */
+public class JdbcBulkLoaderTest extends AbstractTest {
+
+    private static final int POST_COUNT = 25;
+
+    private static final int POST_COMMENT_COUNT = 3;
+
+    private BlogEntityProvider entityProvider = new BlogEntityProvider();
+
+    @Override
+    protected Class<?>[] entities() {
+        return entityProvider.entities();
+    }
+
+    @Test
+    public void testBatching() {
+        JdbcBulkLoader.Report report = load(new JdbcBulkLoader().setBatchSize(10));
+        assertEquals(POST_COUNT * (1 + POST_COMMENT_COUNT), report.getRowCount());
+        assertEquals(3, report.getTableReports().get(0).getExecuteCount());
+        assertEquals(8, report.getTableReports().get(1).getExecuteCount());
+        assertLoaded();
+    }
+
+    @Test
+    public void testMultiRowValues() {
+        JdbcBulkLoader.Report report = load(new JdbcBulkLoader()
+            .setBatchSize(2)
+            .setRowsPerStatement(4)
+        );
+        assertEquals(POST_COUNT * (1 + POST_COMMENT_COUNT), report.getRowCount());
+        //6 statements of 4 rows in 3 batches, followed by the last row
+        assertEquals(4, report.getTableReports().get(0).getExecuteCount());
+        //18 statements of 4 rows in 9 batches, followed by the last 3 rows
+        assertEquals(10, report.getTableReports().get(1).getExecuteCount());
+        assertLoaded();
+    }
+
+    @Test
+    public void testIterableRowsWithChunkedCommits() {
+        List<String> titles = Arrays.asList("High-Performance Java Persistence", "Hibernate Master Class", "JPA");
+        doInJDBC(connection -> {
+            long[] id = new long[1];
+            JdbcBulkLoader.Report report = new JdbcBulkLoader()
+                .setRowsPerStatement(2)
+                .setCommitSize(2)
+                .table(EntityGraphMapperTest.INSERT_POST, titles, (title, parameters) -> parameters
+                    .setString(title)
+                    .setInt(0)
+                    .setLong(++id[0])
+                )
+                .load(connection);
+            LOGGER.info("{}", report);
+            assertEquals(titles.size(), report.getRowCount());
+            try (Statement statement = connection.createStatement()) {
+                assertEquals(titles.size(), count(statement, "post"));
+            }
+        });
+    }
+
+    @Test
+    public void testFailedChunkIsRolledBack() throws SQLException {
+        try (Connection connection = getDataSourceProvider().dataSource().getConnection()) {
+            assertTrue(connection.getAutoCommit());
+            try {
+                new JdbcBulkLoader()
+                    .setBatchSize(2)
+                    .setCommitSize(4)
+                    .table(EntityGraphMapperTest.INSERT_POST, POST_COUNT, (i, parameters) -> {
+                        if (i == 6) {
+                            throw new IllegalStateException("Row " + i + " cannot be generated");
+                        }
+                        parameters
+                            .setString(String.format("Post no. %1$d", i))
+                            .setInt(0)
+                            .setLong(i);
+                    })
+                    .load(connection);
+                fail("The load should have failed");
+            } catch (IllegalStateException expected) {
+                LOGGER.info("Load failed", expected);
+            }
+            assertTrue(connection.getAutoCommit());
+            try (Statement statement = connection.createStatement()) {
+                LOGGER.info("Only the first chunk was committed, the executed rows of the failed one were rolled back");
+                assertEquals(4, count(statement, "post"));
+            }
+        }
+    }
+
+    private JdbcBulkLoader.Report load(JdbcBulkLoader loader) {
+        return doInJDBC(connection -> {
+            JdbcBulkLoader.Report report = loader
+                .table(EntityGraphMapperTest.INSERT_POST, POST_COUNT, (i, parameters) -> parameters
+                    .setString(String.format("Post no. %1$d", i))
+                    .setInt(0)
+                    .setLong(i)
+                )
+                .table(EntityGraphMapperTest.INSERT_POST_COMMENT, POST_COUNT * POST_COMMENT_COUNT, (i, parameters) -> parameters
+                    .setLong(i / POST_COMMENT_COUNT)
+                    .setString(String.format("Post comment %1$d", i % POST_COMMENT_COUNT))
+                    .setInt(0)
+                    .setLong(i)
+                )
+                .load(connection);
+            LOGGER.info("{}", report);
+            return report;
+        });
+    }
+
+    private void assertLoaded() {
+        doInJDBC(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                assertEquals(POST_COUNT, count(statement, "post"));
+                assertEquals(POST_COUNT * POST_COMMENT_COUNT, count(statement, "post_comment"));
+                try (ResultSet resultSet = statement.executeQuery(
+                        "select count(distinct post_id), min(id), max(id) from post_comment")) {
+                    resultSet.next();
+                    assertEquals(POST_COUNT, resultSet.getInt(1));
+                    assertEquals(0, resultSet.getLong(2));
+                    assertEquals(POST_COUNT * POST_COMMENT_COUNT - 1, resultSet.getLong(3));
+                }
+            }
+        });
+    }
+
+    private long count(Statement statement, String table) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery("select count(*) from " + table)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+}
@@ -128,6 +128,121 @@ public class NoBatchingTest extends AbstractPostgreSQLIntegrationTest {
                 TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos.get()));
     }
 
+    @Test
+    public void testStatelessInsertAndUpdate() {
+        LOGGER.info("Test stateless batch insert");
+        long startNanos = System.nanoTime();
+        doInStatelessTransaction(session -> {
+            int batchSize = batchSize();
+            List<Comment> comments = new ArrayList<>();
+            for(int i = 0; i < itemsCount(); i++) {
+                Post post = new Post(String.format("Post no. %d", i));
+                session.insert(post);
+                for(int j = 0; j < 2; j++) {
+                    Comment comment = new Comment(
+                            String.format("Post comment %d:%d", i, j));
+                    comment.setPost(post);
+                    comments.add(comment);
+                }
+                //group the child inserts, as alternating statements would break the JDBC batch
+                if((i + 1) % batchSize == 0) {
+                    comments.forEach(session::insert);
+                    comments.clear();
+                }
+            }
+            comments.forEach(session::insert);
+        });
+        LOGGER.info("{}.testStatelessInsert took {} millis",
+                getClass().getSimpleName(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+
+        LOGGER.info("Test stateless batch update");
+        startNanos = System.nanoTime();
+
+        doInStatelessTransaction(session -> {
+            List<Post> posts = session.createQuery(
+                "select p " +
+                "from Post p " +
+                "left join fetch p.details").list();
+            for(Post post : posts) {
+                post.title = "Blog " + post.title;
+                session.update(post);
+            }
+
+            List<Comment> comments = session.createQuery(
+                "select c " +
+                "from Comment c " +
+                "join fetch c.post p " +
+                "left join fetch p.details").list();
+            for(Comment comment : comments) {
+                comment.review = "Blog " + comment.review;
+                session.update(comment);
+            }
+        });
+
+        LOGGER.info("{}.testStatelessUpdate took {} millis",
+                getClass().getSimpleName(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    @Test
+    public void testStatelessCascadeDelete() {
+        LOGGER.info("Test stateless batch delete with explicit child removal");
+        final AtomicReference<Long> startNanos = new AtomicReference<>();
+        addDeleteBatchingRows();
+        doInStatelessTransaction(session -> {
+            List<Post> posts = session.createQuery(
+                "select p " +
+                "from Post p " +
+                "left join fetch p.details").list();
+            List<Comment> comments = session.createQuery(
+                "select c " +
+                "from Comment c " +
+                "join fetch c.post p " +
+                "left join fetch p.details").list();
+            List<PostDetails> details = session.createQuery(
+                "select d " +
+                "from PostDetails d").list();
+            startNanos.set(System.nanoTime());
+            comments.forEach(session::delete);
+            details.forEach(session::delete);
+            posts.forEach(session::delete);
+        });
+        LOGGER.info("{}.testStatelessCascadeDelete took {} millis",
+                getClass().getSimpleName(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos.get()));
+    }
+
+    @Test
+    public void testStatelessOrphanRemoval() {
+        LOGGER.info("Test stateless batch delete with explicit orphan removal");
+        final AtomicReference<Long> startNanos = new AtomicReference<>();
+        addDeleteBatchingRows();
+        doInStatelessTransaction(session -> {
+            List<Post> posts = session.createQuery(
+                "select p " +
+                "from Post p " +
+                "left join fetch p.details").list();
+            List<Comment> comments = session.createQuery(
+                "select c " +
+                "from Comment c " +
+                "join fetch c.post p " +
+                "left join fetch p.details").list();
+            List<PostDetails> details = session.createQuery(
+                "select d " +
+                "from PostDetails d").list();
+            startNanos.set(System.nanoTime());
+            //a StatelessSession has no orphan removal, so the orphans are deleted directly,
+            //in the order the testOrphanRemoval flushes them
+            details.forEach(session::delete);
+            comments.forEach(session::delete);
+            posts.forEach(session::delete);
+        });
+        LOGGER.info("{}.testStatelessOrphanRemoval took {} millis",
+                getClass().getSimpleName(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos.get()));
+    }
+
     private void addDeleteBatchingRows() {
         doInTransaction(session -> {
             int batchSize = batchSize();
@@ -201,6 +316,10 @@ public class NoBatchingTest extends AbstractPostgreSQLIntegrationTest {
                 orphanRemoval = true, fetch = FetchType.LAZY)
         private PostDetails details;
 
+        public String getTitle() {
+            return title;
+        }
+
         public void setTitle(String title) {
             this.title = title;
         }
@@ -301,5 +420,13 @@ public class NoBatchingTest extends AbstractPostgreSQLIntegrationTest {
         public void setPost(Post post) {
             this.post = post;
         }
+
+        public String getReview() {
+            return review;
+        }
+
+        public void setReview(String review) {
+            this.review = review;
+        }
     }
 }
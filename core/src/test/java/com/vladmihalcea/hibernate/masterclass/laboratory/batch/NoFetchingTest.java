@@ -32,26 +32,11 @@ public class NoFetchingTest
 
     @Test
     public void testFetchSize() {
-        doInTransaction(session -> {
-            int batchSize = batchSize();
-            for(int i = 0; i < itemsCount(); i++) {
-                Post post = new Post(String.format("Post no. %d", i));
-                int j = 0;
-                post.addComment(new Comment(
-                        String.format("Post comment %d:%d", i, j++)));
-                post.addComment(new Comment(
-                        String.format("Post comment %d:%d", i, j++)));
-                session.persist(post);
-                if(i % batchSize == 0 && i > 0) {
-                    session.flush();
-                    session.clear();
-                }
-            }
-        });
+        insertPosts();
 
         long startNanos = System.nanoTime();
         LOGGER.info("Test fetch size");
-        doInTransaction(session -> {
+        doInFetchTransaction(session -> {
             List posts = session.createQuery(
                     "select p " +
                             "from Post p " +
@@ -68,6 +53,29 @@ public class NoFetchingTest
 
     }
 
+    protected void insertPosts() {
+        doInTransaction(session -> {
+            int batchSize = batchSize();
+            for(int i = 0; i < itemsCount(); i++) {
+                Post post = new Post(String.format("Post no. %d", i));
+                int j = 0;
+                post.addComment(new Comment(
+                        String.format("Post comment %d:%d", i, j++)));
+                post.addComment(new Comment(
+                        String.format("Post comment %d:%d", i, j++)));
+                session.persist(post);
+                if(i % batchSize == 0 && i > 0) {
+                    session.flush();
+                    session.clear();
+                }
+            }
+        });
+    }
+
+    protected void doInFetchTransaction(HibernateTransactionConsumer callable) {
+        doInTransaction(callable);
+    }
+
     protected int itemsCount() {
         return 10;
     }
@@ -121,6 +129,14 @@ public class NoFetchingTest
                 orphanRemoval = true)
         private List<Comment> comments = new ArrayList<>();
 
+        public Long getId() {
+            return id;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
         public void setTitle(String title) {
             this.title = title;
         }
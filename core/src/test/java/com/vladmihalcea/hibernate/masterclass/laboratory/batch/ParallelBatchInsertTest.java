@@ -0,0 +1,127 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoFetchingTest.Comment;
+import com.vladmihalcea.hibernate.masterclass.laboratory.batch.NoFetchingTest.Post;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.ParallelBatchInserter;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * ParallelBatchInsertTest - Test to check the multi-connection ParallelBatchInserter
+ *
+ * @author Vlad Mihalcea
+ */
+public class ParallelBatchInsertTest extends AbstractTest {
+
+    private static final int WORKER_COUNT = 4;
+
+    private static final int BATCH_SIZE = 50;
+
+    private static final int POST_COUNT = 1000;
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[]{
+            Post.class,
+            Comment.class
+        };
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.jdbc.batch_size", String.valueOf(BATCH_SIZE));
+        properties.put("hibernate.order_inserts", "true");
+        return properties;
+    }
+
+    @Test
+    public void testInsert() {
+        ParallelBatchInserter.Report report = new ParallelBatchInserter<Post>(getSessionFactory())
+            .setWorkerCount(WORKER_COUNT)
+            .setBatchSize(BATCH_SIZE)
+            .setChunkSize(100)
+            .insert(posts(POST_COUNT), (session, post) -> session.persist(post));
+        LOGGER.info("{}", report);
+        assertReport(report, 10);
+        assertInserted();
+    }
+
+    @Test
+    public void testInsertStateless() {
+        ParallelBatchInserter.Report report = new ParallelBatchInserter<Post>(getSessionFactory())
+            .setWorkerCount(WORKER_COUNT)
+            .setChunkSize(150)
+            .insertStateless(posts(POST_COUNT), (session, post) -> {
+                session.insert(post);
+                post.getComments().forEach(session::insert);
+            });
+        LOGGER.info("{}", report);
+        assertReport(report, 7);
+        assertInserted();
+    }
+
+    @Test
+    public void testWorkerFailure() {
+        try {
+            new ParallelBatchInserter<Post>(getSessionFactory())
+                .setWorkerCount(WORKER_COUNT)
+                .setChunkSize(10)
+                .insert(posts(POST_COUNT), (session, post) -> {
+                    if ("Post no. 500".equals(post.getTitle())) {
+                        throw new IllegalArgumentException("Invalid post");
+                    }
+                    session.persist(post);
+                });
+            fail("Should have thrown IllegalArgumentException!");
+        } catch (IllegalArgumentException expected) {
+            LOGGER.info("Worker failure", expected);
+        }
+        doInTransaction(session -> {
+            Long count = (Long) session.createQuery(
+                "select count(p) from Post p where p.title = 'Post no. 500'")
+                .uniqueResult();
+            assertEquals(0, count.intValue());
+        });
+    }
+
+    private void assertReport(ParallelBatchInserter.Report report, long chunkCount) {
+        assertEquals(POST_COUNT, report.getAggregateCount());
+        assertEquals(WORKER_COUNT, report.getWorkerReports().size());
+        long workerChunkCount = 0;
+        Set<String> threadNames = new HashSet<>();
+        for (ParallelBatchInserter.WorkerReport workerReport : report.getWorkerReports()) {
+            workerChunkCount += workerReport.getChunkCount();
+            threadNames.add(workerReport.getThreadName());
+        }
+        assertEquals(chunkCount, workerChunkCount);
+        assertEquals(WORKER_COUNT, threadNames.size());
+    }
+
+    private void assertInserted() {
+        doInTransaction(session -> {
+            assertEquals(POST_COUNT, ((Long) session.createQuery(
+                "select count(distinct p.id) from Post p").uniqueResult()).intValue());
+            assertEquals(2 * POST_COUNT, ((Long) session.createQuery(
+                "select count(distinct c.id) from post_comment c join c.post p").uniqueResult()).intValue());
+        });
+    }
+
+    private Iterator<Post> posts(int postCount) {
+        return IntStream.range(0, postCount).mapToObj(i -> {
+            Post post = new Post(String.format("Post no. %d", i));
+            post.addComment(new Comment(String.format("Post comment %d:%d", i, 0)));
+            post.addComment(new Comment(String.format("Post comment %d:%d", i, 1)));
+            return post;
+        }).iterator();
+    }
+}
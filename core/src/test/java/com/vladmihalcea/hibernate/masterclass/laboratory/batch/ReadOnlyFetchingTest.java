@@ -0,0 +1,58 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import org.hibernate.FlushMode;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.Status;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ReadOnlyFetchingTest - Test to check the read-only transaction fetch support
+ *
+ * @author Vlad Mihalcea
+ */
+public class ReadOnlyFetchingTest extends NoFetchingTest {
+
+    @Override
+    protected void doInFetchTransaction(HibernateTransactionConsumer callable) {
+        doInReadOnlyTransaction(callable);
+    }
+
+    @Test
+    public void testReadOnlyEntities() {
+        doInTransaction(session -> {
+            Post post = new Post("High-Performance Java Persistence");
+            post.addComment(new Comment("Good"));
+            session.persist(post);
+        });
+        doInReadOnlyTransaction(session -> {
+            assertTrue(session.isDefaultReadOnly());
+            assertEquals(FlushMode.MANUAL, session.getFlushMode());
+            List<Post> posts = session.createQuery(
+                "select p " +
+                "from Post p " +
+                "join fetch p.comments ")
+                .list();
+            assertEquals(1, posts.size());
+            Post post = posts.get(0);
+            EntityEntry postEntry = ((SessionImplementor) session).getPersistenceContext().getEntry(post);
+            assertEquals(Status.READ_ONLY, postEntry.getStatus());
+            assertNull(postEntry.getLoadedState());
+            EntityEntry commentEntry = ((SessionImplementor) session).getPersistenceContext()
+                .getEntry(post.getComments().get(0));
+            assertNull(commentEntry.getLoadedState());
+            post.setTitle("Changed");
+        });
+        doInTransaction(session -> {
+            assertEquals(1L, session.createQuery(
+                "select count(p) from Post p where p.title = 'High-Performance Java Persistence'")
+                .uniqueResult());
+        });
+    }
+}
@@ -0,0 +1,54 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.batch;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.ScrollableResultsStreamer;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ScrollableResultsFetchingTest - Test to check the ScrollableResults streaming fetch support
+ *
+ * @author Vlad Mihalcea
+ */
+public class ScrollableResultsFetchingTest extends CustomFetchSizeFetchingTest {
+
+    private static final int CLEAR_SIZE = 25;
+
+    @Override
+    protected int itemsCount() {
+        return 100;
+    }
+
+    @Test
+    public void testStream() {
+        insertPosts();
+        doInReadOnlyTransaction(session -> {
+            Set<Long> postIds = new HashSet<>();
+            AtomicInteger commentCount = new AtomicInteger();
+            AtomicInteger maxEntityCount = new AtomicInteger();
+            long count = new ScrollableResultsStreamer(session)
+                .setFetchSize(fetchSize())
+                .setClearSize(CLEAR_SIZE)
+                .<Post>stream(
+                    "select p " +
+                    "from Post p " +
+                    "join fetch p.comments " +
+                    "order by p.id", post -> {
+                        postIds.add(post.getId());
+                        commentCount.addAndGet(post.getComments().size());
+                        maxEntityCount.accumulateAndGet(
+                            session.getStatistics().getEntityCount(), Math::max);
+                    });
+            assertEquals(itemsCount(), count);
+            assertEquals(itemsCount(), postIds.size());
+            assertEquals(2 * itemsCount(), commentCount.get());
+            assertTrue(maxEntityCount.get() <= 3 * (CLEAR_SIZE + 1));
+            assertEquals(0, session.getStatistics().getEntityCount());
+        });
+    }
+}
@@ -0,0 +1,190 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.CollectionCacheTest.Change;
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.CollectionCacheTest.Commit;
+import com.vladmihalcea.hibernate.masterclass.laboratory.cache.CollectionCacheTest.Repository;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.CacheEntryCodec;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.SerializableCacheEntryCodec;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.TaggedCacheEntryCodec;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.TinyLfuRegionFactory;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.TypeAwareCacheEntryCodec;
+import org.hibernate.Session;
+import org.hibernate.cache.spi.entry.CacheEntry;
+import org.hibernate.cache.spi.entry.CollectionCacheEntry;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.engine.spi.CollectionEntry;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * CacheEntryCodecTest - Test to check the cache entry codecs round trip, and to compare their bytes per entry
+ * and encode/decode time for the CollectionCacheTest Repository, Commit and collection cache entries
+ *
+ * @author Vlad Mihalcea
+ */
+public class CacheEntryCodecTest extends AbstractTest {
+
+    private static final int COMMIT_COUNT = 10;
+
+    private static final int ITERATIONS = 20_000;
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[] {
+            Repository.class,
+            Commit.class
+        };
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.cache.use_second_level_cache", Boolean.TRUE.toString());
+        properties.put("hibernate.cache.region.factory_class", TinyLfuRegionFactory.class.getName());
+        return properties;
+    }
+
+    @Test
+    public void testCodecs() {
+        doInTransaction(session -> {
+            Repository repository = new Repository("Hibernate-Master-Class");
+            session.persist(repository);
+            for (int i = 0; i < COMMIT_COUNT; i++) {
+                Commit commit = new Commit();
+                commit.getChanges().add(new Change("README.txt", "0a1,5..."));
+                commit.getChanges().add(new Change(String.format("src/main/java/Post%d.java", i), "17c17..."));
+                repository.addCommit(commit);
+                session.persist(commit);
+            }
+        });
+        Map<String, Map<Object, Object>> entriesByRegion = doInTransaction(session -> {
+            Repository repository = (Repository) session.get(Repository.class, 1L);
+            for (Commit commit : repository.getCommits()) {
+                assertEquals(2, commit.getChanges().size());
+            }
+            return cacheEntries(session);
+        });
+        assertEquals(4, entriesByRegion.size());
+
+        Map<String, CacheEntryCodec> codecs = new LinkedHashMap<>();
+        codecs.put("serializable", new SerializableCacheEntryCodec());
+        codecs.put("tagged", new TaggedCacheEntryCodec());
+        codecs.put("type-aware", new TypeAwareCacheEntryCodec((SessionFactoryImplementor) getSessionFactory()));
+        codecs.put("type-aware-local-dictionary", new TypeAwareCacheEntryCodec(
+            (SessionFactoryImplementor) getSessionFactory(), TypeAwareCacheEntryCodec.LOCAL_DICTIONARY_SIZE));
+
+        for (Map.Entry<String, Map<Object, Object>> regionEntries : entriesByRegion.entrySet()) {
+            Map<Object, Object> entries = regionEntries.getValue();
+            Map<String, Double> bytesPerEntry = new LinkedHashMap<>();
+            for (Map.Entry<String, CacheEntryCodec> codecEntry : codecs.entrySet()) {
+                CacheEntryCodec codec = codecEntry.getValue();
+                long bytes = 0;
+                for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+                    assertTrue(codec.isEncodable(entry.getKey(), entry.getValue()));
+                    byte[] encoded = codec.encode(entry.getKey(), entry.getValue());
+                    assertSameEntry(entry.getValue(), codec.decode(entry.getKey(), encoded));
+                    bytes += encoded.length;
+                }
+                bytesPerEntry.put(codecEntry.getKey(), (double) bytes / entries.size());
+                LOGGER.info("{} {} codec: {} bytes/entry, encode {} ns, decode {} ns",
+                    regionEntries.getKey(), codecEntry.getKey(), bytesPerEntry.get(codecEntry.getKey()),
+                    encodeNanos(codec, entries), decodeNanos(codec, entries));
+            }
+            if (getSessionFactory().getClassMetadata(regionEntries.getKey()) != null) {
+                assertTrue(bytesPerEntry.get("type-aware") < bytesPerEntry.get("tagged"));
+            } else {
+                assertTrue(bytesPerEntry.get("type-aware") <= bytesPerEntry.get("tagged"));
+            }
+            assertTrue(bytesPerEntry.get("tagged") < bytesPerEntry.get("serializable"));
+            assertTrue(bytesPerEntry.get("type-aware-local-dictionary") <= bytesPerEntry.get("type-aware"));
+        }
+    }
+
+    /**
+     * Build the second-level cache entries of the entities and collections loaded by the given Session,
+     * like Hibernate does before putting them into the cache
+     *
+     * @param session Session
+     * @return cache entries by entity name or collection role
+     */
+    public static Map<String, Map<Object, Object>> cacheEntries(Session session) {
+        Map<String, Map<Object, Object>> entriesByRegion = new TreeMap<>();
+        SessionImplementor sessionImplementor = (SessionImplementor) session;
+        PersistenceContext persistenceContext = sessionImplementor.getPersistenceContext();
+        for (Map.Entry<Object, EntityEntry> entityEntry : persistenceContext.reentrantSafeEntityEntries()) {
+            EntityEntry entry = entityEntry.getValue();
+            EntityPersister persister = entry.getPersister();
+            entriesByRegion.computeIfAbsent(persister.getEntityName(), name -> new LinkedHashMap<>()).put(
+                sessionImplementor.generateCacheKey(
+                    entry.getId(), persister.getIdentifierType(), persister.getRootEntityName()),
+                persister.buildCacheEntry(
+                    entityEntry.getKey(), entry.getLoadedState(), entry.getVersion(), sessionImplementor)
+            );
+        }
+        for (Object collectionEntry : persistenceContext.getCollectionEntries().entrySet()) {
+            PersistentCollection collection = (PersistentCollection) ((Map.Entry) collectionEntry).getKey();
+            CollectionEntry entry = (CollectionEntry) ((Map.Entry) collectionEntry).getValue();
+            CollectionPersister persister = entry.getLoadedPersister();
+            entriesByRegion.computeIfAbsent(persister.getRole(), role -> new LinkedHashMap<>()).put(
+                sessionImplementor.generateCacheKey(
+                    entry.getLoadedKey(), persister.getKeyType(), persister.getRole()),
+                new CollectionCacheEntry(collection, persister)
+            );
+        }
+        return entriesByRegion;
+    }
+
+    private long encodeNanos(CacheEntryCodec codec, Map<Object, Object> entries) {
+        long startNanos = 0;
+        for (int i = 0; i < 2 * ITERATIONS; i++) {
+            if (i == ITERATIONS) {
+                startNanos = System.nanoTime();
+            }
+            for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+                codec.encode(entry.getKey(), entry.getValue());
+            }
+        }
+        return (System.nanoTime() - startNanos) / ((long) ITERATIONS * entries.size());
+    }
+
+    private long decodeNanos(CacheEntryCodec codec, Map<Object, Object> entries) {
+        Map<Object, byte[]> encodedEntries = new LinkedHashMap<>();
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            encodedEntries.put(entry.getKey(), codec.encode(entry.getKey(), entry.getValue()));
+        }
+        long startNanos = 0;
+        for (int i = 0; i < 2 * ITERATIONS; i++) {
+            if (i == ITERATIONS) {
+                startNanos = System.nanoTime();
+            }
+            for (Map.Entry<Object, byte[]> entry : encodedEntries.entrySet()) {
+                codec.decode(entry.getKey(), entry.getValue());
+            }
+        }
+        return (System.nanoTime() - startNanos) / ((long) ITERATIONS * entries.size());
+    }
+
+    private void assertSameEntry(Object expected, Object actual) {
+        if (expected instanceof CacheEntry) {
+            CacheEntry expectedEntry = (CacheEntry) expected;
+            CacheEntry actualEntry = (CacheEntry) actual;
+            assertEquals(expectedEntry.getSubclass(), actualEntry.getSubclass());
+            assertEquals(expectedEntry.getVersion(), actualEntry.getVersion());
+            assertEquals(expectedEntry.areLazyPropertiesUnfetched(), actualEntry.areLazyPropertiesUnfetched());
+            assertArrayEquals(expectedEntry.getDisassembledState(), actualEntry.getDisassembledState());
+        } else {
+            assertArrayEquals(((CollectionCacheEntry) expected).getState(),
+                ((CollectionCacheEntry) actual).getState());
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.NearCacheRegionFactory;
+
+import java.util.Properties;
+
+
+/**
+ * NearCacheQueryCacheTest - Test to check Query Cache through the NearCacheRegionFactory
+ *
+ * @author Vlad Mihalcea
+ */
+public class NearCacheQueryCacheTest extends QueryCacheTest {
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.cache.region.factory_class", NearCacheRegionFactory.class.getName());
+        return properties;
+    }
+
+}
@@ -0,0 +1,176 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.NearCacheRegionFactory;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.WTinyLfuCache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.cache.spi.CacheKey;
+import org.hibernate.cache.spi.access.EntityRegionAccessStrategy;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.persistence.*;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * NearCacheRegionFactoryTest - Test to check the NearCacheRegionFactory hits and invalidations
+ *
+ * @author Vlad Mihalcea
+ */
+public class NearCacheRegionFactoryTest extends AbstractTest {
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[] {
+            Post.class
+        };
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.cache.use_second_level_cache", Boolean.TRUE.toString());
+        properties.put("hibernate.cache.region.factory_class", NearCacheRegionFactory.class.getName());
+        properties.put(NearCacheRegionFactory.MAXIMUM_SIZE, "100");
+        return properties;
+    }
+
+    private Long postId;
+
+    @Before
+    public void init() {
+        super.init();
+        postId = doInTransaction(session -> {
+            Post post = new Post("High-Performance Java Persistence");
+            session.persist(post);
+            return post.getId();
+        });
+        doInTransaction(session -> {
+            assertNotNull(session.get(Post.class, postId));
+        });
+        getSessionFactory().getStatistics().clear();
+    }
+
+    @Test
+    public void testNearCacheHit() {
+        for (int i = 0; i < 3; i++) {
+            doInTransaction(session -> {
+                Post post = (Post) session.get(Post.class, postId);
+                assertEquals("High-Performance Java Persistence", post.getTitle());
+            });
+        }
+        Statistics statistics = getSessionFactory().getStatistics();
+        assertEquals(3, statistics.getSecondLevelCacheHitCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(2, nearCache().getHitCount());
+    }
+
+    @Test
+    public void testUpdateInvalidatesNearCache() {
+        doInTransaction(session -> {
+            Post post = (Post) session.get(Post.class, postId);
+            post.setTitle("High-Performance Hibernate");
+        });
+        doInTransaction(session -> {
+            Post post = (Post) session.get(Post.class, postId);
+            assertEquals("High-Performance Hibernate", post.getTitle());
+        });
+        doInTransaction(session -> {
+            session.createQuery("update Post set title = 'Bulk update'").executeUpdate();
+        });
+        doInTransaction(session -> {
+            Post post = (Post) session.get(Post.class, postId);
+            assertEquals("Bulk update", post.getTitle());
+        });
+    }
+
+    @Test
+    public void testEvictInvalidatesNearCache() {
+        doInTransaction(session -> {
+            assertNotNull(session.get(Post.class, postId));
+        });
+        getSessionFactory().getCache().evictEntity(Post.class, postId);
+        doInTransaction(session -> {
+            assertNotNull(session.get(Post.class, postId));
+        });
+        assertEquals(1, getSessionFactory().getStatistics().getEntityLoadCount());
+    }
+
+    @Test
+    public void testDeleteInvalidatesNearCache() {
+        doInTransaction(session -> {
+            session.delete(session.get(Post.class, postId));
+        });
+        doInTransaction(session -> {
+            assertNull(session.get(Post.class, postId));
+        });
+    }
+
+    @Test
+    public void testOlderTransactionBypassesNearCache() {
+        SessionFactoryImplementor sessionFactory = (SessionFactoryImplementor) getSessionFactory();
+        EntityPersister persister = sessionFactory.getEntityPersister(Post.class.getName());
+        EntityRegionAccessStrategy accessStrategy = persister.getCacheAccessStrategy();
+        CacheKey cacheKey = new CacheKey(
+            postId, persister.getIdentifierType(), persister.getRootEntityName(), null, sessionFactory
+        );
+        long txTimestamp = sessionFactory.getSettings().getRegionFactory().nextTimestamp();
+        assertNotNull(accessStrategy.get(cacheKey, txTimestamp));
+        assertTrue(nearCache().size() > 0);
+        assertNotNull(accessStrategy.get(cacheKey, txTimestamp + 1));
+        assertEquals(1, nearCache().getHitCount());
+        assertNull(accessStrategy.get(cacheKey, 0));
+    }
+
+    private WTinyLfuCache<Object, ?> nearCache() {
+        NearCacheRegionFactory regionFactory = (NearCacheRegionFactory)
+            ((SessionFactoryImplementor) getSessionFactory()).getSettings().getRegionFactory();
+        return regionFactory.getNearCache(Post.class.getName());
+    }
+
+    /**
+     * Post - Post
+     *
+     * @author Vlad Mihalcea
+     */
+    @Entity(name = "Post")
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    public static class Post {
+
+        @Id
+        @GeneratedValue(strategy = GenerationType.AUTO)
+        private Long id;
+
+        private String title;
+
+        @Version
+        private int version;
+
+        public Post() {
+        }
+
+        public Post(String title) {
+            this.title = title;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+    }
+}
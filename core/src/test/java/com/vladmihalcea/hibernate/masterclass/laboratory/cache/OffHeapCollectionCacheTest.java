@@ -0,0 +1,23 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.TinyLfuRegionFactory;
+
+import java.util.Properties;
+
+
+/**
+ * OffHeapCollectionCacheTest - Test to check Collection Cache with the off-heap TinyLfuRegionFactory regions
+ *
+ * @author Vlad Mihalcea
+ */
+public class OffHeapCollectionCacheTest extends CollectionCacheTest {
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.cache.region.factory_class", TinyLfuRegionFactory.class.getName());
+        properties.put(TinyLfuRegionFactory.OFF_HEAP_MAXIMUM_BYTES, String.valueOf(16 * 1024 * 1024));
+        return properties;
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.TinyLfuRegionFactory;
+
+import java.util.Properties;
+
+
+/**
+ * OffHeapReadOnlyCacheConcurrencyStrategyTest - Test to check CacheConcurrencyStrategy.READ_ONLY with the off-heap TinyLfuRegionFactory regions
+ *
+ * @author Vlad Mihalcea
+ */
+public class OffHeapReadOnlyCacheConcurrencyStrategyTest extends ReadOnlyCacheConcurrencyStrategyTest {
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.cache.region.factory_class", TinyLfuRegionFactory.class.getName());
+        properties.put(TinyLfuRegionFactory.OFF_HEAP_MAXIMUM_BYTES, String.valueOf(16 * 1024 * 1024));
+        return properties;
+    }
+
+}
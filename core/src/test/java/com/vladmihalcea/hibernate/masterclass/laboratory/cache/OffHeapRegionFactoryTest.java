@@ -0,0 +1,244 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.TinyLfuRegionFactory;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.cache.spi.entry.CacheEntry;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * OffHeapRegionFactoryTest - Test to check the TinyLfuRegionFactory off-heap entity and collection regions
+ *
+ * @author Vlad Mihalcea
+ */
+public class OffHeapRegionFactoryTest extends AbstractTest {
+
+    private static final int OFF_HEAP_MAXIMUM_BYTES = 64 * 1024;
+
+    private static final int OFF_HEAP_SLAB_SIZE = 4 * 1024;
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[] {
+            Repository.class,
+            Commit.class
+        };
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.cache.use_second_level_cache", Boolean.TRUE.toString());
+        properties.put("hibernate.cache.region.factory_class", TinyLfuRegionFactory.class.getName());
+        properties.put(TinyLfuRegionFactory.OFF_HEAP_MAXIMUM_BYTES, String.valueOf(OFF_HEAP_MAXIMUM_BYTES));
+        properties.put(TinyLfuRegionFactory.OFF_HEAP_SLAB_SIZE, String.valueOf(OFF_HEAP_SLAB_SIZE));
+        return properties;
+    }
+
+    @Test
+    public void testRoundTrip() {
+        Date created = new Date(1420070400000L);
+        byte[] avatar = {0, 1, -1, Byte.MAX_VALUE, Byte.MIN_VALUE};
+        Long repositoryId = doInTransaction(session -> {
+            Repository repository = new Repository("Hibernate-Master-Class");
+            repository.stars = Long.MAX_VALUE;
+            repository.score = -1.5d;
+            repository.price = new BigDecimal("12345.6789");
+            repository.open = true;
+            repository.created = created;
+            repository.avatar = avatar;
+            repository.visibility = Visibility.PUBLIC;
+            repository.getTopics().add("hibernate");
+            repository.getTopics().add("second-level-cache");
+            session.persist(repository);
+            return repository.id;
+        });
+        doInTransaction(session -> {
+            Repository repository = (Repository) session.get(Repository.class, repositoryId);
+            repository.getTopics().size();
+        });
+        getSessionFactory().getStatistics().clear();
+        doInTransaction(session -> {
+            Repository repository = (Repository) session.get(Repository.class, repositoryId);
+            assertEquals("Hibernate-Master-Class", repository.name);
+            assertEquals(Long.MAX_VALUE, repository.stars.longValue());
+            assertEquals(-1.5d, repository.score, 0);
+            assertEquals(new BigDecimal("12345.6789"), repository.price);
+            assertTrue(repository.open);
+            assertEquals(created.getTime(), repository.created.getTime());
+            assertArrayEquals(avatar, repository.avatar);
+            assertEquals(Visibility.PUBLIC, repository.visibility);
+            assertNull(repository.description);
+            assertEquals(new HashSet<>(Arrays.asList("hibernate", "second-level-cache")), repository.getTopics());
+        });
+        Statistics statistics = getSessionFactory().getStatistics();
+        assertEquals(2, statistics.getSecondLevelCacheHitCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        SecondLevelCacheStatistics regionStatistics =
+            statistics.getSecondLevelCacheStatistics(Repository.class.getName());
+        LOGGER.info("Repository region stores {} bytes off-heap", regionStatistics.getSizeInMemory());
+        assertTrue(regionStatistics.getSizeInMemory() > 0);
+    }
+
+    @Test
+    public void testMaximumBytes() {
+        Long repositoryId = doInTransaction(session -> {
+            Repository repository = new Repository("Hibernate-Master-Class");
+            session.persist(repository);
+            return repository.id;
+        });
+        char[] message = new char[512];
+        Arrays.fill(message, 'x');
+        List<Long> commitIds = doInTransaction(session -> {
+            Repository repository = (Repository) session.get(Repository.class, repositoryId);
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                Commit commit = new Commit(repository, i + new String(message));
+                session.persist(commit);
+                ids.add(commit.id);
+            }
+            return ids;
+        });
+        doInTransaction(session -> {
+            for (Long commitId : commitIds) {
+                session.get(Commit.class, commitId);
+            }
+        });
+        SecondLevelCacheStatistics regionStatistics = getSessionFactory().getStatistics()
+            .getSecondLevelCacheStatistics(Commit.class.getName());
+        LOGGER.info("Commit region holds {} entries in {} bytes",
+            regionStatistics.getElementCountInMemory(), regionStatistics.getSizeInMemory());
+        assertTrue(regionStatistics.getElementCountInMemory() > 0);
+        assertTrue(regionStatistics.getElementCountInMemory() < 500);
+        assertTrue(regionStatistics.getSizeInMemory() <= OFF_HEAP_MAXIMUM_BYTES);
+        for (Object value : regionStatistics.getEntries().values()) {
+            assertFalse("Entry spilled on-heap: " + value, value instanceof CacheEntry);
+        }
+    }
+
+    @Test
+    public void testFullSlabsEvictInsteadOfSpillingOnHeap() {
+        Long repositoryId = doInTransaction(session -> {
+            Repository repository = new Repository("Hibernate-Master-Class");
+            session.persist(repository);
+            return repository.id;
+        });
+        char[] message = new char[512];
+        Arrays.fill(message, 'x');
+        doInTransaction(session -> {
+            Repository repository = (Repository) session.get(Repository.class, repositoryId);
+            LOGGER.info("The short commits take a few slabs, before the long commits take all the remaining ones");
+            for (int i = 0; i < 200; i++) {
+                session.persist(new Commit(repository, String.valueOf(i)));
+            }
+            for (int i = 0; i < 200; i++) {
+                session.persist(new Commit(repository, i + new String(message)));
+            }
+        });
+        SecondLevelCacheStatistics regionStatistics = getSessionFactory().getStatistics()
+            .getSecondLevelCacheStatistics(Commit.class.getName());
+        LOGGER.info("Commit region holds {} entries in {} bytes",
+            regionStatistics.getElementCountInMemory(), regionStatistics.getSizeInMemory());
+        assertTrue(regionStatistics.getElementCountInMemory() > 0);
+        assertTrue(regionStatistics.getElementCountInMemory() < 400);
+        assertTrue(regionStatistics.getSizeInMemory() <= OFF_HEAP_MAXIMUM_BYTES);
+        for (Object value : regionStatistics.getEntries().values()) {
+            assertFalse("Entry spilled on-heap: " + value, value instanceof CacheEntry);
+        }
+    }
+
+    public enum Visibility {
+        PUBLIC,
+        PRIVATE
+    }
+
+    /**
+     * Repository - Repository
+     *
+     * @author Vlad Mihalcea
+     */
+    @Entity(name = "Repository")
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    public static class Repository {
+
+        @Id
+        @GeneratedValue(strategy = GenerationType.AUTO)
+        private Long id;
+
+        private String name;
+
+        private String description;
+
+        private Long stars;
+
+        private double score;
+
+        @Column(precision = 19, scale = 4)
+        private BigDecimal price;
+
+        private boolean open;
+
+        @Temporal(TemporalType.TIMESTAMP)
+        private Date created;
+
+        private byte[] avatar;
+
+        @Enumerated(EnumType.STRING)
+        private Visibility visibility;
+
+        @ElementCollection
+        @CollectionTable(name = "repository_topic", joinColumns = @JoinColumn(name = "repository_id"))
+        @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+        private Set<String> topics = new HashSet<>();
+
+        @Version
+        private int version;
+
+        public Repository() {
+        }
+
+        public Repository(String name) {
+            this.name = name;
+        }
+
+        public Set<String> getTopics() {
+            return topics;
+        }
+    }
+
+    /**
+     * Commit - Commit
+     *
+     * @author Vlad Mihalcea
+     */
+    @Entity(name = "Commit")
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
+    public static class Commit {
+
+        @Id
+        @GeneratedValue(strategy = GenerationType.SEQUENCE)
+        private Long id;
+
+        @ManyToOne(fetch = FetchType.LAZY)
+        private Repository repository;
+
+        @Column(length = 1024)
+        private String message;
+
+        public Commit() {
+        }
+
+        public Commit(Repository repository, String message) {
+            this.repository = repository;
+            this.message = message;
+        }
+    }
+}
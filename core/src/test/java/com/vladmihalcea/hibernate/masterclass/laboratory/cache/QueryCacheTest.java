@@ -59,7 +59,7 @@ public class QueryCacheTest extends AbstractTest {
     }
 
     @SuppressWarnings("unchecked")
-    private List<Post> getLatestPosts(Session session) {
+    protected List<Post> getLatestPosts(Session session) {
         return (List<Post>) session.createQuery(
             "select p " +
             "from Post p " +
@@ -70,7 +70,7 @@ public class QueryCacheTest extends AbstractTest {
     }
 
     @SuppressWarnings("unchecked")
-    private List<Post> getLatestPostsByAuthorId(Session session) {
+    protected List<Post> getLatestPostsByAuthorId(Session session) {
         return (List<Post>) session.createQuery(
             "select p " +
             "from Post p " +
@@ -231,10 +231,18 @@ public class QueryCacheTest extends AbstractTest {
             this.author = author;
         }
 
+        public Long getId() {
+            return id;
+        }
+
         public Date getCreatedOn() {
             return createdOn;
         }
 
+        public void setCreatedOn(Date createdOn) {
+            this.createdOn = createdOn;
+        }
+
         public String getName() {
             return name;
         }
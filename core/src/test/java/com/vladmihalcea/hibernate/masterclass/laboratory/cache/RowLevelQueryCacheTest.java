@@ -0,0 +1,129 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.RowLevelQueryCacheFactory;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.RowLevelQueryCacheIntegrator;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.RowLevelQueryCacheRegionFactory;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * RowLevelQueryCacheTest - Test to check the Query Cache results are only invalidated by the writes of the rows
+ * they depend on, unless the writes are not known to the entity listeners, like bulk updates
+ *
+ * @author Vlad Mihalcea
+ */
+public class RowLevelQueryCacheTest extends QueryCacheTest {
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.cache.region.factory_class", RowLevelQueryCacheRegionFactory.class.getName());
+        properties.put("hibernate.cache.query_cache_factory", RowLevelQueryCacheFactory.class.getName());
+        return properties;
+    }
+
+    @Override
+    protected Integrator[] integrators() {
+        return new Integrator[] {
+            new RowLevelQueryCacheIntegrator()
+        };
+    }
+
+    @Test
+    public void testOtherAuthorWritesDoNotInvalidateQuery() {
+        doInTransaction(session -> {
+            assertEquals(1, getLatestPostsByAuthorId(session).size());
+        });
+        Long otherPostId = doInTransaction(session -> {
+            LOGGER.info("Insert a Post of another Author");
+            Author author = new Author("Alex");
+            session.persist(author);
+            Post post = new Post("High-Performance Java Persistence", author);
+            session.persist(post);
+            return post.getId();
+        });
+        doInTransaction(session -> {
+            LOGGER.info("The first result was loaded before the author_id column was tracked");
+            assertQueryCacheHit(false, () -> assertEquals(1, getLatestPostsByAuthorId(session).size()));
+        });
+        doInTransaction(session -> {
+            LOGGER.info("Update a Post of another Author");
+            Post post = (Post) session.get(Post.class, otherPostId);
+            post.setName("High-Performance Java Persistence, 2nd edition");
+            post.setCreatedOn(new Date(System.currentTimeMillis() + 1000));
+        });
+        doInTransaction(session -> {
+            assertQueryCacheHit(true, () -> assertEquals(1, getLatestPostsByAuthorId(session).size()));
+        });
+        doInTransaction(session -> {
+            LOGGER.info("Delete a Post of another Author");
+            session.delete(session.get(Post.class, otherPostId));
+        });
+        doInTransaction(session -> {
+            assertQueryCacheHit(true, () -> assertEquals(1, getLatestPostsByAuthorId(session).size()));
+        });
+        doInTransaction(session -> {
+            LOGGER.info("Insert a Post of the same Author");
+            session.persist(new Post("Hibernate Book", (Author) session.load(Author.class, 1L)));
+        });
+        doInTransaction(session -> {
+            assertQueryCacheHit(false, () -> assertEquals(2, getLatestPostsByAuthorId(session).size()));
+        });
+    }
+
+    @Test
+    public void testUnreferencedColumnUpdateDoesNotInvalidateQuery() {
+        doInTransaction(session -> {
+            assertEquals(1, getLatestPosts(session).size());
+        });
+        doInTransaction(session -> {
+            LOGGER.info("Update the Post name, which the query doesn't filter or sort by");
+            Post post = (Post) session.get(Post.class, 1L);
+            post.setName("Hibernate Master Class Training");
+        });
+        doInTransaction(session -> {
+            assertQueryCacheHit(true, () -> assertEquals(1, getLatestPosts(session).size()));
+        });
+        doInTransaction(session -> {
+            LOGGER.info("Update the Post creation timestamp, which the query sorts by");
+            Post post = (Post) session.get(Post.class, 1L);
+            post.setCreatedOn(new Date(System.currentTimeMillis() + 1000));
+        });
+        doInTransaction(session -> {
+            assertQueryCacheHit(false, () -> assertEquals(1, getLatestPosts(session).size()));
+        });
+    }
+
+    @Test
+    public void testBulkUpdateInvalidatesTable() {
+        doInTransaction(session -> {
+            assertEquals(1, getLatestPosts(session).size());
+        });
+        doInTransaction(session -> {
+            LOGGER.info("Bulk update the Post name, which the entity listeners don't know of");
+            assertEquals(1, session.createQuery(
+                "update Post set name = :name")
+                .setParameter("name", "Hibernate Master Class Training")
+                .executeUpdate());
+        });
+        doInTransaction(session -> {
+            assertQueryCacheHit(false, () -> assertEquals(1, getLatestPosts(session).size()));
+        });
+        doInTransaction(session -> {
+            assertQueryCacheHit(true, () -> assertEquals(1, getLatestPosts(session).size()));
+        });
+    }
+
+    private void assertQueryCacheHit(boolean hit, Runnable query) {
+        Statistics statistics = getSessionFactory().getStatistics();
+        long hitCount = statistics.getQueryCacheHitCount();
+        query.run();
+        assertEquals(hit ? hitCount + 1 : hitCount, statistics.getQueryCacheHitCount());
+    }
+}
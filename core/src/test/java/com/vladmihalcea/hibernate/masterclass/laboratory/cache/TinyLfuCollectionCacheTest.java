@@ -0,0 +1,22 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.TinyLfuRegionFactory;
+
+import java.util.Properties;
+
+
+/**
+ * TinyLfuCollectionCacheTest - Test to check Collection Cache with the TinyLfuRegionFactory
+ *
+ * @author Vlad Mihalcea
+ */
+public class TinyLfuCollectionCacheTest extends CollectionCacheTest {
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.cache.region.factory_class", TinyLfuRegionFactory.class.getName());
+        return properties;
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.TinyLfuRegionFactory;
+
+import java.util.Properties;
+
+
+/**
+ * TinyLfuNonStrictReadWriteCacheConcurrencyStrategyWithConcurrentUpdateTest - Test to check CacheConcurrencyStrategy.NONSTRICT_READ_WRITE with concurrent updates with the TinyLfuRegionFactory
+ *
+ * @author Vlad Mihalcea
+ */
+public class TinyLfuNonStrictReadWriteCacheConcurrencyStrategyWithConcurrentUpdateTest extends NonStrictReadWriteCacheConcurrencyStrategyWithConcurrentUpdateTest {
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.cache.region.factory_class", TinyLfuRegionFactory.class.getName());
+        return properties;
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.TinyLfuRegionFactory;
+
+import java.util.Properties;
+
+
+/**
+ * TinyLfuReadOnlyCacheConcurrencyStrategyCollectionsTest - Test to check CacheConcurrencyStrategy.READ_ONLY collections with the TinyLfuRegionFactory
+ *
+ * @author Vlad Mihalcea
+ */
+public class TinyLfuReadOnlyCacheConcurrencyStrategyCollectionsTest extends ReadOnlyCacheConcurrencyStrategyCollectionsTest {
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.cache.region.factory_class", TinyLfuRegionFactory.class.getName());
+        return properties;
+    }
+
+}
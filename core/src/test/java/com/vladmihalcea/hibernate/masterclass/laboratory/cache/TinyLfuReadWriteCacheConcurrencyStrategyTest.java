@@ -0,0 +1,44 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.TinyLfuRegionFactory;
+import org.hibernate.cache.spi.EntityRegion;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.access.EntityRegionAccessStrategy;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * TinyLfuReadWriteCacheConcurrencyStrategyTest - Test to check CacheConcurrencyStrategy.READ_WRITE with the TinyLfuRegionFactory
+ *
+ * @author Vlad Mihalcea
+ */
+public class TinyLfuReadWriteCacheConcurrencyStrategyTest extends ReadWriteCacheConcurrencyStrategyTest {
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.cache.region.factory_class", TinyLfuRegionFactory.class.getName());
+        properties.put(TinyLfuRegionFactory.LOCK_TIMEOUT, String.valueOf(10 * 60 * 1000));
+        return properties;
+    }
+
+    @Test
+    public void testLongLockTimeout() {
+        EntityRegion region = (EntityRegion) ((SessionFactoryImplementor) getSessionFactory())
+            .getSecondLevelCacheRegion(Repository.class.getName());
+        EntityRegionAccessStrategy accessStrategy = region.buildAccessStrategy(AccessType.READ_WRITE);
+        String key = "soft-locked";
+        LOGGER.info("A 10 minutes lock timeout doesn't fit in an int once converted to timestamp units");
+        SoftLock lock = accessStrategy.lockItem(key, null);
+        assertFalse(accessStrategy.putFromLoad(key, "stale", region.nextTimestamp(), null));
+        accessStrategy.unlockItem(key, lock);
+        assertTrue(accessStrategy.putFromLoad(key, "fresh", region.nextTimestamp(), null));
+    }
+}
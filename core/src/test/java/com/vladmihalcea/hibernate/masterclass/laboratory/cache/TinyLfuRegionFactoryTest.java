@@ -0,0 +1,185 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.TinyLfuRegionFactory;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.WTinyLfuCache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+
+import javax.persistence.*;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * TinyLfuRegionFactoryTest - Test to check the TinyLfuRegionFactory natural id, NONSTRICT_READ_WRITE
+ * and weight-bounded regions
+ *
+ * @author Vlad Mihalcea
+ */
+public class TinyLfuRegionFactoryTest extends AbstractTest {
+
+    private static final int POST_MAXIMUM_WEIGHT = 30;
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[] {
+            Post.class,
+            Tag.class
+        };
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.cache.use_second_level_cache", Boolean.TRUE.toString());
+        properties.put("hibernate.cache.region.factory_class", TinyLfuRegionFactory.class.getName());
+        properties.put(TinyLfuRegionFactory.MAXIMUM_WEIGHT + "." + Post.class.getName(),
+            String.valueOf(POST_MAXIMUM_WEIGHT));
+        return properties;
+    }
+
+    @Test
+    public void testNaturalIdCache() {
+        doInTransaction(session -> {
+            session.persist(new Post("high-performance-java-persistence"));
+        });
+        getSessionFactory().getStatistics().clear();
+        for (int i = 0; i < 3; i++) {
+            doInTransaction(session -> {
+                Post post = (Post) session.bySimpleNaturalId(Post.class).load("high-performance-java-persistence");
+                assertEquals("high-performance-java-persistence", post.getSlug());
+            });
+        }
+        Statistics statistics = getSessionFactory().getStatistics();
+        LOGGER.info("{}", statistics);
+        assertEquals(3, statistics.getNaturalIdCacheHitCount());
+        assertEquals(3, statistics.getSecondLevelCacheHitCount());
+    }
+
+    @Test
+    public void testNonStrictReadWriteUpdate() {
+        Long tagId = doInTransaction(session -> {
+            Tag tag = new Tag("hibernate");
+            session.persist(tag);
+            return tag.getId();
+        });
+        doInTransaction(session -> {
+            session.get(Tag.class, tagId);
+        });
+        getSessionFactory().getStatistics().clear();
+        doInTransaction(session -> {
+            Tag tag = (Tag) session.get(Tag.class, tagId);
+            tag.setName("jpa");
+        });
+        assertEquals(0, cache(Tag.class).size());
+        doInTransaction(session -> {
+            Tag tag = (Tag) session.get(Tag.class, tagId);
+            assertEquals("jpa", tag.getName());
+        });
+        Statistics statistics = getSessionFactory().getStatistics();
+        assertEquals(1, statistics.getSecondLevelCacheHitCount());
+        assertEquals(1, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    public void testMaximumWeight() {
+        doInTransaction(session -> {
+            for (int i = 0; i < 50; i++) {
+                session.persist(new Post(String.format("post-%d", i)));
+            }
+        });
+        doInTransaction(session -> {
+            for (long id = 1; id <= 50; id++) {
+                session.get(Post.class, id);
+            }
+        });
+        WTinyLfuCache<Object, Object> cache = cache(Post.class);
+        cache.cleanUp();
+        LOGGER.info("Post region holds {} entries", cache.size());
+        assertTrue(cache.size() > 0);
+        assertTrue(cache.size() * 3 <= POST_MAXIMUM_WEIGHT);
+    }
+
+    private WTinyLfuCache<Object, Object> cache(Class<?> entityClass) {
+        TinyLfuRegionFactory regionFactory = (TinyLfuRegionFactory)
+            ((SessionFactoryImplementor) getSessionFactory()).getSettings().getRegionFactory();
+        return regionFactory.getCache(entityClass.getName());
+    }
+
+    /**
+     * Post - Post
+     *
+     * @author Vlad Mihalcea
+     */
+    @Entity(name = "Post")
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @NaturalIdCache
+    public static class Post {
+
+        @Id
+        @GeneratedValue(strategy = GenerationType.SEQUENCE)
+        private Long id;
+
+        @NaturalId
+        private String slug;
+
+        @Version
+        private int version;
+
+        public Post() {
+        }
+
+        public Post(String slug) {
+            this.slug = slug;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getSlug() {
+            return slug;
+        }
+    }
+
+    /**
+     * Tag - Tag
+     *
+     * @author Vlad Mihalcea
+     */
+    @Entity(name = "Tag")
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
+    public static class Tag {
+
+        @Id
+        @GeneratedValue(strategy = GenerationType.AUTO)
+        private Long id;
+
+        private String name;
+
+        public Tag() {
+        }
+
+        public Tag(String name) {
+            this.name = name;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.TinyLfuRegionFactory;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.TinyLfuRegionFactoryIntegrator;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.TypeAwareCacheEntryCodec;
+import org.hibernate.integrator.spi.Integrator;
+
+import java.util.Properties;
+
+
+/**
+ * TypeAwareOffHeapCollectionCacheTest - Test to check Collection Cache with the off-heap TinyLfuRegionFactory regions
+ *     encoded by the TypeAwareCacheEntryCodec
+ *
+ * @author Vlad Mihalcea
+ */
+public class TypeAwareOffHeapCollectionCacheTest extends OffHeapCollectionCacheTest {
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put(TinyLfuRegionFactory.OFF_HEAP_CODEC, TypeAwareCacheEntryCodec.class.getName());
+        return properties;
+    }
+
+    @Override
+    protected Integrator[] integrators() {
+        return new Integrator[] {
+            new TinyLfuRegionFactoryIntegrator()
+        };
+    }
+
+}
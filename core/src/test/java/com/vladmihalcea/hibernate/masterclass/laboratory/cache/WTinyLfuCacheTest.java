@@ -0,0 +1,105 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.cache;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.WTinyLfuCache;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * WTinyLfuCacheTest - Test to check the WTinyLfuCache bounded size and frequency-based admission
+ *
+ * @author Vlad Mihalcea
+ */
+public class WTinyLfuCacheTest {
+
+    @Test
+    public void testMaximumSize() {
+        WTinyLfuCache<Integer, String> cache = new WTinyLfuCache<>(100);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, String.valueOf(i));
+        }
+        cache.cleanUp();
+        assertEquals(100, cache.size());
+        assertEquals(900, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testScanResistance() {
+        WTinyLfuCache<Integer, String> cache = new WTinyLfuCache<>(100);
+        for (int i = 0; i < 50; i++) {
+            cache.put(i, String.valueOf(i));
+        }
+        for (int j = 0; j < 5; j++) {
+            for (int i = 0; i < 50; i++) {
+                assertNotNull(cache.get(i));
+            }
+        }
+        for (int i = 1000; i < 11000; i++) {
+            cache.put(i, String.valueOf(i));
+            cache.get(i % 50);
+        }
+        cache.cleanUp();
+        for (int i = 0; i < 50; i++) {
+            assertNotNull("Hot key " + i + " was evicted", cache.get(i));
+        }
+        assertEquals(100, cache.size());
+    }
+
+    @Test
+    public void testRemove() {
+        WTinyLfuCache<Integer, String> cache = new WTinyLfuCache<>(10);
+        cache.put(1, "a");
+        cache.put(2, "b");
+        cache.remove(1, "b");
+        assertEquals("a", cache.get(1));
+        cache.remove(1, "a");
+        assertNull(cache.get(1));
+        cache.clear();
+        assertNull(cache.get(2));
+        cache.cleanUp();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        WTinyLfuCache<Integer, Integer> cache = new WTinyLfuCache<>(500);
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] futures = new Future<?>[4];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = executorService.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int j = 0; j < 100_000; j++) {
+                        int key = random.nextInt(2000);
+                        Integer value = cache.get(key);
+                        if (value == null) {
+                            cache.put(key, key);
+                        } else {
+                            assertEquals(key, value.intValue());
+                        }
+                        if (j % 100 == 0) {
+                            cache.remove(random.nextInt(2000));
+                        }
+                    }
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        cache.cleanUp();
+        assertTrue(cache.size() <= 500);
+        assertTrue(cache.getHitCount() > 0);
+    }
+}
@@ -0,0 +1,17 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.flushing;
+
+/**
+ * DirtyMaskAware - Dirty Aware exposing the dirty properties as a bit mask
+ * <p>
+ * Bit i of {@link #getDirtyMask()} stands for the i-th element of {@link #getDirtyMaskPropertyNames()}.
+ * The property names array is shared by all instances of an entity class, so it must not be modified,
+ * and it's meant to be resolved against the persister property order once per entity class with {@link DirtyMaskIndex}.
+ *
+ * @author Vlad Mihalcea
+ */
+public interface DirtyMaskAware extends DirtyAware {
+
+    long getDirtyMask();
+
+    String[] getDirtyMaskPropertyNames();
+}
@@ -0,0 +1,60 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.flushing;
+
+import org.hibernate.CustomEntityDirtinessStrategy;
+import org.hibernate.Session;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * DirtyMaskEntityDirtinessStrategyTest - Test to check CustomEntityDirtinessStrategy dirty checking capabilities
+ * using the {@link DirtyMaskAware} bit mask instead of the dirty property names
+ *
+ * @author Vlad Mihalcea
+ */
+public class DirtyMaskEntityDirtinessStrategyTest extends IndexedDirtyCheckingEntityTest {
+
+    public static class DirtyMaskEntityDirtinessStrategy implements CustomEntityDirtinessStrategy {
+
+        private final ConcurrentMap<Class<?>, DirtyMaskIndex> dirtyMaskIndexes = new ConcurrentHashMap<>();
+
+        @Override
+        public boolean canDirtyCheck(Object entity, EntityPersister persister, Session session) {
+            return entity instanceof DirtyMaskAware;
+        }
+
+        @Override
+        public boolean isDirty(Object entity, EntityPersister persister, Session session) {
+            return cast(entity).getDirtyMask() != 0;
+        }
+
+        @Override
+        public void resetDirty(Object entity, EntityPersister persister, Session session) {
+            cast(entity).clearDirtyProperties();
+        }
+
+        @Override
+        public void findDirty(Object entity, EntityPersister persister, Session session, DirtyCheckContext dirtyCheckContext) {
+            final DirtyMaskAware dirtyMaskAware = cast(entity);
+            final long dirtyMask = dirtyMaskAware.getDirtyMask();
+            final DirtyMaskIndex dirtyMaskIndex = dirtyMaskIndexes.computeIfAbsent(entity.getClass(),
+                entityClass -> new DirtyMaskIndex(dirtyMaskAware.getDirtyMaskPropertyNames(), persister.getPropertyNames()));
+            dirtyCheckContext.doDirtyChecking(
+                    attributeInformation -> dirtyMaskIndex.isDirty(dirtyMask, attributeInformation.getAttributeIndex())
+            );
+        }
+
+        private DirtyMaskAware cast(Object entity) {
+            return DirtyMaskAware.class.cast(entity);
+        }
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.setProperty("hibernate.entity_dirtiness_strategy", DirtyMaskEntityDirtinessStrategy.class.getName());
+        return properties;
+    }
+}
@@ -0,0 +1,47 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.flushing;
+
+import java.util.Arrays;
+
+/**
+ * DirtyMaskIndex - Maps the {@link DirtyMaskAware} bits of an entity class to the persister property positions,
+ * so that dirty checking doesn't have to look up property names on every flush.
+ * Bits standing for non-persistent properties are ignored.
+ *
+ * @author Vlad Mihalcea
+ */
+public final class DirtyMaskIndex {
+
+    private final int[] propertyPositions;
+
+    private final int[] maskBits;
+
+    public DirtyMaskIndex(String[] maskPropertyNames, String[] persisterPropertyNames) {
+        propertyPositions = new int[maskPropertyNames.length];
+        maskBits = new int[persisterPropertyNames.length];
+        Arrays.fill(maskBits, -1);
+        for (int bit = 0; bit < maskPropertyNames.length; bit++) {
+            int position = Arrays.asList(persisterPropertyNames).indexOf(maskPropertyNames[bit]);
+            propertyPositions[bit] = position;
+            if (position >= 0) {
+                maskBits[position] = bit;
+            }
+        }
+    }
+
+    public int[] getDirtyPropertyPositions(long dirtyMask) {
+        int[] dirtyPositions = new int[Long.bitCount(dirtyMask)];
+        int count = 0;
+        for (long mask = dirtyMask; mask != 0; mask &= mask - 1) {
+            int position = propertyPositions[Long.numberOfTrailingZeros(mask)];
+            if (position >= 0) {
+                dirtyPositions[count++] = position;
+            }
+        }
+        return count == dirtyPositions.length ? dirtyPositions : Arrays.copyOf(dirtyPositions, count);
+    }
+
+    public boolean isDirty(long dirtyMask, int propertyPosition) {
+        int bit = maskBits[propertyPosition];
+        return bit >= 0 && (dirtyMask & (1L << bit)) != 0;
+    }
+}
@@ -0,0 +1,49 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.flushing;
+
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Interceptor;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * DirtyMaskInterceptorDirtyCheckingTest - Test to check interceptor dirty checking capabilities
+ * using the {@link DirtyMaskAware} bit mask instead of the dirty property names
+ *
+ * @author Vlad Mihalcea
+ */
+public class DirtyMaskInterceptorDirtyCheckingTest extends IndexedDirtyCheckingEntityTest {
+
+    public static class DirtyMaskInterceptor extends EmptyInterceptor {
+
+        private final ConcurrentMap<Class<?>, DirtyMaskIndex> dirtyMaskIndexes = new ConcurrentHashMap<>();
+
+        @Override
+        public int[] findDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState, String[] propertyNames, Type[] types) {
+            if(entity instanceof DirtyMaskAware) {
+                DirtyMaskAware dirtyMaskAware = (DirtyMaskAware) entity;
+                DirtyMaskIndex dirtyMaskIndex = dirtyMaskIndexes.computeIfAbsent(entity.getClass(),
+                    entityClass -> new DirtyMaskIndex(dirtyMaskAware.getDirtyMaskPropertyNames(), propertyNames));
+                int[] dirtyPropertiesIndices = dirtyMaskIndex.getDirtyPropertyPositions(dirtyMaskAware.getDirtyMask());
+                dirtyMaskAware.clearDirtyProperties();
+                return dirtyPropertiesIndices;
+            }
+            return super.findDirty(entity, id, currentState, previousState, propertyNames, types);
+        }
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.remove("hibernate.entity_dirtiness_strategy");
+        return properties;
+    }
+
+    @Override
+    protected Interceptor interceptor() {
+        return new DirtyMaskInterceptor();
+    }
+}
@@ -0,0 +1,119 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.flushing;
+
+import javax.persistence.Transient;
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * IndexedDirtyCheckingEntity - Manual dirty checking mechanism without reflection on the write path.
+ * The setter properties are resolved once per entity class, and every entity instance tracks the dirty ones
+ * as bits of a single long, so, unlike {@link SelfDirtyCheckingEntity}, there is no stack walking,
+ * no introspection in the constructor and no per-instance collection.
+ * The bits are exposed through {@link DirtyMaskAware}, so dirty checking can skip the property name lookups.
+ * <p>
+ * Setters should call {@link #markDirtyProperty(int)} with an index resolved once through
+ * {@link #propertyIndex(Class, String)} and stored in a static final field. The indexes are cumulative along
+ * the class hierarchy: a subclass keeps the indexes of its superclass properties and appends its own ones,
+ * so the indexes resolved for a superclass are still valid for its subclass instances.
+ *
+ * @author Vlad Mihalcea
+ */
+public abstract class IndexedDirtyCheckingEntity implements DirtyMaskAware {
+
+    private static final ClassValue<PropertyIndex> PROPERTY_INDEXES = new ClassValue<PropertyIndex>() {
+        @Override
+        protected PropertyIndex computeValue(Class<?> entityClass) {
+            return new PropertyIndex(entityClass);
+        }
+    };
+
+    @Transient
+    private long dirtyMask;
+
+    protected static int propertyIndex(Class<? extends IndexedDirtyCheckingEntity> entityClass, String propertyName) {
+        return PROPERTY_INDEXES.get(entityClass).indexOf(propertyName);
+    }
+
+    @Override
+    public Set<String> getDirtyProperties() {
+        String[] propertyNames = PROPERTY_INDEXES.get(getClass()).propertyNames;
+        Set<String> dirtyProperties = new LinkedHashSet<String>();
+        for (long mask = dirtyMask; mask != 0; mask &= mask - 1) {
+            dirtyProperties.add(propertyNames[Long.numberOfTrailingZeros(mask)]);
+        }
+        return dirtyProperties;
+    }
+
+    @Override
+    public long getDirtyMask() {
+        return dirtyMask;
+    }
+
+    @Override
+    public String[] getDirtyMaskPropertyNames() {
+        return PROPERTY_INDEXES.get(getClass()).propertyNames;
+    }
+
+    @Override
+    public void clearDirtyProperties() {
+        dirtyMask = 0;
+    }
+
+    protected void markDirtyProperty(int propertyIndex) {
+        dirtyMask |= 1L << propertyIndex;
+    }
+
+    protected void markDirtyProperty(String propertyName) {
+        markDirtyProperty(PROPERTY_INDEXES.get(getClass()).indexOf(propertyName));
+    }
+
+    private static class PropertyIndex {
+
+        private final String[] propertyNames;
+
+        private final Map<String, Integer> propertyIndexMap = new HashMap<String, Integer>();
+
+        PropertyIndex(Class<?> entityClass) {
+            List<String> setterProperties = new ArrayList<String>();
+            Class<?> superClass = entityClass.getSuperclass();
+            if (superClass != null && IndexedDirtyCheckingEntity.class.isAssignableFrom(superClass)) {
+                setterProperties.addAll(Arrays.asList(PROPERTY_INDEXES.get(superClass).propertyNames));
+            }
+            try {
+                BeanInfo beanInfo = Introspector.getBeanInfo(entityClass);
+                for (PropertyDescriptor descriptor : beanInfo.getPropertyDescriptors()) {
+                    if (descriptor.getWriteMethod() != null && !setterProperties.contains(descriptor.getName())) {
+                        setterProperties.add(descriptor.getName());
+                    }
+                }
+            } catch (IntrospectionException e) {
+                throw new IllegalStateException(e);
+            }
+            if (setterProperties.size() > Long.SIZE) {
+                throw new IllegalStateException(
+                    "Entity " + entityClass.getName() + " has more than " + Long.SIZE + " setter properties");
+            }
+            propertyNames = setterProperties.toArray(new String[setterProperties.size()]);
+            for (int i = 0; i < propertyNames.length; i++) {
+                propertyIndexMap.put(propertyNames[i], i);
+            }
+        }
+
+        int indexOf(String propertyName) {
+            Integer index = propertyIndexMap.get(propertyName);
+            if (index == null) {
+                throw new IllegalArgumentException("No setter property " + propertyName);
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.flushing;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import org.hibernate.annotations.DynamicUpdate;
+import org.junit.Test;
+
+import javax.persistence.Entity;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * IndexedDirtyCheckingEntityTest - Test to check the IndexedDirtyCheckingEntity dirty tracking
+ *
+ * @author Vlad Mihalcea
+ */
+public class IndexedDirtyCheckingEntityTest extends AbstractTest {
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[] {
+            IndexedOrderLine.class,
+            PricedOrderLine.class
+        };
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.setProperty("hibernate.entity_dirtiness_strategy",
+            CustomEntityDirtinessStrategyTest.EntityDirtinessStrategy.class.getName());
+        return properties;
+    }
+
+    @Test
+    public void testDirtyProperties() {
+        IndexedOrderLine orderLine = new IndexedOrderLine();
+        assertTrue(orderLine.getDirtyProperties().isEmpty());
+        orderLine.setOrderedOn(new Date());
+        orderLine.setNumber(123L);
+        orderLine.setNumber(124L);
+        assertEquals(new LinkedHashSet<>(Arrays.asList("number", "orderedOn")), orderLine.getDirtyProperties());
+        orderLine.clearDirtyProperties();
+        assertTrue(orderLine.getDirtyProperties().isEmpty());
+    }
+
+    @Test
+    public void testDirtyChecking() {
+        Long id = doInTransaction(session -> {
+            IndexedOrderLine orderLine = new IndexedOrderLine();
+            session.persist(orderLine);
+            session.flush();
+            orderLine.setNumber(123L);
+            orderLine.setOrderedBy("Vlad");
+            session.flush();
+            assertTrue(orderLine.getDirtyProperties().isEmpty());
+            orderLine.setOrderedBy("Alex");
+            return orderLine.getId();
+        });
+        doInTransaction(session -> {
+            IndexedOrderLine orderLine = (IndexedOrderLine) session.get(IndexedOrderLine.class, id);
+            assertEquals(Long.valueOf(123L), orderLine.getNumber());
+            assertEquals("Alex", orderLine.getOrderedBy());
+        });
+    }
+
+    @Test
+    public void testSubclassDirtyProperties() {
+        PricedOrderLine orderLine = new PricedOrderLine();
+        orderLine.setNumber(123L);
+        assertEquals(Collections.singleton("number"), orderLine.getDirtyProperties());
+        orderLine.setAmount(BigDecimal.TEN);
+        assertEquals(new LinkedHashSet<>(Arrays.asList("number", "amount")), orderLine.getDirtyProperties());
+    }
+
+    @Test
+    public void testSubclassDirtyChecking() {
+        Long id = doInTransaction(session -> {
+            PricedOrderLine orderLine = new PricedOrderLine();
+            session.persist(orderLine);
+            session.flush();
+            orderLine.setNumber(123L);
+            session.flush();
+            orderLine.setAmount(BigDecimal.TEN);
+            return orderLine.getId();
+        });
+        doInTransaction(session -> {
+            PricedOrderLine orderLine = (PricedOrderLine) session.get(PricedOrderLine.class, id);
+            assertEquals(Long.valueOf(123L), orderLine.getNumber());
+            assertEquals(0, BigDecimal.TEN.compareTo(orderLine.getAmount()));
+        });
+    }
+
+    @Entity(name = "PricedOrderLine")
+    @DynamicUpdate
+    public static class PricedOrderLine extends IndexedOrderLine {
+
+        private static final int AMOUNT = propertyIndex(PricedOrderLine.class, "amount");
+
+        private BigDecimal amount;
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+
+        public void setAmount(BigDecimal amount) {
+            this.amount = amount;
+            markDirtyProperty(AMOUNT);
+        }
+    }
+}
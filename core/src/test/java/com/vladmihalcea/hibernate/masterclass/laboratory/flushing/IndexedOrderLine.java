@@ -0,0 +1,61 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.flushing;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * IndexedOrderLine - {@link OrderLine} using the {@link IndexedDirtyCheckingEntity} dirty tracking
+ *
+ * @author Vlad Mihalcea
+ */
+@Entity
+@Table(name = "INDEXED_ORDER_LINE")
+public class IndexedOrderLine extends IndexedDirtyCheckingEntity {
+
+    private static final int NUMBER = propertyIndex(IndexedOrderLine.class, "number");
+
+    private static final int ORDERED_BY = propertyIndex(IndexedOrderLine.class, "orderedBy");
+
+    private static final int ORDERED_ON = propertyIndex(IndexedOrderLine.class, "orderedOn");
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Long id;
+
+    private Long number;
+
+    private String orderedBy;
+
+    private Date orderedOn;
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getNumber() {
+        return number;
+    }
+
+    public void setNumber(Long number) {
+        this.number = number;
+        markDirtyProperty(NUMBER);
+    }
+
+    public String getOrderedBy() {
+        return orderedBy;
+    }
+
+    public void setOrderedBy(String orderedBy) {
+        this.orderedBy = orderedBy;
+        markDirtyProperty(ORDERED_BY);
+    }
+
+    public Date getOrderedOn() {
+        return orderedOn;
+    }
+
+    public void setOrderedOn(Date orderedOn) {
+        this.orderedOn = orderedOn;
+        markDirtyProperty(ORDERED_ON);
+    }
+}
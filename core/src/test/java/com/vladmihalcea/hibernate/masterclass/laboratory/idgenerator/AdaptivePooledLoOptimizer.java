@@ -0,0 +1,161 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.idgenerator;
+
+import org.hibernate.HibernateException;
+import org.hibernate.id.IdentifierGeneratorHelper;
+import org.hibernate.id.IntegralDataTypeHolder;
+import org.hibernate.id.enhanced.AccessCallback;
+import org.hibernate.id.enhanced.Optimizer;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * <code>AdaptivePooledLoOptimizer</code> - pooled-lo optimizer which adapts its allocation block size.
+ * Every sequence value reserves an increment_size range, and a block spans one or more such ranges.
+ * When a block is consumed faster than the target block time, the next block is twice as large,
+ * and when it takes more than four times the target block time, the next block is halved,
+ * always within the [min_increment_size, max_increment_size] bounds.
+ * <p>
+ * Larger blocks only save sequence round-trips if the callback is an
+ * {@link AdaptiveSequenceStyleGenerator.BlockAccessCallback}, which fetches all sequence values of a block at once.
+ *
+ * @author Vlad Mihalcea
+ */
+public class AdaptivePooledLoOptimizer implements Optimizer {
+
+    public static final int DEFAULT_TARGET_BLOCK_MILLIS = 1000;
+
+    private final Class returnClass;
+
+    private final int incrementSize;
+
+    private final LongSupplier nanoTime;
+
+    private final SequenceOptimizerStatistics statistics = new SequenceOptimizerStatistics();
+
+    private int minBlockUnits = 1;
+
+    private int maxBlockUnits = 1;
+
+    private int blockUnits = 1;
+
+    private long targetBlockNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TARGET_BLOCK_MILLIS);
+
+    private long blockStartNanos = -1;
+
+    private long[] sourceValues = new long[0];
+
+    private int sourceValueIndex;
+
+    private long value;
+
+    private long limit;
+
+    private IntegralDataTypeHolder lastSourceValue;
+
+    public AdaptivePooledLoOptimizer(Class returnClass, int incrementSize) {
+        this(returnClass, incrementSize, System::nanoTime);
+    }
+
+    AdaptivePooledLoOptimizer(Class returnClass, int incrementSize, LongSupplier nanoTime) {
+        if (returnClass == null) {
+            throw new HibernateException("return class is required");
+        }
+        if (incrementSize < 1) {
+            throw new HibernateException("increment size cannot be less than 1");
+        }
+        this.returnClass = returnClass;
+        this.incrementSize = incrementSize;
+        this.nanoTime = nanoTime;
+        statistics.setBlockSize(incrementSize);
+    }
+
+    public synchronized void configure(int minBlockSize, int maxBlockSize, long targetBlockMillis) {
+        if (minBlockSize < incrementSize || minBlockSize % incrementSize != 0 ||
+            maxBlockSize < minBlockSize || maxBlockSize % incrementSize != 0) {
+            throw new HibernateException(String.format(
+                "min [%d] and max [%d] block sizes must be ordered multiples of the increment size [%d]",
+                minBlockSize, maxBlockSize, incrementSize
+            ));
+        }
+        if (targetBlockMillis < 1) {
+            throw new HibernateException("target block time must be a positive number of milliseconds");
+        }
+        minBlockUnits = minBlockSize / incrementSize;
+        maxBlockUnits = maxBlockSize / incrementSize;
+        blockUnits = minBlockUnits;
+        targetBlockNanos = TimeUnit.MILLISECONDS.toNanos(targetBlockMillis);
+        statistics.setBlockSize(getBlockSize());
+    }
+
+    public SequenceOptimizerStatistics getStatistics() {
+        return statistics;
+    }
+
+    public synchronized int getBlockSize() {
+        return blockUnits * incrementSize;
+    }
+
+    @Override
+    public synchronized Serializable generate(AccessCallback callback) {
+        if (value >= limit) {
+            if (sourceValueIndex == sourceValues.length) {
+                fetchBlock(callback);
+            }
+            value = sourceValues[sourceValueIndex++];
+            limit = value + incrementSize;
+        }
+        statistics.identifierGenerated();
+        return makeValue(value++);
+    }
+
+    private void fetchBlock(AccessCallback callback) {
+        long now = nanoTime.getAsLong();
+        if (blockStartNanos >= 0) {
+            adaptBlockSize(now - blockStartNanos);
+        }
+        blockStartNanos = now;
+        if (blockUnits > 1 && callback instanceof AdaptiveSequenceStyleGenerator.BlockAccessCallback) {
+            sourceValues = ((AdaptiveSequenceStyleGenerator.BlockAccessCallback) callback).getNextValues(blockUnits);
+            lastSourceValue = IdentifierGeneratorHelper.getIntegralDataTypeHolder(returnClass)
+                .initialize(sourceValues[sourceValues.length - 1]);
+        } else {
+            lastSourceValue = callback.getNextValue();
+            sourceValues = new long[] {IdentifierGeneratorHelper.extractLong(lastSourceValue)};
+        }
+        sourceValueIndex = 0;
+        statistics.sequenceRoundTrip(sourceValues.length);
+    }
+
+    private void adaptBlockSize(long blockNanos) {
+        if (blockNanos < targetBlockNanos && blockUnits < maxBlockUnits) {
+            blockUnits = Math.min(maxBlockUnits, blockUnits * 2);
+            statistics.blockGrown(getBlockSize());
+        } else if (blockNanos > targetBlockNanos * 4 && blockUnits > minBlockUnits) {
+            blockUnits = Math.max(minBlockUnits, blockUnits / 2);
+            statistics.blockShrunk(getBlockSize());
+        }
+    }
+
+    private Serializable makeValue(long value) {
+        return (Serializable) IdentifierGeneratorHelper.getIntegralDataTypeHolder(returnClass)
+            .initialize(value)
+            .makeValue();
+    }
+
+    @Override
+    public synchronized IntegralDataTypeHolder getLastSourceValue() {
+        return lastSourceValue;
+    }
+
+    @Override
+    public int getIncrementSize() {
+        return incrementSize;
+    }
+
+    @Override
+    public boolean applyIncrementSizeToSourceValues() {
+        return true;
+    }
+}
@@ -0,0 +1,130 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.idgenerator;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.id.IdentifierGeneratorHelper;
+import org.hibernate.id.IntegralDataTypeHolder;
+import org.junit.Test;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveSequenceIdentifierTest extends AbstractPooledSequenceIdentifierTest {
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[] {
+                AdaptiveSequenceIdentifier.class
+        };
+    }
+
+    @Override
+    protected Object newEntityInstance() {
+        return new AdaptiveSequenceIdentifier();
+    }
+
+    @Test
+    public void testAdaptiveOptimizerSuccess() {
+        insertSequences();
+    }
+
+    @Test
+    public void testBulkLoadSavesSequenceCalls() {
+        int entityCount = 500;
+        doInTransaction(session -> {
+            for (int i = 0; i < entityCount; i++) {
+                session.persist(new AdaptiveSequenceIdentifier());
+            }
+        });
+        SequenceOptimizerStatistics statistics = getStatistics();
+        LOGGER.info("Bulk load {}", statistics);
+        assertEquals(entityCount, statistics.getIdentifierCount());
+        assertEquals(80, statistics.getBlockSize());
+        //5 + 10 + 20 + 40 + 80 and another 5 blocks of 80 identifiers
+        assertEquals(10, statistics.getSequenceRoundTripCount());
+        assertEquals(111, statistics.getSequenceValueCount());
+        assertEquals(101, statistics.getSequenceCallsSaved());
+        doInTransaction(session -> {
+            assertEquals(entityCount, ((Number) session.createSQLQuery("SELECT COUNT(DISTINCT id) FROM sequenceIdentifier").uniqueResult()).intValue());
+        });
+    }
+
+    @Test
+    public void testBlockSizeShrinksOnQuietTable() {
+        AtomicLong nanoTime = new AtomicLong();
+        AtomicLong sequence = new AtomicLong(1);
+        AtomicLong roundTrips = new AtomicLong();
+        AdaptivePooledLoOptimizer optimizer = new AdaptivePooledLoOptimizer(Long.class, 10, nanoTime::get);
+        optimizer.configure(10, 40, 100);
+        AdaptiveSequenceStyleGenerator.BlockAccessCallback callback = new AdaptiveSequenceStyleGenerator.BlockAccessCallback() {
+            @Override
+            public long[] getNextValues(int count) {
+                roundTrips.incrementAndGet();
+                long[] values = new long[count];
+                for (int i = 0; i < count; i++) {
+                    values[i] = sequence.getAndAdd(10);
+                }
+                return values;
+            }
+
+            @Override
+            public IntegralDataTypeHolder getNextValue() {
+                roundTrips.incrementAndGet();
+                return IdentifierGeneratorHelper.getIntegralDataTypeHolder(Long.class).initialize(sequence.getAndAdd(10));
+            }
+
+            @Override
+            public String getTenantIdentifier() {
+                return null;
+            }
+        };
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < 70; i++) {
+            ids.add((Long) optimizer.generate(callback));
+        }
+        assertEquals(40, optimizer.getBlockSize());
+        assertEquals(3, roundTrips.get());
+
+        for (int i = 0; i < 80; i++) {
+            nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(30));
+            ids.add((Long) optimizer.generate(callback));
+        }
+        assertEquals(10, optimizer.getBlockSize());
+        assertEquals(2, optimizer.getStatistics().getBlockShrinkCount());
+        assertEquals(150, ids.size());
+        assertTrue(ids.contains(1L) && ids.contains(150L));
+    }
+
+    private SequenceOptimizerStatistics getStatistics() {
+        AdaptiveSequenceStyleGenerator generator = (AdaptiveSequenceStyleGenerator)
+            ((SessionFactoryImplementor) getSessionFactory()).getIdentifierGenerator(AdaptiveSequenceIdentifier.class.getName());
+        return generator.getStatistics();
+    }
+
+    @Entity(name = "sequenceIdentifier")
+    public static class AdaptiveSequenceIdentifier {
+
+        @Id
+        @GenericGenerator(name = "sequenceGenerator",
+                strategy = "com.vladmihalcea.hibernate.masterclass.laboratory.idgenerator.AdaptiveSequenceStyleGenerator",
+                parameters = {
+                        @org.hibernate.annotations.Parameter(name = "initial_value", value = "1"),
+                        @org.hibernate.annotations.Parameter(name = "increment_size", value = "5"),
+                        @org.hibernate.annotations.Parameter(name = "min_increment_size", value = "5"),
+                        @org.hibernate.annotations.Parameter(name = "max_increment_size", value = "80"),
+                        @org.hibernate.annotations.Parameter(name = "target_block_millis", value = "60000")
+                }
+        )
+        @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
+        private Long id;
+    }
+}
@@ -0,0 +1,204 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.idgenerator;
+
+import org.hibernate.MappingException;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.HSQLDialect;
+import org.hibernate.dialect.Oracle8iDialect;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.jdbc.spi.JdbcCoordinator;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IntegralDataTypeHolder;
+import org.hibernate.id.enhanced.AccessCallback;
+import org.hibernate.id.enhanced.DatabaseStructure;
+import org.hibernate.id.enhanced.Optimizer;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.type.Type;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * AdaptiveSequenceStyleGenerator - SequenceStyleGenerator using the {@link AdaptivePooledLoOptimizer} by default.
+ * The increment_size is the database sequence increment, while the min_increment_size and max_increment_size
+ * parameters bound the adaptive allocation block size. On HSQLDB, PostgreSQL and Oracle, all sequence values
+ * of a block are fetched with a single statement.
+ *
+ * @author Vlad Mihalcea
+ */
+public class AdaptiveSequenceStyleGenerator extends SequenceStyleGenerator {
+
+    public static final String MIN_INCREMENT_PARAM = "min_increment_size";
+
+    public static final String MAX_INCREMENT_PARAM = "max_increment_size";
+
+    public static final String TARGET_BLOCK_MILLIS_PARAM = "target_block_millis";
+
+    /**
+     * AccessCallback which can fetch several sequence values within a single database round-trip.
+     */
+    public interface BlockAccessCallback extends AccessCallback {
+
+        long[] getNextValues(int count);
+    }
+
+    @Override
+    public void configure(Type type, Properties params, Dialect dialect) throws MappingException {
+        super.configure(type, params, dialect);
+        Optimizer optimizer = getOptimizer();
+        if (optimizer instanceof AdaptivePooledLoOptimizer) {
+            int incrementSize = optimizer.getIncrementSize();
+            ((AdaptivePooledLoOptimizer) optimizer).configure(
+                ConfigurationHelper.getInt(MIN_INCREMENT_PARAM, params, incrementSize),
+                ConfigurationHelper.getInt(MAX_INCREMENT_PARAM, params, incrementSize),
+                ConfigurationHelper.getLong(TARGET_BLOCK_MILLIS_PARAM, params,
+                    AdaptivePooledLoOptimizer.DEFAULT_TARGET_BLOCK_MILLIS)
+            );
+        }
+    }
+
+    @Override
+    protected String determineOptimizationStrategy(Properties params, int incrementSize) {
+        return ConfigurationHelper.getString(OPT_PARAM, params, AdaptivePooledLoOptimizer.class.getName());
+    }
+
+    @Override
+    protected DatabaseStructure buildDatabaseStructure(Type type, Properties params, Dialect dialect,
+            boolean forceTableUse, String sequenceName, int initialValue, int incrementSize) {
+        DatabaseStructure databaseStructure = super.buildDatabaseStructure(
+            type, params, dialect, forceTableUse, sequenceName, initialValue, incrementSize);
+        if (databaseStructure.isPhysicalSequence()) {
+            String sql = blockSelectString(dialect, databaseStructure.getName());
+            if (sql != null) {
+                return new BlockSequenceStructure(databaseStructure, sql);
+            }
+        }
+        return databaseStructure;
+    }
+
+    public SequenceOptimizerStatistics getStatistics() {
+        Optimizer optimizer = getOptimizer();
+        return optimizer instanceof AdaptivePooledLoOptimizer ?
+            ((AdaptivePooledLoOptimizer) optimizer).getStatistics() : null;
+    }
+
+    protected String blockSelectString(Dialect dialect, String sequenceName) {
+        if (dialect instanceof HSQLDialect) {
+            return "select next value for " + sequenceName + " from unnest(sequence_array(1, ?, 1))";
+        } else if (dialect instanceof PostgreSQL81Dialect) {
+            return "select nextval ('" + sequenceName + "') from generate_series(1, ?)";
+        } else if (dialect instanceof Oracle8iDialect) {
+            return "select " + sequenceName + ".nextval from dual connect by level <= ?";
+        }
+        return null;
+    }
+
+    /**
+     * Sequence structure which delegates to the standard one, but it can also fetch a block of values.
+     */
+    private static class BlockSequenceStructure implements DatabaseStructure {
+
+        private final DatabaseStructure delegate;
+
+        private final String sql;
+
+        BlockSequenceStructure(DatabaseStructure delegate, String sql) {
+            this.delegate = delegate;
+            this.sql = sql;
+        }
+
+        @Override
+        public String getName() {
+            return delegate.getName();
+        }
+
+        @Override
+        public int getTimesAccessed() {
+            return delegate.getTimesAccessed();
+        }
+
+        @Override
+        public int getInitialValue() {
+            return delegate.getInitialValue();
+        }
+
+        @Override
+        public int getIncrementSize() {
+            return delegate.getIncrementSize();
+        }
+
+        @Override
+        public AccessCallback buildCallback(final SessionImplementor session) {
+            final AccessCallback callback = delegate.buildCallback(session);
+            return new BlockAccessCallback() {
+                @Override
+                public IntegralDataTypeHolder getNextValue() {
+                    return callback.getNextValue();
+                }
+
+                @Override
+                public long[] getNextValues(int count) {
+                    return nextValues(session, count);
+                }
+
+                @Override
+                public String getTenantIdentifier() {
+                    return callback.getTenantIdentifier();
+                }
+            };
+        }
+
+        private long[] nextValues(SessionImplementor session, int count) {
+            JdbcCoordinator jdbcCoordinator = session.getTransactionCoordinator().getJdbcCoordinator();
+            try {
+                PreparedStatement statement = jdbcCoordinator.getStatementPreparer().prepareStatement(sql);
+                try {
+                    statement.setInt(1, count);
+                    ResultSet resultSet = jdbcCoordinator.getResultSetReturn().extract(statement);
+                    try {
+                        long[] values = new long[count];
+                        int index = 0;
+                        while (resultSet.next() && index < count) {
+                            values[index++] = resultSet.getLong(1);
+                        }
+                        if (index < count) {
+                            throw new SQLException(String.format(
+                                "Expected %d sequence values, but got %d", count, index));
+                        }
+                        Arrays.sort(values);
+                        return values;
+                    } finally {
+                        jdbcCoordinator.release(resultSet, statement);
+                    }
+                } finally {
+                    jdbcCoordinator.release(statement);
+                }
+            } catch (SQLException e) {
+                throw session.getFactory().getSQLExceptionHelper().convert(e, "could not get next sequence values", sql);
+            }
+        }
+
+        @Override
+        public void prepare(Optimizer optimizer) {
+            delegate.prepare(optimizer);
+        }
+
+        @Override
+        public String[] sqlCreateStrings(Dialect dialect) {
+            return delegate.sqlCreateStrings(dialect);
+        }
+
+        @Override
+        public String[] sqlDropStrings(Dialect dialect) {
+            return delegate.sqlDropStrings(dialect);
+        }
+
+        @Override
+        public boolean isPhysicalSequence() {
+            return delegate.isPhysicalSequence();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.idgenerator;
+
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.jdbc.spi.JdbcConnectionAccess;
+import org.hibernate.engine.jdbc.spi.JdbcServices;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGeneratorHelper;
+import org.hibernate.id.enhanced.TableGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * BatchedTableGenerator - TableGenerator which reserves large identifier blocks with a single row update,
+ * in a separate transaction running on a dedicated connection, which the Session JdbcConnectionAccess takes from
+ * the ConnectionProvider pool, or from the MultiTenantConnectionProvider for the Session tenant identifier.
+ * The identifiers of the current block are handed out with an AtomicLong, so only the thread
+ * exhausting a block needs to lock the generator.
+ * <p>
+ * The table row holds the next value to hand out, just like with the pooled-lo optimizer,
+ * and Identifiable entities with an assigned identifier keep it, just like with the {@link AssignedTableGenerator}.
+ *
+ * @author Vlad Mihalcea
+ */
+public class BatchedTableGenerator extends TableGenerator {
+
+    public static final String BLOCK_SIZE_PARAM = "block_size";
+
+    public static final int DEFAULT_BLOCK_SIZE = 1000;
+
+    private static final int MAX_RESERVE_ATTEMPTS = 3;
+
+    private int blockSize;
+
+    private Class returnClass;
+
+    private String reserveUpdateQuery;
+
+    private String reserveSelectQuery;
+
+    private String reserveInsertQuery;
+
+    private volatile Block block = Block.EXHAUSTED;
+
+    private final AtomicLong reservationCount = new AtomicLong();
+
+    @Override
+    public void configure(Type type, Properties params, Dialect dialect) throws MappingException {
+        super.configure(type, params, dialect);
+        blockSize = ConfigurationHelper.getInt(BLOCK_SIZE_PARAM, params, DEFAULT_BLOCK_SIZE);
+        if (blockSize < 1) {
+            throw new MappingException("block_size must be a positive number");
+        }
+        returnClass = type.getReturnedClass();
+        reserveUpdateQuery = "update " + getTableName() +
+            " set " + getValueColumnName() + " = " + getValueColumnName() + " + ?" +
+            " where " + getSegmentColumnName() + " = ?";
+        reserveSelectQuery = "select " + getValueColumnName() +
+            " from " + getTableName() +
+            " where " + getSegmentColumnName() + " = ?";
+        reserveInsertQuery = "insert into " + getTableName() +
+            " (" + getSegmentColumnName() + ", " + getValueColumnName() + ") values (?, ?)";
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public long getReservationCount() {
+        return reservationCount.get();
+    }
+
+    @Override
+    public Serializable generate(SessionImplementor session, Object obj) {
+        if (obj instanceof Identifiable) {
+            Identifiable identifiable = (Identifiable) obj;
+            Serializable id = identifiable.getId();
+            if (id != null) {
+                return id;
+            }
+        }
+        for (;;) {
+            Block currentBlock = block;
+            long value = currentBlock.next.getAndIncrement();
+            if (value < currentBlock.limit) {
+                return makeValue(value);
+            }
+            reserve(session, currentBlock);
+        }
+    }
+
+    private synchronized void reserve(SessionImplementor session, Block exhaustedBlock) {
+        if (block != exhaustedBlock) {
+            return;
+        }
+        JdbcConnectionAccess connectionAccess = session.getTransactionCoordinator().getTransactionContext()
+            .getJdbcConnectionAccess();
+        Connection connection = null;
+        try {
+            connection = connectionAccess.obtainConnection();
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                block = reserveBlock(connection);
+                reservationCount.incrementAndGet();
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw session.getFactory().getServiceRegistry().getService(JdbcServices.class)
+                .getSqlExceptionHelper().convert(e, "could not reserve identifier block", reserveUpdateQuery);
+        } finally {
+            if (connection != null) {
+                try {
+                    connectionAccess.releaseConnection(connection);
+                } catch (SQLException ignore) {
+                }
+            }
+        }
+    }
+
+    private Block reserveBlock(Connection connection) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Block reservedBlock = updateBlock(connection);
+                if (reservedBlock == null) {
+                    reservedBlock = insertBlock(connection);
+                }
+                connection.commit();
+                return reservedBlock;
+            } catch (SQLException e) {
+                connection.rollback();
+                //another node might have inserted the segment row concurrently
+                if (attempt == MAX_RESERVE_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private Block updateBlock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(reserveUpdateQuery)) {
+            statement.setLong(1, blockSize);
+            statement.setString(2, getSegmentValue());
+            if (statement.executeUpdate() == 0) {
+                return null;
+            }
+        }
+        try (PreparedStatement statement = connection.prepareStatement(reserveSelectQuery)) {
+            statement.setString(1, getSegmentValue());
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next()) {
+                    throw new HibernateException("Could not read the " + getSegmentValue() + " segment value");
+                }
+                long limit = resultSet.getLong(1);
+                return new Block(limit - blockSize, limit);
+            }
+        }
+    }
+
+    private Block insertBlock(Connection connection) throws SQLException {
+        long limit = getInitialValue() + blockSize;
+        try (PreparedStatement statement = connection.prepareStatement(reserveInsertQuery)) {
+            statement.setString(1, getSegmentValue());
+            statement.setLong(2, limit);
+            statement.executeUpdate();
+        }
+        return new Block(getInitialValue(), limit);
+    }
+
+    private Serializable makeValue(long value) {
+        if (returnClass == Long.class) {
+            return value;
+        } else if (returnClass == Integer.class) {
+            return (int) value;
+        }
+        return (Serializable) IdentifierGeneratorHelper.getIntegralDataTypeHolder(returnClass)
+            .initialize(value)
+            .makeValue();
+    }
+
+    private static final class Block {
+
+        private static final Block EXHAUSTED = new Block(0, 0);
+
+        private final AtomicLong next;
+
+        private final long limit;
+
+        Block(long next, long limit) {
+            this.next = new AtomicLong(next);
+            this.limit = limit;
+        }
+    }
+}
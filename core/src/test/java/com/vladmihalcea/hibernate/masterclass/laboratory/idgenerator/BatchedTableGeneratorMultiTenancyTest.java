@@ -0,0 +1,118 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.idgenerator;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.idgenerator.BatchedTableGeneratorTest.BatchedTableIdentifier;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import org.hibernate.MultiTenancyStrategy;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.jdbc.connections.spi.AbstractDataSourceBasedMultiTenantConnectionProviderImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * BatchedTableGeneratorMultiTenancyTest - Test to check the BatchedTableGenerator reserves its identifier blocks
+ * through the MultiTenantConnectionProvider, since there's no ConnectionProvider when multi-tenancy is enabled
+ *
+ * @author Vlad Mihalcea
+ */
+public class BatchedTableGeneratorMultiTenancyTest extends AbstractTest {
+
+    private static final String TENANT_IDENTIFIER = "tenant";
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[] {
+                BatchedTableIdentifier.class
+        };
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        DataSource dataSource = (DataSource) properties.remove("hibernate.connection.datasource");
+        //the schema is created by hand, since hbm2ddl needs a ConnectionProvider
+        properties.remove("hibernate.hbm2ddl.auto");
+        properties.put(AvailableSettings.MULTI_TENANT, MultiTenancyStrategy.DATABASE.name());
+        properties.put(AvailableSettings.MULTI_TENANT_CONNECTION_PROVIDER,
+            new AbstractDataSourceBasedMultiTenantConnectionProviderImpl() {
+                @Override
+                protected DataSource selectAnyDataSource() {
+                    return dataSource;
+                }
+
+                @Override
+                protected DataSource selectDataSource(String tenantIdentifier) {
+                    return dataSource;
+                }
+            });
+        return properties;
+    }
+
+    @Before
+    public void init() {
+        super.init();
+        executeStatements(
+            "create table batched_sequence_table (sequence_name varchar(255) not null, next_val bigint, " +
+                "primary key (sequence_name))",
+            "create table batchedTableIdentifier (id bigint not null, primary key (id))"
+        );
+    }
+
+    @After
+    public void destroy() {
+        executeStatements(
+            "drop table batchedTableIdentifier",
+            "drop table batched_sequence_table"
+        );
+        super.destroy();
+    }
+
+    @Test
+    public void testBlockReservation() {
+        doInTenantTransaction(session -> {
+            for (int i = 0; i < 150; i++) {
+                session.persist(new BatchedTableIdentifier());
+            }
+        });
+        doInTenantTransaction(session -> {
+            assertEquals(150, ((Number) session.createSQLQuery("SELECT COUNT(DISTINCT id) FROM batchedTableIdentifier").uniqueResult()).intValue());
+            assertEquals(1 + 200, ((Number) session.createSQLQuery("SELECT next_val FROM batched_sequence_table").uniqueResult()).longValue());
+        });
+    }
+
+    private void executeStatements(String... sqls) {
+        doInTenantTransaction(session -> session.doWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : sqls) {
+                    statement.executeUpdate(sql);
+                }
+            }
+        }));
+    }
+
+    private void doInTenantTransaction(Consumer<Session> callable) {
+        Session session = getSessionFactory().withOptions().tenantIdentifier(TENANT_IDENTIFIER).openSession();
+        Transaction txn = null;
+        try {
+            txn = session.beginTransaction();
+            callable.accept(session);
+            txn.commit();
+        } catch (RuntimeException e) {
+            if (txn != null && txn.isActive()) {
+                txn.rollback();
+            }
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+}
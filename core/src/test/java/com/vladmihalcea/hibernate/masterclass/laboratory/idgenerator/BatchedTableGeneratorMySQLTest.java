@@ -0,0 +1,77 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.idgenerator;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.junit.Test;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractMySQLIntegrationTest;
+
+import static org.junit.Assert.assertEquals;
+
+public class BatchedTableGeneratorMySQLTest extends AbstractMySQLIntegrationTest {
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[] {
+                Post.class,
+        };
+    }
+
+    @Override
+    protected boolean nativeHibernateSessionFactoryBootstrap() {
+        return false;
+    }
+
+    @Test
+    public void test() {
+        doInJPA(entityManager -> {
+            for ( int i = 1; i <= 3; i++ ) {
+                entityManager.persist(
+                    new Post(
+                        String.format(
+                            "High-Performance Java Persistence, Part %d", i
+                        )
+                    )
+                );
+            }
+            Post post = new Post("High-Performance Java Persistence, Appendix");
+            post.id = -1L;
+            entityManager.merge(post);
+        });
+        doInJPA(entityManager -> {
+            assertEquals(4L, entityManager.createQuery("select count(p) from Post p").getSingleResult());
+        });
+    }
+
+    @Entity(name = "Post")
+    @Table(name = "post")
+    public static class Post implements Identifiable<Long> {
+
+        @Id
+        @GenericGenerator(name = "table", strategy = "com.vladmihalcea.hibernate.masterclass.laboratory.idgenerator.BatchedTableGenerator",
+            parameters = {
+                @org.hibernate.annotations.Parameter(name = "table_name", value = "batched_sequence_table"),
+                @org.hibernate.annotations.Parameter(name = "block_size", value = "1000")
+        })
+        @GeneratedValue(generator = "table", strategy = GenerationType.TABLE)
+        private Long id;
+
+        private String title;
+
+        public Post() {}
+
+        public Post(String title) {
+            this.title = title;
+        }
+
+        @Override
+        public Long getId() {
+            return id;
+        }
+    }
+}
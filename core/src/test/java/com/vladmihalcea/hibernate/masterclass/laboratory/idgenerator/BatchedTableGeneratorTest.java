@@ -0,0 +1,117 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.idgenerator;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.Test;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class BatchedTableGeneratorTest extends AbstractTest {
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[] {
+                BatchedTableIdentifier.class
+        };
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.jdbc.batch_size", "50");
+        return properties;
+    }
+
+    @Test
+    public void testAssignedIdentifier() {
+        doInTransaction(session -> {
+            for (int i = 0; i < 5; i++) {
+                session.persist(new BatchedTableIdentifier());
+            }
+            BatchedTableIdentifier batchedTableIdentifier = new BatchedTableIdentifier();
+            batchedTableIdentifier.id = -1L;
+            session.merge(batchedTableIdentifier);
+            session.flush();
+            assertEquals(-1L, ((Number) session.createSQLQuery("SELECT MIN(id) FROM batchedTableIdentifier").uniqueResult()).longValue());
+        });
+        assertEquals(1, getGenerator().getReservationCount());
+    }
+
+    @Test
+    public void testBlockReservation() {
+        doInTransaction(session -> {
+            for (int i = 0; i < 250; i++) {
+                session.persist(new BatchedTableIdentifier());
+            }
+        });
+        doInTransaction(session -> {
+            assertEquals(250, ((Number) session.createSQLQuery("SELECT COUNT(DISTINCT id) FROM batchedTableIdentifier").uniqueResult()).intValue());
+            assertEquals(1 + 300, ((Number) session.createSQLQuery("SELECT next_val FROM batched_sequence_table").uniqueResult()).longValue());
+        });
+        assertEquals(3, getGenerator().getReservationCount());
+    }
+
+    @Test
+    public void testConcurrentBlockReservation() throws InterruptedException, ExecutionException {
+        int threadCount = 8;
+        int insertCount = 50;
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                futures.add(executorService.submit(() -> {
+                    doInTransaction(session -> {
+                        for (int j = 0; j < insertCount; j++) {
+                            BatchedTableIdentifier entity = new BatchedTableIdentifier();
+                            session.persist(entity);
+                            ids.add(entity.id);
+                        }
+                    });
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        assertEquals(threadCount * insertCount, ids.size());
+        assertEquals(4, getGenerator().getReservationCount());
+    }
+
+    private BatchedTableGenerator getGenerator() {
+        return (BatchedTableGenerator) ((SessionFactoryImplementor) getSessionFactory())
+            .getIdentifierGenerator(BatchedTableIdentifier.class.getName());
+    }
+
+    @Entity(name = "batchedTableIdentifier")
+    public static class BatchedTableIdentifier implements Identifiable<Long> {
+
+        @Id
+        @GenericGenerator(name = "table", strategy = "com.vladmihalcea.hibernate.masterclass.laboratory.idgenerator.BatchedTableGenerator",
+            parameters = {
+                @org.hibernate.annotations.Parameter(name = "table_name", value = "batched_sequence_table"),
+                @org.hibernate.annotations.Parameter(name = "initial_value", value = "1"),
+                @org.hibernate.annotations.Parameter(name = "block_size", value = "100")
+        })
+        @GeneratedValue(generator = "table", strategy = GenerationType.TABLE)
+        private Long id;
+
+        @Override
+        public Long getId() {
+            return id;
+        }
+    }
+}
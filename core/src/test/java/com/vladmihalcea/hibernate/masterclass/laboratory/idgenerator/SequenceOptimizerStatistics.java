@@ -0,0 +1,98 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.idgenerator;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <code>SequenceOptimizerStatistics</code> - Sequence access counters, in the spirit of the Hibernate Statistics.
+ * A pooled-lo optimizer using the smallest block size would call the sequence once for every fetched
+ * sequence value, so the difference between the fetched values and the actual round-trips is the number
+ * of sequence calls saved.
+ *
+ * @author Vlad Mihalcea
+ */
+public class SequenceOptimizerStatistics {
+
+    private final AtomicLong sequenceRoundTripCount = new AtomicLong();
+
+    private final AtomicLong sequenceValueCount = new AtomicLong();
+
+    private final AtomicLong identifierCount = new AtomicLong();
+
+    private final AtomicLong blockGrowCount = new AtomicLong();
+
+    private final AtomicLong blockShrinkCount = new AtomicLong();
+
+    private volatile int blockSize;
+
+    void sequenceRoundTrip(int fetchedValueCount) {
+        sequenceRoundTripCount.incrementAndGet();
+        sequenceValueCount.addAndGet(fetchedValueCount);
+    }
+
+    void identifierGenerated() {
+        identifierCount.incrementAndGet();
+    }
+
+    void blockGrown(int blockSize) {
+        blockGrowCount.incrementAndGet();
+        this.blockSize = blockSize;
+    }
+
+    void blockShrunk(int blockSize) {
+        blockShrinkCount.incrementAndGet();
+        this.blockSize = blockSize;
+    }
+
+    void setBlockSize(int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    public long getSequenceRoundTripCount() {
+        return sequenceRoundTripCount.get();
+    }
+
+    public long getSequenceValueCount() {
+        return sequenceValueCount.get();
+    }
+
+    public long getSequenceCallsSaved() {
+        return getSequenceValueCount() - getSequenceRoundTripCount();
+    }
+
+    public long getIdentifierCount() {
+        return identifierCount.get();
+    }
+
+    public long getBlockGrowCount() {
+        return blockGrowCount.get();
+    }
+
+    public long getBlockShrinkCount() {
+        return blockShrinkCount.get();
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public void clear() {
+        sequenceRoundTripCount.set(0);
+        sequenceValueCount.set(0);
+        identifierCount.set(0);
+        blockGrowCount.set(0);
+        blockShrinkCount.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "SequenceOptimizerStatistics[" +
+            "sequenceRoundTrips=" + getSequenceRoundTripCount() +
+            ",sequenceValues=" + getSequenceValueCount() +
+            ",sequenceCallsSaved=" + getSequenceCallsSaved() +
+            ",identifiers=" + getIdentifierCount() +
+            ",blockGrows=" + getBlockGrowCount() +
+            ",blockShrinks=" + getBlockShrinkCount() +
+            ",blockSize=" + getBlockSize() +
+            ']';
+    }
+}
@@ -0,0 +1,156 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.idgenerator;
+
+import org.hibernate.HibernateException;
+import org.hibernate.id.IdentifierGeneratorHelper;
+import org.hibernate.id.IntegralDataTypeHolder;
+import org.hibernate.id.enhanced.AccessCallback;
+import org.hibernate.id.enhanced.Optimizer;
+
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <code>StripedPooledLoOptimizer</code> - pooled-lo optimizer which doesn't serialize all threads
+ * on a single monitor. Every stripe owns its own [hi, hi + increment_size) range, and threads are mapped
+ * to stripes by their id, so the fast path is just an atomic increment on the stripe range.
+ * Only the thread exhausting a range locks its stripe and calls the sequence for a new hi value.
+ * <p>
+ * The identifiers are unique, but they are no longer handed out in sequence order across threads,
+ * and shutting down may leave up to one unused range per stripe.
+ * <p>
+ * It can be used as the enhanced-sequence or enhanced-table <code>optimizer</code> parameter value.
+ *
+ * @author Vlad Mihalcea
+ */
+public class StripedPooledLoOptimizer implements Optimizer {
+
+    public static final int MAX_STRIPE_COUNT = 64;
+
+    private final Class returnClass;
+
+    private final int incrementSize;
+
+    private final int stripeMask;
+
+    private final Stripe[] noTenantStripes;
+
+    private final ConcurrentMap<String, Stripe[]> tenantSpecificStripes = new ConcurrentHashMap<>();
+
+    private volatile IntegralDataTypeHolder lastSourceValue;
+
+    public StripedPooledLoOptimizer(Class returnClass, int incrementSize) {
+        this(returnClass, incrementSize, defaultStripeCount());
+    }
+
+    public StripedPooledLoOptimizer(Class returnClass, int incrementSize, int stripeCount) {
+        if (returnClass == null) {
+            throw new HibernateException("return class is required");
+        }
+        if (incrementSize < 1) {
+            throw new HibernateException("increment size cannot be less than 1");
+        }
+        if (stripeCount < 1 || Integer.bitCount(stripeCount) != 1) {
+            throw new HibernateException("stripe count must be a power of two");
+        }
+        this.returnClass = returnClass;
+        this.incrementSize = incrementSize;
+        this.stripeMask = stripeCount - 1;
+        this.noTenantStripes = newStripes(stripeCount);
+    }
+
+    private static int defaultStripeCount() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        return Math.min(MAX_STRIPE_COUNT, Integer.highestOneBit(processors * 4 - 1));
+    }
+
+    private static Stripe[] newStripes(int stripeCount) {
+        Stripe[] stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+        return stripes;
+    }
+
+    public int getStripeCount() {
+        return noTenantStripes.length;
+    }
+
+    @Override
+    public Serializable generate(AccessCallback callback) {
+        Stripe stripe = locateStripe(callback.getTenantIdentifier());
+        for (;;) {
+            Range range = stripe.range;
+            long value = range.next.getAndIncrement();
+            if (value < range.limit) {
+                return makeValue(value);
+            }
+            stripe.refill(range, callback, this);
+        }
+    }
+
+    private Stripe locateStripe(String tenantIdentifier) {
+        Stripe[] stripes = tenantIdentifier == null ?
+            noTenantStripes :
+            tenantSpecificStripes.computeIfAbsent(tenantIdentifier, tenant -> newStripes(noTenantStripes.length));
+        return stripes[(int) Thread.currentThread().getId() & stripeMask];
+    }
+
+    private Serializable makeValue(long value) {
+        if (returnClass == Long.class) {
+            return value;
+        } else if (returnClass == Integer.class) {
+            return (int) value;
+        } else if (returnClass == Short.class) {
+            return (short) value;
+        }
+        return (Serializable) IdentifierGeneratorHelper.getIntegralDataTypeHolder(returnClass)
+            .initialize(value)
+            .makeValue();
+    }
+
+    @Override
+    public IntegralDataTypeHolder getLastSourceValue() {
+        return lastSourceValue;
+    }
+
+    @Override
+    public int getIncrementSize() {
+        return incrementSize;
+    }
+
+    @Override
+    public boolean applyIncrementSizeToSourceValues() {
+        return true;
+    }
+
+    private static final class Range {
+
+        private static final Range EXHAUSTED = new Range(0, 0);
+
+        private final AtomicLong next;
+
+        private final long limit;
+
+        Range(long lo, long limit) {
+            this.next = new AtomicLong(lo);
+            this.limit = limit;
+        }
+    }
+
+    private static final class Stripe {
+
+        private volatile Range range = Range.EXHAUSTED;
+
+        synchronized void refill(Range exhaustedRange, AccessCallback callback, StripedPooledLoOptimizer optimizer) {
+            if (range != exhaustedRange) {
+                return;
+            }
+            IntegralDataTypeHolder sourceValue = callback.getNextValue();
+            optimizer.lastSourceValue = sourceValue.copy();
+            long hi = IdentifierGeneratorHelper.extractLong(sourceValue);
+            range = new Range(hi, hi + optimizer.incrementSize);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.idgenerator;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.junit.Test;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class StripedPooledLoSequenceIdentifierTest extends AbstractPooledSequenceIdentifierTest {
+
+    private final int threadCount = 8;
+
+    private final int insertCount = 100;
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[] {
+                StripedPooledLoSequenceIdentifier.class
+        };
+    }
+
+    @Override
+    protected Object newEntityInstance() {
+        return new StripedPooledLoSequenceIdentifier();
+    }
+
+    @Test
+    public void testStripedPooledLoOptimizerSuccess() {
+        insertSequences();
+    }
+
+    @Test
+    public void testConcurrentInserts() throws InterruptedException, ExecutionException {
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                futures.add(executorService.submit(() -> {
+                    for (int j = 0; j < insertCount; j++) {
+                        doInTransaction(session -> {
+                            StripedPooledLoSequenceIdentifier entity = new StripedPooledLoSequenceIdentifier();
+                            session.persist(entity);
+                            ids.add(entity.id);
+                        });
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        assertEquals(threadCount * insertCount, ids.size());
+        doInTransaction(session -> {
+            assertEquals(threadCount * insertCount, ((Number) session.createSQLQuery("SELECT COUNT(*) FROM sequenceIdentifier").uniqueResult()).intValue());
+        });
+    }
+
+    @Entity(name = "sequenceIdentifier")
+    public static class StripedPooledLoSequenceIdentifier {
+
+        @Id
+        @GenericGenerator(name = "sequenceGenerator", strategy = "enhanced-sequence",
+                parameters = {
+                        @org.hibernate.annotations.Parameter(name = "optimizer",
+                                value = "com.vladmihalcea.hibernate.masterclass.laboratory.idgenerator.StripedPooledLoOptimizer"
+                        ),
+                        @org.hibernate.annotations.Parameter(name = "initial_value", value = "1"),
+                        @org.hibernate.annotations.Parameter(name = "increment_size", value = "5")
+                }
+        )
+        @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
+        private Long id;
+    }
+}
@@ -0,0 +1,90 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.idgenerator;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerator;
+
+import java.io.Serializable;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * TimeOrderedUUIDGenerator - UUID version 7 identifier generator. The most significant 48 bits hold the
+ * Unix epoch milliseconds, so the values increase over time, and inserts end up on the right-most index pages
+ * instead of random ones, as it happens with the uuid and uuid2 strategies.
+ * <p>
+ * A 26 bit counter, spread over rand_a and the top of rand_b, keeps the values monotonic within the same
+ * millisecond for every thread, and it's reseeded randomly on every new millisecond.
+ * The remaining 48 bits are random, which keeps the values unique across threads and nodes without any locking.
+ * Map the identifier as a java.util.UUID with a BINARY(16) column, so the byte order matches the time order.
+ *
+ * @author Vlad Mihalcea
+ */
+public class TimeOrderedUUIDGenerator implements IdentifierGenerator {
+
+    private static final int COUNTER_BITS = 26;
+
+    private static final int COUNTER_LOW_BITS = 14;
+
+    static final long COUNTER_MAX = (1L << COUNTER_BITS) - 1;
+
+    private static final long COUNTER_LOW_MASK = (1L << COUNTER_LOW_BITS) - 1;
+
+    private static final long RANDOM_MASK = (1L << 48) - 1;
+
+    private static final ThreadLocal<State> STATE = ThreadLocal.withInitial(State::new);
+
+    @Override
+    public Serializable generate(SessionImplementor session, Object object) {
+        return generateUUID();
+    }
+
+    public static UUID generateUUID() {
+        return STATE.get().next(System.currentTimeMillis());
+    }
+
+    public static long timestamp(UUID uuid) {
+        return uuid.getMostSignificantBits() >>> 16;
+    }
+
+    static final class State {
+
+        private long lastMillis;
+
+        private long counter;
+
+        State() {
+            this(-1, 0);
+        }
+
+        /**
+         * @param lastMillis the millis of the last generated value
+         * @param counter the counter of the last generated value
+         */
+        State(long lastMillis, long counter) {
+            this.lastMillis = lastMillis;
+            this.counter = counter;
+        }
+
+        UUID next(long currentMillis) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (currentMillis > lastMillis) {
+                lastMillis = currentMillis;
+                //leave the counter top bit clear, so it cannot overflow right away
+                counter = random.nextLong(COUNTER_MAX >>> 1);
+            } else if (counter < COUNTER_MAX) {
+                //same millisecond or the clock went backwards
+                counter++;
+            } else {
+                lastMillis++;
+                counter = random.nextLong(COUNTER_MAX >>> 1);
+            }
+            long mostSigBits = (lastMillis << 16) |
+                (0x7L << 12) |
+                (counter >>> COUNTER_LOW_BITS);
+            long leastSigBits = (0x2L << 62) |
+                ((counter & COUNTER_LOW_MASK) << 48) |
+                (random.nextLong() & RANDOM_MASK);
+            return new UUID(mostSigBits, leastSigBits);
+        }
+    }
+}
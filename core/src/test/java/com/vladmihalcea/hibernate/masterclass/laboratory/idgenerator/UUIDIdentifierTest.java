@@ -8,9 +8,13 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class UUIDIdentifierTest extends AbstractTest {
 
@@ -19,7 +23,8 @@ public class UUIDIdentifierTest extends AbstractTest {
         return new Class<?>[] {
                 AssignedUUIDIdentifier.class,
                 UUIDIdentifier.class,
-                UUID2Identifier.class
+                UUID2Identifier.class,
+                TimeOrderedUUIDIdentifier.class
         };
     }
 
@@ -61,6 +66,55 @@ public class UUIDIdentifierTest extends AbstractTest {
         });
     }
 
+    @Test
+    public void testTimeOrderedUUIDIdentifierGenerator() {
+        LOGGER.debug("testTimeOrderedUUIDIdentifierGenerator");
+        List<UUID> uuids = new ArrayList<>();
+        doInTransaction(session -> {
+            for (int i = 0; i < 10; i++) {
+                TimeOrderedUUIDIdentifier identifier = new TimeOrderedUUIDIdentifier();
+                session.persist(identifier);
+                uuids.add(identifier.uuid);
+            }
+            session.flush();
+            session.merge(new TimeOrderedUUIDIdentifier());
+        });
+        doInTransaction(session -> {
+            List<UUID> orderedUuids = session.createQuery(
+                "select t.uuid from TimeOrderedUUIDIdentifier t where t.uuid in :uuids order by t.uuid")
+                .setParameterList("uuids", uuids)
+                .list();
+            assertEquals(uuids, orderedUuids);
+        });
+    }
+
+    @Test
+    public void testTimeOrderedUUIDLayout() {
+        long startMillis = System.currentTimeMillis();
+        UUID previous = TimeOrderedUUIDGenerator.generateUUID();
+        for (int i = 0; i < 5_000; i++) {
+            UUID uuid = TimeOrderedUUIDGenerator.generateUUID();
+            assertEquals(7, uuid.version());
+            assertEquals(2, uuid.variant());
+            assertTrue(previous.compareTo(uuid) < 0);
+            previous = uuid;
+        }
+        assertTrue(TimeOrderedUUIDGenerator.timestamp(previous) >= startMillis);
+
+        LOGGER.info("Start close to the counter overflow, so it's reached within the same millisecond");
+        TimeOrderedUUIDGenerator.State state = new TimeOrderedUUIDGenerator.State(
+            startMillis, TimeOrderedUUIDGenerator.COUNTER_MAX - 5_000);
+        previous = state.next(startMillis);
+        for (int i = 0; i < 5_000; i++) {
+            UUID uuid = state.next(startMillis - 1);
+            assertEquals(7, uuid.version());
+            assertEquals(2, uuid.variant());
+            assertTrue(previous.compareTo(uuid) < 0);
+            previous = uuid;
+        }
+        assertTrue(TimeOrderedUUIDGenerator.timestamp(previous) > startMillis);
+    }
+
     @Entity(name = "AssignedUUIDIdentifier")
     public static class AssignedUUIDIdentifier {
 
@@ -92,4 +146,15 @@ public class UUIDIdentifierTest extends AbstractTest {
         @Id
         private UUID uuid;
     }
+
+    @Entity(name = "TimeOrderedUUIDIdentifier")
+    public static class TimeOrderedUUIDIdentifier {
+
+        @GeneratedValue(generator = "timeOrderedUuid")
+        @GenericGenerator(name = "timeOrderedUuid",
+                strategy = "com.vladmihalcea.hibernate.masterclass.laboratory.idgenerator.TimeOrderedUUIDGenerator")
+        @Column(columnDefinition = "BINARY(16)")
+        @Id
+        private UUID uuid;
+    }
 }
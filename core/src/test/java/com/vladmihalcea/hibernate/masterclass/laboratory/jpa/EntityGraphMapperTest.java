@@ -1,11 +1,15 @@
 package com.vladmihalcea.hibernate.masterclass.laboratory.jpa;
 
 import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.JdbcBulkLoader;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.ResultSetGraphMapper;
 import com.vladmihalcea.hibernate.masterclass.laboratory.util.providers.BlogEntityProvider;
 import org.junit.Test;
 
+import java.lang.reflect.Proxy;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
@@ -14,9 +18,12 @@ import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import static com.vladmihalcea.hibernate.masterclass.laboratory.util.providers.BlogEntityProvider.*;
+import static com.vladmihalcea.hibernate.masterclass.laboratory.util.ResultSetGraphMapper.entity;
 
 /**
  * EntityGraphMapperTest - Test mapping to entity
@@ -44,56 +51,28 @@ public class EntityGraphMapperTest extends AbstractTest {
     @Override
     public void init() {
         super.init();
+        int postCount = getPostCount();
+        int postCommentCount = getPostCommentCount();
         doInJDBC(connection -> {
-            try (
-                    PreparedStatement postStatement = connection.prepareStatement(INSERT_POST);
-                    PreparedStatement postCommentStatement = connection.prepareStatement(INSERT_POST_COMMENT);
-                    PreparedStatement postDetailsStatement = connection.prepareStatement(INSERT_POST_DETAILS);
-            ) {
-
-                int postCount = getPostCount();
-                int postCommentCount = getPostCommentCount();
-
-                int index;
-
-                for (int i = 0; i < postCount; i++) {
-                    if (i > 0 && i % 100 == 0) {
-                        postStatement.executeBatch();
-                        postDetailsStatement.executeBatch();
-                    }
-
-                    index = 0;
-                    postStatement.setString(++index, String.format("Post no. %1$d", i));
-                    postStatement.setInt(++index, i);
-                    postStatement.setLong(++index, i);
-                    postStatement.addBatch();
-
-                    index = 0;
-                    postDetailsStatement.setInt(++index, i);
-                    postDetailsStatement.setTimestamp(++index, new Timestamp(System.currentTimeMillis()));
-                    postDetailsStatement.setInt(++index, i);
-                    postDetailsStatement.addBatch();
-                }
-                postStatement.executeBatch();
-                postDetailsStatement.executeBatch();
-
-                for (int i = 0; i < postCount; i++) {
-                    for (int j = 0; j < postCommentCount; j++) {
-                        index = 0;
-                        postCommentStatement.setLong(++index, i);
-                        postCommentStatement.setString(++index, String.format("Post comment %1$d", j));
-                        postCommentStatement.setInt(++index, i);
-                        postCommentStatement.setLong(++index, (postCommentCount * i) + j);
-                        postCommentStatement.addBatch();
-                        if (j % 100 == 0) {
-                            postCommentStatement.executeBatch();
-                        }
-                    }
-                }
-                postCommentStatement.executeBatch();
-            } catch (SQLException e) {
-                fail(e.getMessage());
-            }
+            JdbcBulkLoader.Report report = new JdbcBulkLoader()
+                .table(INSERT_POST, postCount, (i, parameters) -> parameters
+                    .setString(String.format("Post no. %1$d", i))
+                    .setInt((int) i)
+                    .setLong(i)
+                )
+                .table(INSERT_POST_DETAILS, postCount, (i, parameters) -> parameters
+                    .setLong(i)
+                    .setTimestamp(new Timestamp(System.currentTimeMillis()))
+                    .setInt((int) i)
+                )
+                .table(INSERT_POST_COMMENT, (long) postCount * postCommentCount, (i, parameters) -> parameters
+                    .setLong(i / postCommentCount)
+                    .setString(String.format("Post comment %1$d", i % postCommentCount))
+                    .setInt((int) (i / postCommentCount))
+                    .setLong(i)
+                )
+                .load(connection);
+            LOGGER.info("{}", report);
         });
     }
 
@@ -119,7 +98,7 @@ public class EntityGraphMapperTest extends AbstractTest {
         });
     }
 
-    private List<Post> toPosts(ResultSet resultSet) throws SQLException {
+    public static List<Post> toPosts(ResultSet resultSet) throws SQLException {
         Map<Long, Post> postMap = new LinkedHashMap<>();
         while (resultSet.next()) {
             Long postId = resultSet.getLong(1);
@@ -139,6 +118,161 @@ public class EntityGraphMapperTest extends AbstractTest {
         return new ArrayList<>(postMap.values());
     }
 
+    @Test
+    public void testResultSetGraphMapper() {
+        String sql =
+            "SELECT * " +
+            "FROM post AS p " +
+            "JOIN post_comment AS pc ON p.id = pc.post_id " +
+            "WHERE " +
+            "   p.id BETWEEN ? AND ? + 1";
+        for (int i = 0; i < 2; i++) {
+            doInJDBC(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    statement.setInt(1, id);
+                    statement.setInt(2, id);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        List<Post> posts = POST_COMMENTS_MAPPER.map(sql, resultSet);
+                        assertEquals(expectedCount, posts.size());
+                        for (int j = 0; j < posts.size(); j++) {
+                            Post post = posts.get(j);
+                            assertEquals(Long.valueOf(id + j), post.getId());
+                            assertEquals(String.format("Post no. %1$d", id + j), post.getTitle());
+                            assertEquals(getPostCommentCount(), post.getComments().size());
+                            for (PostComment comment : post.getComments()) {
+                                assertSame(post, comment.getPost());
+                            }
+                        }
+                    }
+                } catch (SQLException e) {
+                    throw new DataAccessException(e);
+                }
+            });
+        }
+    }
+
+    @Test
+    public void testResultSetGraphMapperWithMultipleChildren() {
+        ResultSetGraphMapper<Post> mapper = ResultSetGraphMapper.of(
+            entity("post", "id", Post::new)
+                .stringColumn("title", Post::setTitle)
+                .oneToMany(
+                    entity("post_comment", "id", commentId -> {
+                        PostComment comment = new PostComment();
+                        comment.setId(commentId);
+                        return comment;
+                    }).stringColumn("review", PostComment::setReview),
+                    Post::addComment
+                )
+                .oneToMany(
+                    entity("post_details", "id", detailsId -> {
+                        PostDetails details = new PostDetails();
+                        details.setId(detailsId);
+                        return details;
+                    }).timestampColumn("created_on", PostDetails::setCreatedOn),
+                    Post::addDetails
+                )
+        );
+        String sql =
+            "SELECT * " +
+            "FROM post AS p " +
+            "JOIN post_comment AS pc ON p.id = pc.post_id " +
+            "LEFT JOIN post_details AS pd ON p.id = pd.id " +
+            "ORDER BY p.id, pc.id";
+        doInJDBC(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql);
+                 ResultSet resultSet = statement.executeQuery()) {
+                List<Post> posts = mapper.map(sql, resultSet);
+                assertEquals(getPostCount(), posts.size());
+                for (Post post : posts) {
+                    assertEquals(getPostCommentCount(), post.getComments().size());
+                    assertEquals(post.getId(), post.getDetails().getId());
+                    assertNotNull(post.getDetails().getCreatedOn());
+                }
+            } catch (SQLException e) {
+                throw new DataAccessException(e);
+            }
+        });
+    }
+
+    @Test
+    public void testResultSetGraphMapperWithoutTableNames() {
+        ResultSetGraphMapper<Post> mapper = ResultSetGraphMapper.of(
+            entity("post", "p_id", Post::new)
+                .stringColumn("title", Post::setTitle)
+                .intColumn("p_version", Post::setVersion)
+                .oneToMany(
+                    entity("post_comment", "pc_id", commentId -> {
+                        PostComment comment = new PostComment();
+                        comment.setId(commentId);
+                        return comment;
+                    })
+                        .stringColumn("review", PostComment::setReview)
+                        .intColumn("pc_version", PostComment::setVersion),
+                    Post::addComment
+                )
+        );
+        String sql =
+            "SELECT p.id AS p_id, p.title, p.version AS p_version, " +
+            "       pc.id AS pc_id, pc.review, pc.version AS pc_version " +
+            "FROM post AS p " +
+            "JOIN post_comment AS pc ON p.id = pc.post_id " +
+            "ORDER BY p.id, pc.id";
+        doInJDBC(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql);
+                 ResultSet resultSet = statement.executeQuery()) {
+                LOGGER.info("The unique aliases are resolved, even if the driver doesn't report the table names");
+                List<Post> posts = mapper.map(sql, withoutTableNames(resultSet));
+                assertEquals(getPostCount(), posts.size());
+                for (Post post : posts) {
+                    assertEquals(getPostCommentCount(), post.getComments().size());
+                    for (PostComment comment : post.getComments()) {
+                        assertEquals(post.getId().longValue(), comment.getId() / getPostCommentCount());
+                    }
+                }
+            } catch (SQLException e) {
+                throw new DataAccessException(e);
+            }
+        });
+    }
+
+    @Test
+    public void testResultSetGraphMapperRejectsAmbiguousColumns() {
+        String sql =
+            "SELECT * " +
+            "FROM post AS p " +
+            "JOIN post_comment AS pc ON p.id = pc.post_id " +
+            "ORDER BY p.id, pc.id";
+        doInJDBC(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql);
+                 ResultSet resultSet = statement.executeQuery()) {
+                LOGGER.info("The post and post_comment id columns cannot be told apart without the table names");
+                POST_COMMENTS_MAPPER.map(sql, withoutTableNames(resultSet));
+                fail("The ambiguous id column should have been rejected");
+            } catch (IllegalArgumentException expected) {
+                LOGGER.info("Ambiguous column rejected", expected);
+            } catch (SQLException e) {
+                throw new DataAccessException(e);
+            }
+        });
+    }
+
+    /**
+     * Hide the result set metadata table names, like the PostgreSQL and the Oracle drivers do
+     */
+    private static ResultSet withoutTableNames(ResultSet resultSet) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        ResultSetMetaData metaDataWithoutTableNames = (ResultSetMetaData) Proxy.newProxyInstance(
+            ResultSetMetaData.class.getClassLoader(), new Class<?>[]{ResultSetMetaData.class},
+            (proxy, method, args) -> "getTableName".equals(method.getName()) ? "" : method.invoke(metaData, args)
+        );
+        return (ResultSet) Proxy.newProxyInstance(
+            ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+            (proxy, method, args) -> "getMetaData".equals(method.getName()) ?
+                metaDataWithoutTableNames : method.invoke(resultSet, args)
+        );
+    }
+
     @Test
     public void testJPAParameterBinding() {
         doInJPA(entityManager -> {
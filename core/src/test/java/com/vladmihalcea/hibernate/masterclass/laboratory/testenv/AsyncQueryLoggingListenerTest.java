@@ -0,0 +1,111 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.testenv;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AsyncQueryLoggingListener;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.LowAllocationQueryLogEntryCreator;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.StatementType;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * AsyncQueryLoggingListenerTest - Test to check the asynchronous ring buffer query logging
+ *
+ * @author Vlad Mihalcea
+ */
+public class AsyncQueryLoggingListenerTest {
+
+    @Test
+    public void testSameLogEntry() {
+        LowAllocationQueryLogEntryCreator queryLogEntryCreator = new LowAllocationQueryLogEntryCreator();
+        queryLogEntryCreator.setMaxBatchParameterCount(3);
+        List<String> logEntries = new CopyOnWriteArrayList<>();
+        try (AsyncQueryLoggingListener listener = new AsyncQueryLoggingListener() {
+            @Override
+            protected void writeLog(String logEntry) {
+                logEntries.add(logEntry);
+            }
+        }) {
+            listener.setMaxBatchParameterCount(3);
+
+            ExecutionInfo batchExecutionInfo = newExecutionInfo(StatementType.PREPARED, true, 5);
+            QueryInfo insert = new QueryInfo("insert into post (title, version, id) values (?, ?, ?)");
+            for (long i = 0; i < 5; i++) {
+                Map<String, Object> parameters = new LinkedHashMap<>();
+                parameters.put("3", i);
+                parameters.put("1", "Post no. " + i);
+                parameters.put("2", 0);
+                insert.getQueryArgsList().add(parameters);
+            }
+            List<QueryInfo> batchQueryInfoList = Arrays.asList(insert);
+            String expectedBatchLogEntry = queryLogEntryCreator.getLogEntry(batchExecutionInfo, batchQueryInfoList, true);
+            listener.afterQuery(batchExecutionInfo, batchQueryInfoList);
+            insert.getQueryArgsList().clear();
+
+            ExecutionInfo statementExecutionInfo = newExecutionInfo(StatementType.STATEMENT, true, 2);
+            List<QueryInfo> statementQueryInfoList = Arrays.asList(
+                new QueryInfo("delete from post_comment"),
+                new QueryInfo("delete from post")
+            );
+            String expectedStatementLogEntry = queryLogEntryCreator.getLogEntry(statementExecutionInfo, statementQueryInfoList, true);
+            listener.afterQuery(statementExecutionInfo, statementQueryInfoList);
+
+            assertTrue(listener.flush(5, TimeUnit.SECONDS));
+            assertEquals(Arrays.asList(expectedBatchLogEntry, expectedStatementLogEntry), logEntries);
+            assertTrue(expectedBatchLogEntry.endsWith(", ... 2 more]"));
+            assertEquals(0, listener.getDroppedCount());
+        }
+    }
+
+    @Test
+    public void testDropWhenFull() throws InterruptedException {
+        CountDownLatch consumerBlockedLatch = new CountDownLatch(1);
+        CountDownLatch consumerReleaseLatch = new CountDownLatch(1);
+        try (AsyncQueryLoggingListener listener = new AsyncQueryLoggingListener(2) {
+            @Override
+            protected void writeLog(String logEntry) {
+                consumerBlockedLatch.countDown();
+                try {
+                    consumerReleaseLatch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }) {
+            ExecutionInfo executionInfo = newExecutionInfo(StatementType.STATEMENT, false, 0);
+            List<QueryInfo> queryInfoList = Arrays.asList(new QueryInfo("select 1"));
+
+            listener.afterQuery(executionInfo, queryInfoList);
+            assertTrue(consumerBlockedLatch.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 4; i++) {
+                listener.afterQuery(executionInfo, queryInfoList);
+            }
+            assertEquals(2, listener.getDroppedCount());
+
+            consumerReleaseLatch.countDown();
+            assertTrue(listener.flush(5, TimeUnit.SECONDS));
+            assertEquals(3, listener.getLoggedCount());
+        }
+    }
+
+    private ExecutionInfo newExecutionInfo(StatementType statementType, boolean batch, int batchSize) {
+        ExecutionInfo executionInfo = new ExecutionInfo();
+        executionInfo.setDataSourceName(getClass().getName());
+        executionInfo.setElapsedTime(3);
+        executionInfo.setSuccess(true);
+        executionInfo.setStatementType(statementType);
+        executionInfo.setBatch(batch);
+        executionInfo.setBatchSize(batchSize);
+        return executionInfo;
+    }
+}
@@ -0,0 +1,118 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.testenv;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.LevelAwareSLF4JQueryLoggingListener;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.LowAllocationQueryLogEntryCreator;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.StatementType;
+import net.ttddyy.dsproxy.listener.SLF4JLogLevel;
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * QueryLogEntryCreatorTest - Test to check the low allocation query log entry creator
+ *
+ * @author Vlad Mihalcea
+ */
+public class QueryLogEntryCreatorTest {
+
+    private final AbstractTest.InlineQueryLogEntryCreator inlineQueryLogEntryCreator = new AbstractTest.InlineQueryLogEntryCreator();
+
+    private final LowAllocationQueryLogEntryCreator lowAllocationQueryLogEntryCreator = new LowAllocationQueryLogEntryCreator();
+
+    @Test
+    public void testSameLogEntry() {
+        ExecutionInfo batchExecutionInfo = newExecutionInfo(StatementType.PREPARED, true, 2);
+        QueryInfo insert = new QueryInfo("insert into post (title, version, id) values (?, ?, ?)");
+        insert.getQueryArgsList().add(parameters("Post no. 1", 0, 1L));
+        insert.getQueryArgsList().add(parameters(null, 0, 2L));
+        assertSameLogEntry(batchExecutionInfo, Arrays.asList(insert));
+
+        ExecutionInfo executionInfo = newExecutionInfo(StatementType.PREPARED, false, 0);
+        QueryInfo select = new QueryInfo("select p.id from post p where p.id in (?) and p.created_on > ?");
+        select.getQueryArgsList().add(parameters(
+            new long[] {1L, 2L}, new Timestamp(0), 1.5d, 2.5f, true, 'c', (short) 3, (byte) 4,
+            new byte[] {1, 2}, new int[] {3}, new Object[] {"a", null}, new double[0]
+        ));
+        assertSameLogEntry(executionInfo, Arrays.asList(select));
+
+        ExecutionInfo statementExecutionInfo = newExecutionInfo(StatementType.STATEMENT, true, 2);
+        assertSameLogEntry(statementExecutionInfo, Arrays.asList(
+            new QueryInfo("delete from post_comment"),
+            new QueryInfo("delete from post")
+        ));
+    }
+
+    @Test
+    public void testMaxBatchParameterCount() {
+        lowAllocationQueryLogEntryCreator.setMaxBatchParameterCount(2);
+        ExecutionInfo executionInfo = newExecutionInfo(StatementType.PREPARED, true, 5);
+        QueryInfo insert = new QueryInfo("insert into post (title, id) values (?, ?)");
+        for (long i = 0; i < 5; i++) {
+            insert.getQueryArgsList().add(parameters("Post no. " + i, i));
+        }
+        String logEntry = lowAllocationQueryLogEntryCreator.getLogEntry(executionInfo, Arrays.asList(insert), false);
+        assertTrue(logEntry, logEntry.endsWith("Params:[(Post no. 0, 0), (Post no. 1, 1), ... 3 more]"));
+    }
+
+    @Test
+    public void testSkipFormattingWhenLogLevelIsDisabled() {
+        AtomicInteger logEntryCount = new AtomicInteger();
+        LevelAwareSLF4JQueryLoggingListener listener = new LevelAwareSLF4JQueryLoggingListener();
+        listener.setQueryLogEntryCreator(new LowAllocationQueryLogEntryCreator() {
+            @Override
+            public String getLogEntry(ExecutionInfo execInfo, List<QueryInfo> queryInfoList, boolean writeDataSourceName) {
+                logEntryCount.incrementAndGet();
+                return super.getLogEntry(execInfo, queryInfoList, writeDataSourceName);
+            }
+        });
+        ExecutionInfo executionInfo = newExecutionInfo(StatementType.STATEMENT, false, 0);
+        List<QueryInfo> queryInfoList = Arrays.asList(new QueryInfo("select 1"));
+
+        listener.setLogLevel(SLF4JLogLevel.TRACE);
+        listener.afterQuery(executionInfo, queryInfoList);
+        assertEquals(0, logEntryCount.get());
+
+        listener.setLogLevel(SLF4JLogLevel.DEBUG);
+        listener.afterQuery(executionInfo, queryInfoList);
+        assertEquals(1, logEntryCount.get());
+    }
+
+    private void assertSameLogEntry(ExecutionInfo executionInfo, List<QueryInfo> queryInfoList) {
+        for (boolean writeDataSourceName : new boolean[] {true, false}) {
+            assertEquals(
+                inlineQueryLogEntryCreator.getLogEntry(executionInfo, queryInfoList, writeDataSourceName),
+                lowAllocationQueryLogEntryCreator.getLogEntry(executionInfo, queryInfoList, writeDataSourceName)
+            );
+        }
+    }
+
+    private ExecutionInfo newExecutionInfo(StatementType statementType, boolean batch, int batchSize) {
+        ExecutionInfo executionInfo = new ExecutionInfo();
+        executionInfo.setDataSourceName(getClass().getName());
+        executionInfo.setElapsedTime(3);
+        executionInfo.setSuccess(true);
+        executionInfo.setStatementType(statementType);
+        executionInfo.setBatch(batch);
+        executionInfo.setBatchSize(batchSize);
+        return executionInfo;
+    }
+
+    private Map<String, Object> parameters(Object... values) {
+        Map<String, Object> parameters = new HashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            parameters.put(String.valueOf(i + 1), values[i]);
+        }
+        return parameters;
+    }
+}
@@ -0,0 +1,162 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.testenv;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.AbstractTest;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.QueryMetricsListener;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.TransactionMetrics;
+import net.ttddyy.dsproxy.QueryType;
+import org.junit.Test;
+
+import javax.persistence.*;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * TransactionMetricsTest - Test to check the per-transaction SQL statement metrics
+ *
+ * @author Vlad Mihalcea
+ */
+public class TransactionMetricsTest extends AbstractTest {
+
+    @Override
+    protected Class<?>[] entities() {
+        return new Class<?>[]{
+            Post.class,
+            Comment.class
+        };
+    }
+
+    @Override
+    protected Properties getProperties() {
+        Properties properties = super.getProperties();
+        properties.put("hibernate.jdbc.batch_size", "5");
+        properties.put("hibernate.order_inserts", "true");
+        return properties;
+    }
+
+    @Test
+    public void testBatchInsertMetrics() {
+        insertPosts();
+        TransactionMetrics metrics = getLastTransactionMetrics();
+        LOGGER.info("Insert metrics: {}", metrics);
+        assertEquals(9, metrics.getInsertCount());
+        assertEquals(0, metrics.getUpdateCount());
+        assertEquals(Arrays.asList(3, 5, 1), metrics.getBatchSizes());
+        assertTrue(metrics.getConnectionHoldTime(TimeUnit.NANOSECONDS) >= metrics.getExecutionTime(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testNPlusOneMetrics() {
+        insertPosts();
+        doInTransaction(session -> {
+            List<Post> posts = session.createQuery("select p from Post p").list();
+            for (Post post : posts) {
+                assertEquals(2, post.getComments().size());
+            }
+        });
+        TransactionMetrics lazyMetrics = getLastTransactionMetrics();
+        LOGGER.info("Lazy fetching metrics: {}", lazyMetrics);
+        assertEquals(1 + 3, lazyMetrics.getSelectCount());
+
+        doInTransaction(session -> {
+            List<Post> posts = session.createQuery("select distinct p from Post p join fetch p.comments").list();
+            for (Post post : posts) {
+                assertEquals(2, post.getComments().size());
+            }
+        });
+        TransactionMetrics joinFetchMetrics = getLastTransactionMetrics();
+        LOGGER.info("Join fetching metrics: {}", joinFetchMetrics);
+        assertEquals(1, joinFetchMetrics.getSelectCount());
+        assertEquals(1, joinFetchMetrics.getExecutionCount());
+
+        assertEquals(3, getMetricRegistry().histogram(
+            QueryMetricsListener.statementCountName(QueryType.SELECT)).getCount());
+        assertEquals(3, getMetricRegistry().histogram(QueryMetricsListener.CONNECTION_HOLD_TIME).getCount());
+        assertEquals(4, getMetricRegistry().histogram(
+            QueryMetricsListener.statementCountName(QueryType.SELECT)).getSnapshot().getMax());
+    }
+
+    @Test
+    public void testConnectionHoldTime() throws Exception {
+        QueryMetricsListener listener = new QueryMetricsListener();
+        DataSource dataSource = listener.trackConnections(getDataSourceProvider().dataSource());
+        dataSource.getConnection().close();
+
+        listener.begin();
+        Thread.sleep(100);
+        Connection connection = dataSource.getConnection();
+        connection.close();
+        connection.close();
+        TransactionMetrics metrics = listener.end();
+        LOGGER.info("Connection hold metrics: {}", metrics);
+        assertTrue(metrics.getConnectionHoldTime(TimeUnit.NANOSECONDS) > 0);
+        assertTrue(metrics.getConnectionHoldTime(TimeUnit.MILLISECONDS) < 100);
+    }
+
+    private void insertPosts() {
+        doInTransaction(session -> {
+            for (int i = 0; i < 3; i++) {
+                Post post = new Post(String.format("Post no. %d", i));
+                post.addComment(new Comment("Good"));
+                post.addComment(new Comment("Excellent"));
+                session.persist(post);
+            }
+        });
+    }
+
+    @Entity(name = "Post")
+    public static class Post {
+
+        @Id
+        @GeneratedValue(strategy = GenerationType.SEQUENCE)
+        private Long id;
+
+        private String title;
+
+        @OneToMany(cascade = CascadeType.ALL, mappedBy = "post")
+        private List<Comment> comments = new ArrayList<>();
+
+        public Post() {
+        }
+
+        public Post(String title) {
+            this.title = title;
+        }
+
+        public List<Comment> getComments() {
+            return comments;
+        }
+
+        public void addComment(Comment comment) {
+            comments.add(comment);
+            comment.post = this;
+        }
+    }
+
+    @Entity(name = "Comment")
+    public static class Comment {
+
+        @Id
+        @GeneratedValue(strategy = GenerationType.SEQUENCE)
+        private Long id;
+
+        @ManyToOne
+        private Post post;
+
+        private String review;
+
+        public Comment() {
+        }
+
+        public Comment(String review) {
+            this.review = review;
+        }
+    }
+}
@@ -30,14 +30,19 @@ import javax.persistence.EntityTransaction;
 import javax.persistence.spi.PersistenceUnitInfo;
 import javax.sql.DataSource;
 
+import org.hibernate.FlushMode;
 import org.hibernate.Interceptor;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
 import org.hibernate.Transaction;
+import org.hibernate.boot.registry.BootstrapServiceRegistryBuilder;
 import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.integrator.spi.Integrator;
 import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
 import org.hibernate.jpa.boot.internal.PersistenceUnitInfoDescriptor;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
 import org.hibernate.stat.SecondLevelCacheStatistics;
 
 import org.junit.After;
@@ -46,6 +51,7 @@ import org.junit.Before;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.MetricRegistry;
 import com.microsoft.sqlserver.jdbc.SQLServerDataSource;
 import com.mysql.jdbc.jdbc2.optional.MysqlDataSource;
 import net.sourceforge.jtds.jdbcx.JtdsDataSource;
@@ -450,6 +456,17 @@ public abstract class AbstractTest {
         }
     }
 
+    @FunctionalInterface
+    protected interface HibernateStatelessTransactionConsumer extends Consumer<StatelessSession> {
+        default void beforeTransactionCompletion() {
+
+        }
+
+        default void afterTransactionCompletion() {
+
+        }
+    }
+
     @FunctionalInterface
     protected interface JPATransactionFunction<T> extends Function<EntityManager, T> {
         default void beforeTransactionCompletion() {
@@ -485,6 +502,10 @@ public abstract class AbstractTest {
     private EntityManagerFactory emf;
     private SessionFactory sf;
 
+    private final QueryMetricsListener queryMetricsListener = new QueryMetricsListener();
+
+    private AsyncQueryLoggingListener asyncQueryLoggingListener;
+
     @Before
     public void init() {
         if( nativeHibernateSessionFactoryBootstrap()) {
@@ -501,6 +522,9 @@ public abstract class AbstractTest {
         } else {
             emf.close();
         }
+        if (asyncQueryLoggingListener != null) {
+            asyncQueryLoggingListener.close();
+        }
     }
 
     public EntityManagerFactory getEntityManagerFactory() {
@@ -528,6 +552,10 @@ public abstract class AbstractTest {
         return null;
     }
 
+    protected Integrator[] integrators() {
+        return null;
+    }
+
     private SessionFactory newSessionFactory() {
         Properties properties = getProperties();
         Configuration configuration = new Configuration().addProperties(properties);
@@ -544,8 +572,15 @@ public abstract class AbstractTest {
         if(interceptor != null) {
             configuration.setInterceptor(interceptor);
         }
+        BootstrapServiceRegistryBuilder bootstrapServiceRegistryBuilder = new BootstrapServiceRegistryBuilder();
+        Integrator[] integrators = integrators();
+        if(integrators != null) {
+            for(Integrator integrator : integrators) {
+                bootstrapServiceRegistryBuilder.with(integrator);
+            }
+        }
         return configuration.buildSessionFactory(
-                new StandardServiceRegistryBuilder()
+                new StandardServiceRegistryBuilder(bootstrapServiceRegistryBuilder.build())
                         .applySettings(properties)
                         .build()
         );
@@ -558,6 +593,11 @@ public abstract class AbstractTest {
 
         Map<String, Object> configuration = new HashMap<>();
         configuration.put(org.hibernate.jpa.AvailableSettings.INTERCEPTOR, interceptor());
+        Integrator[] integrators = integrators();
+        if(integrators != null) {
+            configuration.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER,
+                (IntegratorProvider) () -> Arrays.asList(integrators));
+        }
         EntityManagerFactoryBuilderImpl entityManagerFactoryBuilder = new EntityManagerFactoryBuilderImpl(
             new PersistenceUnitInfoDescriptor(persistenceUnitInfo), configuration
         );
@@ -582,11 +622,17 @@ public abstract class AbstractTest {
     protected DataSource newDataSource() {
         if (proxyDataSource()) {
             ChainListener listener = new ChainListener();
-            SLF4JQueryLoggingListener loggingListener = new SLF4JQueryLoggingListener();
-            loggingListener.setQueryLogEntryCreator(new AbstractTest.InlineQueryLogEntryCreator());
-            listener.addListener(loggingListener);
+            if (asyncQueryLogging()) {
+                asyncQueryLoggingListener = new AsyncQueryLoggingListener();
+                listener.addListener(asyncQueryLoggingListener);
+            } else {
+                SLF4JQueryLoggingListener loggingListener = new LevelAwareSLF4JQueryLoggingListener();
+                loggingListener.setQueryLogEntryCreator(new LowAllocationQueryLogEntryCreator());
+                listener.addListener(loggingListener);
+            }
+            listener.addListener(queryMetricsListener);
             return ProxyDataSourceBuilder
-                    .create(getDataSourceProvider().dataSource())
+                    .create(queryMetricsListener.trackConnections(getDataSourceProvider().dataSource()))
                     .name(getClass().getName())
                     .listener(listener)
                     .build();
@@ -599,15 +645,32 @@ public abstract class AbstractTest {
         return true;
     }
 
+    protected boolean asyncQueryLogging() {
+        return false;
+    }
+
+    protected AsyncQueryLoggingListener getAsyncQueryLoggingListener() {
+        return asyncQueryLoggingListener;
+    }
+
     protected DataSourceProvider getDataSourceProvider() {
         return new HsqldbDataSourceProvider();
     }
 
+    protected MetricRegistry getMetricRegistry() {
+        return queryMetricsListener.getMetricRegistry();
+    }
+
+    protected TransactionMetrics getLastTransactionMetrics() {
+        return queryMetricsListener.getLastTransactionMetrics();
+    }
+
     protected <T> T doInTransaction(HibernateTransactionFunction<T> callable) {
         T result = null;
         Session session = null;
         Transaction txn = null;
         try {
+            queryMetricsListener.begin();
             session = getSessionFactory().openSession();
             callable.beforeTransactionCompletion();
             txn = session.beginTransaction();
@@ -622,6 +685,7 @@ public abstract class AbstractTest {
             if (session != null) {
                 session.close();
             }
+            queryMetricsListener.end();
         }
         return result;
     }
@@ -630,6 +694,7 @@ public abstract class AbstractTest {
         Session session = null;
         Transaction txn = null;
         try {
+            queryMetricsListener.begin();
             session = getSessionFactory().openSession();
             callable.beforeTransactionCompletion();
             txn = session.beginTransaction();
@@ -644,6 +709,7 @@ public abstract class AbstractTest {
             if (session != null) {
                 session.close();
             }
+            queryMetricsListener.end();
         }
     }
 
@@ -652,6 +718,7 @@ public abstract class AbstractTest {
         EntityManager entityManager = null;
         EntityTransaction txn = null;
         try {
+            queryMetricsListener.begin();
             entityManager = emf.createEntityManager();
             function.beforeTransactionCompletion();
             txn = entityManager.getTransaction();
@@ -666,6 +733,7 @@ public abstract class AbstractTest {
             if (entityManager != null) {
                 entityManager.close();
             }
+            queryMetricsListener.end();
         }
         return result;
     }
@@ -674,7 +742,113 @@ public abstract class AbstractTest {
         EntityManager entityManager = null;
         EntityTransaction txn = null;
         try {
+            queryMetricsListener.begin();
+            entityManager = emf.createEntityManager();
+            function.beforeTransactionCompletion();
+            txn = entityManager.getTransaction();
+            txn.begin();
+            function.accept(entityManager);
+            txn.commit();
+        } catch (RuntimeException e) {
+            if ( txn != null && txn.isActive()) txn.rollback();
+            throw e;
+        } finally {
+            function.afterTransactionCompletion();
+            if (entityManager != null) {
+                entityManager.close();
+            }
+            queryMetricsListener.end();
+        }
+    }
+
+    /**
+     * Read-only variant of {@link #doInTransaction(HibernateTransactionFunction)}.
+     * Entities and queries are read-only by default, so no loaded state snapshot is kept for dirty checking,
+     * and the session is never flushed.
+     */
+    protected <T> T doInReadOnlyTransaction(HibernateTransactionFunction<T> callable) {
+        T result = null;
+        Session session = null;
+        Transaction txn = null;
+        try {
+            queryMetricsListener.begin();
+            session = getSessionFactory().openSession();
+            setReadOnly(session);
+            callable.beforeTransactionCompletion();
+            txn = session.beginTransaction();
+
+            result = callable.apply(session);
+            txn.commit();
+        } catch (RuntimeException e) {
+            if ( txn != null && txn.isActive() ) txn.rollback();
+            throw e;
+        } finally {
+            callable.afterTransactionCompletion();
+            if (session != null) {
+                session.close();
+            }
+            queryMetricsListener.end();
+        }
+        return result;
+    }
+
+    protected void doInReadOnlyTransaction(HibernateTransactionConsumer callable) {
+        Session session = null;
+        Transaction txn = null;
+        try {
+            queryMetricsListener.begin();
+            session = getSessionFactory().openSession();
+            setReadOnly(session);
+            callable.beforeTransactionCompletion();
+            txn = session.beginTransaction();
+
+            callable.accept(session);
+            txn.commit();
+        } catch (RuntimeException e) {
+            if ( txn != null && txn.isActive() ) txn.rollback();
+            throw e;
+        } finally {
+            callable.afterTransactionCompletion();
+            if (session != null) {
+                session.close();
+            }
+            queryMetricsListener.end();
+        }
+    }
+
+    protected <T> T doInReadOnlyJPA(JPATransactionFunction<T> function) {
+        T result = null;
+        EntityManager entityManager = null;
+        EntityTransaction txn = null;
+        try {
+            queryMetricsListener.begin();
+            entityManager = emf.createEntityManager();
+            setReadOnly(entityManager.unwrap(Session.class));
+            function.beforeTransactionCompletion();
+            txn = entityManager.getTransaction();
+            txn.begin();
+            result = function.apply(entityManager);
+            txn.commit();
+        } catch (RuntimeException e) {
+            if ( txn != null && txn.isActive()) txn.rollback();
+            throw e;
+        } finally {
+            function.afterTransactionCompletion();
+            if (entityManager != null) {
+                entityManager.close();
+            }
+            queryMetricsListener.end();
+        }
+        return result;
+    }
+
+    protected void doInReadOnlyJPA(JPATransactionVoidFunction function) {
+        EntityManager entityManager = null;
+        EntityTransaction txn = null;
+        try {
+            queryMetricsListener.begin();
             entityManager = emf.createEntityManager();
+            setReadOnly(entityManager.unwrap(Session.class));
             function.beforeTransactionCompletion();
             txn = entityManager.getTransaction();
             txn.begin();
@@ -688,6 +862,40 @@ public abstract class AbstractTest {
             if (entityManager != null) {
                 entityManager.close();
             }
+            queryMetricsListener.end();
+        }
+    }
+
+    private void setReadOnly(Session session) {
+        session.setDefaultReadOnly(true);
+        session.setFlushMode(FlushMode.MANUAL);
+    }
+
+    /**
+     * {@link StatelessSession} variant of {@link #doInTransaction(HibernateTransactionConsumer)}.
+     * There's no persistence context, so nothing is cascaded, dirty checked or flushed,
+     * and every insert, update or delete call issues its own statement.
+     */
+    protected void doInStatelessTransaction(HibernateStatelessTransactionConsumer callable) {
+        StatelessSession session = null;
+        Transaction txn = null;
+        try {
+            queryMetricsListener.begin();
+            session = getSessionFactory().openStatelessSession();
+            callable.beforeTransactionCompletion();
+            txn = session.beginTransaction();
+
+            callable.accept(session);
+            txn.commit();
+        } catch (RuntimeException e) {
+            if ( txn != null && txn.isActive() ) txn.rollback();
+            throw e;
+        } finally {
+            callable.afterTransactionCompletion();
+            if (session != null) {
+                session.close();
+            }
+            queryMetricsListener.end();
         }
     }
 
@@ -696,6 +904,7 @@ public abstract class AbstractTest {
         Session session = null;
         Transaction txn = null;
         try {
+            queryMetricsListener.begin();
             session = getSessionFactory().openSession();
             txn = session.beginTransaction();
             session.doWork(connection -> {
@@ -709,6 +918,7 @@ public abstract class AbstractTest {
             if (session != null) {
                 session.close();
             }
+            queryMetricsListener.end();
         }
         return result.get();
     }
@@ -717,6 +927,7 @@ public abstract class AbstractTest {
         Session session = null;
         Transaction txn = null;
         try {
+            queryMetricsListener.begin();
             session = getSessionFactory().openSession();
             txn = session.beginTransaction();
             session.doWork(callable::execute);
@@ -728,6 +939,7 @@ public abstract class AbstractTest {
             if (session != null) {
                 session.close();
             }
+            queryMetricsListener.end();
         }
     }
 
@@ -0,0 +1,355 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import org.hibernate.Cache;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.cache.spi.UpdateTimestampsCache;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <code>AggregateBulkDeleter</code> - Deletes whole aggregates, like a Post along with its Comment and PostDetails
+ * child entities, using set-based SQL DELETE statements in dependency order: children first, then the root.
+ * <p>
+ * The root identifiers are selected in chunks of chunkSize, and no entity is ever loaded.
+ * The table and column names are taken from the entity mappings, so every child must reference the root directly,
+ * through the given parentProperty association.
+ * <p>
+ * A Hibernate bulk HQL DELETE would evict the whole entity and collection cache regions, so the statements
+ * are executed through JDBC instead, and only the deleted entities are evicted:
+ * <ul>
+ * <li>from the Session persistence context, if they were managed;</li>
+ * <li>from the second-level cache, both when the rows are deleted and after the transaction completes,
+ * so that a concurrent transaction can't put back a stale entry it loaded in between;</li>
+ * <li>and the query cache is invalidated for the affected tables.</li>
+ * </ul>
+ *
+ * @author Vlad Mihalcea
+ */
+public class AggregateBulkDeleter {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    private final Class<?> rootClass;
+
+    private final List<ChildMapping> children = new ArrayList<>();
+
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    public AggregateBulkDeleter(Class<?> rootClass) {
+        this.rootClass = rootClass;
+    }
+
+    public AggregateBulkDeleter child(Class<?> childClass, String parentProperty) {
+        children.add(new ChildMapping(childClass, parentProperty));
+        return this;
+    }
+
+    public AggregateBulkDeleter setChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("The chunk size must be positive");
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Delete the aggregates whose root identifiers are selected by the given query.
+     * The query is executed once for every chunk, so it must no longer select the already deleted roots.
+     *
+     * @param session     Session
+     * @param rootIdQuery query selecting the root identifiers
+     * @return number of deleted roots
+     */
+    @SuppressWarnings("unchecked")
+    public long delete(Session session, Query rootIdQuery) {
+        Context context = new Context(session);
+        try {
+            long deleteCount = 0;
+            List<Serializable> rootIds;
+            do {
+                rootIds = rootIdQuery.setMaxResults(chunkSize).list();
+                if (!rootIds.isEmpty()) {
+                    deleteCount += context.deleteChunk(rootIds);
+                }
+            } while (rootIds.size() == chunkSize);
+            return deleteCount;
+        } finally {
+            context.end();
+        }
+    }
+
+    /**
+     * Delete the aggregates with the given root identifiers
+     *
+     * @param session Session
+     * @param rootIds root identifiers
+     * @return number of deleted roots
+     */
+    public long delete(Session session, Collection<? extends Serializable> rootIds) {
+        Context context = new Context(session);
+        try {
+            long deleteCount = 0;
+            List<Serializable> chunk = new ArrayList<>(chunkSize);
+            for (Serializable rootId : rootIds) {
+                chunk.add(rootId);
+                if (chunk.size() == chunkSize) {
+                    deleteCount += context.deleteChunk(chunk);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                deleteCount += context.deleteChunk(chunk);
+            }
+            return deleteCount;
+        } finally {
+            context.end();
+        }
+    }
+
+    private static String inList(int size) {
+        StringBuilder sql = new StringBuilder("(");
+        for (int i = 0; i < size; i++) {
+            sql.append(i > 0 ? ", ?" : "?");
+        }
+        return sql.append(")").toString();
+    }
+
+    private static class ChildMapping {
+
+        private final Class<?> childClass;
+
+        private final String parentProperty;
+
+        ChildMapping(Class<?> childClass, String parentProperty) {
+            this.childClass = childClass;
+            this.parentProperty = parentProperty;
+        }
+    }
+
+    /**
+     * Table, columns and cached collections of an aggregate entity
+     */
+    private static class EntityTable {
+
+        private final AbstractEntityPersister persister;
+
+        private final String parentProperty;
+
+        private final String foreignKeyColumn;
+
+        private final List<String> cachedCollectionRoles = new ArrayList<>();
+
+        EntityTable(SessionFactoryImplementor factory, Class<?> entityClass, String parentProperty) {
+            this.persister = (AbstractEntityPersister) factory.getEntityPersister(entityClass.getName());
+            this.parentProperty = parentProperty;
+            if (parentProperty != null) {
+                String[] columns = persister.getPropertyColumnNames(parentProperty);
+                if (columns.length != 1) {
+                    throw new IllegalArgumentException(
+                        "Only single column foreign keys are supported: " + persister.getEntityName() + "." + parentProperty);
+                }
+                foreignKeyColumn = columns[0];
+            } else {
+                foreignKeyColumn = persister.getIdentifierColumnNames()[0];
+            }
+            for (Object role : factory.getAllCollectionMetadata().keySet()) {
+                CollectionPersister collectionPersister = factory.getCollectionPersister((String) role);
+                if (collectionPersister.hasCache() &&
+                    collectionPersister.getOwnerEntityPersister() == persister) {
+                    cachedCollectionRoles.add((String) role);
+                }
+            }
+        }
+
+        boolean isCached() {
+            return persister.hasCache() || !cachedCollectionRoles.isEmpty();
+        }
+
+        void evict(Cache cache, Collection<Serializable> ids) {
+            for (Serializable id : ids) {
+                if (persister.hasCache()) {
+                    cache.evictEntity(persister.getEntityName(), id);
+                }
+                for (String role : cachedCollectionRoles) {
+                    cache.evictCollection(role, id);
+                }
+            }
+        }
+    }
+
+    /**
+     * State of a single delete call
+     */
+    private class Context {
+
+        private final SessionImplementor session;
+
+        private final Cache cache;
+
+        private final EntityTable root;
+
+        private final List<EntityTable> childTables = new ArrayList<>();
+
+        private final Serializable[] querySpaces;
+
+        private final UpdateTimestampsCache updateTimestampsCache;
+
+        Context(Session session) {
+            session.flush();
+            this.session = (SessionImplementor) session;
+            SessionFactoryImplementor factory = this.session.getFactory();
+            this.cache = factory.getCache();
+            this.root = new EntityTable(factory, rootClass, null);
+            Set<Serializable> spaces = new LinkedHashSet<>();
+            for (ChildMapping child : children) {
+                EntityTable childTable = new EntityTable(factory, child.childClass, child.parentProperty);
+                childTables.add(childTable);
+                addAll(spaces, childTable.persister.getQuerySpaces());
+            }
+            addAll(spaces, root.persister.getQuerySpaces());
+            this.querySpaces = spaces.toArray(new Serializable[spaces.size()]);
+            this.updateTimestampsCache = factory.getUpdateTimestampsCache();
+            if (updateTimestampsCache != null) {
+                updateTimestampsCache.preInvalidate(querySpaces, this.session);
+            }
+        }
+
+        long deleteChunk(List<Serializable> rootIds) {
+            evictFromPersistenceContext(rootIds);
+            List<Serializable> evictedRootIds = new ArrayList<>(rootIds);
+            int[] rootDeleteCount = new int[1];
+            ((Session) session).doWork(connection -> {
+                for (EntityTable childTable : childTables) {
+                    if (childTable.isCached()) {
+                        evictFromSecondLevelCache(childTable, selectChildIds(connection, childTable, rootIds));
+                    }
+                    delete(connection, childTable, rootIds);
+                }
+                rootDeleteCount[0] = delete(connection, root, rootIds);
+            });
+            if (root.isCached()) {
+                evictFromSecondLevelCache(root, evictedRootIds);
+            }
+            return rootDeleteCount[0];
+        }
+
+        /**
+         * Invalidate the pre-invalidated query spaces after the transaction completes, even if a delete failed,
+         * as otherwise the query cache would ignore the results of these tables until the pre-invalidation expires.
+         */
+        void end() {
+            if (updateTimestampsCache != null) {
+                ((EventSource) session).getActionQueue().registerProcess(
+                    (success, sessionImplementor) -> updateTimestampsCache.invalidate(querySpaces, sessionImplementor)
+                );
+            }
+        }
+
+        private List<Serializable> selectChildIds(Connection connection, EntityTable childTable,
+                List<Serializable> rootIds) throws SQLException {
+            List<Serializable> childIds = new ArrayList<>();
+            String sql = "select " + childTable.persister.getIdentifierColumnNames()[0] +
+                " from " + childTable.persister.getTableName() +
+                " where " + childTable.foreignKeyColumn + " in " + inList(rootIds.size());
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                bind(statement, rootIds);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        childIds.add((Serializable) resultSet.getObject(1));
+                    }
+                }
+            }
+            return childIds;
+        }
+
+        private int delete(Connection connection, EntityTable table, List<Serializable> rootIds) throws SQLException {
+            String sql = "delete from " + table.persister.getTableName() +
+                " where " + table.foreignKeyColumn + " in " + inList(rootIds.size());
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                bind(statement, rootIds);
+                return statement.executeUpdate();
+            }
+        }
+
+        private void bind(PreparedStatement statement, List<Serializable> ids) throws SQLException {
+            for (int i = 0; i < ids.size(); i++) {
+                statement.setObject(i + 1, ids.get(i));
+            }
+        }
+
+        /**
+         * Evict the deleted entities right away, and once more after the transaction has completed,
+         * in case a concurrent transaction cached them again before the delete got committed.
+         */
+        private void evictFromSecondLevelCache(EntityTable table, List<Serializable> ids) {
+            table.evict(cache, ids);
+            ((EventSource) session).getActionQueue().registerProcess(
+                (success, sessionImplementor) -> table.evict(cache, ids)
+            );
+        }
+
+        /**
+         * Evict the managed roots, and the managed children of any of the given roots
+         */
+        private void evictFromPersistenceContext(List<Serializable> rootIds) {
+            PersistenceContext persistenceContext = session.getPersistenceContext();
+            if (persistenceContext.getNumberOfManagedEntities() == 0) {
+                return;
+            }
+            Set<Serializable> rootIdSet = new HashSet<>(rootIds);
+            for (Map.Entry<Object, EntityEntry> entry : persistenceContext.reentrantSafeEntityEntries()) {
+                Object entity = entry.getKey();
+                EntityEntry entityEntry = entry.getValue();
+                if (entityEntry.getPersister() == root.persister) {
+                    if (rootIdSet.contains(entityEntry.getId())) {
+                        ((Session) session).evict(entity);
+                    }
+                } else {
+                    for (EntityTable childTable : childTables) {
+                        if (entityEntry.getPersister() == childTable.persister &&
+                            rootIdSet.contains(parentId(childTable, entity))) {
+                            ((Session) session).evict(entity);
+                        }
+                    }
+                }
+            }
+        }
+
+        private Serializable parentId(EntityTable childTable, Object child) {
+            Object parent = childTable.persister.getPropertyValue(child, childTable.parentProperty);
+            if (parent == null) {
+                return null;
+            }
+            if (parent instanceof HibernateProxy) {
+                return ((HibernateProxy) parent).getHibernateLazyInitializer().getIdentifier();
+            }
+            return root.persister.getIdentifier(parent, session);
+        }
+
+        private void addAll(Set<Serializable> spaces, Serializable[] querySpaces) {
+            for (Serializable querySpace : querySpaces) {
+                spaces.add(querySpace);
+            }
+        }
+    }
+}
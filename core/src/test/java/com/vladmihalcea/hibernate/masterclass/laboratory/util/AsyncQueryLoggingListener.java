@@ -0,0 +1,395 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.StatementType;
+import net.ttddyy.dsproxy.listener.DefaultQueryLogEntryCreator;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.listener.SLF4JLogLevel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <code>AsyncQueryLoggingListener</code> - Query logging listener which only copies the statement
+ * execution details into a preallocated ring buffer on the JDBC calling thread. A background consumer
+ * thread formats the entries (in the {@link LowAllocationQueryLogEntryCreator} format) and logs them.
+ * When the ring buffer is full, the entry is dropped and counted instead of blocking the JDBC thread.
+ *
+ * @author Vlad Mihalcea
+ */
+public class AsyncQueryLoggingListener implements QueryExecutionListener, Closeable {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+
+    private final Logger logger = LoggerFactory.getLogger(AsyncQueryLoggingListener.class);
+
+    private final Slot[] slots;
+
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    private volatile long head;
+
+    private final LongAdder droppedCount = new LongAdder();
+
+    private final Thread consumer;
+
+    private volatile boolean running = true;
+
+    private volatile SLF4JLogLevel logLevel = SLF4JLogLevel.DEBUG;
+
+    private volatile boolean writeDataSourceName = true;
+
+    private volatile int maxBatchParameterCount = LowAllocationQueryLogEntryCreator.DEFAULT_MAX_BATCH_PARAMETER_COUNT;
+
+    public AsyncQueryLoggingListener() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public AsyncQueryLoggingListener(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("The ring buffer capacity must be a power of two greater than 1!");
+        }
+        slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot(i);
+        }
+        mask = capacity - 1;
+        consumer = new Thread(this::consume, "async-query-logger");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    public void setLogLevel(SLF4JLogLevel logLevel) {
+        this.logLevel = logLevel;
+    }
+
+    public void setWriteDataSourceName(boolean writeDataSourceName) {
+        this.writeDataSourceName = writeDataSourceName;
+    }
+
+    public void setMaxBatchParameterCount(int maxBatchParameterCount) {
+        if (maxBatchParameterCount < 1) {
+            throw new IllegalArgumentException("The max batch parameter count must be a positive number!");
+        }
+        this.maxBatchParameterCount = maxBatchParameterCount;
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    public long getLoggedCount() {
+        return head;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        if (!isLogEnabled()) {
+            return;
+        }
+        long position = tail.get();
+        for (;;) {
+            Slot slot = slots[(int) position & mask];
+            long difference = slot.sequence - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slot.copy(execInfo, queryInfoList, maxBatchParameterCount);
+                    slot.sequence = position + 1;
+                    return;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                droppedCount.increment();
+                return;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Wait until every entry published so far has been logged.
+     *
+     * @return false if the timeout elapsed first
+     */
+    public boolean flush(long timeout, TimeUnit unit) {
+        long published = tail.get();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (head < published) {
+            if (System.nanoTime() - deadline >= 0 || !consumer.isAlive()) {
+                return false;
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    protected void writeLog(String logEntry) {
+        switch (logLevel) {
+            case TRACE:
+                logger.trace(logEntry);
+                break;
+            case DEBUG:
+                logger.debug(logEntry);
+                break;
+            case INFO:
+                logger.info(logEntry);
+                break;
+            case WARN:
+                logger.warn(logEntry);
+                break;
+            case ERROR:
+                logger.error(logEntry);
+                break;
+        }
+    }
+
+    protected boolean isLogEnabled() {
+        switch (logLevel) {
+            case TRACE:
+                return logger.isTraceEnabled();
+            case DEBUG:
+                return logger.isDebugEnabled();
+            case INFO:
+                return logger.isInfoEnabled();
+            case WARN:
+                return logger.isWarnEnabled();
+            case ERROR:
+                return logger.isErrorEnabled();
+            default:
+                return true;
+        }
+    }
+
+    private void consume() {
+        StringBuilder sb = new StringBuilder(LowAllocationQueryLogEntryCreator.DEFAULT_MAX_BATCH_PARAMETER_COUNT * 32);
+        Comparator<String> parameterKeyComparator = new DefaultQueryLogEntryCreator.StringAsIntegerComparator();
+        long reportedDroppedCount = 0;
+        for (;;) {
+            boolean stopping = !running;
+            long position = head;
+            Slot slot = slots[(int) position & mask];
+            if (slot.sequence == position + 1) {
+                sb.setLength(0);
+                slot.write(sb, writeDataSourceName, parameterKeyComparator);
+                slot.clear();
+                slot.sequence = position + slots.length;
+                try {
+                    writeLog(sb.toString());
+                } catch (RuntimeException e) {
+                    logger.error("Could not write query log entry", e);
+                }
+                head = position + 1;
+                continue;
+            }
+            long currentDroppedCount = droppedCount.sum();
+            if (currentDroppedCount > reportedDroppedCount) {
+                logger.warn("Dropped {} query log entries since the ring buffer was full",
+                    currentDroppedCount - reportedDroppedCount);
+                reportedDroppedCount = currentDroppedCount;
+            }
+            if (stopping && position == tail.get()) {
+                return;
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Preallocated ring buffer entry holding a flat copy of the statement execution details.
+     * The parameter maps are not retained since the statement proxies clear and reuse them.
+     */
+    private static final class Slot {
+
+        private volatile long sequence;
+
+        private String dataSourceName;
+        private long elapsedTime;
+        private boolean success;
+        private StatementType statementType;
+        private boolean batch;
+        private int batchSize;
+
+        private int queryCount;
+        private String[] queries = new String[1];
+        private int[] parameterSetCounts = new int[1];
+        private int[] omittedParameterSetCounts = new int[1];
+
+        private int parameterSetCount;
+        private int[] parameterCounts = new int[8];
+
+        private int parameterCount;
+        private String[] parameterKeys = new String[32];
+        private Object[] parameterValues = new Object[32];
+
+        Slot(long sequence) {
+            this.sequence = sequence;
+        }
+
+        void copy(ExecutionInfo execInfo, List<QueryInfo> queryInfoList, int maxBatchParameterCount) {
+            dataSourceName = execInfo.getDataSourceName();
+            elapsedTime = execInfo.getElapsedTime();
+            success = execInfo.isSuccess();
+            statementType = execInfo.getStatementType();
+            batch = execInfo.isBatch();
+            batchSize = execInfo.getBatchSize();
+
+            queryCount = queryInfoList.size();
+            if (queries.length < queryCount) {
+                queries = new String[queryCount];
+                parameterSetCounts = new int[queryCount];
+                omittedParameterSetCounts = new int[queryCount];
+            }
+            parameterSetCount = 0;
+            parameterCount = 0;
+            for (int i = 0; i < queryCount; i++) {
+                QueryInfo queryInfo = queryInfoList.get(i);
+                queries[i] = queryInfo.getQuery();
+                List<Map<String, Object>> queryArgsList = queryInfo.getQueryArgsList();
+                int copiedParameterSetCount = Math.min(queryArgsList.size(), maxBatchParameterCount);
+                parameterSetCounts[i] = copiedParameterSetCount;
+                omittedParameterSetCounts[i] = queryArgsList.size() - copiedParameterSetCount;
+                for (int j = 0; j < copiedParameterSetCount; j++) {
+                    copyParameters(queryArgsList.get(j));
+                }
+            }
+        }
+
+        private void copyParameters(Map<String, Object> parameters) {
+            if (parameterSetCount == parameterCounts.length) {
+                parameterCounts = Arrays.copyOf(parameterCounts, parameterSetCount * 2);
+            }
+            parameterCounts[parameterSetCount++] = parameters.size();
+            int requiredCapacity = parameterCount + parameters.size();
+            if (requiredCapacity > parameterKeys.length) {
+                int newCapacity = Math.max(requiredCapacity, parameterKeys.length * 2);
+                parameterKeys = Arrays.copyOf(parameterKeys, newCapacity);
+                parameterValues = Arrays.copyOf(parameterValues, newCapacity);
+            }
+            for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+                parameterKeys[parameterCount] = parameter.getKey();
+                parameterValues[parameterCount] = parameter.getValue();
+                parameterCount++;
+            }
+        }
+
+        void write(StringBuilder sb, boolean writeDataSourceName, Comparator<String> parameterKeyComparator) {
+            if (writeDataSourceName) {
+                sb.append("Name:").append(dataSourceName == null ? "" : dataSourceName).append(", ");
+            }
+            sb.append("Time:").append(elapsedTime).append(", ");
+            sb.append("Success:").append(success ? "True" : "False").append(", ");
+            sb.append("Type:").append(statementTypeName()).append(", ");
+            sb.append("Batch:").append(batch ? "True" : "False").append(", ");
+            sb.append("QuerySize:").append(queryCount).append(", ");
+            sb.append("BatchSize:").append(batchSize).append(", ");
+            sb.append("Query:[");
+            for (int i = 0; i < queryCount; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append('"').append(queries[i]).append('"');
+            }
+            sb.append("], Params:[");
+            int parameterSetIndex = 0;
+            int parameterIndex = 0;
+            for (int i = 0; i < queryCount; i++) {
+                for (int j = 0; j < parameterSetCounts[i]; j++) {
+                    if (j > 0) {
+                        sb.append(", ");
+                    }
+                    int count = parameterCounts[parameterSetIndex++];
+                    sortParameters(parameterIndex, parameterIndex + count, parameterKeyComparator);
+                    sb.append('(');
+                    for (int k = 0; k < count; k++) {
+                        if (k > 0) {
+                            sb.append(", ");
+                        }
+                        LowAllocationQueryLogEntryCreator.appendValue(sb, parameterValues[parameterIndex + k]);
+                    }
+                    sb.append(')');
+                    parameterIndex += count;
+                }
+                if (omittedParameterSetCounts[i] > 0) {
+                    sb.append(", ... ").append(omittedParameterSetCounts[i]).append(" more");
+                }
+            }
+            sb.append(']');
+        }
+
+        private String statementTypeName() {
+            if (statementType == null) {
+                return "";
+            }
+            switch (statementType) {
+                case STATEMENT:
+                    return "Statement";
+                case PREPARED:
+                    return "Prepared";
+                case CALLABLE:
+                    return "Callable";
+                default:
+                    return statementType.name();
+            }
+        }
+
+        /**
+         * Insertion sort, since the parameters usually come in index order already.
+         */
+        private void sortParameters(int from, int to, Comparator<String> parameterKeyComparator) {
+            for (int i = from + 1; i < to; i++) {
+                String key = parameterKeys[i];
+                Object value = parameterValues[i];
+                int j = i - 1;
+                while (j >= from && parameterKeyComparator.compare(parameterKeys[j], key) > 0) {
+                    parameterKeys[j + 1] = parameterKeys[j];
+                    parameterValues[j + 1] = parameterValues[j];
+                    j--;
+                }
+                parameterKeys[j + 1] = key;
+                parameterValues[j + 1] = value;
+            }
+        }
+
+        void clear() {
+            dataSourceName = null;
+            statementType = null;
+            Arrays.fill(queries, 0, queryCount, null);
+            Arrays.fill(parameterKeys, 0, parameterCount, null);
+            Arrays.fill(parameterValues, 0, parameterCount, null);
+        }
+    }
+}
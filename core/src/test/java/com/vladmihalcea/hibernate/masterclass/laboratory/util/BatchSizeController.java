@@ -0,0 +1,271 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryUtils;
+import org.hibernate.Session;
+import org.hibernate.dialect.Dialect;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongBiFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <code>BatchSizeController</code> - Tunes the flush/clear cadence of every table toward its JDBC batch throughput optimum.
+ * <p>
+ * Registered as a datasource-proxy listener, it measures the execution latency of every INSERT, UPDATE or DELETE
+ * batch and, after sampleCount batches of the current size, compares the rows per second throughput with
+ * the best size found so far. The search climbs in the improving direction, doubling its step, and reverses
+ * with a halved step whenever the throughput drops, until the step reaches zero and the table batch size is converged.
+ * <p>
+ * The batch size is enforced through a {@link Cadence}, which flushes and clears the Session every time
+ * the current batch size of its table is reached. The hibernate.jdbc.batch_size setting must be at least
+ * maxBatchSize, since only the batches whose row count matches the current batch size are sampled.
+ * Only the tables whose batch size was requested are sampled.
+ * <p>
+ * For testing, a latency model can replace the measured execution time, which makes the tuning deterministic.
+ *
+ * @author Vlad Mihalcea
+ */
+public class BatchSizeController implements QueryExecutionListener {
+
+    public static final int DEFAULT_SAMPLE_COUNT = 3;
+
+    private static final Pattern TABLE_PATTERN = Pattern.compile(
+        "^(?:insert\\s+into|update|delete\\s+from)\\s+([^\\s(]+)");
+
+    private final Map<String, Tuner> tuners = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<long[]> executionStartNanosHolder = ThreadLocal.withInitial(() -> new long[1]);
+
+    private int minBatchSize = 1;
+
+    private int maxBatchSize = 1000;
+
+    private int initialBatchSize = Integer.valueOf(Dialect.DEFAULT_BATCH_SIZE);
+
+    private int sampleCount = DEFAULT_SAMPLE_COUNT;
+
+    private volatile ToLongBiFunction<String, Integer> latencyModel;
+
+    public BatchSizeController setMinBatchSize(int minBatchSize) {
+        if (minBatchSize <= 0) {
+            throw new IllegalArgumentException("The min batch size must be positive");
+        }
+        this.minBatchSize = minBatchSize;
+        return this;
+    }
+
+    public BatchSizeController setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("The max batch size must be positive");
+        }
+        this.maxBatchSize = maxBatchSize;
+        return this;
+    }
+
+    public BatchSizeController setInitialBatchSize(int initialBatchSize) {
+        if (initialBatchSize <= 0) {
+            throw new IllegalArgumentException("The initial batch size must be positive");
+        }
+        this.initialBatchSize = initialBatchSize;
+        return this;
+    }
+
+    public BatchSizeController setSampleCount(int sampleCount) {
+        if (sampleCount <= 0) {
+            throw new IllegalArgumentException("The sample count must be positive");
+        }
+        this.sampleCount = sampleCount;
+        return this;
+    }
+
+    /**
+     * Replace the measured batch execution time with the given model, for deterministic tuning
+     *
+     * @param latencyModel computes the batch latency in nanoseconds out of the table name and the batch row count
+     * @return this
+     */
+    public BatchSizeController setLatencyModel(ToLongBiFunction<String, Integer> latencyModel) {
+        this.latencyModel = latencyModel;
+        return this;
+    }
+
+    /**
+     * @param table table name
+     * @return the batch size to use for the given table
+     */
+    public int getBatchSize(String table) {
+        return tuner(table).size;
+    }
+
+    /**
+     * @param table table name
+     * @return whether the batch size search of the given table is over
+     */
+    public boolean isConverged(String table) {
+        return tuner(table).converged;
+    }
+
+    /**
+     * Restart the batch size search of every table, as the workload or the database has changed
+     */
+    public void reset() {
+        tuners.clear();
+    }
+
+    /**
+     * @param session Session to flush and clear
+     * @param table   table whose batch size drives the cadence
+     * @return a new flush/clear cadence
+     */
+    public Cadence cadence(Session session, String table) {
+        return new Cadence(session, table);
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        executionStartNanosHolder.get()[0] = System.nanoTime();
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        long elapsedNanos = System.nanoTime() - executionStartNanosHolder.get()[0];
+        if (!execInfo.isBatch() || !execInfo.isSuccess() || queryInfoList.size() != 1) {
+            return;
+        }
+        String table = table(queryInfoList.get(0).getQuery());
+        Tuner tuner = table != null ? tuners.get(table) : null;
+        if (tuner != null) {
+            int rows = execInfo.getBatchSize();
+            ToLongBiFunction<String, Integer> model = latencyModel;
+            tuner.record(rows, model != null ? model.applyAsLong(table, rows) : elapsedNanos);
+        }
+    }
+
+    /**
+     * Record the execution of a batch
+     *
+     * @param table        table name
+     * @param rows         batch row count
+     * @param elapsedNanos batch execution time
+     */
+    public void record(String table, int rows, long elapsedNanos) {
+        tuner(table).record(rows, elapsedNanos);
+    }
+
+    static String table(String query) {
+        String statement = QueryUtils.removeCommentAndWhiteSpace(query).trim().toLowerCase(Locale.ROOT);
+        Matcher matcher = TABLE_PATTERN.matcher(statement);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private Tuner tuner(String table) {
+        return tuners.computeIfAbsent(table.toLowerCase(Locale.ROOT), key -> new Tuner());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("BatchSizeController");
+        tuners.forEach((table, tuner) -> builder.append(String.format(
+            "%n  %s: batch size %d, %s, %.0f rows/s", table, tuner.size,
+            tuner.converged ? "converged" : "searching", tuner.bestThroughput * 1e9)));
+        return builder.toString();
+    }
+
+    /**
+     * Hill-climbing batch size search of a single table
+     */
+    private class Tuner {
+
+        private volatile int size = clamp(initialBatchSize);
+
+        private volatile boolean converged;
+
+        private int bestSize = size;
+
+        private double bestThroughput;
+
+        private int step = Math.max(1, size / 2);
+
+        private int direction = 1;
+
+        private int samples;
+
+        private long sampleRows;
+
+        private long sampleNanos;
+
+        synchronized void record(int rows, long elapsedNanos) {
+            if (converged || rows != size) {
+                return;
+            }
+            sampleRows += rows;
+            sampleNanos += Math.max(1, elapsedNanos);
+            if (++samples < sampleCount) {
+                return;
+            }
+            double throughput = (double) sampleRows / sampleNanos;
+            samples = 0;
+            sampleRows = 0;
+            sampleNanos = 0;
+
+            if (throughput > bestThroughput) {
+                bestThroughput = throughput;
+                bestSize = size;
+                step *= 2;
+            } else {
+                direction = -direction;
+                step /= 2;
+            }
+            int next = clamp(bestSize + direction * step);
+            if (next == bestSize && step > 0) {
+                direction = -direction;
+                step /= 2;
+                next = clamp(bestSize + direction * step);
+            }
+            if (step == 0 || next == bestSize) {
+                converged = true;
+                next = bestSize;
+            }
+            size = next;
+        }
+    }
+
+    private int clamp(int batchSize) {
+        return Math.max(minBatchSize, Math.min(maxBatchSize, batchSize));
+    }
+
+    /**
+     * Flushes and clears the Session every time the current batch size of its table is reached
+     */
+    public class Cadence {
+
+        private final Session session;
+
+        private final String table;
+
+        private int pending;
+
+        private Cadence(Session session, String table) {
+            this.session = session;
+            this.table = table;
+        }
+
+        /**
+         * Account for a new entity to be written to the table, flushing and clearing if the batch is full
+         */
+        public void next() {
+            if (++pending >= getBatchSize(table)) {
+                session.flush();
+                session.clear();
+                pending = 0;
+            }
+        }
+    }
+}
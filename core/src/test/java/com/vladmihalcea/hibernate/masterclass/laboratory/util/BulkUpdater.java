@@ -0,0 +1,212 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.metadata.ClassMetadata;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * <code>BulkUpdater</code> - Updates all entities matching a condition, incrementing their @Version.
+ * <p>
+ * When every assignment is an HQL expression, a single <code>update versioned</code> statement is executed,
+ * so no entity is loaded, and Hibernate invalidates the second-level cache regions of the updated entity,
+ * as well as the query cache.
+ * <p>
+ * When an assignment can only be computed in Java, the matching entities are scrolled instead and
+ * updated one by one, the Session being flushed every batchSize entities, and the scrolled entities evicted,
+ * so the UPDATE statements can be batched when hibernate.jdbc.batch_size is set. The HQL expression assignments
+ * are still evaluated by the database, being selected along with the entity. This path updates the second-level
+ * cache entries one by one, like any other entity modification.
+ * <p>
+ * Either way, the state and the @Version of the entities already managed by the Session become outdated,
+ * so {@link #execute(Session)} flushes the Session and evicts every managed instance of the entity class
+ * beforehand, along with the associations the eviction cascades to. Those instances are detached, and must be
+ * reloaded to be modified afterwards. The other managed entities are left untouched.
+ * <p>
+ * The expressions and the condition must reference the entity through the alias given to the constructor.
+ *
+ * @author Vlad Mihalcea
+ */
+public class BulkUpdater<T> {
+
+    public static final int DEFAULT_BATCH_SIZE = 50;
+
+    private final Class<T> entityClass;
+
+    private final String alias;
+
+    private final Map<String, String> expressions = new LinkedHashMap<>();
+
+    private final Map<String, Function<T, ?>> functions = new LinkedHashMap<>();
+
+    private final Map<String, Object> parameters = new LinkedHashMap<>();
+
+    private String condition;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    public BulkUpdater(Class<T> entityClass, String alias) {
+        this.entityClass = entityClass;
+        this.alias = alias;
+    }
+
+    /**
+     * Assign the given HQL expression to the given property
+     *
+     * @param property      entity property
+     * @param hqlExpression HQL expression, like <code>concat('Blog ', p.title)</code>
+     * @return this
+     */
+    public BulkUpdater<T> set(String property, String hqlExpression) {
+        functions.remove(property);
+        expressions.put(property, hqlExpression);
+        return this;
+    }
+
+    /**
+     * Assign the value computed in Java to the given property, which requires every entity to be loaded
+     *
+     * @param property      entity property
+     * @param valueFunction computes the new property value out of the current entity state
+     * @return this
+     */
+    public BulkUpdater<T> set(String property, Function<T, ?> valueFunction) {
+        expressions.remove(property);
+        functions.put(property, valueFunction);
+        return this;
+    }
+
+    public BulkUpdater<T> where(String hqlCondition) {
+        this.condition = hqlCondition;
+        return this;
+    }
+
+    public BulkUpdater<T> setParameter(String name, Object value) {
+        parameters.put(name, value);
+        return this;
+    }
+
+    public BulkUpdater<T> setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be positive");
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * @return whether the update can run as a single set-based statement
+     */
+    public boolean isBulk() {
+        return functions.isEmpty();
+    }
+
+    /**
+     * Update the matching entities
+     *
+     * @param session Session
+     * @return number of updated entities
+     */
+    public int execute(Session session) {
+        if (expressions.isEmpty() && functions.isEmpty()) {
+            throw new IllegalStateException("No property assignment was given");
+        }
+        session.flush();
+        evictManagedEntities(session);
+        return isBulk() ? executeBulk(session) : executeBatched(session);
+    }
+
+    private void evictManagedEntities(Session session) {
+        List<Object> managedEntities = new ArrayList<>();
+        for (Map.Entry<Object, EntityEntry> entityEntry :
+                ((SessionImplementor) session).getPersistenceContext().reentrantSafeEntityEntries()) {
+            if (entityClass.isInstance(entityEntry.getKey())) {
+                managedEntities.add(entityEntry.getKey());
+            }
+        }
+        managedEntities.forEach(session::evict);
+    }
+
+    private int executeBulk(Session session) {
+        StringBuilder hql = new StringBuilder("update versioned ")
+            .append(entityName(session)).append(" ").append(alias).append(" set ");
+        boolean first = true;
+        for (Map.Entry<String, String> expression : expressions.entrySet()) {
+            if (!first) {
+                hql.append(", ");
+            }
+            hql.append(alias).append(".").append(expression.getKey()).append(" = ").append(expression.getValue());
+            first = false;
+        }
+        appendCondition(hql);
+        return bind(session.createQuery(hql.toString())).executeUpdate();
+    }
+
+    @SuppressWarnings("unchecked")
+    private int executeBatched(Session session) {
+        ClassMetadata metadata = session.getSessionFactory().getClassMetadata(entityClass);
+        List<String> expressionProperties = new ArrayList<>(expressions.keySet());
+        StringBuilder hql = new StringBuilder("select ").append(alias);
+        for (String expression : expressions.values()) {
+            hql.append(", ").append(expression);
+        }
+        hql.append(" from ").append(entityName(session)).append(" ").append(alias);
+        appendCondition(hql);
+
+        int count = 0;
+        List<T> batch = new ArrayList<>(batchSize);
+        ScrollableResults results = bind(session.createQuery(hql.toString())).scroll(ScrollMode.FORWARD_ONLY);
+        try {
+            while (results.next()) {
+                Object[] row = results.get();
+                T entity = (T) row[0];
+                batch.add(entity);
+                for (int i = 0; i < expressionProperties.size(); i++) {
+                    metadata.setPropertyValue(entity, expressionProperties.get(i), row[i + 1]);
+                }
+                for (Map.Entry<String, Function<T, ?>> function : functions.entrySet()) {
+                    metadata.setPropertyValue(entity, function.getKey(), function.getValue().apply(entity));
+                }
+                if (++count % batchSize == 0) {
+                    flushAndEvict(session, batch);
+                }
+            }
+        } finally {
+            results.close();
+        }
+        flushAndEvict(session, batch);
+        return count;
+    }
+
+    private void flushAndEvict(Session session, List<T> batch) {
+        session.flush();
+        batch.forEach(session::evict);
+        batch.clear();
+    }
+
+    private void appendCondition(StringBuilder hql) {
+        if (condition != null) {
+            hql.append(" where ").append(condition);
+        }
+    }
+
+    private Query bind(Query query) {
+        for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+            query.setParameter(parameter.getKey(), parameter.getValue());
+        }
+        return query;
+    }
+
+    private String entityName(Session session) {
+        return session.getSessionFactory().getClassMetadata(entityClass).getEntityName();
+    }
+}
@@ -0,0 +1,432 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <code>JdbcBulkLoader</code> - Loads generated rows into several tables using batched JDBC inserts,
+ * instead of hand-rolling the addBatch/executeBatch loop for every fixture.
+ * <p>
+ * The tables are loaded in the order they were added, so parent tables must come first.
+ * Every insert is executed in batches of batchSize statements, and, when rowsPerStatement is greater than 1,
+ * the single-row <code>INSERT ... VALUES (?, ?)</code> statement is rewritten to insert rowsPerStatement rows at once.
+ * When commitSize is positive, the connection is committed once at least commitSize rows were executed
+ * since the previous commit, and after every table, otherwise committing is left to the caller.
+ * If the connection was in auto-commit mode, the rows of a failed chunk are rolled back
+ * before the auto-commit mode is restored.
+ *
+ * @author Vlad Mihalcea
+ */
+public class JdbcBulkLoader {
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    private final List<TableLoad> tableLoads = new ArrayList<>();
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    private int rowsPerStatement = 1;
+
+    private long commitSize;
+
+    public JdbcBulkLoader setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be positive");
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public JdbcBulkLoader setRowsPerStatement(int rowsPerStatement) {
+        if (rowsPerStatement <= 0) {
+            throw new IllegalArgumentException("The rows per statement must be positive");
+        }
+        this.rowsPerStatement = rowsPerStatement;
+        return this;
+    }
+
+    public JdbcBulkLoader setCommitSize(long commitSize) {
+        this.commitSize = commitSize;
+        return this;
+    }
+
+    /**
+     * Add a table whose rows are generated from their zero-based row number
+     *
+     * @param insertSql single-row insert statement
+     * @param rowCount  number of rows
+     * @param generator binds the parameters of a given row number
+     * @return this loader
+     */
+    public JdbcBulkLoader table(String insertSql, long rowCount, RowGenerator generator) {
+        tableLoads.add(new GeneratedTableLoad(insertSql, rowCount, generator));
+        return this;
+    }
+
+    /**
+     * Add a table whose rows are bound from the given source objects
+     *
+     * @param insertSql single-row insert statement
+     * @param rows      source objects
+     * @param binder    binds the parameters of a given source object
+     * @param <R>       source object type
+     * @return this loader
+     */
+    public <R> JdbcBulkLoader table(String insertSql, Iterable<R> rows, RowBinder<R> binder) {
+        tableLoads.add(new BoundTableLoad<>(insertSql, rows.iterator(), binder));
+        return this;
+    }
+
+    /**
+     * Load all tables using the given connection. A loader can only be used once.
+     *
+     * @param connection JDBC connection
+     * @return load report
+     */
+    public Report load(Connection connection) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        if (commitSize > 0 && autoCommit) {
+            connection.setAutoCommit(false);
+        }
+        try {
+            List<TableReport> tableReports = new ArrayList<>();
+            for (TableLoad tableLoad : tableLoads) {
+                tableReports.add(load(connection, tableLoad));
+            }
+            return new Report(tableReports);
+        } catch (SQLException | RuntimeException e) {
+            if (commitSize > 0 && autoCommit) {
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackException) {
+                    e.addSuppressed(rollbackException);
+                }
+            }
+            throw e;
+        } finally {
+            if (commitSize > 0 && autoCommit) {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private TableReport load(Connection connection, TableLoad tableLoad) throws SQLException {
+        long startNanos = System.nanoTime();
+        long rowCount = 0;
+        long executeCount = 0;
+        long uncommittedRowCount = 0;
+        String multiRowSql = rowsPerStatement > 1 ?
+            toMultiRowInsert(tableLoad.insertSql, rowsPerStatement) : tableLoad.insertSql;
+        try (PreparedStatement statement = connection.prepareStatement(multiRowSql)) {
+            Parameters parameters = new Parameters(statement);
+            int statementCount = 0;
+            int rows;
+            while ((rows = tableLoad.fill(rowsPerStatement)) == rowsPerStatement) {
+                parameters.index = 0;
+                for (int i = 0; i < rows; i++) {
+                    tableLoad.bind(i, parameters);
+                }
+                statement.addBatch();
+                rowCount += rows;
+                uncommittedRowCount += rows;
+                if (++statementCount == batchSize) {
+                    statement.executeBatch();
+                    executeCount++;
+                    statementCount = 0;
+                    if (commitSize > 0 && uncommittedRowCount >= commitSize) {
+                        connection.commit();
+                        uncommittedRowCount = 0;
+                    }
+                }
+            }
+            if (statementCount > 0) {
+                statement.executeBatch();
+                executeCount++;
+            }
+            if (rows > 0) {
+                try (PreparedStatement singleRowStatement = connection.prepareStatement(tableLoad.insertSql)) {
+                    Parameters singleRowParameters = new Parameters(singleRowStatement);
+                    for (int i = 0; i < rows; i++) {
+                        singleRowParameters.index = 0;
+                        tableLoad.bind(i, singleRowParameters);
+                        singleRowStatement.addBatch();
+                    }
+                    singleRowStatement.executeBatch();
+                    executeCount++;
+                    rowCount += rows;
+                }
+            }
+        }
+        if (commitSize > 0) {
+            connection.commit();
+        }
+        return new TableReport(tableLoad.insertSql, rowCount, executeCount, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Rewrite a single-row insert statement so that it inserts rowCount rows
+     *
+     * @param insertSql single-row insert statement
+     * @param rowCount  number of rows
+     * @return multi-row insert statement
+     */
+    static String toMultiRowInsert(String insertSql, int rowCount) {
+        int valuesIndex = insertSql.toLowerCase(Locale.ROOT).lastIndexOf("values");
+        int start = valuesIndex < 0 ? -1 : insertSql.indexOf('(', valuesIndex);
+        int end = insertSql.lastIndexOf(')');
+        if (start < 0 || end < start) {
+            throw new IllegalArgumentException("Not a single-row INSERT ... VALUES statement: " + insertSql);
+        }
+        String valuesGroup = insertSql.substring(start, end + 1);
+        StringBuilder sql = new StringBuilder(insertSql.length() + (valuesGroup.length() + 2) * (rowCount - 1));
+        sql.append(insertSql, 0, end + 1);
+        for (int i = 1; i < rowCount; i++) {
+            sql.append(", ").append(valuesGroup);
+        }
+        return sql.append(insertSql, end + 1, insertSql.length()).toString();
+    }
+
+    @FunctionalInterface
+    public interface RowGenerator {
+        void generate(long row, Parameters parameters) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface RowBinder<R> {
+        void bind(R row, Parameters parameters) throws SQLException;
+    }
+
+    /**
+     * <code>Parameters</code> - Binds the parameters of a row, in the order of the insert columns,
+     * like the <code>statement.setXxx(++index, value)</code> idiom does.
+     */
+    public static class Parameters {
+
+        private final PreparedStatement statement;
+
+        private int index;
+
+        private Parameters(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        public Parameters setLong(long value) throws SQLException {
+            statement.setLong(++index, value);
+            return this;
+        }
+
+        public Parameters setInt(int value) throws SQLException {
+            statement.setInt(++index, value);
+            return this;
+        }
+
+        public Parameters setString(String value) throws SQLException {
+            statement.setString(++index, value);
+            return this;
+        }
+
+        public Parameters setTimestamp(Timestamp value) throws SQLException {
+            statement.setTimestamp(++index, value);
+            return this;
+        }
+
+        public Parameters setObject(Object value) throws SQLException {
+            statement.setObject(++index, value);
+            return this;
+        }
+    }
+
+    /**
+     * <code>Report</code> - Row counts and throughput of a {@link JdbcBulkLoader#load(Connection)} call
+     */
+    public static class Report {
+
+        private final List<TableReport> tableReports;
+
+        private Report(List<TableReport> tableReports) {
+            this.tableReports = Collections.unmodifiableList(tableReports);
+        }
+
+        public List<TableReport> getTableReports() {
+            return tableReports;
+        }
+
+        public long getRowCount() {
+            long rowCount = 0;
+            for (TableReport tableReport : tableReports) {
+                rowCount += tableReport.getRowCount();
+            }
+            return rowCount;
+        }
+
+        public long getElapsedNanos() {
+            long elapsedNanos = 0;
+            for (TableReport tableReport : tableReports) {
+                elapsedNanos += tableReport.getElapsedNanos();
+            }
+            return elapsedNanos;
+        }
+
+        public double getRowsPerSecond() {
+            return rowsPerSecond(getRowCount(), getElapsedNanos());
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder report = new StringBuilder(String.format(
+                "Loaded %d rows in %d ms (%.0f rows/s)",
+                getRowCount(), TimeUnit.NANOSECONDS.toMillis(getElapsedNanos()), getRowsPerSecond()
+            ));
+            for (TableReport tableReport : tableReports) {
+                report.append("\n\t").append(tableReport);
+            }
+            return report.toString();
+        }
+    }
+
+    /**
+     * <code>TableReport</code> - Row count and throughput of a single table
+     */
+    public static class TableReport {
+
+        private final String insertSql;
+
+        private final long rowCount;
+
+        private final long executeCount;
+
+        private final long elapsedNanos;
+
+        private TableReport(String insertSql, long rowCount, long executeCount, long elapsedNanos) {
+            this.insertSql = insertSql;
+            this.rowCount = rowCount;
+            this.executeCount = executeCount;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public String getInsertSql() {
+            return insertSql;
+        }
+
+        public long getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * Number of executeBatch round trips
+         *
+         * @return execute count
+         */
+        public long getExecuteCount() {
+            return executeCount;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getRowsPerSecond() {
+            return rowsPerSecond(rowCount, elapsedNanos);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "%d rows, %d batches in %d ms (%.0f rows/s): %s",
+                rowCount, executeCount, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), getRowsPerSecond(), insertSql
+            );
+        }
+    }
+
+    private static double rowsPerSecond(long rowCount, long elapsedNanos) {
+        return elapsedNanos > 0 ? rowCount * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos : 0;
+    }
+
+    /**
+     * Every statement rows are buffered first, so the last rows can be bound to a single-row statement
+     * when there are not enough of them to fill a multi-row statement.
+     */
+    private abstract static class TableLoad {
+
+        private final String insertSql;
+
+        TableLoad(String insertSql) {
+            this.insertSql = insertSql;
+        }
+
+        abstract int fill(int maxRows);
+
+        abstract void bind(int bufferIndex, Parameters parameters) throws SQLException;
+    }
+
+    private static class GeneratedTableLoad extends TableLoad {
+
+        private final long rowCount;
+
+        private final RowGenerator generator;
+
+        private long firstRow;
+
+        private long nextRow;
+
+        GeneratedTableLoad(String insertSql, long rowCount, RowGenerator generator) {
+            super(insertSql);
+            this.rowCount = rowCount;
+            this.generator = generator;
+        }
+
+        @Override
+        int fill(int maxRows) {
+            int rows = (int) Math.min(maxRows, rowCount - nextRow);
+            firstRow = nextRow;
+            nextRow += rows;
+            return rows;
+        }
+
+        @Override
+        void bind(int bufferIndex, Parameters parameters) throws SQLException {
+            generator.generate(firstRow + bufferIndex, parameters);
+        }
+    }
+
+    private static class BoundTableLoad<R> extends TableLoad {
+
+        private final Iterator<R> iterator;
+
+        private final RowBinder<R> binder;
+
+        private Object[] buffer = new Object[0];
+
+        BoundTableLoad(String insertSql, Iterator<R> iterator, RowBinder<R> binder) {
+            super(insertSql);
+            this.iterator = iterator;
+            this.binder = binder;
+        }
+
+        @Override
+        int fill(int maxRows) {
+            if (buffer.length < maxRows) {
+                buffer = new Object[maxRows];
+            }
+            int rows = 0;
+            while (rows < maxRows && iterator.hasNext()) {
+                buffer[rows++] = iterator.next();
+            }
+            return rows;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void bind(int bufferIndex, Parameters parameters) throws SQLException {
+            binder.bind((R) buffer[bufferIndex], parameters);
+        }
+    }
+}
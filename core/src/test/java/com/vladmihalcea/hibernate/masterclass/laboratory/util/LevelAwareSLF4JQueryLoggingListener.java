@@ -0,0 +1,40 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.SLF4JQueryLoggingListener;
+
+import java.util.List;
+
+/**
+ * <code>LevelAwareSLF4JQueryLoggingListener</code> - SLF4J query logging listener which
+ * doesn't build the log entry unless its log level is enabled
+ *
+ * @author Vlad Mihalcea
+ */
+public class LevelAwareSLF4JQueryLoggingListener extends SLF4JQueryLoggingListener {
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        if (isLogEnabled()) {
+            super.afterQuery(execInfo, queryInfoList);
+        }
+    }
+
+    protected boolean isLogEnabled() {
+        switch (logLevel) {
+            case TRACE:
+                return logger.isTraceEnabled();
+            case DEBUG:
+                return logger.isDebugEnabled();
+            case INFO:
+                return logger.isInfoEnabled();
+            case WARN:
+                return logger.isWarnEnabled();
+            case ERROR:
+                return logger.isErrorEnabled();
+            default:
+                return true;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import java.util.Arrays;
+
+/**
+ * <code>LongObjectHashMap</code> - Open addressing hash map with primitive long keys, so that looking up
+ * an identifier doesn't require boxing it. Collisions are resolved with linear probing, and null values
+ * are not supported since they mark the empty slots.
+ *
+ * @author Vlad Mihalcea
+ */
+public class LongObjectHashMap<V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] keys;
+
+    private Object[] values;
+
+    private int mask;
+
+    private int size;
+
+    public LongObjectHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongObjectHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(DEFAULT_CAPACITY, expectedSize * 2) - 1) << 1;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        for (int i = index(key); ; i = (i + 1) & mask) {
+            Object value = values[i];
+            if (value == null || keys[i] == key) {
+                return (V) value;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not supported");
+        }
+        for (int i = index(key); ; i = (i + 1) & mask) {
+            Object previous = values[i];
+            if (previous == null) {
+                keys[i] = key;
+                values[i] = value;
+                if (++size > (mask >>> 1)) {
+                    resize();
+                }
+                return null;
+            }
+            if (keys[i] == key) {
+                values[i] = value;
+                return (V) previous;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    private int index(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        int capacity = oldValues.length << 1;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        for (int j = 0; j < oldValues.length; j++) {
+            Object value = oldValues[j];
+            if (value != null) {
+                int i = index(oldKeys[j]);
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = value;
+            }
+        }
+    }
+}
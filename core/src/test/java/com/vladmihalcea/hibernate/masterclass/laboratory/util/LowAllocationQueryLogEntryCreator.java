@@ -0,0 +1,228 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.DefaultQueryLogEntryCreator;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * <code>LowAllocationQueryLogEntryCreator</code> - Writes the same log entries as
+ * {@link AbstractTest.InlineQueryLogEntryCreator}, but it reuses a thread-local buffer,
+ * formats parameters by type instead of going through reflective array conversions
+ * and logs at most {@link #getMaxBatchParameterCount()} parameter sets per batched statement.
+ *
+ * @author Vlad Mihalcea
+ */
+public class LowAllocationQueryLogEntryCreator extends DefaultQueryLogEntryCreator {
+
+    public static final int DEFAULT_MAX_BATCH_PARAMETER_COUNT = 100;
+
+    private static final int INITIAL_BUFFER_CAPACITY = 1024;
+
+    private static final int MAX_RETAINED_BUFFER_CAPACITY = 64 * 1024;
+
+    private static final String[] PARAMETER_INDEX_KEYS = new String[256];
+
+    static {
+        for (int i = 0; i < PARAMETER_INDEX_KEYS.length; i++) {
+            PARAMETER_INDEX_KEYS[i] = String.valueOf(i + 1);
+        }
+    }
+
+    private static final ThreadLocal<StringBuilder> BUFFER_HOLDER =
+            ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_BUFFER_CAPACITY));
+
+    private int maxBatchParameterCount = DEFAULT_MAX_BATCH_PARAMETER_COUNT;
+
+    public int getMaxBatchParameterCount() {
+        return maxBatchParameterCount;
+    }
+
+    public void setMaxBatchParameterCount(int maxBatchParameterCount) {
+        if (maxBatchParameterCount < 1) {
+            throw new IllegalArgumentException("The max batch parameter count must be a positive number!");
+        }
+        this.maxBatchParameterCount = maxBatchParameterCount;
+    }
+
+    @Override
+    public String getLogEntry(ExecutionInfo execInfo, List<QueryInfo> queryInfoList, boolean writeDataSourceName) {
+        StringBuilder sb = BUFFER_HOLDER.get();
+        sb.setLength(0);
+        if (writeDataSourceName) {
+            String dataSourceName = execInfo.getDataSourceName();
+            sb.append("Name:").append(dataSourceName == null ? "" : dataSourceName).append(", ");
+        }
+        sb.append("Time:").append(execInfo.getElapsedTime()).append(", ");
+        sb.append("Success:").append(execInfo.isSuccess() ? "True" : "False").append(", ");
+        sb.append("Type:").append(getStatementType(execInfo.getStatementType())).append(", ");
+        sb.append("Batch:").append(execInfo.isBatch() ? "True" : "False").append(", ");
+        sb.append("QuerySize:").append(queryInfoList.size()).append(", ");
+        sb.append("BatchSize:").append(execInfo.getBatchSize()).append(", ");
+        writeQueriesEntry(sb, execInfo, queryInfoList);
+        writeParamsEntry(sb, execInfo, queryInfoList);
+        String logEntry = sb.toString();
+        if (sb.capacity() > MAX_RETAINED_BUFFER_CAPACITY) {
+            BUFFER_HOLDER.set(new StringBuilder(INITIAL_BUFFER_CAPACITY));
+        }
+        return logEntry;
+    }
+
+    @Override
+    protected void writeQueriesEntry(StringBuilder sb, ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        sb.append("Query:[");
+        for (int i = 0; i < queryInfoList.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append('"').append(queryInfoList.get(i).getQuery()).append('"');
+        }
+        sb.append("], ");
+    }
+
+    @Override
+    protected void writeParamsEntry(StringBuilder sb, ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        sb.append("Params:[");
+        for (int i = 0; i < queryInfoList.size(); i++) {
+            List<Map<String, Object>> queryArgsList = queryInfoList.get(i).getQueryArgsList();
+            int parameterSetCount = queryArgsList.size();
+            int loggedParameterSetCount = Math.min(parameterSetCount, maxBatchParameterCount);
+            for (int j = 0; j < loggedParameterSetCount; j++) {
+                if (j > 0) {
+                    sb.append(", ");
+                }
+                writeParameters(sb, queryArgsList.get(j));
+            }
+            if (parameterSetCount > loggedParameterSetCount) {
+                sb.append(", ... ").append(parameterSetCount - loggedParameterSetCount).append(" more");
+            }
+        }
+        sb.append("]");
+    }
+
+    private void writeParameters(StringBuilder sb, Map<String, Object> parameters) {
+        sb.append('(');
+        int parameterCount = parameters.size();
+        if (hasIndexKeys(parameters)) {
+            for (int i = 0; i < parameterCount; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                appendValue(sb, parameters.get(PARAMETER_INDEX_KEYS[i]));
+            }
+        } else {
+            SortedMap<String, Object> sortedParameters = new TreeMap<>(new StringAsIntegerComparator());
+            sortedParameters.putAll(parameters);
+            boolean firstParameter = true;
+            for (Object parameter : sortedParameters.values()) {
+                if (!firstParameter) {
+                    sb.append(", ");
+                } else {
+                    firstParameter = false;
+                }
+                appendValue(sb, parameter);
+            }
+        }
+        sb.append(')');
+    }
+
+    private boolean hasIndexKeys(Map<String, Object> parameters) {
+        int parameterCount = parameters.size();
+        if (parameterCount > PARAMETER_INDEX_KEYS.length) {
+            return false;
+        }
+        for (int i = 0; i < parameterCount; i++) {
+            if (!parameters.containsKey(PARAMETER_INDEX_KEYS[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static void appendValue(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof String) {
+            sb.append((String) value);
+        } else if (value instanceof Long || value instanceof Integer ||
+                value instanceof Short || value instanceof Byte) {
+            sb.append(((Number) value).longValue());
+        } else if (value instanceof Double) {
+            sb.append(((Double) value).doubleValue());
+        } else if (value instanceof Float) {
+            sb.append(((Float) value).floatValue());
+        } else if (value instanceof Boolean) {
+            sb.append(((Boolean) value).booleanValue());
+        } else if (value instanceof Character) {
+            sb.append(((Character) value).charValue());
+        } else if (value.getClass().isArray()) {
+            appendArray(sb, value);
+        } else {
+            sb.append(value);
+        }
+    }
+
+    private static void appendArray(StringBuilder sb, Object array) {
+        sb.append('[');
+        if (array instanceof byte[]) {
+            byte[] values = (byte[]) array;
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(values[i]);
+            }
+        } else if (array instanceof short[]) {
+            short[] values = (short[]) array;
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(values[i]);
+            }
+        } else if (array instanceof char[]) {
+            char[] values = (char[]) array;
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(values[i]);
+            }
+        } else if (array instanceof int[]) {
+            int[] values = (int[]) array;
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(values[i]);
+            }
+        } else if (array instanceof long[]) {
+            long[] values = (long[]) array;
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(values[i]);
+            }
+        } else if (array instanceof float[]) {
+            float[] values = (float[]) array;
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(values[i]);
+            }
+        } else if (array instanceof double[]) {
+            double[] values = (double[]) array;
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(values[i]);
+            }
+        } else if (array instanceof boolean[]) {
+            boolean[] values = (boolean[]) array;
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(values[i]);
+            }
+        } else {
+            Object[] values = (Object[]) array;
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(values[i]);
+            }
+        }
+        sb.append(']');
+    }
+}
@@ -0,0 +1,419 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * <code>ParallelBatchInserter</code> - Inserts a stream of aggregates using several worker threads,
+ * each one owning its own {@link Session} or {@link StatelessSession}, and so its own JDBC connection,
+ * instead of sending all batches through a single connection.
+ * <p>
+ * The calling thread partitions the aggregates into chunks of chunkSize aggregates, and every chunk is inserted
+ * in a separate transaction by the first idle worker. A stateful worker flushes and clears its Session every batchSize
+ * aggregates, so batchSize should match the hibernate.jdbc.batch_size setting.
+ * <p>
+ * The identifiers should be assigned by a pooled-lo sequence, so that every worker calls the database sequence
+ * only once per increment_size entities. When the pooled-lo optimizer lock becomes a bottleneck,
+ * the {@link com.vladmihalcea.hibernate.masterclass.laboratory.idgenerator.StripedPooledLoOptimizer} can be used instead.
+ * <p>
+ * If a worker fails, the other workers are interrupted and the chunks they already committed are not rolled back.
+ *
+ * @author Vlad Mihalcea
+ */
+public class ParallelBatchInserter<T> {
+
+    public static final int DEFAULT_BATCH_SIZE = 50;
+
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    private final SessionFactory sessionFactory;
+
+    private int workerCount = Runtime.getRuntime().availableProcessors();
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    public ParallelBatchInserter(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    public ParallelBatchInserter<T> setWorkerCount(int workerCount) {
+        if (workerCount <= 0) {
+            throw new IllegalArgumentException("The worker count must be positive");
+        }
+        this.workerCount = workerCount;
+        return this;
+    }
+
+    public ParallelBatchInserter<T> setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be positive");
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public ParallelBatchInserter<T> setChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("The chunk size must be positive");
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Insert the aggregates using stateful sessions
+     *
+     * @param aggregates aggregates to insert
+     * @param persister  persists an aggregate, cascading to its child entities
+     * @return insert report
+     */
+    public Report insert(Iterator<T> aggregates, BiConsumer<Session, T> persister) {
+        return run(aggregates, () -> new StatefulWorker(persister));
+    }
+
+    /**
+     * Insert the aggregates using stateless sessions, which don't cascade,
+     * so the inserter must insert every entity of the aggregate, parent first.
+     *
+     * @param aggregates aggregates to insert
+     * @param inserter   inserts all entities of an aggregate
+     * @return insert report
+     */
+    public Report insertStateless(Iterator<T> aggregates, BiConsumer<StatelessSession, T> inserter) {
+        return run(aggregates, () -> new StatelessWorker(inserter));
+    }
+
+    private Report run(Iterator<T> aggregates, Supplier<Worker> workerFactory) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(workerCount, r -> {
+            Thread worker = new Thread(r);
+            worker.setName("ParallelBatchInserter-" + threadCount.incrementAndGet());
+            return worker;
+        });
+        BlockingQueue<List<T>> chunks = new ArrayBlockingQueue<>(workerCount * 2);
+        long startNanos = System.nanoTime();
+        try {
+            List<Future<WorkerReport>> futures = new ArrayList<>(workerCount);
+            for (int i = 0; i < workerCount; i++) {
+                Worker worker = workerFactory.get();
+                futures.add(executorService.submit(() -> worker.call(chunks)));
+            }
+            List<T> chunk = new ArrayList<>(chunkSize);
+            while (aggregates.hasNext()) {
+                chunk.add(aggregates.next());
+                if (chunk.size() == chunkSize) {
+                    offer(chunks, chunk, futures);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                offer(chunks, chunk, futures);
+            }
+            for (int i = 0; i < workerCount; i++) {
+                offer(chunks, Collections.emptyList(), futures);
+            }
+            List<WorkerReport> workerReports = new ArrayList<>(workerCount);
+            for (Future<WorkerReport> future : futures) {
+                workerReports.add(future.get());
+            }
+            return new Report(workerReports, System.nanoTime() - startNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Queue a chunk, failing fast if a worker died, since it would no longer take any chunk.
+     * Workers only complete normally after taking the empty end-of-stream chunk.
+     */
+    private void offer(BlockingQueue<List<T>> chunks, List<T> chunk, List<Future<WorkerReport>> futures)
+            throws InterruptedException, ExecutionException {
+        while (!chunks.offer(chunk, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            for (Future<WorkerReport> future : futures) {
+                if (future.isDone()) {
+                    future.get();
+                }
+            }
+        }
+    }
+
+    private abstract class Worker {
+
+        WorkerReport call(BlockingQueue<List<T>> chunks) throws InterruptedException {
+            String threadName = Thread.currentThread().getName();
+            long aggregateCount = 0;
+            long chunkCount = 0;
+            long busyNanos = 0;
+            open();
+            try {
+                for (List<T> chunk = chunks.take(); !chunk.isEmpty(); chunk = chunks.take()) {
+                    long startNanos = System.nanoTime();
+                    insert(chunk);
+                    busyNanos += System.nanoTime() - startNanos;
+                    aggregateCount += chunk.size();
+                    chunkCount++;
+                }
+            } finally {
+                close();
+            }
+            return new WorkerReport(threadName, aggregateCount, chunkCount, busyNanos);
+        }
+
+        private void insert(List<T> chunk) {
+            Transaction txn = beginTransaction();
+            try {
+                for (int i = 0; i < chunk.size(); i++) {
+                    insert(chunk.get(i));
+                    if ((i + 1) % batchSize == 0) {
+                        flush();
+                    }
+                }
+                txn.commit();
+                clear();
+            } catch (RuntimeException e) {
+                if (txn.isActive()) {
+                    txn.rollback();
+                }
+                throw e;
+            }
+        }
+
+        abstract void open();
+
+        abstract Transaction beginTransaction();
+
+        abstract void insert(T aggregate);
+
+        abstract void flush();
+
+        abstract void clear();
+
+        abstract void close();
+    }
+
+    private class StatefulWorker extends Worker {
+
+        private final BiConsumer<Session, T> persister;
+
+        private Session session;
+
+        StatefulWorker(BiConsumer<Session, T> persister) {
+            this.persister = persister;
+        }
+
+        @Override
+        void open() {
+            session = sessionFactory.openSession();
+        }
+
+        @Override
+        Transaction beginTransaction() {
+            return session.beginTransaction();
+        }
+
+        @Override
+        void insert(T aggregate) {
+            persister.accept(session, aggregate);
+        }
+
+        @Override
+        void flush() {
+            session.flush();
+            session.clear();
+        }
+
+        @Override
+        void clear() {
+            session.clear();
+        }
+
+        @Override
+        void close() {
+            session.close();
+        }
+    }
+
+    private class StatelessWorker extends Worker {
+
+        private final BiConsumer<StatelessSession, T> inserter;
+
+        private StatelessSession session;
+
+        StatelessWorker(BiConsumer<StatelessSession, T> inserter) {
+            this.inserter = inserter;
+        }
+
+        @Override
+        void open() {
+            session = sessionFactory.openStatelessSession();
+        }
+
+        @Override
+        Transaction beginTransaction() {
+            return session.beginTransaction();
+        }
+
+        @Override
+        void insert(T aggregate) {
+            inserter.accept(session, aggregate);
+        }
+
+        @Override
+        void flush() {
+        }
+
+        @Override
+        void clear() {
+        }
+
+        @Override
+        void close() {
+            session.close();
+        }
+    }
+
+    /**
+     * <code>Report</code> - Aggregate count and throughput of a {@link ParallelBatchInserter} run
+     */
+    public static class Report {
+
+        private final List<WorkerReport> workerReports;
+
+        private final long elapsedNanos;
+
+        private Report(List<WorkerReport> workerReports, long elapsedNanos) {
+            this.workerReports = Collections.unmodifiableList(workerReports);
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public List<WorkerReport> getWorkerReports() {
+            return workerReports;
+        }
+
+        public long getAggregateCount() {
+            long aggregateCount = 0;
+            for (WorkerReport workerReport : workerReports) {
+                aggregateCount += workerReport.getAggregateCount();
+            }
+            return aggregateCount;
+        }
+
+        /**
+         * Wall-clock time, from the first aggregate read to the last committed chunk
+         *
+         * @return elapsed nanoseconds
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getAggregatesPerSecond() {
+            return aggregatesPerSecond(getAggregateCount(), elapsedNanos);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder report = new StringBuilder(String.format(
+                "Inserted %d aggregates using %d workers in %d ms (%.0f aggregates/s)",
+                getAggregateCount(), workerReports.size(),
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), getAggregatesPerSecond()
+            ));
+            for (WorkerReport workerReport : workerReports) {
+                report.append("\n\t").append(workerReport);
+            }
+            return report.toString();
+        }
+    }
+
+    /**
+     * <code>WorkerReport</code> - Aggregate count and throughput of a single worker
+     */
+    public static class WorkerReport {
+
+        private final String threadName;
+
+        private final long aggregateCount;
+
+        private final long chunkCount;
+
+        private final long busyNanos;
+
+        private WorkerReport(String threadName, long aggregateCount, long chunkCount, long busyNanos) {
+            this.threadName = threadName;
+            this.aggregateCount = aggregateCount;
+            this.chunkCount = chunkCount;
+            this.busyNanos = busyNanos;
+        }
+
+        public String getThreadName() {
+            return threadName;
+        }
+
+        public long getAggregateCount() {
+            return aggregateCount;
+        }
+
+        /**
+         * Number of committed transactions
+         *
+         * @return chunk count
+         */
+        public long getChunkCount() {
+            return chunkCount;
+        }
+
+        /**
+         * Time spent inserting chunks, excluding the time spent waiting for them
+         *
+         * @return busy nanoseconds
+         */
+        public long getBusyNanos() {
+            return busyNanos;
+        }
+
+        public double getAggregatesPerSecond() {
+            return aggregatesPerSecond(aggregateCount, busyNanos);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "%s: %d aggregates, %d chunks in %d ms (%.0f aggregates/s)",
+                threadName, aggregateCount, chunkCount, TimeUnit.NANOSECONDS.toMillis(busyNanos), getAggregatesPerSecond()
+            );
+        }
+    }
+
+    private static double aggregatesPerSecond(long aggregateCount, long elapsedNanos) {
+        return elapsedNanos > 0 ? aggregateCount * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos : 0;
+    }
+}
@@ -0,0 +1,179 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import com.codahale.metrics.MetricRegistry;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.QueryType;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryUtils;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <code>QueryMetricsListener</code> - Records per-transaction statement counts, batch sizes,
+ * JDBC execution time and connection hold time into Dropwizard Metrics histograms.
+ * Statements are only accounted for while a {@link #begin()}/{@link #end()} transaction scope is open
+ * on the calling thread, so the statements executed by other threads, like the ones of an
+ * <code>executeAsync</code> worker, are not recorded. Times are recorded in nanoseconds.
+ * <p>
+ * The connection hold time is only recorded for the connections of a {@link #trackConnections(DataSource)}
+ * DataSource, and it's accounted for to the transaction scope the connection was acquired in, even if
+ * the connection is released by some other thread.
+ *
+ * @author Vlad Mihalcea
+ */
+public class QueryMetricsListener implements QueryExecutionListener {
+
+    public static final String BATCH_SIZE = "batchSize";
+
+    public static final String EXECUTION_TIME = "executionTime";
+
+    public static final String CONNECTION_HOLD_TIME = "connectionHoldTime";
+
+    private final MetricRegistry metricRegistry;
+
+    private final ThreadLocal<Deque<TransactionMetrics>> transactionMetricsHolder = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private final ThreadLocal<long[]> executionStartNanosHolder = ThreadLocal.withInitial(() -> new long[1]);
+
+    private volatile TransactionMetrics lastTransactionMetrics;
+
+    public QueryMetricsListener() {
+        this(new MetricRegistry());
+    }
+
+    public QueryMetricsListener(MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+    }
+
+    public static String statementCountName(QueryType queryType) {
+        return queryType.name().toLowerCase(Locale.ROOT) + "Statements";
+    }
+
+    public MetricRegistry getMetricRegistry() {
+        return metricRegistry;
+    }
+
+    public TransactionMetrics getLastTransactionMetrics() {
+        return lastTransactionMetrics;
+    }
+
+    public TransactionMetrics begin() {
+        TransactionMetrics transactionMetrics = new TransactionMetrics();
+        transactionMetricsHolder.get().push(transactionMetrics);
+        return transactionMetrics;
+    }
+
+    public TransactionMetrics end() {
+        TransactionMetrics transactionMetrics = transactionMetricsHolder.get().poll();
+        if (transactionMetrics == null) {
+            throw new IllegalStateException("There is no transaction scope bound to the current thread!");
+        }
+        transactionMetrics.end();
+        for (QueryType queryType : QueryType.values()) {
+            metricRegistry.histogram(statementCountName(queryType))
+                    .update(transactionMetrics.getStatementCount(queryType));
+        }
+        metricRegistry.histogram(EXECUTION_TIME).update(transactionMetrics.getExecutionTime(TimeUnit.NANOSECONDS));
+        metricRegistry.histogram(CONNECTION_HOLD_TIME).update(transactionMetrics.getConnectionHoldTime(TimeUnit.NANOSECONDS));
+        lastTransactionMetrics = transactionMetrics;
+        return transactionMetrics;
+    }
+
+    /**
+     * @param dataSource physical DataSource
+     * @return DataSource recording when its connections are acquired and released
+     */
+    public DataSource trackConnections(DataSource dataSource) {
+        return (DataSource) Proxy.newProxyInstance(
+            getClass().getClassLoader(),
+            new Class<?>[] {DataSource.class},
+            (proxy, method, args) -> {
+                Object result = invoke(dataSource, method, args);
+                if (method.getName().equals("getConnection")) {
+                    TransactionMetrics transactionMetrics = transactionMetricsHolder.get().peek();
+                    if (transactionMetrics != null) {
+                        transactionMetrics.connectionAcquired();
+                        return trackConnection((Connection) result, transactionMetrics);
+                    }
+                }
+                return result;
+            }
+        );
+    }
+
+    private Connection trackConnection(Connection connection, TransactionMetrics transactionMetrics) {
+        AtomicBoolean closed = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(
+            getClass().getClassLoader(),
+            new Class<?>[] {Connection.class},
+            (proxy, method, args) -> {
+                if (method.getName().equals("close") && closed.compareAndSet(false, true)) {
+                    try {
+                        return invoke(connection, method, args);
+                    } finally {
+                        transactionMetrics.connectionReleased();
+                    }
+                }
+                return invoke(connection, method, args);
+            }
+        );
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        executionStartNanosHolder.get()[0] = System.nanoTime();
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        long elapsedNanos = System.nanoTime() - executionStartNanosHolder.get()[0];
+        TransactionMetrics transactionMetrics = transactionMetricsHolder.get().peek();
+        if (transactionMetrics == null) {
+            return;
+        }
+        transactionMetrics.addExecution(elapsedNanos);
+        for (QueryInfo queryInfo : queryInfoList) {
+            transactionMetrics.addStatements(
+                queryType(queryInfo.getQuery()),
+                Math.max(1, queryInfo.getQueryArgsList().size())
+            );
+        }
+        if (execInfo.isBatch()) {
+            transactionMetrics.addBatch(execInfo.getBatchSize());
+            metricRegistry.histogram(BATCH_SIZE).update(execInfo.getBatchSize());
+        }
+    }
+
+    static QueryType queryType(String query) {
+        String statement = QueryUtils.removeCommentAndWhiteSpace(query).trim().toLowerCase(Locale.ROOT);
+        if (statement.startsWith("select") || statement.startsWith("with")) {
+            return QueryType.SELECT;
+        } else if (statement.startsWith("insert")) {
+            return QueryType.INSERT;
+        } else if (statement.startsWith("update")) {
+            return QueryType.UPDATE;
+        } else if (statement.startsWith("delete")) {
+            return QueryType.DELETE;
+        }
+        return QueryType.OTHER;
+    }
+}
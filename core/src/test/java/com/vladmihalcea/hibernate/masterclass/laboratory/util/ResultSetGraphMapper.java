@@ -0,0 +1,263 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.LongFunction;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * <code>ResultSetGraphMapper</code> - Maps a JDBC {@link ResultSet} to an entity graph, like
+ * EntityGraphMapperTest#toPosts does for the Post and PostComment join, but using declarative
+ * {@link EntityMapping} definitions which can be nested to any one-to-many depth.
+ * <p>
+ * Every mapping is identified by a table name and a long identifier column, and the entities are deduplicated
+ * using a {@link LongObjectHashMap}, so no identifier gets boxed. The column indexes are resolved once
+ * for every SQL string, using the result set metadata table names and column labels, and cached by SQL string,
+ * the cache being cleared once it's full, so that it stays bounded.
+ * <p>
+ * A column matches when its label is the mapped column name and its metadata table name is the mapped table.
+ * Some drivers, like the PostgreSQL and the Oracle ones, don't report the table name, in which case the label
+ * must be unique in the result set, so the joined tables columns sharing the same name must be given
+ * distinct aliases (e.g. pc.id AS pc_id) and mapped by their alias. A label which cannot be resolved to a
+ * single column is rejected, instead of being bound to the column of another table.
+ * A mapper is thread-safe, so it can be shared as a constant.
+ *
+ * @author Vlad Mihalcea
+ */
+public class ResultSetGraphMapper<T> {
+
+    private static final int COLUMN_INDEXES_CACHE_SIZE = 256;
+
+    private final EntityMapping<T> rootMapping;
+
+    private final List<EntityMapping<?>> mappings = new ArrayList<>();
+
+    private final Map<String, int[][]> columnIndexesCache = new ConcurrentHashMap<>();
+
+    private ResultSetGraphMapper(EntityMapping<T> rootMapping) {
+        this.rootMapping = rootMapping;
+        register(rootMapping);
+    }
+
+    public static <T> ResultSetGraphMapper<T> of(EntityMapping<T> rootMapping) {
+        return new ResultSetGraphMapper<>(rootMapping);
+    }
+
+    public static <E> EntityMapping<E> entity(String table, String idColumn, LongFunction<E> factory) {
+        return new EntityMapping<>(table, idColumn, factory);
+    }
+
+    /**
+     * Map the result set rows to root entities, in the order of their first occurrence.
+     *
+     * @param sql       SQL string used to cache the resolved column indexes
+     * @param resultSet result set
+     * @return root entities
+     */
+    public List<T> map(String sql, ResultSet resultSet) throws SQLException {
+        int[][] columnIndexes = columnIndexesCache.get(sql);
+        if (columnIndexes == null) {
+            columnIndexes = resolveColumnIndexes(resultSet.getMetaData());
+            if (columnIndexesCache.size() >= COLUMN_INDEXES_CACHE_SIZE) {
+                columnIndexesCache.clear();
+            }
+            columnIndexesCache.put(sql, columnIndexes);
+        }
+        @SuppressWarnings("unchecked")
+        LongObjectHashMap<Object>[] entityMaps = new LongObjectHashMap[mappings.size()];
+        for (int i = 0; i < entityMaps.length; i++) {
+            entityMaps[i] = new LongObjectHashMap<>();
+        }
+        List<T> roots = new ArrayList<>();
+        while (resultSet.next()) {
+            T root = rootMapping.read(resultSet, columnIndexes, entityMaps);
+            if (root != null) {
+                mapChildren(rootMapping, root, resultSet, columnIndexes, entityMaps);
+                if (entityMaps[0].size() > roots.size()) {
+                    roots.add(root);
+                }
+            }
+        }
+        return roots;
+    }
+
+    private <E> void mapChildren(EntityMapping<E> mapping, E parent, ResultSet resultSet,
+            int[][] columnIndexes, LongObjectHashMap<Object>[] entityMaps) throws SQLException {
+        for (OneToMany<E, ?> oneToMany : mapping.children) {
+            mapChild(oneToMany, parent, resultSet, columnIndexes, entityMaps);
+        }
+    }
+
+    private <E, C> void mapChild(OneToMany<E, C> oneToMany, E parent, ResultSet resultSet,
+            int[][] columnIndexes, LongObjectHashMap<Object>[] entityMaps) throws SQLException {
+        EntityMapping<C> childMapping = oneToMany.mapping;
+        int size = entityMaps[childMapping.ordinal].size();
+        C child = childMapping.read(resultSet, columnIndexes, entityMaps);
+        if (child != null) {
+            if (entityMaps[childMapping.ordinal].size() > size) {
+                oneToMany.adder.accept(parent, child);
+            }
+            mapChildren(childMapping, child, resultSet, columnIndexes, entityMaps);
+        }
+    }
+
+    private void register(EntityMapping<?> mapping) {
+        if (mapping.ordinal >= 0) {
+            throw new IllegalArgumentException("Mapping for table " + mapping.table + " is already used");
+        }
+        mapping.ordinal = mappings.size();
+        mappings.add(mapping);
+        for (OneToMany<?, ?> oneToMany : mapping.children) {
+            register(oneToMany.mapping);
+        }
+    }
+
+    private int[][] resolveColumnIndexes(ResultSetMetaData metaData) throws SQLException {
+        int[][] columnIndexes = new int[mappings.size()][];
+        for (EntityMapping<?> mapping : mappings) {
+            int[] indexes = new int[mapping.columns.size() + 1];
+            indexes[0] = resolveColumnIndex(metaData, mapping.table, mapping.idColumn);
+            for (int i = 0; i < mapping.columns.size(); i++) {
+                indexes[i + 1] = resolveColumnIndex(metaData, mapping.table, mapping.columns.get(i).name);
+            }
+            columnIndexes[mapping.ordinal] = indexes;
+        }
+        return columnIndexes;
+    }
+
+    private int resolveColumnIndex(ResultSetMetaData metaData, String table, String column) throws SQLException {
+        int columnIndex = 0;
+        int labelCount = 0;
+        int tableMatchCount = 0;
+        boolean tableNameMissing = false;
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            if (!column.equalsIgnoreCase(metaData.getColumnLabel(i))) {
+                continue;
+            }
+            labelCount++;
+            String tableName = metaData.getTableName(i);
+            if (tableName == null || tableName.isEmpty()) {
+                tableNameMissing = true;
+                columnIndex = i;
+            } else if (table.equalsIgnoreCase(tableName)) {
+                tableMatchCount++;
+                columnIndex = i;
+            }
+        }
+        if (tableNameMissing ? labelCount > 1 : tableMatchCount > 1) {
+            throw new IllegalArgumentException("Column " + table + "." + column + " is ambiguous, the result set " +
+                "contains " + labelCount + " columns labeled " + column + ", so they must be given unique aliases");
+        }
+        if (columnIndex == 0) {
+            throw new IllegalArgumentException("Column " + table + "." + column + " not found in the result set");
+        }
+        return columnIndex;
+    }
+
+    @FunctionalInterface
+    public interface ColumnReader<E> {
+        void read(E entity, ResultSet resultSet, int columnIndex) throws SQLException;
+    }
+
+    /**
+     * <code>EntityMapping</code> - Declares how an entity is read from a result set row.
+     * A mapping can only be used by a single {@link ResultSetGraphMapper}.
+     */
+    public static class EntityMapping<E> {
+
+        private final String table;
+
+        private final String idColumn;
+
+        private final LongFunction<E> factory;
+
+        private final List<Column<E>> columns = new ArrayList<>();
+
+        private final List<OneToMany<E, ?>> children = new ArrayList<>();
+
+        private int ordinal = -1;
+
+        private EntityMapping(String table, String idColumn, LongFunction<E> factory) {
+            this.table = table;
+            this.idColumn = idColumn;
+            this.factory = factory;
+        }
+
+        public EntityMapping<E> column(String name, ColumnReader<E> reader) {
+            columns.add(new Column<>(name, reader));
+            return this;
+        }
+
+        public EntityMapping<E> stringColumn(String name, BiConsumer<E, String> setter) {
+            return column(name, (entity, resultSet, index) -> setter.accept(entity, resultSet.getString(index)));
+        }
+
+        public EntityMapping<E> intColumn(String name, ObjIntConsumer<E> setter) {
+            return column(name, (entity, resultSet, index) -> setter.accept(entity, resultSet.getInt(index)));
+        }
+
+        public EntityMapping<E> longColumn(String name, ObjLongConsumer<E> setter) {
+            return column(name, (entity, resultSet, index) -> setter.accept(entity, resultSet.getLong(index)));
+        }
+
+        public EntityMapping<E> timestampColumn(String name, BiConsumer<E, Timestamp> setter) {
+            return column(name, (entity, resultSet, index) -> setter.accept(entity, resultSet.getTimestamp(index)));
+        }
+
+        public <C> EntityMapping<E> oneToMany(EntityMapping<C> childMapping, BiConsumer<E, C> adder) {
+            children.add(new OneToMany<>(childMapping, adder));
+            return this;
+        }
+
+        @SuppressWarnings("unchecked")
+        E read(ResultSet resultSet, int[][] columnIndexes, LongObjectHashMap<Object>[] entityMaps) throws SQLException {
+            int[] indexes = columnIndexes[ordinal];
+            long id = resultSet.getLong(indexes[0]);
+            if (resultSet.wasNull()) {
+                return null;
+            }
+            LongObjectHashMap<Object> entityMap = entityMaps[ordinal];
+            E entity = (E) entityMap.get(id);
+            if (entity == null) {
+                entity = factory.apply(id);
+                for (int i = 0; i < columns.size(); i++) {
+                    columns.get(i).reader.read(entity, resultSet, indexes[i + 1]);
+                }
+                entityMap.put(id, entity);
+            }
+            return entity;
+        }
+    }
+
+    private static class Column<E> {
+
+        private final String name;
+
+        private final ColumnReader<E> reader;
+
+        Column(String name, ColumnReader<E> reader) {
+            this.name = name;
+            this.reader = reader;
+        }
+    }
+
+    private static class OneToMany<E, C> {
+
+        private final EntityMapping<C> mapping;
+
+        private final BiConsumer<E, C> adder;
+
+        OneToMany(EntityMapping<C> mapping, BiConsumer<E, C> adder) {
+            this.mapping = mapping;
+            this.adder = adder;
+        }
+    }
+}
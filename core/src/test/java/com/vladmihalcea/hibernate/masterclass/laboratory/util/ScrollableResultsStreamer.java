@@ -0,0 +1,95 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+
+import java.util.function.Consumer;
+
+/**
+ * <code>ScrollableResultsStreamer</code> - Streams the root entities of a query through a forward-only
+ * {@link ScrollableResults}, instead of loading the whole result set into a List.
+ * <p>
+ * The JDBC driver fetches fetchSize rows per round trip, and the {@link Session} is cleared after every
+ * clearSize processed entities, so the memory footprint doesn't depend on the result set size.
+ * Because the Session is cleared, the entities passed to the consumer become detached afterwards,
+ * and so does any other entity the Session was managing.
+ * <p>
+ * When the query fetches a collection, it must be ordered by the root entity identifier,
+ * so that all rows of a root entity are read before moving to the next one.
+ *
+ * @author Vlad Mihalcea
+ */
+public class ScrollableResultsStreamer {
+
+    public static final int DEFAULT_FETCH_SIZE = 100;
+
+    public static final int DEFAULT_CLEAR_SIZE = 1000;
+
+    private final Session session;
+
+    private int fetchSize = DEFAULT_FETCH_SIZE;
+
+    private int clearSize = DEFAULT_CLEAR_SIZE;
+
+    public ScrollableResultsStreamer(Session session) {
+        this.session = session;
+    }
+
+    public ScrollableResultsStreamer setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    public ScrollableResultsStreamer setClearSize(int clearSize) {
+        if (clearSize <= 0) {
+            throw new IllegalArgumentException("The clear size must be positive");
+        }
+        this.clearSize = clearSize;
+        return this;
+    }
+
+    /**
+     * Stream the root entities of the given HQL query
+     *
+     * @param hql      HQL query
+     * @param consumer root entity consumer
+     * @param <T>      root entity type
+     * @return number of streamed root entities
+     */
+    public <T> long stream(String hql, Consumer<T> consumer) {
+        return stream(session.createQuery(hql), consumer);
+    }
+
+    /**
+     * Stream the root entities of the given query
+     *
+     * @param query    query
+     * @param consumer root entity consumer
+     * @param <T>      root entity type
+     * @return number of streamed root entities
+     */
+    @SuppressWarnings("unchecked")
+    public <T> long stream(Query query, Consumer<T> consumer) {
+        long count = 0;
+        ScrollableResults results = query
+            .setFetchSize(fetchSize)
+            .setReadOnly(true)
+            .setCacheMode(CacheMode.IGNORE)
+            .scroll(ScrollMode.FORWARD_ONLY);
+        try {
+            while (results.next()) {
+                consumer.accept((T) results.get(0));
+                if (++count % clearSize == 0) {
+                    session.clear();
+                }
+            }
+        } finally {
+            results.close();
+        }
+        session.clear();
+        return count;
+    }
+}
@@ -0,0 +1,137 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util;
+
+import net.ttddyy.dsproxy.QueryType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <code>TransactionMetrics</code> - SQL statement and latency metrics recorded for a single transaction
+ *
+ * @author Vlad Mihalcea
+ */
+public class TransactionMetrics {
+
+    private final long[] statementCounts = new long[QueryType.values().length];
+
+    private final List<Integer> batchSizes = new ArrayList<>();
+
+    private long executionCount;
+
+    private long executionNanos;
+
+    private long connectionHoldNanos;
+
+    private long connectionAcquireNanos;
+
+    private int openConnections;
+
+    void addStatements(QueryType queryType, int count) {
+        statementCounts[queryType.ordinal()] += count;
+    }
+
+    void addExecution(long elapsedNanos) {
+        executionCount++;
+        executionNanos += elapsedNanos;
+    }
+
+    void addBatch(int batchSize) {
+        batchSizes.add(batchSize);
+    }
+
+    /**
+     * The connection hold time starts when the first physical connection is acquired, and it stops when
+     * the last one is released, so nested acquisitions are not accounted for twice.
+     */
+    synchronized void connectionAcquired() {
+        if (openConnections++ == 0) {
+            connectionAcquireNanos = System.nanoTime();
+        }
+    }
+
+    synchronized void connectionReleased() {
+        if (openConnections > 0 && --openConnections == 0) {
+            connectionHoldNanos += System.nanoTime() - connectionAcquireNanos;
+        }
+    }
+
+    /**
+     * The connections still open when the transaction scope ends are held until then.
+     */
+    synchronized void end() {
+        if (openConnections > 0) {
+            connectionHoldNanos += System.nanoTime() - connectionAcquireNanos;
+            openConnections = 0;
+        }
+    }
+
+    /**
+     * Number of SQL statements of the given type, each batched row counting as a statement
+     *
+     * @param queryType statement type
+     * @return statement count
+     */
+    public long getStatementCount(QueryType queryType) {
+        return statementCounts[queryType.ordinal()];
+    }
+
+    public long getSelectCount() {
+        return getStatementCount(QueryType.SELECT);
+    }
+
+    public long getInsertCount() {
+        return getStatementCount(QueryType.INSERT);
+    }
+
+    public long getUpdateCount() {
+        return getStatementCount(QueryType.UPDATE);
+    }
+
+    public long getDeleteCount() {
+        return getStatementCount(QueryType.DELETE);
+    }
+
+    /**
+     * Number of JDBC round-trips, a whole batch counting as a single execution
+     *
+     * @return execution count
+     */
+    public long getExecutionCount() {
+        return executionCount;
+    }
+
+    public List<Integer> getBatchSizes() {
+        return Collections.unmodifiableList(batchSizes);
+    }
+
+    public long getExecutionTime(TimeUnit timeUnit) {
+        return timeUnit.convert(executionNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Time spent between acquiring and releasing the physical JDBC connections, as opposed to the whole
+     * transaction scope, which also includes opening and closing the Session
+     *
+     * @param timeUnit time unit
+     * @return connection hold time
+     */
+    public synchronized long getConnectionHoldTime(TimeUnit timeUnit) {
+        return timeUnit.convert(connectionHoldNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionMetrics{" +
+                "select=" + getSelectCount() +
+                ", insert=" + getInsertCount() +
+                ", update=" + getUpdateCount() +
+                ", delete=" + getDeleteCount() +
+                ", executions=" + executionCount +
+                ", batchSizes=" + batchSizes +
+                ", executionMicros=" + getExecutionTime(TimeUnit.MICROSECONDS) +
+                ", connectionHoldMicros=" + getConnectionHoldTime(TimeUnit.MICROSECONDS) +
+                '}';
+    }
+}
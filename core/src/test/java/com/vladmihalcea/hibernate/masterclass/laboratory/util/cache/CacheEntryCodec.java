@@ -0,0 +1,35 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util.cache;
+
+/**
+ * <code>CacheEntryCodec</code> - Turns the second-level cache entries into bytes, so that they can be stored
+ * off-heap, overflowed to disk or replicated.
+ * <p>
+ * The {@link TinyLfuRegionFactory} off-heap regions pick the codec class through the
+ * hibernate.cache.tinylfu.off_heap.codec property, the codec class declaring either a public no-arg constructor,
+ * or a public constructor taking the SessionFactoryImplementor whose persisters it can use.
+ *
+ * @author Vlad Mihalcea
+ */
+public interface CacheEntryCodec {
+
+    /**
+     * @param key   cache key
+     * @param value cached value
+     * @return whether the value can be encoded, the other ones staying on-heap
+     */
+    boolean isEncodable(Object key, Object value);
+
+    /**
+     * @param key   cache key
+     * @param value cached value, for which {@link #isEncodable(Object, Object)} returned true
+     * @return encoded value
+     */
+    byte[] encode(Object key, Object value);
+
+    /**
+     * @param key   cache key
+     * @param bytes encoded value
+     * @return decoded value
+     */
+    Object decode(Object key, byte[] bytes);
+}
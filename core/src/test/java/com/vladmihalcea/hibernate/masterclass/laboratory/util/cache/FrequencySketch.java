@@ -0,0 +1,104 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util.cache;
+
+/**
+ * <code>FrequencySketch</code> - Count-Min sketch of 4-bit counters estimating the recent access frequency of keys,
+ * used as the TinyLFU admission filter of {@link WTinyLfuCache}.
+ * <p>
+ * Every long packs sixteen counters, and every key maps to four counters of a single long.
+ * Once the number of increments reaches ten times the cache size, all counters are halved,
+ * so that the frequencies decay and the sketch keeps up with a changing workload.
+ * <p>
+ * This class is not thread-safe, so it must only be used while holding the cache eviction lock.
+ *
+ * @author Vlad Mihalcea
+ */
+class FrequencySketch {
+
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    private final long[] table;
+
+    private final int tableMask;
+
+    private final int sampleSize;
+
+    private int size;
+
+    FrequencySketch(int maximumSize) {
+        int capacity = Math.max(16, maximumSize);
+        int length = Integer.highestOneBit(capacity - 1) << 1;
+        this.table = new long[length];
+        this.tableMask = length - 1;
+        this.sampleSize = 10 * capacity;
+    }
+
+    /**
+     * @param key key
+     * @return the estimated access frequency of the given key, from 0 to 15
+     */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Increment the access frequency of the given key, unless its counters are saturated
+     *
+     * @param key key
+     */
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++size == sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = 0xfL << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    private void reset() {
+        int oddCount = 0;
+        for (int i = 0; i < table.length; i++) {
+            oddCount += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (oddCount >>> 2);
+    }
+
+    private int indexOf(int hash, int i) {
+        long value = (hash + SEEDS[i]) * SEEDS[i];
+        value += value >>> 32;
+        return ((int) value) & tableMask;
+    }
+
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+}
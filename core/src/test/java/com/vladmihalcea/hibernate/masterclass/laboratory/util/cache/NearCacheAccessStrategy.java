@@ -0,0 +1,234 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util.cache;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.CollectionRegion;
+import org.hibernate.cache.spi.EntityRegion;
+import org.hibernate.cache.spi.access.CollectionRegionAccessStrategy;
+import org.hibernate.cache.spi.access.EntityRegionAccessStrategy;
+import org.hibernate.cache.spi.access.RegionAccessStrategy;
+import org.hibernate.cache.spi.access.SoftLock;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <code>NearCacheAccessStrategy</code> - Keeps the values returned by the second-level cache access strategy
+ * in a {@link WTinyLfuCache}, so that repeated hits skip the underlying cache.
+ * <p>
+ * The delegate access strategy remains in charge of the concurrency strategy semantics:
+ * <ul>
+ * <li>a near entry is only served to transactions which started after the transaction that read it
+ * from the delegate, since a READ_WRITE item is only readable by transactions which started after it was cached;</li>
+ * <li>every call which may change or lock an item invalidates its near entry after the delegate call, and every
+ * region-wide one clears the whole near cache;</li>
+ * <li>a near entry is only added if no invalidation happened while reading it from the delegate,
+ * and it's removed if an invalidation raced with adding it.</li>
+ * </ul>
+ *
+ * @author Vlad Mihalcea
+ */
+abstract class NearCacheAccessStrategy<S extends RegionAccessStrategy> implements RegionAccessStrategy {
+
+    protected final S delegate;
+
+    private final WTinyLfuCache<Object, NearEntry> nearCache;
+
+    private final long expireAfterWriteNanos;
+
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    NearCacheAccessStrategy(S delegate, WTinyLfuCache<Object, NearEntry> nearCache, long expireAfterWriteNanos) {
+        this.delegate = delegate;
+        this.nearCache = nearCache;
+        this.expireAfterWriteNanos = expireAfterWriteNanos;
+    }
+
+    WTinyLfuCache<Object, NearEntry> getNearCache() {
+        return nearCache;
+    }
+
+    @Override
+    public Object get(Object key, long txTimestamp) throws CacheException {
+        NearEntry entry = nearCache.get(key);
+        if (entry != null) {
+            if (isExpired(entry)) {
+                nearCache.remove(key, entry);
+            } else if (txTimestamp >= entry.txTimestamp) {
+                return entry.value;
+            }
+        }
+        long invalidations = invalidationCount.get();
+        Object value = delegate.get(key, txTimestamp);
+        if (value != null && invalidationCount.get() == invalidations) {
+            NearEntry newEntry = new NearEntry(value, txTimestamp);
+            nearCache.put(key, newEntry);
+            if (invalidationCount.get() != invalidations) {
+                nearCache.remove(key, newEntry);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public boolean putFromLoad(Object key, Object value, long txTimestamp, Object version) throws CacheException {
+        boolean put = delegate.putFromLoad(key, value, txTimestamp, version);
+        if (put) {
+            nearCache.remove(key);
+        }
+        return put;
+    }
+
+    @Override
+    public boolean putFromLoad(Object key, Object value, long txTimestamp, Object version,
+            boolean minimalPutOverride) throws CacheException {
+        boolean put = delegate.putFromLoad(key, value, txTimestamp, version, minimalPutOverride);
+        if (put) {
+            nearCache.remove(key);
+        }
+        return put;
+    }
+
+    @Override
+    public SoftLock lockItem(Object key, Object version) throws CacheException {
+        SoftLock lock = delegate.lockItem(key, version);
+        invalidate(key);
+        return lock;
+    }
+
+    @Override
+    public SoftLock lockRegion() throws CacheException {
+        SoftLock lock = delegate.lockRegion();
+        invalidateAll();
+        return lock;
+    }
+
+    @Override
+    public void unlockItem(Object key, SoftLock lock) throws CacheException {
+        delegate.unlockItem(key, lock);
+        invalidate(key);
+    }
+
+    @Override
+    public void unlockRegion(SoftLock lock) throws CacheException {
+        delegate.unlockRegion(lock);
+        invalidateAll();
+    }
+
+    @Override
+    public void remove(Object key) throws CacheException {
+        delegate.remove(key);
+        invalidate(key);
+    }
+
+    @Override
+    public void removeAll() throws CacheException {
+        delegate.removeAll();
+        invalidateAll();
+    }
+
+    @Override
+    public void evict(Object key) throws CacheException {
+        delegate.evict(key);
+        invalidate(key);
+    }
+
+    @Override
+    public void evictAll() throws CacheException {
+        delegate.evictAll();
+        invalidateAll();
+    }
+
+    protected void invalidate(Object key) {
+        invalidationCount.incrementAndGet();
+        nearCache.remove(key);
+    }
+
+    protected void invalidateAll() {
+        invalidationCount.incrementAndGet();
+        nearCache.clear();
+    }
+
+    private boolean isExpired(NearEntry entry) {
+        return expireAfterWriteNanos > 0 && System.nanoTime() - entry.createdNanos > expireAfterWriteNanos;
+    }
+
+    /**
+     * Value read from the delegate, along with the start timestamp of the transaction that read it
+     */
+    static class NearEntry {
+
+        private final Object value;
+
+        private final long txTimestamp;
+
+        private final long createdNanos = System.nanoTime();
+
+        NearEntry(Object value, long txTimestamp) {
+            this.value = value;
+            this.txTimestamp = txTimestamp;
+        }
+    }
+
+    static class Entity extends NearCacheAccessStrategy<EntityRegionAccessStrategy>
+            implements EntityRegionAccessStrategy {
+
+        private final EntityRegion region;
+
+        Entity(EntityRegion region, EntityRegionAccessStrategy delegate,
+                WTinyLfuCache<Object, NearEntry> nearCache, long expireAfterWriteNanos) {
+            super(delegate, nearCache, expireAfterWriteNanos);
+            this.region = region;
+        }
+
+        @Override
+        public EntityRegion getRegion() {
+            return region;
+        }
+
+        @Override
+        public boolean insert(Object key, Object value, Object version) throws CacheException {
+            boolean inserted = delegate.insert(key, value, version);
+            invalidate(key);
+            return inserted;
+        }
+
+        @Override
+        public boolean afterInsert(Object key, Object value, Object version) throws CacheException {
+            boolean inserted = delegate.afterInsert(key, value, version);
+            invalidate(key);
+            return inserted;
+        }
+
+        @Override
+        public boolean update(Object key, Object value, Object currentVersion, Object previousVersion)
+                throws CacheException {
+            boolean updated = delegate.update(key, value, currentVersion, previousVersion);
+            invalidate(key);
+            return updated;
+        }
+
+        @Override
+        public boolean afterUpdate(Object key, Object value, Object currentVersion, Object previousVersion,
+                SoftLock lock) throws CacheException {
+            boolean updated = delegate.afterUpdate(key, value, currentVersion, previousVersion, lock);
+            invalidate(key);
+            return updated;
+        }
+    }
+
+    static class Collection extends NearCacheAccessStrategy<CollectionRegionAccessStrategy>
+            implements CollectionRegionAccessStrategy {
+
+        private final CollectionRegion region;
+
+        Collection(CollectionRegion region, CollectionRegionAccessStrategy delegate,
+                WTinyLfuCache<Object, NearEntry> nearCache, long expireAfterWriteNanos) {
+            super(delegate, nearCache, expireAfterWriteNanos);
+            this.region = region;
+        }
+
+        @Override
+        public CollectionRegion getRegion() {
+            return region;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util.cache;
+
+import org.hibernate.boot.registry.classloading.spi.ClassLoaderService;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.ehcache.EhCacheRegionFactory;
+import org.hibernate.cache.spi.CacheDataDescription;
+import org.hibernate.cache.spi.CollectionRegion;
+import org.hibernate.cache.spi.EntityRegion;
+import org.hibernate.cache.spi.NaturalIdRegion;
+import org.hibernate.cache.spi.QueryResultsRegion;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cache.spi.TimestampsRegion;
+import org.hibernate.cache.spi.TransactionalDataRegion;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.access.CollectionRegionAccessStrategy;
+import org.hibernate.cache.spi.access.EntityRegionAccessStrategy;
+import org.hibernate.cfg.Settings;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.spi.InjectService;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <code>NearCacheRegionFactory</code> - {@link RegionFactory} decorator adding a bounded, W-TinyLFU near cache
+ * in front of every entity and collection region of another RegionFactory, which is
+ * {@link EhCacheRegionFactory} by default.
+ * <p>
+ * A second-level cache hit served by the near cache skips the delegate region lookup, like the EhCache
+ * synchronized Element access and the READ_WRITE item readability check, and returns the very same
+ * CacheEntry instance the delegate returned before. The entity is still assembled out of the CacheEntry by Hibernate.
+ * <p>
+ * The delegate access strategies keep enforcing the concurrency strategy semantics, as explained by
+ * {@link NearCacheAccessStrategy}. TRANSACTIONAL access strategies are not decorated, and neither are the
+ * natural id, query results and update timestamps regions.
+ * <p>
+ * The factory is configured through the following properties:
+ * <ul>
+ * <li>hibernate.cache.near.region.factory_class: the delegate RegionFactory class</li>
+ * <li>hibernate.cache.near.maximum_size: the maximum number of near cache entries of every region</li>
+ * <li>hibernate.cache.near.expire_after_write: the near cache entry time to live in milliseconds,
+ * 0 meaning entries only leave the near cache when invalidated or evicted</li>
+ * </ul>
+ *
+ * @author Vlad Mihalcea
+ */
+public class NearCacheRegionFactory implements RegionFactory {
+
+    public static final String REGION_FACTORY_CLASS = "hibernate.cache.near.region.factory_class";
+
+    public static final String MAXIMUM_SIZE = "hibernate.cache.near.maximum_size";
+
+    public static final String EXPIRE_AFTER_WRITE = "hibernate.cache.near.expire_after_write";
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+    private final Map<String, NearCacheAccessStrategy<?>> accessStrategies = new ConcurrentHashMap<>();
+
+    private final Properties properties;
+
+    private ClassLoaderService classLoaderService;
+
+    private volatile RegionFactory delegate;
+
+    private int maximumSize;
+
+    private long expireAfterWriteNanos;
+
+    public NearCacheRegionFactory() {
+        this(new Properties());
+    }
+
+    public NearCacheRegionFactory(Properties properties) {
+        this.properties = properties;
+    }
+
+    @InjectService(required = false)
+    public void setClassLoaderService(ClassLoaderService classLoaderService) {
+        this.classLoaderService = classLoaderService;
+    }
+
+    @Override
+    public void start(Settings settings, Properties properties) throws CacheException {
+        maximumSize = ConfigurationHelper.getInt(MAXIMUM_SIZE, properties, DEFAULT_MAXIMUM_SIZE);
+        expireAfterWriteNanos = TimeUnit.MILLISECONDS.toNanos(
+            ConfigurationHelper.getLong(EXPIRE_AFTER_WRITE, properties, 0));
+        delegate().start(settings, properties);
+    }
+
+    @Override
+    public void stop() {
+        if (delegate != null) {
+            delegate.stop();
+        }
+        accessStrategies.clear();
+    }
+
+    @Override
+    public boolean isMinimalPutsEnabledByDefault() {
+        return delegate().isMinimalPutsEnabledByDefault();
+    }
+
+    @Override
+    public AccessType getDefaultAccessType() {
+        return delegate().getDefaultAccessType();
+    }
+
+    @Override
+    public long nextTimestamp() {
+        return delegate().nextTimestamp();
+    }
+
+    @Override
+    public EntityRegion buildEntityRegion(String regionName, Properties properties,
+            CacheDataDescription metadata) throws CacheException {
+        return new NearEntityRegion(delegate().buildEntityRegion(regionName, properties, metadata));
+    }
+
+    @Override
+    public NaturalIdRegion buildNaturalIdRegion(String regionName, Properties properties,
+            CacheDataDescription metadata) throws CacheException {
+        return delegate().buildNaturalIdRegion(regionName, properties, metadata);
+    }
+
+    @Override
+    public CollectionRegion buildCollectionRegion(String regionName, Properties properties,
+            CacheDataDescription metadata) throws CacheException {
+        return new NearCollectionRegion(delegate().buildCollectionRegion(regionName, properties, metadata));
+    }
+
+    @Override
+    public QueryResultsRegion buildQueryResultsRegion(String regionName, Properties properties) throws CacheException {
+        return delegate().buildQueryResultsRegion(regionName, properties);
+    }
+
+    @Override
+    public TimestampsRegion buildTimestampsRegion(String regionName, Properties properties) throws CacheException {
+        return delegate().buildTimestampsRegion(regionName, properties);
+    }
+
+    /**
+     * @param regionName entity or collection region name
+     * @return the near cache of the given region, or null if the region has no near cache
+     */
+    public WTinyLfuCache<Object, ?> getNearCache(String regionName) {
+        NearCacheAccessStrategy<?> accessStrategy = accessStrategies.get(regionName);
+        return accessStrategy != null ? accessStrategy.getNearCache() : null;
+    }
+
+    /**
+     * The delegate is created on first use, since Hibernate asks for the minimal puts default before starting
+     * the RegionFactory, and after the ClassLoaderService was injected.
+     */
+    private RegionFactory delegate() {
+        if (delegate == null) {
+            synchronized (this) {
+                if (delegate == null) {
+                    delegate = newDelegate(ConfigurationHelper.getString(
+                        REGION_FACTORY_CLASS, properties, EhCacheRegionFactory.class.getName()),
+                        properties, classLoaderService);
+                }
+            }
+        }
+        return delegate;
+    }
+
+    /**
+     * Instantiate the delegate RegionFactory, through its Properties constructor if any, like Hibernate does.
+     */
+    static RegionFactory newDelegate(String className, Properties properties,
+            ClassLoaderService classLoaderService) {
+        try {
+            Class<?> delegateClass = classLoaderService != null ?
+                classLoaderService.classForName(className) : Class.forName(className);
+            RegionFactory regionFactory;
+            try {
+                regionFactory = (RegionFactory) delegateClass.getConstructor(Properties.class).newInstance(properties);
+            } catch (NoSuchMethodException e) {
+                regionFactory = (RegionFactory) delegateClass.getDeclaredConstructor().newInstance();
+            }
+            if (classLoaderService != null) {
+                try {
+                    Method setter = delegateClass.getMethod("setClassLoaderService", ClassLoaderService.class);
+                    setter.invoke(regionFactory, classLoaderService);
+                } catch (NoSuchMethodException ignore) {
+                }
+            }
+            return regionFactory;
+        } catch (ReflectiveOperationException e) {
+            throw new CacheException("Could not instantiate RegionFactory " + className, e);
+        }
+    }
+
+    private <S extends NearCacheAccessStrategy<?>> S register(String regionName, S accessStrategy) {
+        accessStrategies.put(regionName, accessStrategy);
+        return accessStrategy;
+    }
+
+    private WTinyLfuCache<Object, NearCacheAccessStrategy.NearEntry> newNearCache() {
+        return new WTinyLfuCache<>(maximumSize);
+    }
+
+    /**
+     * Region forwarding all calls to the delegate region
+     */
+    private abstract class NearRegion<R extends TransactionalDataRegion> implements TransactionalDataRegion {
+
+        protected final R delegate;
+
+        NearRegion(R delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean isTransactionAware() {
+            return delegate.isTransactionAware();
+        }
+
+        @Override
+        public CacheDataDescription getCacheDataDescription() {
+            return delegate.getCacheDataDescription();
+        }
+
+        @Override
+        public String getName() {
+            return delegate.getName();
+        }
+
+        @Override
+        public void destroy() throws CacheException {
+            accessStrategies.remove(getName());
+            delegate.destroy();
+        }
+
+        @Override
+        public boolean contains(Object key) {
+            return delegate.contains(key);
+        }
+
+        @Override
+        public long getSizeInMemory() {
+            return delegate.getSizeInMemory();
+        }
+
+        @Override
+        public long getElementCountInMemory() {
+            return delegate.getElementCountInMemory();
+        }
+
+        @Override
+        public long getElementCountOnDisk() {
+            return delegate.getElementCountOnDisk();
+        }
+
+        @Override
+        public Map toMap() {
+            return delegate.toMap();
+        }
+
+        @Override
+        public long nextTimestamp() {
+            return delegate.nextTimestamp();
+        }
+
+        @Override
+        public int getTimeout() {
+            return delegate.getTimeout();
+        }
+    }
+
+    private class NearEntityRegion extends NearRegion<EntityRegion> implements EntityRegion {
+
+        NearEntityRegion(EntityRegion delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public EntityRegionAccessStrategy buildAccessStrategy(AccessType accessType) throws CacheException {
+            EntityRegionAccessStrategy accessStrategy = delegate.buildAccessStrategy(accessType);
+            if (accessType == AccessType.TRANSACTIONAL) {
+                return accessStrategy;
+            }
+            return register(getName(), new NearCacheAccessStrategy.Entity(
+                this, accessStrategy, newNearCache(), expireAfterWriteNanos));
+        }
+    }
+
+    private class NearCollectionRegion extends NearRegion<CollectionRegion> implements CollectionRegion {
+
+        NearCollectionRegion(CollectionRegion delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public CollectionRegionAccessStrategy buildAccessStrategy(AccessType accessType) throws CacheException {
+            CollectionRegionAccessStrategy accessStrategy = delegate.buildAccessStrategy(accessType);
+            if (accessType == AccessType.TRANSACTIONAL) {
+                return accessStrategy;
+            }
+            return register(getName(), new NearCacheAccessStrategy.Collection(
+                this, accessStrategy, newNearCache(), expireAfterWriteNanos));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util.cache;
+
+import java.util.function.Supplier;
+
+/**
+ * <code>OffHeapStorage</code> - Moves the entity and collection cache entries of a {@link TinyLfuRegionFactory}
+ * region into a {@link SlabAllocator}, encoded by the region {@link CacheEntryCodec}.
+ * <p>
+ * The region cache only keeps an on-heap {@link SlabAllocator.Chunk} handle per entry, weighing as much as the
+ * chunk size, and the chunk is freed as soon as its entry leaves the region cache.
+ * When all slabs are taken, which may happen before the region cache reaches its maximum weight since every slab
+ * holds a single size class, the region cache entries are evicted until the chunk can be allocated.
+ * A value which is larger than a slab, or which still can't be allocated once the region cache is empty,
+ * is not cached at all.
+ * Only the values which can't be encoded, like the READ_WRITE soft locks or the reference cache entries,
+ * stay on-heap, weighing {@link #ON_HEAP_ENTRY_WEIGHT} bytes.
+ *
+ * @author Vlad Mihalcea
+ */
+class OffHeapStorage {
+
+    static final int ON_HEAP_ENTRY_WEIGHT = 64;
+
+    private final SlabAllocator allocator;
+
+    private final Supplier<CacheEntryCodec> codecSupplier;
+
+    private volatile CacheEntryCodec codec;
+
+    private volatile WTinyLfuCache<Object, Object> cache;
+
+    /**
+     * @param codecSupplier supplies the codec on the first store, once the SessionFactory is built
+     */
+    OffHeapStorage(long maximumBytes, int slabSize, Supplier<CacheEntryCodec> codecSupplier) {
+        this.allocator = new SlabAllocator(maximumBytes, slabSize);
+        this.codecSupplier = codecSupplier;
+    }
+
+    /**
+     * @param cache region cache whose entries are evicted when the slabs are full
+     */
+    void setCache(WTinyLfuCache<Object, Object> cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Store the given value, evicting the region cache entries if the slabs are full, so it must not be
+     * called by a region cache remapping function.
+     *
+     * @param key   cache key
+     * @param value cached value
+     * @return the off-heap handle of the given value, the value itself if it can't be encoded,
+     * or null if it must not be cached
+     */
+    Object store(Object key, Object value) {
+        CacheEntryCodec codec = codec();
+        if (!codec.isEncodable(key, value)) {
+            return value;
+        }
+        byte[] bytes = codec.encode(key, value);
+        if (allocator.chunkSize(bytes.length) < 0) {
+            return null;
+        }
+        SlabAllocator.Chunk chunk;
+        while ((chunk = allocator.allocate(bytes)) == null) {
+            WTinyLfuCache<Object, Object> cache = this.cache;
+            if (cache == null || !cache.evictVictim()) {
+                return null;
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * @param key    cache key
+     * @param stored value returned by {@link #store(Object, Object)}
+     * @return the cached value, or null if its chunk was freed concurrently
+     */
+    Object load(Object key, Object stored) {
+        if (!(stored instanceof SlabAllocator.Chunk)) {
+            return stored;
+        }
+        byte[] bytes = allocator.read((SlabAllocator.Chunk) stored);
+        return bytes != null ? codec().decode(key, bytes) : null;
+    }
+
+    int weigh(Object key, Object stored) {
+        stored = unwrap(stored);
+        return stored instanceof SlabAllocator.Chunk ? ((SlabAllocator.Chunk) stored).size() : ON_HEAP_ENTRY_WEIGHT;
+    }
+
+    void release(Object key, Object stored) {
+        stored = unwrap(stored);
+        if (stored instanceof SlabAllocator.Chunk) {
+            allocator.free((SlabAllocator.Chunk) stored);
+        }
+    }
+
+    long getUsedBytes() {
+        return allocator.getUsedBytes();
+    }
+
+    long getAllocatedBytes() {
+        return allocator.getAllocatedBytes();
+    }
+
+    private CacheEntryCodec codec() {
+        CacheEntryCodec codec = this.codec;
+        if (codec == null) {
+            codec = codecSupplier.get();
+            this.codec = codec;
+        }
+        return codec;
+    }
+
+    private Object unwrap(Object stored) {
+        return stored instanceof TinyLfuAccessStrategy.Item ? ((TinyLfuAccessStrategy.Item) stored).getValue() : stored;
+    }
+}
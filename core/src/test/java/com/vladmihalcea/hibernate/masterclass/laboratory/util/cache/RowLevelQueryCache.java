@@ -0,0 +1,327 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util.cache;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.RowLevelQueryPlan.Dependencies;
+import org.hibernate.HibernateException;
+import org.hibernate.UnresolvableObjectException;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.internal.StandardQueryCache;
+import org.hibernate.cache.spi.QueryCache;
+import org.hibernate.cache.spi.QueryKey;
+import org.hibernate.cache.spi.QueryResultsRegion;
+import org.hibernate.cache.spi.UpdateTimestampsCache;
+import org.hibernate.cfg.Settings;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.TypedValue;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+import org.hibernate.type.TypeHelper;
+
+import javax.persistence.EntityNotFoundException;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <code>RowLevelQueryCache</code> - {@link QueryCache} storing, along with every result, the
+ * {@link RowLevelUpdateTimestamps} keys it depends on, so that only the writes of the rows the result reads,
+ * either because they're part of the result or because they match its equality predicates, invalidate it.
+ * <p>
+ * The dependencies are taken from the query SQL, its parameters and the ids of the result entities, as explained
+ * by {@link RowLevelQueryPlan}. The tables the query SQL cannot be analyzed for, or the results of which depend
+ * on filters, fall back to the UpdateTimestampsCache table level invalidation.
+ * <p>
+ * The results are stored like {@link StandardQueryCache} does, the timestamp being followed by the dependencies.
+ *
+ * @author Vlad Mihalcea
+ */
+public class RowLevelQueryCache implements QueryCache {
+
+    /**
+     * Above this many result rows of a table, every delete of the table invalidates the result
+     */
+    public static final int MAXIMUM_ROW_DEPENDENCIES = 128;
+
+    private static final int MAXIMUM_PLANS = 1000;
+
+    /**
+     * The QueryKey SQL and parameters are private, so they're read reflectively
+     */
+    private static final Field SQL_QUERY_STRING;
+
+    private static final Field POSITIONAL_PARAMETER_VALUES;
+
+    private static final Field FIRST_ROW;
+
+    private static final Field FILTER_KEYS;
+
+    static {
+        try {
+            SQL_QUERY_STRING = QueryKey.class.getDeclaredField("sqlQueryString");
+            POSITIONAL_PARAMETER_VALUES = QueryKey.class.getDeclaredField("positionalParameterValues");
+            FIRST_ROW = QueryKey.class.getDeclaredField("firstRow");
+            FILTER_KEYS = QueryKey.class.getDeclaredField("filterKeys");
+            for (Field field : Arrays.asList(SQL_QUERY_STRING, POSITIONAL_PARAMETER_VALUES, FIRST_ROW, FILTER_KEYS)) {
+                field.setAccessible(true);
+            }
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private final Map<String, RowLevelQueryPlan> plans = new ConcurrentHashMap<>();
+
+    private final QueryResultsRegion cacheRegion;
+
+    private final UpdateTimestampsCache updateTimestampsCache;
+
+    private final RowLevelUpdateTimestamps updateTimestamps;
+
+    public RowLevelQueryCache(Settings settings, Properties properties, UpdateTimestampsCache updateTimestampsCache,
+            RowLevelUpdateTimestamps updateTimestamps, String regionName) {
+        if (regionName == null) {
+            regionName = StandardQueryCache.class.getName();
+        }
+        String prefix = settings.getCacheRegionPrefix();
+        if (prefix != null) {
+            regionName = prefix + '.' + regionName;
+        }
+        this.cacheRegion = settings.getRegionFactory().buildQueryResultsRegion(regionName, properties);
+        this.updateTimestampsCache = updateTimestampsCache;
+        this.updateTimestamps = updateTimestamps;
+    }
+
+    @Override
+    public QueryResultsRegion getRegion() {
+        return cacheRegion;
+    }
+
+    @Override
+    public void destroy() {
+        try {
+            cacheRegion.destroy();
+        } catch (Exception ignore) {
+        }
+    }
+
+    @Override
+    public void clear() throws CacheException {
+        cacheRegion.evictAll();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean put(QueryKey key, Type[] returnTypes, List result, boolean isNaturalKeyLookup,
+            SessionImplementor session) throws HibernateException {
+        if (isNaturalKeyLookup && result.isEmpty()) {
+            return false;
+        }
+        long timestamp = session.getTimestamp();
+        List cacheable = new ArrayList(result.size() + 2);
+        cacheable.add(timestamp);
+        cacheable.add(null);
+        boolean singleResult = returnTypes.length == 1;
+        for (Object row : result) {
+            if (singleResult) {
+                cacheable.add(returnTypes[0].disassemble(row, session, null));
+            } else {
+                cacheable.add(TypeHelper.disassemble((Object[]) row, returnTypes, null, session, null));
+            }
+        }
+        cacheable.set(1, dependencies(key, returnTypes, cacheable.subList(2, cacheable.size()), timestamp, session));
+        cacheRegion.put(key, cacheable);
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List get(QueryKey key, Type[] returnTypes, boolean isNaturalKeyLookup, Set<Serializable> spaces,
+            SessionImplementor session) throws HibernateException {
+        List cacheable = (List) cacheRegion.get(key);
+        if (cacheable == null) {
+            return null;
+        }
+        Long timestamp = (Long) cacheable.get(0);
+        if (!isNaturalKeyLookup && !isUpToDate(spaces, timestamp, (Dependencies) cacheable.get(1), session)) {
+            return null;
+        }
+        boolean singleResult = returnTypes.length == 1;
+        for (int i = 2; i < cacheable.size(); i++) {
+            if (singleResult) {
+                returnTypes[0].beforeAssemble((Serializable) cacheable.get(i), session);
+            } else {
+                TypeHelper.beforeAssemble((Serializable[]) cacheable.get(i), returnTypes, session);
+            }
+        }
+        List result = new ArrayList(cacheable.size() - 2);
+        for (int i = 2; i < cacheable.size(); i++) {
+            try {
+                if (singleResult) {
+                    result.add(returnTypes[0].assemble((Serializable) cacheable.get(i), session, null));
+                } else {
+                    result.add(TypeHelper.assemble((Serializable[]) cacheable.get(i), returnTypes, session, null));
+                }
+            } catch (UnresolvableObjectException | EntityNotFoundException e) {
+                if (isNaturalKeyLookup) {
+                    cacheRegion.evict(key);
+                    return null;
+                }
+                throw e;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The spaces the dependencies cover are checked against the row level update timestamps, and the others
+     * against the UpdateTimestampsCache.
+     */
+    private boolean isUpToDate(Set<Serializable> spaces, Long timestamp, Dependencies dependencies,
+            SessionImplementor session) {
+        if (dependencies == null) {
+            return updateTimestampsCache.isUpToDate(spaces, timestamp, session);
+        }
+        Set<Serializable> uncoveredSpaces = new HashSet<>();
+        for (Serializable space : spaces) {
+            if (!dependencies.covers(RowLevelUpdateTimestamps.normalize(space.toString()))) {
+                uncoveredSpaces.add(space);
+            }
+        }
+        return (uncoveredSpaces.isEmpty() || updateTimestampsCache.isUpToDate(uncoveredSpaces, timestamp, session)) &&
+            updateTimestamps.isUpToDate(dependencies.getKeys(), timestamp);
+    }
+
+    /**
+     * @return the result dependencies, or null if the result can only be invalidated at the table level
+     */
+    private Dependencies dependencies(QueryKey key, Type[] returnTypes, List rows, long timestamp,
+            SessionImplementor session) {
+        try {
+            Set filterKeys = (Set) FILTER_KEYS.get(key);
+            if (filterKeys != null && !filterKeys.isEmpty()) {
+                return null;
+            }
+            RowLevelQueryPlan plan = plan((String) SQL_QUERY_STRING.get(key));
+            if (plan == RowLevelQueryPlan.UNANALYZABLE) {
+                return null;
+            }
+            Integer firstRow = (Integer) FIRST_ROW.get(key);
+            boolean entityResult = false;
+            for (Type returnType : returnTypes) {
+                entityResult |= returnType.isEntityType();
+            }
+            return plan.dependencies(
+                parameters(key, plan),
+                firstRow != null && firstRow > 0,
+                entityResult,
+                resultIds(returnTypes, rows, session),
+                updateTimestamps,
+                timestamp
+            );
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private RowLevelQueryPlan plan(String sql) {
+        RowLevelQueryPlan plan = plans.get(sql);
+        if (plan == null) {
+            if (plans.size() >= MAXIMUM_PLANS) {
+                plans.clear();
+            }
+            plan = RowLevelQueryPlan.analyze(sql);
+            plans.put(sql, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * The positional parameters are bound in order, while the named ones are only bound if they all share
+     * the same value, since the QueryKey doesn't tell which SQL parameter a name stands for.
+     *
+     * @return the normalized parameter values, by ordinal, or null if unknown
+     */
+    private Object[] parameters(QueryKey key, RowLevelQueryPlan plan) throws IllegalAccessException {
+        Object[] positionalParameters = (Object[]) POSITIONAL_PARAMETER_VALUES.get(key);
+        Map<?, ?> namedParameters = key.getNamedParameters();
+        boolean positional = positionalParameters != null && positionalParameters.length > 0;
+        boolean named = namedParameters != null && !namedParameters.isEmpty();
+        Object[] parameters = new Object[plan.getParameterCount()];
+        if (positional && named) {
+            return null;
+        } else if (positional) {
+            if (positionalParameters.length != parameters.length) {
+                return null;
+            }
+            for (int i = 0; i < parameters.length; i++) {
+                parameters[i] = RowLevelUpdateTimestamps.normalizeValue(positionalParameters[i]);
+            }
+        } else if (named) {
+            Object value = null;
+            for (Object namedParameter : namedParameters.values()) {
+                Object namedValue = RowLevelUpdateTimestamps.normalizeValue(((TypedValue) namedParameter).getValue());
+                if (namedValue == null || (value != null && !value.equals(namedValue))) {
+                    return null;
+                }
+                value = namedValue;
+            }
+            Arrays.fill(parameters, value);
+        }
+        return parameters;
+    }
+
+    /**
+     * @return the normalized ids of the result entities, by table, the tables whose ids are unknown being left out
+     */
+    private Map<String, Set<Object>> resultIds(Type[] returnTypes, List rows, SessionImplementor session) {
+        Map<String, Set<Object>> resultIds = new HashMap<>();
+        Set<String> unknownTables = new HashSet<>();
+        for (int i = 0; i < returnTypes.length; i++) {
+            if (!returnTypes[i].isEntityType()) {
+                continue;
+            }
+            EntityType entityType = (EntityType) returnTypes[i];
+            EntityPersister persister = session.getFactory().getEntityPersister(entityType.getAssociatedEntityName());
+            Serializable[] spaces = persister.getPropertySpaces();
+            if (spaces.length != 1) {
+                for (Serializable space : spaces) {
+                    unknownTables.add(RowLevelUpdateTimestamps.normalize(space.toString()));
+                }
+                continue;
+            }
+            String table = RowLevelUpdateTimestamps.normalize(spaces[0].toString());
+            Set<Object> ids = resultIds.computeIfAbsent(table, t -> new LinkedHashSet<>());
+            for (Object row : rows) {
+                Object id = returnTypes.length == 1 ? row : ((Object[]) row)[i];
+                if (id == null) {
+                    continue;
+                }
+                Object normalizedId = RowLevelUpdateTimestamps.normalizeValue(id);
+                if (normalizedId == null || !entityType.isReferenceToPrimaryKey()) {
+                    unknownTables.add(table);
+                    break;
+                }
+                ids.add(normalizedId);
+            }
+            if (ids.size() > MAXIMUM_ROW_DEPENDENCIES) {
+                unknownTables.add(table);
+            }
+        }
+        resultIds.keySet().removeAll(unknownTables);
+        return resultIds;
+    }
+
+    @Override
+    public String toString() {
+        return "RowLevelQueryCache(" + cacheRegion.getName() + ')';
+    }
+}
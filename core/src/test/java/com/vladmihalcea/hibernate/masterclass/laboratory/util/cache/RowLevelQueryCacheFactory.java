@@ -0,0 +1,34 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util.cache;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.QueryCache;
+import org.hibernate.cache.spi.QueryCacheFactory;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cache.spi.UpdateTimestampsCache;
+import org.hibernate.cfg.Settings;
+
+import java.util.Properties;
+
+/**
+ * <code>RowLevelQueryCacheFactory</code> - {@link QueryCacheFactory} building {@link RowLevelQueryCache} instances,
+ * which requires the {@link RowLevelQueryCacheRegionFactory} too.
+ * <p>
+ * It's enabled through the hibernate.cache.query_cache_factory property.
+ *
+ * @author Vlad Mihalcea
+ */
+public class RowLevelQueryCacheFactory implements QueryCacheFactory {
+
+    @Override
+    public QueryCache getQueryCache(String regionName, UpdateTimestampsCache updateTimestampsCache,
+            Settings settings, Properties properties) {
+        RegionFactory regionFactory = settings.getRegionFactory();
+        RowLevelUpdateTimestamps updateTimestamps = regionFactory instanceof RowLevelQueryCacheRegionFactory ?
+            ((RowLevelQueryCacheRegionFactory) regionFactory).getUpdateTimestamps() : null;
+        if (updateTimestamps == null) {
+            throw new CacheException("The row level query cache requires the " +
+                RowLevelQueryCacheRegionFactory.class.getName() + " region factory");
+        }
+        return new RowLevelQueryCache(settings, properties, updateTimestampsCache, updateTimestamps, regionName);
+    }
+}
@@ -0,0 +1,279 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util.cache;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.RowLevelUpdateTimestamps.Key;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.RowLevelUpdateTimestamps.Kind;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.metamodel.source.MetadataImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * <code>RowLevelQueryCacheIntegrator</code> - Registers the entity listeners feeding the
+ * {@link RowLevelUpdateTimestamps} with the rows every insert, update and delete writes, when the
+ * {@link RowLevelQueryCacheRegionFactory} is used along with the query cache.
+ * <p>
+ * Every write is pre-invalidated when flushed and invalidated again after the transaction completes,
+ * like the UpdateTimestampsCache does for the written tables. The column values the cached queries filter by
+ * are taken from the entity state, and the entities mapped to several tables, or whose state is not known,
+ * invalidate every row of their tables.
+ * <p>
+ * Only the SessionFactories using the {@link RowLevelQueryCacheRegionFactory} register it, through the
+ * BootstrapServiceRegistryBuilder or the hibernate.integrator_provider setting.
+ *
+ * @author Vlad Mihalcea
+ */
+public class RowLevelQueryCacheIntegrator implements Integrator {
+
+    @Override
+    public void integrate(Configuration configuration, SessionFactoryImplementor sessionFactory,
+            SessionFactoryServiceRegistry serviceRegistry) {
+        register(sessionFactory, serviceRegistry);
+    }
+
+    @Override
+    public void integrate(MetadataImplementor metadata, SessionFactoryImplementor sessionFactory,
+            SessionFactoryServiceRegistry serviceRegistry) {
+        register(sessionFactory, serviceRegistry);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory,
+            SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    private void register(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        RegionFactory regionFactory = sessionFactory.getSettings().getRegionFactory();
+        if (regionFactory instanceof RowLevelQueryCacheRegionFactory &&
+                sessionFactory.getSettings().isQueryCacheEnabled()) {
+            WriteListener listener = new WriteListener((RowLevelQueryCacheRegionFactory) regionFactory);
+            EventListenerRegistry listenerRegistry = serviceRegistry.getService(EventListenerRegistry.class);
+            listenerRegistry.appendListeners(EventType.POST_INSERT, listener);
+            listenerRegistry.appendListeners(EventType.POST_UPDATE, listener);
+            listenerRegistry.appendListeners(EventType.POST_DELETE, listener);
+        }
+    }
+
+    /**
+     * Entity listener invalidating the written rows. The update timestamps are looked up on every write,
+     * since the listeners are registered before the update timestamps region is built.
+     */
+    private static class WriteListener
+            implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+        private final RowLevelQueryCacheRegionFactory regionFactory;
+
+        WriteListener(RowLevelQueryCacheRegionFactory regionFactory) {
+            this.regionFactory = regionFactory;
+        }
+
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            write(event.getSession(), event.getPersister(), Kind.INSERT, event.getId(), null, event.getState(), null);
+        }
+
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            write(event.getSession(), event.getPersister(), Kind.UPDATE, event.getId(), event.getOldState(),
+                event.getState(), event.getDirtyProperties());
+        }
+
+        @Override
+        public void onPostDelete(PostDeleteEvent event) {
+            write(event.getSession(), event.getPersister(), Kind.DELETE, event.getId(), event.getDeletedState(), null,
+                null);
+        }
+
+        @Override
+        public boolean requiresPostCommitHanding(EntityPersister persister) {
+            return false;
+        }
+
+        private void write(EventSource session, EntityPersister persister, Kind kind, Serializable id,
+                Object[] oldState, Object[] state, int[] dirtyProperties) {
+            RowLevelUpdateTimestamps updateTimestamps = regionFactory.getUpdateTimestamps();
+            if (updateTimestamps == null) {
+                return;
+            }
+            updateTimestamps.explain(persister.getPropertySpaces());
+            RowWrite write = new RowWrite(session, persister, kind, id, oldState, state, dirtyProperties);
+            updateTimestamps.preInvalidate(write.keys(updateTimestamps));
+            session.getActionQueue().registerProcess(
+                (success, completedSession) -> updateTimestamps.invalidate(write.keys(updateTimestamps))
+            );
+        }
+    }
+
+    /**
+     * The keys of a single entity write, along with the row column values before and after the write,
+     * the tracked ones becoming VALUE keys
+     */
+    private static class RowWrite {
+
+        /**
+         * The value of a column whose value cannot be tracked
+         */
+        private static final Object UNKNOWN = new Object();
+
+        private final List<Key> keys = new ArrayList<>();
+
+        private String table;
+
+        private Map<String, Object> oldRow;
+
+        private Map<String, Object> newRow;
+
+        RowWrite(SessionImplementor session, EntityPersister persister, Kind kind, Serializable id,
+                Object[] oldState, Object[] state, int[] dirtyProperties) {
+            Serializable[] spaces = persister.getPropertySpaces();
+            if (!(persister instanceof AbstractEntityPersister) || spaces.length != 1 ||
+                    (kind != Kind.INSERT && oldState == null)) {
+                for (Serializable space : spaces) {
+                    keys.add(Key.undecided(RowLevelUpdateTimestamps.normalize(space.toString())));
+                }
+                return;
+            }
+            AbstractEntityPersister entityPersister = (AbstractEntityPersister) persister;
+            table = RowLevelUpdateTimestamps.normalize(spaces[0].toString());
+            if (kind == Kind.INSERT) {
+                keys.add(Key.insert(table));
+            } else if (kind == Kind.DELETE) {
+                keys.add(Key.delete(table));
+                Object rowId = RowLevelUpdateTimestamps.normalizeValue(id);
+                if (rowId != null) {
+                    keys.add(Key.row(table, rowId));
+                }
+            } else {
+                for (int i = 0; i < state.length; i++) {
+                    if (dirtyProperties == null || contains(dirtyProperties, i) ||
+                            (entityPersister.isVersioned() && i == entityPersister.getVersionProperty())) {
+                        for (String column : entityPersister.getPropertyColumnNames(i)) {
+                            if (column != null) {
+                                keys.add(Key.update(table, RowLevelUpdateTimestamps.normalize(column)));
+                            }
+                        }
+                    }
+                }
+            }
+            if (oldState != null) {
+                oldRow = row(session, entityPersister, id, oldState, false);
+            }
+            if (state != null) {
+                newRow = row(session, entityPersister, id, state, kind == Kind.INSERT);
+            }
+        }
+
+        /**
+         * @param updateTimestamps row level update timestamps
+         * @return the write keys, including the VALUE keys of the columns tracked so far
+         */
+        Set<Key> keys(RowLevelUpdateTimestamps updateTimestamps) {
+            Set<Key> writeKeys = new LinkedHashSet<>(keys);
+            if (table == null) {
+                return writeKeys;
+            }
+            for (String column : updateTimestamps.getTrackedColumns(table)) {
+                for (Map<String, Object> row : Arrays.asList(oldRow, newRow)) {
+                    if (row == null) {
+                        continue;
+                    }
+                    Object value = row.getOrDefault(column, UNKNOWN);
+                    if (value == UNKNOWN) {
+                        writeKeys.add(Key.undecided(table));
+                    } else if (value != null) {
+                        writeKeys.add(Key.value(table, column, value));
+                    }
+                }
+            }
+            return writeKeys;
+        }
+
+        /**
+         * @return the normalized values of the single column identifier and properties, by column,
+         * the columns mapped by several properties having different values being UNKNOWN
+         */
+        private static Map<String, Object> row(SessionImplementor session, AbstractEntityPersister persister,
+                Serializable id, Object[] state, boolean insert) {
+            Map<String, Object> row = new HashMap<>();
+            String[] identifierColumns = persister.getIdentifierColumnNames();
+            if (identifierColumns.length == 1) {
+                row.put(RowLevelUpdateTimestamps.normalize(identifierColumns[0]), value(id));
+            }
+            Type[] types = persister.getPropertyTypes();
+            boolean[] insertability = persister.getPropertyInsertability();
+            for (int i = 0; i < types.length; i++) {
+                String[] columns = persister.getPropertyColumnNames(i);
+                if (columns.length != 1 || columns[0] == null) {
+                    continue;
+                }
+                String column = RowLevelUpdateTimestamps.normalize(columns[0]);
+                Object value;
+                if (insert && !insertability[i]) {
+                    value = UNKNOWN;
+                } else if (state[i] != null && types[i].isEntityType()) {
+                    value = entityValue(session, (EntityType) types[i], state[i]);
+                } else {
+                    value = value(state[i]);
+                }
+                if (row.containsKey(column) && !Objects.equals(row.get(column), value)) {
+                    value = UNKNOWN;
+                }
+                row.put(column, value);
+            }
+            return row;
+        }
+
+        private static Object entityValue(SessionImplementor session, EntityType type, Object entity) {
+            if (!type.isReferenceToPrimaryKey()) {
+                return UNKNOWN;
+            }
+            Serializable id = entity instanceof HibernateProxy ?
+                ((HibernateProxy) entity).getHibernateLazyInitializer().getIdentifier() :
+                session.getFactory().getEntityPersister(type.getAssociatedEntityName()).getIdentifier(entity, session);
+            return value(id);
+        }
+
+        private static Object value(Object value) {
+            if (value == null) {
+                return null;
+            }
+            Object normalizedValue = RowLevelUpdateTimestamps.normalizeValue(value);
+            return normalizedValue != null ? normalizedValue : UNKNOWN;
+        }
+
+        private static boolean contains(int[] values, int value) {
+            for (int candidate : values) {
+                if (candidate == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
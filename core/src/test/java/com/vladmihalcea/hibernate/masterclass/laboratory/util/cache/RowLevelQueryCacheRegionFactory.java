@@ -0,0 +1,233 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util.cache;
+
+import org.hibernate.boot.registry.classloading.spi.ClassLoaderService;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.ehcache.EhCacheRegionFactory;
+import org.hibernate.cache.spi.CacheDataDescription;
+import org.hibernate.cache.spi.CollectionRegion;
+import org.hibernate.cache.spi.EntityRegion;
+import org.hibernate.cache.spi.NaturalIdRegion;
+import org.hibernate.cache.spi.QueryResultsRegion;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cache.spi.TimestampsRegion;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cfg.Settings;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.spi.InjectService;
+
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * <code>RowLevelQueryCacheRegionFactory</code> - {@link RegionFactory} decorator keeping the
+ * {@link RowLevelUpdateTimestamps} the {@link RowLevelQueryCache} results are validated against, on top of
+ * another RegionFactory, which is {@link EhCacheRegionFactory} by default.
+ * <p>
+ * The update timestamps region is decorated so that every table the UpdateTimestampsCache invalidates without
+ * the {@link RowLevelQueryCacheIntegrator} entity listeners knowing which rows were written, like it happens for
+ * bulk HQL and native SQL statements, has all its rows invalidated. All the other regions are the delegate ones.
+ * <p>
+ * The factory is configured through the following properties:
+ * <ul>
+ * <li>hibernate.cache.row_level.region.factory_class: the delegate RegionFactory class</li>
+ * <li>hibernate.cache.row_level.maximum_size: the maximum number of row level update timestamps</li>
+ * </ul>
+ *
+ * @author Vlad Mihalcea
+ */
+public class RowLevelQueryCacheRegionFactory implements RegionFactory {
+
+    public static final String REGION_FACTORY_CLASS = "hibernate.cache.row_level.region.factory_class";
+
+    public static final String MAXIMUM_SIZE = "hibernate.cache.row_level.maximum_size";
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 100_000;
+
+    private final Properties properties;
+
+    private ClassLoaderService classLoaderService;
+
+    private volatile RegionFactory delegate;
+
+    private int maximumSize;
+
+    private volatile RowLevelUpdateTimestamps updateTimestamps;
+
+    public RowLevelQueryCacheRegionFactory() {
+        this(new Properties());
+    }
+
+    public RowLevelQueryCacheRegionFactory(Properties properties) {
+        this.properties = properties;
+    }
+
+    @InjectService(required = false)
+    public void setClassLoaderService(ClassLoaderService classLoaderService) {
+        this.classLoaderService = classLoaderService;
+    }
+
+    @Override
+    public void start(Settings settings, Properties properties) throws CacheException {
+        maximumSize = ConfigurationHelper.getInt(MAXIMUM_SIZE, properties, DEFAULT_MAXIMUM_SIZE);
+        delegate().start(settings, properties);
+    }
+
+    @Override
+    public void stop() {
+        if (delegate != null) {
+            delegate.stop();
+        }
+        updateTimestamps = null;
+    }
+
+    @Override
+    public boolean isMinimalPutsEnabledByDefault() {
+        return delegate().isMinimalPutsEnabledByDefault();
+    }
+
+    @Override
+    public AccessType getDefaultAccessType() {
+        return delegate().getDefaultAccessType();
+    }
+
+    @Override
+    public long nextTimestamp() {
+        return delegate().nextTimestamp();
+    }
+
+    @Override
+    public EntityRegion buildEntityRegion(String regionName, Properties properties,
+            CacheDataDescription metadata) throws CacheException {
+        return delegate().buildEntityRegion(regionName, properties, metadata);
+    }
+
+    @Override
+    public NaturalIdRegion buildNaturalIdRegion(String regionName, Properties properties,
+            CacheDataDescription metadata) throws CacheException {
+        return delegate().buildNaturalIdRegion(regionName, properties, metadata);
+    }
+
+    @Override
+    public CollectionRegion buildCollectionRegion(String regionName, Properties properties,
+            CacheDataDescription metadata) throws CacheException {
+        return delegate().buildCollectionRegion(regionName, properties, metadata);
+    }
+
+    @Override
+    public QueryResultsRegion buildQueryResultsRegion(String regionName, Properties properties) throws CacheException {
+        return delegate().buildQueryResultsRegion(regionName, properties);
+    }
+
+    @Override
+    public TimestampsRegion buildTimestampsRegion(String regionName, Properties properties) throws CacheException {
+        TimestampsRegion region = delegate().buildTimestampsRegion(regionName, properties);
+        updateTimestamps = new RowLevelUpdateTimestamps(this, region.getTimeout(), maximumSize);
+        return new RowLevelTimestampsRegion(region, updateTimestamps);
+    }
+
+    /**
+     * @return the row level update timestamps, or null if the query cache is disabled
+     */
+    public RowLevelUpdateTimestamps getUpdateTimestamps() {
+        return updateTimestamps;
+    }
+
+    /**
+     * The delegate is created on first use, since Hibernate asks for the minimal puts default before starting
+     * the RegionFactory, and after the ClassLoaderService was injected.
+     */
+    private RegionFactory delegate() {
+        if (delegate == null) {
+            synchronized (this) {
+                if (delegate == null) {
+                    delegate = NearCacheRegionFactory.newDelegate(ConfigurationHelper.getString(
+                        REGION_FACTORY_CLASS, properties, EhCacheRegionFactory.class.getName()),
+                        properties, classLoaderService);
+                }
+            }
+        }
+        return delegate;
+    }
+
+    /**
+     * Update timestamps region forwarding all calls to the delegate region, and every put to the
+     * {@link RowLevelUpdateTimestamps} too
+     */
+    private static class RowLevelTimestampsRegion implements TimestampsRegion {
+
+        private final TimestampsRegion delegate;
+
+        private final RowLevelUpdateTimestamps updateTimestamps;
+
+        RowLevelTimestampsRegion(TimestampsRegion delegate, RowLevelUpdateTimestamps updateTimestamps) {
+            this.delegate = delegate;
+            this.updateTimestamps = updateTimestamps;
+        }
+
+        @Override
+        public Object get(Object key) throws CacheException {
+            return delegate.get(key);
+        }
+
+        @Override
+        public void put(Object key, Object value) throws CacheException {
+            delegate.put(key, value);
+            updateTimestamps.onTimestampPut(key, value);
+        }
+
+        @Override
+        public void evict(Object key) throws CacheException {
+            delegate.evict(key);
+        }
+
+        @Override
+        public void evictAll() throws CacheException {
+            delegate.evictAll();
+        }
+
+        @Override
+        public String getName() {
+            return delegate.getName();
+        }
+
+        @Override
+        public void destroy() throws CacheException {
+            delegate.destroy();
+        }
+
+        @Override
+        public boolean contains(Object key) {
+            return delegate.contains(key);
+        }
+
+        @Override
+        public long getSizeInMemory() {
+            return delegate.getSizeInMemory();
+        }
+
+        @Override
+        public long getElementCountInMemory() {
+            return delegate.getElementCountInMemory();
+        }
+
+        @Override
+        public long getElementCountOnDisk() {
+            return delegate.getElementCountOnDisk();
+        }
+
+        @Override
+        public Map toMap() {
+            return delegate.toMap();
+        }
+
+        @Override
+        public long nextTimestamp() {
+            return delegate.nextTimestamp();
+        }
+
+        @Override
+        public int getTimeout() {
+            return delegate.getTimeout();
+        }
+    }
+}
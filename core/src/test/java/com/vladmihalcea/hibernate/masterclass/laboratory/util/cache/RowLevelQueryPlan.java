@@ -0,0 +1,707 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util.cache;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.RowLevelUpdateTimestamps.Key;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * <code>RowLevelQueryPlan</code> - The tables, columns and equality predicates a cached query SQL depends on,
+ * out of which the {@link RowLevelQueryCache} computes the {@link RowLevelUpdateTimestamps} keys of a result.
+ * <p>
+ * Only single SELECT statements over plain tables, joined through inner or outer joins, can be analyzed.
+ * Subqueries, set operations, derived tables and identifiers the plan cannot resolve make the SQL unanalyzable,
+ * in which case the results fall back to the table level UpdateTimestampsCache invalidation.
+ * <p>
+ * The equality predicates are taken from the top level WHERE conjuncts and the inner join ON conjuncts, and
+ * propagated through the column equalities, so that a <code>post.author_id = author.id and author.id = ?</code>
+ * filter binds both columns to the same parameter.
+ *
+ * @author Vlad Mihalcea
+ */
+class RowLevelQueryPlan {
+
+    static final RowLevelQueryPlan UNANALYZABLE = new RowLevelQueryPlan();
+
+    /**
+     * The Hibernate generated column aliases of the entities being hydrated, as opposed to the col_0_0_ scalars
+     */
+    private static final Pattern HYDRATION_ALIAS = Pattern.compile("[a-z_$]+\\d+_\\d+_");
+
+    private static final Pattern SCALAR_ALIAS = Pattern.compile("col_\\d+_\\d+_");
+
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+        "select", "distinct", "all", "from", "as", "join", "inner", "left", "right", "full", "outer", "cross", "on",
+        "where", "and", "or", "not", "null", "is", "in", "like", "escape", "between", "exists", "group", "by",
+        "having", "order", "asc", "desc", "nulls", "first", "last", "limit", "offset", "top", "fetch", "next",
+        "rows", "row", "only", "with", "ties", "for", "update", "share", "of", "nowait", "skip", "locked",
+        "case", "when", "then", "else", "end", "true", "false", "unknown", "interval", "year", "month", "day",
+        "hour", "minute", "second", "integer", "int", "bigint", "smallint", "tinyint", "numeric", "decimal",
+        "double", "precision", "float", "real", "char", "character", "varchar", "boolean", "date", "time",
+        "timestamp", "current_date", "current_time", "current_timestamp", "localtime", "localtimestamp",
+        "sysdate"
+    ));
+
+    private static final Set<String> CLAUSES = new HashSet<>(Arrays.asList(
+        "where", "group", "having", "order", "limit", "offset", "fetch", "for"
+    ));
+
+    private static final Set<String> REJECTED = new HashSet<>(Arrays.asList(
+        "union", "intersect", "except", "minus", "natural", "lateral", "using"
+    ));
+
+    /**
+     * A read dependency, once its parameters are bound
+     */
+    static final class Dependencies implements Serializable {
+
+        private final String[] tables;
+
+        private final Key[] keys;
+
+        Dependencies(String[] tables, Key[] keys) {
+            this.tables = tables;
+            this.keys = keys;
+        }
+
+        /**
+         * @param table normalized table name
+         * @return whether the keys cover every write of the given table
+         */
+        boolean covers(String table) {
+            for (String coveredTable : tables) {
+                if (coveredTable.equals(table)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        Key[] getKeys() {
+            return keys;
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(keys);
+        }
+    }
+
+    /**
+     * Equality predicate binding a column to either a parameter or a literal
+     */
+    private static final class Predicate {
+
+        private final String column;
+
+        private final int parameter;
+
+        private final Object literal;
+
+        Predicate(String column, int parameter, Object literal) {
+            this.column = column;
+            this.parameter = parameter;
+            this.literal = literal;
+        }
+
+        Object value(Object[] parameters) {
+            if (parameter < 0) {
+                return literal;
+            }
+            return parameters != null && parameter < parameters.length ? parameters[parameter] : null;
+        }
+    }
+
+    private enum TokenType {
+        IDENT, PARAM, NUMBER, STRING, SYMBOL
+    }
+
+    private static final class Token {
+
+        private final TokenType type;
+
+        private final String text;
+
+        private final int depth;
+
+        private final int ordinal;
+
+        Token(TokenType type, String text, int depth, int ordinal) {
+            this.type = type;
+            this.text = text;
+            this.depth = depth;
+            this.ordinal = ordinal;
+        }
+
+        boolean is(String text) {
+            return this.text.equals(text) && (type == TokenType.IDENT || type == TokenType.SYMBOL);
+        }
+    }
+
+    private final Map<String, Integer> occurrences = new LinkedHashMap<>();
+
+    private final Map<String, Set<String>> referencedColumns = new HashMap<>();
+
+    private final Map<String, Set<String>> hydratedColumns = new HashMap<>();
+
+    private final Map<String, List<Predicate>> predicates = new HashMap<>();
+
+    private int parameterCount;
+
+    private boolean grouped;
+
+    private RowLevelQueryPlan() {
+    }
+
+    /**
+     * @param sql query SQL
+     * @return the SQL plan, or {@link #UNANALYZABLE}
+     */
+    static RowLevelQueryPlan analyze(String sql) {
+        try {
+            RowLevelQueryPlan plan = new RowLevelQueryPlan();
+            return new Analyzer(plan, tokenize(sql)).analyze() ? plan : UNANALYZABLE;
+        } catch (RuntimeException e) {
+            return UNANALYZABLE;
+        }
+    }
+
+    int getParameterCount() {
+        return parameterCount;
+    }
+
+    Set<String> getTables() {
+        return occurrences.keySet();
+    }
+
+    /**
+     * The results depend on the UNDECIDED writes of every table, and then on:
+     * <ul>
+     * <li>the writes of the rows having a tracked column value the query filters by, if any</li>
+     * <li>otherwise, on every insert, on the updates of the columns the query references, and on the deletes
+     * of the result rows, or on every delete if the result rows are unknown, paginated or grouped</li>
+     * </ul>
+     * A column value is only used if it was tracked before the result was loaded, since the writes committed
+     * in between don't know about it.
+     *
+     * @param parameters   normalized parameter values, by ordinal
+     * @param paginated    whether the result skips its first rows
+     * @param entityResult whether the result hydrates entities, whose columns are then not referenced
+     * @param resultIds    the normalized ids of the result rows, by table
+     * @param registry     row level update timestamps
+     * @param timestamp    result timestamp
+     * @return result dependencies
+     */
+    Dependencies dependencies(Object[] parameters, boolean paginated, boolean entityResult,
+            Map<String, Set<Object>> resultIds, RowLevelUpdateTimestamps registry, long timestamp) {
+        List<Key> keys = new ArrayList<>();
+        for (Map.Entry<String, Integer> occurrence : occurrences.entrySet()) {
+            String table = occurrence.getKey();
+            keys.add(Key.undecided(table));
+            Key valueKey = null;
+            for (Predicate predicate : predicates.getOrDefault(table, Collections.<Predicate>emptyList())) {
+                Object value = predicate.value(parameters);
+                if (value != null && registry.track(table, predicate.column) < timestamp && valueKey == null) {
+                    valueKey = Key.value(table, predicate.column, value);
+                }
+            }
+            if (valueKey != null) {
+                keys.add(valueKey);
+                continue;
+            }
+            keys.add(Key.insert(table));
+            for (String column : referencedColumns.getOrDefault(table, Collections.<String>emptySet())) {
+                keys.add(Key.update(table, column));
+            }
+            if (!entityResult) {
+                for (String column : hydratedColumns.getOrDefault(table, Collections.<String>emptySet())) {
+                    keys.add(Key.update(table, column));
+                }
+            }
+            Set<Object> ids = resultIds.get(table);
+            if (!paginated && !grouped && occurrence.getValue() == 1 && ids != null) {
+                for (Object id : ids) {
+                    keys.add(Key.row(table, id));
+                }
+            } else {
+                keys.add(Key.delete(table));
+            }
+        }
+        return new Dependencies(
+            occurrences.keySet().toArray(new String[occurrences.size()]),
+            new LinkedHashSet<>(keys).toArray(new Key[0])
+        );
+    }
+
+    private static List<Token> tokenize(String sql) {
+        List<Token> tokens = new ArrayList<>();
+        int depth = 0;
+        int ordinal = 0;
+        int i = 0;
+        int length = sql.length();
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? length : end + 1;
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unterminated comment");
+                }
+                i = end + 2;
+            } else if (c == '\'') {
+                int end = i + 1;
+                while (true) {
+                    end = sql.indexOf('\'', end);
+                    if (end < 0) {
+                        throw new IllegalArgumentException("Unterminated string");
+                    }
+                    if (end + 1 < length && sql.charAt(end + 1) == '\'') {
+                        end += 2;
+                    } else {
+                        break;
+                    }
+                }
+                tokens.add(new Token(TokenType.STRING, sql.substring(i, end + 1), depth, -1));
+                i = end + 1;
+            } else if (Character.isDigit(c)) {
+                int end = i;
+                while (end < length && (Character.isLetterOrDigit(sql.charAt(end)) || sql.charAt(end) == '.')) {
+                    end++;
+                }
+                tokens.add(new Token(TokenType.NUMBER, sql.substring(i, end), depth, -1));
+                i = end;
+            } else if (c == '?') {
+                tokens.add(new Token(TokenType.PARAM, "?", depth, ordinal++));
+                i++;
+            } else if (isIdentifierStart(c)) {
+                StringBuilder identifier = new StringBuilder();
+                i = readIdentifierPart(sql, i, identifier);
+                while (i + 1 < length && sql.charAt(i) == '.' && isIdentifierStart(sql.charAt(i + 1))) {
+                    identifier.append('.');
+                    i = readIdentifierPart(sql, i + 1, identifier);
+                }
+                tokens.add(new Token(TokenType.IDENT, RowLevelUpdateTimestamps.normalize(identifier.toString()),
+                    depth, -1));
+            } else if (c == '(') {
+                tokens.add(new Token(TokenType.SYMBOL, "(", depth++, -1));
+                i++;
+            } else if (c == ')') {
+                tokens.add(new Token(TokenType.SYMBOL, ")", --depth, -1));
+                i++;
+            } else {
+                String symbol = i + 1 < length ? sql.substring(i, i + 2) : "";
+                if (symbol.equals("<=") || symbol.equals(">=") || symbol.equals("<>") || symbol.equals("!=") ||
+                        symbol.equals("||") || symbol.equals("::")) {
+                    i += 2;
+                } else {
+                    symbol = String.valueOf(c);
+                    i++;
+                }
+                tokens.add(new Token(TokenType.SYMBOL, symbol, depth, -1));
+            }
+        }
+        if (depth != 0) {
+            throw new IllegalArgumentException("Unbalanced parentheses");
+        }
+        return tokens;
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return Character.isLetter(c) || c == '_' || c == '"' || c == '`' || c == '[';
+    }
+
+    private static int readIdentifierPart(String sql, int i, StringBuilder identifier) {
+        char c = sql.charAt(i);
+        if (c == '"' || c == '`' || c == '[') {
+            int end = sql.indexOf(c == '[' ? ']' : c, i + 1);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unterminated identifier");
+            }
+            identifier.append(sql, i + 1, end);
+            return end + 1;
+        }
+        int end = i;
+        while (end < sql.length() && (Character.isLetterOrDigit(sql.charAt(end)) ||
+                sql.charAt(end) == '_' || sql.charAt(end) == '$' || sql.charAt(end) == '#')) {
+            end++;
+        }
+        identifier.append(sql, i, end);
+        return end;
+    }
+
+    /**
+     * Single use SQL analyzer, filling the plan in
+     */
+    private static final class Analyzer {
+
+        private final RowLevelQueryPlan plan;
+
+        private final List<Token> tokens;
+
+        /**
+         * The tokens already accounted for, like the table names, aliases and select item aliases
+         */
+        private final boolean[] consumed;
+
+        /**
+         * The tokens of the entity hydration select items
+         */
+        private final boolean[] hydrated;
+
+        private final Map<String, String> tablesByAlias = new HashMap<>();
+
+        private final Set<String> selectAliases = new HashSet<>();
+
+        private final List<int[]> equalities = new ArrayList<>();
+
+        Analyzer(RowLevelQueryPlan plan, List<Token> tokens) {
+            this.plan = plan;
+            this.tokens = tokens;
+            this.consumed = new boolean[tokens.size()];
+            this.hydrated = new boolean[tokens.size()];
+        }
+
+        boolean analyze() {
+            if (tokens.isEmpty() || !tokens.get(0).is("select")) {
+                return false;
+            }
+            int from = -1;
+            for (int i = 0; i < tokens.size(); i++) {
+                Token token = tokens.get(i);
+                if (token.type != TokenType.IDENT) {
+                    if (token.type == TokenType.PARAM) {
+                        plan.parameterCount++;
+                    }
+                    continue;
+                }
+                if ((token.text.equals("select") && i > 0) || REJECTED.contains(token.text)) {
+                    return false;
+                }
+                if (token.depth == 0) {
+                    if (token.text.equals("from") && from < 0) {
+                        from = i;
+                    } else if (token.text.equals("group") || token.text.equals("having")) {
+                        plan.grouped = true;
+                    }
+                }
+            }
+            if (from < 0) {
+                return false;
+            }
+            int fromEnd = nextClause(from + 1);
+            if (!parseFrom(from + 1, fromEnd) || !parseSelect(1, from)) {
+                return false;
+            }
+            for (int i = fromEnd; i < tokens.size(); i++) {
+                if (tokens.get(i).is("where") && tokens.get(i).depth == 0) {
+                    addEqualities(i + 1, nextClause(i + 1));
+                    break;
+                }
+            }
+            return resolveIdentifiers() && bindPredicates();
+        }
+
+        private int nextClause(int start) {
+            for (int i = start; i < tokens.size(); i++) {
+                Token token = tokens.get(i);
+                if (token.depth == 0 && token.type == TokenType.IDENT && CLAUSES.contains(token.text)) {
+                    return i;
+                }
+            }
+            return tokens.size();
+        }
+
+        private boolean parseSelect(int start, int end) {
+            int itemStart = start;
+            for (int i = start; i <= end; i++) {
+                if (i == end || (tokens.get(i).is(",") && tokens.get(i).depth == 0)) {
+                    if (i == itemStart) {
+                        return false;
+                    }
+                    String alias = null;
+                    if (i - itemStart >= 3 && tokens.get(i - 2).is("as") && tokens.get(i - 1).type == TokenType.IDENT) {
+                        alias = tokens.get(i - 1).text;
+                        consumed[i - 1] = true;
+                        selectAliases.add(alias);
+                    }
+                    if (alias != null && HYDRATION_ALIAS.matcher(alias).matches() &&
+                            !SCALAR_ALIAS.matcher(alias).matches()) {
+                        Arrays.fill(hydrated, itemStart, i, true);
+                    }
+                    itemStart = i + 1;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Parse the FROM table references, taking the inner join ON conjuncts as predicates.
+         */
+        private boolean parseFrom(int start, int end) {
+            int i = start;
+            boolean innerJoin = true;
+            while (i < end) {
+                Token table = tokens.get(i);
+                if (table.type != TokenType.IDENT || KEYWORDS.contains(table.text)) {
+                    return false;
+                }
+                consumed[i++] = true;
+                String alias = table.text;
+                if (i < end && tokens.get(i).is("as")) {
+                    i++;
+                }
+                if (i < end && tokens.get(i).type == TokenType.IDENT && !KEYWORDS.contains(tokens.get(i).text)) {
+                    alias = tokens.get(i).text;
+                    consumed[i++] = true;
+                } else {
+                    int dot = table.text.lastIndexOf('.');
+                    if (dot >= 0) {
+                        tablesByAlias.put(table.text.substring(dot + 1), table.text);
+                    }
+                }
+                if (tablesByAlias.put(alias, table.text) != null) {
+                    return false;
+                }
+                plan.occurrences.merge(table.text, 1, Integer::sum);
+                if (i < end && tokens.get(i).is("on")) {
+                    int conditionEnd = i + 1;
+                    while (conditionEnd < end && !isJoinStart(conditionEnd)) {
+                        conditionEnd++;
+                    }
+                    if (innerJoin) {
+                        addEqualities(i + 1, conditionEnd);
+                    }
+                    i = conditionEnd;
+                }
+                if (i == end) {
+                    return true;
+                }
+                if (tokens.get(i).is(",")) {
+                    innerJoin = true;
+                    i++;
+                    continue;
+                }
+                innerJoin = true;
+                while (i < end && !tokens.get(i).is("join")) {
+                    String joinType = tokens.get(i).text;
+                    if (joinType.equals("left") || joinType.equals("right") || joinType.equals("full")) {
+                        innerJoin = false;
+                    } else if (!joinType.equals("inner") && !joinType.equals("outer") && !joinType.equals("cross")) {
+                        return false;
+                    }
+                    i++;
+                }
+                i++;
+            }
+            return false;
+        }
+
+        private boolean isJoinStart(int i) {
+            Token token = tokens.get(i);
+            return token.depth == 0 && (token.is(",") || token.is("join") || token.is("inner") ||
+                token.is("left") || token.is("right") || token.is("full") || token.is("cross"));
+        }
+
+        /**
+         * Collect the equality conjuncts, unless some top level OR makes them optional.
+         *
+         * @return the equality operand token indexes, or null if the conjuncts are optional
+         */
+        private List<int[]> conjuncts(int start, int end, int depth) {
+            List<int[]> found = new ArrayList<>();
+            boolean between = false;
+            int conjunctStart = start;
+            for (int i = start; i <= end; i++) {
+                Token token = i < end ? tokens.get(i) : null;
+                if (token != null && (token.depth != depth || token.type != TokenType.IDENT)) {
+                    continue;
+                }
+                if (token != null && token.text.equals("or")) {
+                    return null;
+                }
+                if (token != null && token.text.equals("between")) {
+                    between = true;
+                } else if (token == null || token.text.equals("and")) {
+                    if (token != null && between) {
+                        between = false;
+                        continue;
+                    }
+                    conjunct(conjunctStart, i, depth, found);
+                    conjunctStart = i + 1;
+                }
+            }
+            return found;
+        }
+
+        private void conjunct(int start, int end, int depth, List<int[]> found) {
+            if (end - start >= 2 && tokens.get(start).is("(") && matchingParenthesis(start) == end - 1) {
+                List<int[]> nested = conjuncts(start + 1, end - 1, depth + 1);
+                if (nested != null) {
+                    found.addAll(nested);
+                }
+            } else if (end - start == 3 && tokens.get(start + 1).is("=")) {
+                found.add(new int[] {start, start + 2});
+            }
+        }
+
+        private void addEqualities(int start, int end) {
+            List<int[]> found = conjuncts(start, end, 0);
+            if (found != null) {
+                equalities.addAll(found);
+            }
+        }
+
+        private int matchingParenthesis(int open) {
+            int depth = tokens.get(open).depth;
+            for (int i = open + 1; i < tokens.size(); i++) {
+                if (tokens.get(i).is(")") && tokens.get(i).depth == depth) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Every identifier must be a keyword, a function, a select alias or a column of a FROM table.
+         */
+        private boolean resolveIdentifiers() {
+            for (int i = 0; i < tokens.size(); i++) {
+                Token token = tokens.get(i);
+                if (token.type != TokenType.IDENT || consumed[i] || KEYWORDS.contains(token.text)) {
+                    continue;
+                }
+                if (i + 1 < tokens.size() && tokens.get(i + 1).is("(") && token.text.indexOf('.') < 0) {
+                    continue;
+                }
+                String[] column = column(token);
+                if (column == null) {
+                    if (selectAliases.contains(token.text)) {
+                        continue;
+                    }
+                    return false;
+                }
+                String table = tablesByAlias.get(column[0]);
+                (hydrated[i] ? plan.hydratedColumns : plan.referencedColumns)
+                    .computeIfAbsent(table, t -> new LinkedHashSet<>()).add(column[1]);
+            }
+            return true;
+        }
+
+        /**
+         * @return the alias and column name the given identifier refers to, or null if unknown
+         */
+        private String[] column(Token token) {
+            int dot = token.text.lastIndexOf('.');
+            if (dot >= 0) {
+                String alias = token.text.substring(0, dot);
+                return tablesByAlias.containsKey(alias) ? new String[] {alias, token.text.substring(dot + 1)} : null;
+            }
+            if (tablesByAlias.size() == 1 && !selectAliases.contains(token.text)) {
+                return new String[] {tablesByAlias.keySet().iterator().next(), token.text};
+            }
+            return null;
+        }
+
+        /**
+         * Merge the equal columns, parameters and literals, and bind the columns of every class to its
+         * parameters and literals.
+         */
+        private boolean bindPredicates() {
+            Map<String, String> parents = new HashMap<>();
+            Map<String, Object> terms = new HashMap<>();
+            for (int[] equality : equalities) {
+                String left = term(tokens.get(equality[0]), terms);
+                String right = term(tokens.get(equality[1]), terms);
+                if (left != null && right != null) {
+                    parents.put(find(parents, left), find(parents, right));
+                }
+            }
+            Map<String, List<String>> classes = new HashMap<>();
+            for (String term : terms.keySet()) {
+                classes.computeIfAbsent(find(parents, term), root -> new ArrayList<>()).add(term);
+            }
+            for (List<String> equalTerms : classes.values()) {
+                for (String column : equalTerms) {
+                    Object columnTerm = terms.get(column);
+                    if (!(columnTerm instanceof String[])) {
+                        continue;
+                    }
+                    String table = tablesByAlias.get(((String[]) columnTerm)[0]);
+                    if (plan.occurrences.get(table) != 1) {
+                        continue;
+                    }
+                    for (String binding : equalTerms) {
+                        Object bindingTerm = terms.get(binding);
+                        if (bindingTerm instanceof Integer) {
+                            plan.predicates.computeIfAbsent(table, t -> new ArrayList<>())
+                                .add(new Predicate(((String[]) columnTerm)[1], (Integer) bindingTerm, null));
+                        } else if (!(bindingTerm instanceof String[])) {
+                            plan.predicates.computeIfAbsent(table, t -> new ArrayList<>())
+                                .add(new Predicate(((String[]) columnTerm)[1], -1, bindingTerm));
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return the union-find node of a column, parameter or integral/boolean literal term, or null
+         */
+        private String term(Token token, Map<String, Object> terms) {
+            Object term = null;
+            switch (token.type) {
+                case PARAM:
+                    term = token.ordinal;
+                    break;
+                case NUMBER:
+                    try {
+                        term = Long.parseLong(token.text);
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                    break;
+                case IDENT:
+                    if (token.text.equals("true") || token.text.equals("false")) {
+                        term = Boolean.valueOf(token.text);
+                    } else {
+                        term = column(token);
+                    }
+                    break;
+                default:
+            }
+            if (term == null) {
+                return null;
+            }
+            String node = term instanceof String[] ?
+                "column:" + ((String[]) term)[0] + "." + ((String[]) term)[1] :
+                term.getClass().getSimpleName() + ":" + term;
+            terms.put(node, term);
+            return node;
+        }
+
+        private static String find(Map<String, String> parents, String node) {
+            String parent = parents.get(node);
+            if (parent == null) {
+                return node;
+            }
+            String root = find(parents, parent);
+            parents.put(node, root);
+            return root;
+        }
+    }
+}
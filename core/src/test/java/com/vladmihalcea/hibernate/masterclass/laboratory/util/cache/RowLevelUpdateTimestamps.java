@@ -0,0 +1,312 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util.cache;
+
+import org.hibernate.cache.spi.RegionFactory;
+
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <code>RowLevelUpdateTimestamps</code> - Keeps the last invalidation timestamp of the table inserts, deletes,
+ * column updates, rows and column values the {@link RowLevelQueryCache} results depend on, just like the
+ * UpdateTimestampsCache does for whole tables.
+ * <p>
+ * Every entity write is pre-invalidated with a timestamp in the future when flushed, and invalidated again once
+ * its transaction completes, so no result loaded in between is ever considered up to date. The writes the entity
+ * listeners don't get to see, like bulk HQL and native SQL statements, are caught by the
+ * {@link RowLevelQueryCacheRegionFactory} update timestamps region, and invalidate every row of their tables.
+ * <p>
+ * Only the values of the columns some cached result filters by are tracked, and, when there are more timestamps
+ * than the maximum size, they are all discarded and every result cached so far becomes stale.
+ *
+ * @author Vlad Mihalcea
+ */
+public class RowLevelUpdateTimestamps {
+
+    /**
+     * The write kind a {@link Key} stands for
+     */
+    public enum Kind {
+        /**
+         * Any write the affected rows of which are unknown
+         */
+        UNDECIDED,
+        INSERT,
+        DELETE,
+        /**
+         * Update of a given column
+         */
+        UPDATE,
+        /**
+         * Delete of a given row
+         */
+        ROW,
+        /**
+         * Write of a row having a given column value, either before or after the write
+         */
+        VALUE
+    }
+
+    public static final class Key implements Serializable {
+
+        private final Kind kind;
+
+        private final String table;
+
+        private final String column;
+
+        private final Object value;
+
+        private final int hashCode;
+
+        private Key(Kind kind, String table, String column, Object value) {
+            this.kind = kind;
+            this.table = table;
+            this.column = column;
+            this.value = value;
+            this.hashCode = Objects.hash(kind, table, column, value);
+        }
+
+        public static Key undecided(String table) {
+            return new Key(Kind.UNDECIDED, table, null, null);
+        }
+
+        public static Key insert(String table) {
+            return new Key(Kind.INSERT, table, null, null);
+        }
+
+        public static Key delete(String table) {
+            return new Key(Kind.DELETE, table, null, null);
+        }
+
+        public static Key update(String table, String column) {
+            return new Key(Kind.UPDATE, table, column, null);
+        }
+
+        public static Key row(String table, Object id) {
+            return new Key(Kind.ROW, table, null, id);
+        }
+
+        public static Key value(String table, String column, Object value) {
+            return new Key(Kind.VALUE, table, column, value);
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return kind == key.kind &&
+                table.equals(key.table) &&
+                Objects.equals(column, key.column) &&
+                Objects.equals(value, key.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder().append(kind).append('(').append(table);
+            if (column != null) {
+                builder.append('.').append(column);
+            }
+            if (value != null) {
+                builder.append(kind == Kind.ROW ? "#" : "=").append(value);
+            }
+            return builder.append(')').toString();
+        }
+    }
+
+    private final Map<Key, Long> timestamps = new ConcurrentHashMap<>();
+
+    private final Map<String, Map<String, Long>> trackedColumns = new ConcurrentHashMap<>();
+
+    /**
+     * The spaces the entity listeners saw being written by the current flush
+     */
+    private final ThreadLocal<Set<Serializable>> explainedSpaces = ThreadLocal.withInitial(HashSet::new);
+
+    /**
+     * The spaces pre-invalidated by the current transaction without the entity listeners seeing the write
+     */
+    private final ThreadLocal<Set<Serializable>> unexplainedSpaces = ThreadLocal.withInitial(HashSet::new);
+
+    private final RegionFactory regionFactory;
+
+    private final int timeout;
+
+    private final int maximumSize;
+
+    private volatile long floor;
+
+    public RowLevelUpdateTimestamps(RegionFactory regionFactory, int timeout, int maximumSize) {
+        this.regionFactory = regionFactory;
+        this.timeout = timeout;
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * @param name table or column name
+     * @return the name without quotes and in lower case, as both the query spaces and the SQL queries refer to it
+     */
+    public static String normalize(String name) {
+        StringBuilder builder = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c != '"' && c != '`' && c != '[' && c != ']') {
+                builder.append(c);
+            }
+        }
+        return builder.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Only integral and boolean values are tracked, since the string and temporal equality depend on
+     * the database collation and precision.
+     *
+     * @param value column value or query parameter
+     * @return the value as a Long or a Boolean, or null if it cannot be tracked
+     */
+    public static Object normalizeValue(Object value) {
+        if (value instanceof Long || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof BigInteger && ((BigInteger) value).bitLength() < Long.SIZE) {
+            return ((BigInteger) value).longValue();
+        }
+        return null;
+    }
+
+    /**
+     * Start tracking the values of the given column, if not tracked already.
+     *
+     * @param table  normalized table name
+     * @param column normalized column name
+     * @return the timestamp since when the column values are tracked, the results loaded before not being
+     * able to depend on them
+     */
+    public long track(String table, String column) {
+        return trackedColumns.computeIfAbsent(table, t -> new ConcurrentHashMap<>())
+            .computeIfAbsent(column, c -> regionFactory.nextTimestamp());
+    }
+
+    /**
+     * @param table normalized table name
+     * @return the columns whose values are tracked
+     */
+    public Set<String> getTrackedColumns(String table) {
+        Map<String, Long> columns = trackedColumns.get(table);
+        return columns != null ? columns.keySet() : Collections.<String>emptySet();
+    }
+
+    /**
+     * Mark the given spaces as written by an entity the listeners saw, for the current flush.
+     *
+     * @param spaces entity query spaces
+     */
+    public void explain(Serializable[] spaces) {
+        Collections.addAll(explainedSpaces.get(), spaces);
+    }
+
+    /**
+     * Invalidate every row of the spaces the UpdateTimestampsCache pre-invalidates, unless the entity listeners
+     * already explained the writes, and then once again when the UpdateTimestampsCache invalidates them after
+     * the transaction completion.
+     *
+     * @param space query space
+     * @param value update timestamp
+     */
+    public void onTimestampPut(Object space, Object value) {
+        if (!(space instanceof Serializable) || !(value instanceof Long)) {
+            return;
+        }
+        long timestamp = (Long) value;
+        boolean preInvalidation = timestamp > regionFactory.nextTimestamp();
+        boolean unexplained = preInvalidation ?
+            !explainedSpaces.get().remove(space) && unexplainedSpaces.get().add((Serializable) space) :
+            unexplainedSpaces.get().remove(space);
+        if (unexplained) {
+            put(Key.undecided(normalize(space.toString())), timestamp);
+        }
+    }
+
+    /**
+     * Invalidate the given keys until the transaction writing them completes.
+     *
+     * @param keys write keys
+     */
+    public void preInvalidate(Collection<Key> keys) {
+        long timestamp = regionFactory.nextTimestamp() + timeout;
+        for (Key key : keys) {
+            put(key, timestamp);
+        }
+    }
+
+    /**
+     * Invalidate the given keys once the transaction writing them completed, forgetting the spaces explained by
+     * a flush whose update timestamps were never pre-invalidated, as it happens when the flush fails.
+     *
+     * @param keys write keys
+     */
+    public void invalidate(Collection<Key> keys) {
+        explainedSpaces.get().clear();
+        long timestamp = regionFactory.nextTimestamp();
+        for (Key key : keys) {
+            put(key, timestamp);
+        }
+    }
+
+    /**
+     * @param keys      result dependencies
+     * @param timestamp result timestamp
+     * @return whether none of the dependencies was invalidated since the result was loaded
+     */
+    public boolean isUpToDate(Key[] keys, long timestamp) {
+        if (timestamp <= floor) {
+            return false;
+        }
+        for (Key key : keys) {
+            Long lastUpdate = timestamps.get(key);
+            if (lastUpdate != null && lastUpdate >= timestamp) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int size() {
+        return timestamps.size();
+    }
+
+    /**
+     * The floor is raised after clearing, so that the timestamps cleared are older than it.
+     */
+    private void put(Key key, long timestamp) {
+        timestamps.put(key, timestamp);
+        if (timestamps.size() > maximumSize) {
+            timestamps.clear();
+            floor = regionFactory.nextTimestamp();
+        }
+    }
+}
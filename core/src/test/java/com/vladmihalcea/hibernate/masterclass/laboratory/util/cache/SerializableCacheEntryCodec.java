@@ -0,0 +1,29 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util.cache;
+
+import org.hibernate.cache.spi.entry.ReferenceCacheEntryImpl;
+
+import java.io.Serializable;
+
+/**
+ * <code>SerializableCacheEntryCodec</code> - Java serialization codec, which is how the cache providers overflow
+ * or replicate the second-level cache entries, every entry carrying the class descriptors of its boxed values.
+ *
+ * @author Vlad Mihalcea
+ */
+public class SerializableCacheEntryCodec implements CacheEntryCodec {
+
+    @Override
+    public boolean isEncodable(Object key, Object value) {
+        return value instanceof Serializable && !(value instanceof ReferenceCacheEntryImpl);
+    }
+
+    @Override
+    public byte[] encode(Object key, Object value) {
+        return TaggedCacheEntryCodec.serialize(value);
+    }
+
+    @Override
+    public Object decode(Object key, byte[] bytes) {
+        return TaggedCacheEntryCodec.deserialize(bytes);
+    }
+}
@@ -0,0 +1,327 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * <code>SlabAllocator</code> - Allocates byte chunks out of direct {@link ByteBuffer} slabs, like memcached does.
+ * <p>
+ * Every slab is split into equally-sized chunks of a single size class, the size classes growing by 25%.
+ * A slab whose chunks are all free goes back to the shared pool, so that it can be reused by another size class.
+ * At most maximumBytes of direct memory are allocated, so an allocation fails once all slabs are taken and
+ * the size class has no free chunk left.
+ * <p>
+ * Reads are lock-free: every chunk is tagged with the unique identifier of its current allocation, and the read
+ * is validated against the slab {@link StampedLock}, which is only write-locked to free a chunk or a slab. A read
+ * racing with freeing the chunk is retried under the read lock, and it returns null once the chunk is gone.
+ *
+ * @author Vlad Mihalcea
+ */
+class SlabAllocator {
+
+    static final int MINIMUM_CHUNK_SIZE = 64;
+
+    private static final double GROWTH_FACTOR = 1.25;
+
+    private static final int ALIGNMENT = 8;
+
+    private final int slabSize;
+
+    private final int maximumSlabs;
+
+    private final SizeClass[] sizeClasses;
+
+    private final Deque<ByteBuffer> freeBuffers = new ArrayDeque<>();
+
+    private final AtomicLong allocationIdSequence = new AtomicLong();
+
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    private int slabCount;
+
+    SlabAllocator(long maximumBytes, int slabSize) {
+        if (slabSize < MINIMUM_CHUNK_SIZE) {
+            throw new IllegalArgumentException("The slab size must be at least " + MINIMUM_CHUNK_SIZE + " bytes");
+        }
+        if (maximumBytes < slabSize) {
+            throw new IllegalArgumentException("The maximum bytes must be at least one slab of " + slabSize + " bytes");
+        }
+        this.slabSize = slabSize;
+        this.maximumSlabs = (int) Math.min(Integer.MAX_VALUE, maximumBytes / slabSize);
+        List<SizeClass> sizeClasses = new ArrayList<>();
+        int chunkSize = MINIMUM_CHUNK_SIZE;
+        while (chunkSize < slabSize) {
+            sizeClasses.add(new SizeClass(chunkSize));
+            chunkSize = Math.min(slabSize, align((int) (chunkSize * GROWTH_FACTOR)));
+        }
+        sizeClasses.add(new SizeClass(slabSize));
+        this.sizeClasses = sizeClasses.toArray(new SizeClass[sizeClasses.size()]);
+    }
+
+    /**
+     * @param bytes chunk content
+     * @return the chunk holding the given bytes, or null if there's no room left
+     */
+    Chunk allocate(byte[] bytes) {
+        SizeClass sizeClass = sizeClassOf(bytes.length);
+        if (sizeClass == null) {
+            return null;
+        }
+        Chunk chunk = sizeClass.allocate(bytes.length);
+        if (chunk != null) {
+            ByteBuffer buffer = chunk.slab.buffer.duplicate();
+            buffer.position(chunk.offset());
+            buffer.put(bytes);
+            usedBytes.addAndGet(sizeClass.chunkSize);
+        }
+        return chunk;
+    }
+
+    /**
+     * @param chunk chunk
+     * @return a copy of the chunk content, or null if the chunk was freed
+     */
+    byte[] read(Chunk chunk) {
+        Slab slab = chunk.slab;
+        long stamp = slab.lock.tryOptimisticRead();
+        if (stamp != 0) {
+            byte[] bytes = slab.copy(chunk);
+            if (slab.lock.validate(stamp)) {
+                return bytes;
+            }
+        }
+        stamp = slab.lock.readLock();
+        try {
+            return slab.copy(chunk);
+        } finally {
+            slab.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Free the given chunk, unless it was freed already
+     *
+     * @param chunk chunk
+     */
+    void free(Chunk chunk) {
+        SizeClass sizeClass = chunk.slab.sizeClass;
+        if (sizeClass.free(chunk)) {
+            usedBytes.addAndGet(-sizeClass.chunkSize);
+        }
+    }
+
+    /**
+     * @return the size of the chunks in use
+     */
+    long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    /**
+     * @return the size of the slabs allocated so far
+     */
+    synchronized long getAllocatedBytes() {
+        return (long) slabCount * slabSize;
+    }
+
+    /**
+     * @param length content length
+     * @return the size of the chunk holding the given number of bytes, or -1 if it exceeds the slab size
+     */
+    int chunkSize(int length) {
+        SizeClass sizeClass = sizeClassOf(length);
+        return sizeClass != null ? sizeClass.chunkSize : -1;
+    }
+
+    private SizeClass sizeClassOf(int length) {
+        for (SizeClass sizeClass : sizeClasses) {
+            if (length <= sizeClass.chunkSize) {
+                return sizeClass;
+            }
+        }
+        return null;
+    }
+
+    private synchronized ByteBuffer takeBuffer() {
+        ByteBuffer buffer = freeBuffers.poll();
+        if (buffer == null && slabCount < maximumSlabs) {
+            buffer = ByteBuffer.allocateDirect(slabSize);
+            slabCount++;
+        }
+        return buffer;
+    }
+
+    private synchronized void returnBuffer(ByteBuffer buffer) {
+        freeBuffers.push(buffer);
+    }
+
+    private static int align(int size) {
+        return (size + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    /**
+     * Chunks of a single size, allocated out of the slabs which still have free chunks
+     */
+    private class SizeClass {
+
+        private final int chunkSize;
+
+        private final Deque<Slab> availableSlabs = new ArrayDeque<>();
+
+        SizeClass(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        synchronized Chunk allocate(int length) {
+            Slab slab = availableSlabs.peek();
+            if (slab == null) {
+                ByteBuffer buffer = takeBuffer();
+                if (buffer == null) {
+                    return null;
+                }
+                slab = new Slab(this, buffer);
+                availableSlabs.push(slab);
+            }
+            Chunk chunk = slab.allocate(length, allocationIdSequence.incrementAndGet());
+            if (slab.isFull()) {
+                availableSlabs.remove(slab);
+            }
+            return chunk;
+        }
+
+        synchronized boolean free(Chunk chunk) {
+            Slab slab = chunk.slab;
+            boolean wasFull = slab.isFull();
+            if (!slab.free(chunk)) {
+                return false;
+            }
+            if (slab.isEmpty()) {
+                availableSlabs.remove(slab);
+                slab.retire();
+                returnBuffer(slab.buffer);
+            } else if (wasFull) {
+                availableSlabs.push(slab);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Slab of equally-sized chunks, its free chunks being tracked by a stack of chunk indexes
+     */
+    private static class Slab {
+
+        private final SizeClass sizeClass;
+
+        private final ByteBuffer buffer;
+
+        private final StampedLock lock = new StampedLock();
+
+        private final long[] allocationIds;
+
+        private final int[] freeIndexes;
+
+        private int freeCount;
+
+        private int nextIndex;
+
+        Slab(SizeClass sizeClass, ByteBuffer buffer) {
+            this.sizeClass = sizeClass;
+            this.buffer = buffer;
+            int chunkCount = buffer.capacity() / sizeClass.chunkSize;
+            this.allocationIds = new long[chunkCount];
+            this.freeIndexes = new int[chunkCount];
+        }
+
+        boolean isFull() {
+            return freeCount == 0 && nextIndex == allocationIds.length;
+        }
+
+        boolean isEmpty() {
+            return freeCount == nextIndex;
+        }
+
+        /**
+         * The chunk was already tagged as free when it was released, and allocation identifiers are unique,
+         * so no stale handle can match the new allocation, and no write lock is needed.
+         */
+        Chunk allocate(int length, long allocationId) {
+            int index = freeCount > 0 ? freeIndexes[--freeCount] : nextIndex++;
+            allocationIds[index] = allocationId;
+            return new Chunk(this, index, length, allocationId);
+        }
+
+        boolean free(Chunk chunk) {
+            long stamp = lock.writeLock();
+            try {
+                if (allocationIds[chunk.index] != chunk.allocationId) {
+                    return false;
+                }
+                allocationIds[chunk.index] = 0;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            freeIndexes[freeCount++] = chunk.index;
+            return true;
+        }
+
+        void retire() {
+            long stamp = lock.writeLock();
+            try {
+                Arrays.fill(allocationIds, 0);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        byte[] copy(Chunk chunk) {
+            if (allocationIds[chunk.index] != chunk.allocationId) {
+                return null;
+            }
+            byte[] bytes = new byte[chunk.length];
+            ByteBuffer source = buffer.duplicate();
+            source.position(chunk.offset());
+            source.get(bytes);
+            return bytes;
+        }
+    }
+
+    /**
+     * Handle of an allocated chunk, which stays on-heap
+     */
+    static final class Chunk {
+
+        private final Slab slab;
+
+        private final int index;
+
+        private final int length;
+
+        private final long allocationId;
+
+        Chunk(Slab slab, int index, int length, long allocationId) {
+            this.slab = slab;
+            this.index = index;
+            this.length = length;
+            this.allocationId = allocationId;
+        }
+
+        int offset() {
+            return index * slab.sizeClass.chunkSize;
+        }
+
+        int length() {
+            return length;
+        }
+
+        int size() {
+            return slab.sizeClass.chunkSize;
+        }
+    }
+}
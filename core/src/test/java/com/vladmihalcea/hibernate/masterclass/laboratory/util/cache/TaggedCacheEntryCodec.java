@@ -0,0 +1,420 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util.cache;
+
+import org.hibernate.bytecode.instrumentation.spi.LazyPropertyInitializer;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.entry.CacheEntry;
+import org.hibernate.cache.spi.entry.CollectionCacheEntry;
+import org.hibernate.cache.spi.entry.StandardCacheEntryImpl;
+import org.hibernate.cache.spi.entry.StructuredCollectionCacheEntry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * <code>TaggedCacheEntryCodec</code> - Encodes the disassembled state of the entity and collection cache entries
+ * into a compact byte array, every value being prefixed by a one byte type tag.
+ * <p>
+ * Integers and longs are zig-zag varints, strings are length-prefixed UTF-8, and dates are written as varint epoch
+ * milliseconds, while any other value falls back to Java serialization. Only {@link StandardCacheEntryImpl} and
+ * {@link CollectionCacheEntry} instances can be encoded, so reference cache entries, which hold the entity itself,
+ * are not supported.
+ * <p>
+ * Since every entry carries its own type tags and entity name, no Hibernate metadata is needed to decode it.
+ *
+ * @author Vlad Mihalcea
+ */
+public final class TaggedCacheEntryCodec implements CacheEntryCodec {
+
+    private static final byte ENTITY = 1;
+
+    private static final byte COLLECTION = 2;
+
+    private static final byte NULL = 0;
+
+    private static final byte TRUE = 1;
+
+    private static final byte FALSE = 2;
+
+    private static final byte BYTE = 3;
+
+    private static final byte SHORT = 4;
+
+    private static final byte INTEGER = 5;
+
+    private static final byte LONG = 6;
+
+    private static final byte FLOAT = 7;
+
+    private static final byte DOUBLE = 8;
+
+    private static final byte CHARACTER = 9;
+
+    private static final byte STRING = 10;
+
+    private static final byte DATE = 11;
+
+    private static final byte SQL_DATE = 12;
+
+    private static final byte SQL_TIME = 13;
+
+    private static final byte SQL_TIMESTAMP = 14;
+
+    private static final byte BIG_DECIMAL = 15;
+
+    private static final byte BIG_INTEGER = 16;
+
+    private static final byte BYTES = 17;
+
+    private static final byte ARRAY = 18;
+
+    private static final byte UNFETCHED_PROPERTY = 19;
+
+    private static final byte SERIALIZED = 20;
+
+    private static final byte OBJECT_ARRAY = 21;
+
+    /**
+     * The StandardCacheEntryImpl state constructor is package-private, so it's called reflectively
+     */
+    private static final Constructor<StandardCacheEntryImpl> ENTITY_ENTRY_CONSTRUCTOR;
+
+    static {
+        try {
+            ENTITY_ENTRY_CONSTRUCTOR = StandardCacheEntryImpl.class.getDeclaredConstructor(
+                Serializable[].class, String.class, boolean.class, Object.class
+            );
+            ENTITY_ENTRY_CONSTRUCTOR.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public boolean isEncodable(Object key, Object value) {
+        return value instanceof StandardCacheEntryImpl || value instanceof CollectionCacheEntry;
+    }
+
+    @Override
+    public byte[] encode(Object key, Object value) {
+        Output output = new Output();
+        if (value instanceof StandardCacheEntryImpl) {
+            CacheEntry entry = (CacheEntry) value;
+            output.writeByte(ENTITY);
+            output.writeString(entry.getSubclass());
+            output.writeByte(entry.areLazyPropertiesUnfetched() ? TRUE : FALSE);
+            writeValue(output, entry.getVersion());
+            writeValue(output, entry.getDisassembledState());
+        } else if (value instanceof CollectionCacheEntry) {
+            output.writeByte(COLLECTION);
+            writeValue(output, ((CollectionCacheEntry) value).getState());
+        } else {
+            throw new IllegalArgumentException("Unsupported cache entry " + value);
+        }
+        return output.toByteArray();
+    }
+
+    @Override
+    public Object decode(Object key, byte[] bytes) {
+        Input input = new Input(bytes);
+        switch (input.readByte()) {
+            case ENTITY:
+                String subclass = input.readString();
+                boolean lazyPropertiesAreUnfetched = input.readByte() == TRUE;
+                Object version = readValue(input);
+                Serializable[] state = (Serializable[]) readValue(input);
+                return newEntityEntry(state, subclass, lazyPropertiesAreUnfetched, version);
+            case COLLECTION:
+                return newCollectionEntry((Serializable[]) readValue(input));
+            default:
+                throw new CacheException("Corrupted cache entry");
+        }
+    }
+
+    static StandardCacheEntryImpl newEntityEntry(Serializable[] state, String subclass,
+            boolean lazyPropertiesAreUnfetched, Object version) {
+        try {
+            return ENTITY_ENTRY_CONSTRUCTOR.newInstance(state, subclass, lazyPropertiesAreUnfetched, version);
+        } catch (ReflectiveOperationException e) {
+            throw new CacheException(e);
+        }
+    }
+
+    static CollectionCacheEntry newCollectionEntry(Serializable[] state) {
+        return (CollectionCacheEntry) StructuredCollectionCacheEntry.INSTANCE.destructure(Arrays.asList(state), null);
+    }
+
+    /**
+     * Write the given value, prefixed by its type tag
+     */
+    static void writeValue(Output output, Object value) {
+        if (value == null) {
+            output.writeByte(NULL);
+        } else if (value instanceof Boolean) {
+            output.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Integer) {
+            output.writeByte(INTEGER);
+            output.writeVarLong((Integer) value);
+        } else if (value instanceof Long) {
+            output.writeByte(LONG);
+            output.writeVarLong((Long) value);
+        } else if (value instanceof String) {
+            output.writeByte(STRING);
+            output.writeString((String) value);
+        } else if (value instanceof Short) {
+            output.writeByte(SHORT);
+            output.writeVarLong((Short) value);
+        } else if (value instanceof Byte) {
+            output.writeByte(BYTE);
+            output.writeByte((Byte) value);
+        } else if (value instanceof Double) {
+            output.writeByte(DOUBLE);
+            output.writeFixedLong(Double.doubleToRawLongBits((Double) value));
+        } else if (value instanceof Float) {
+            output.writeByte(FLOAT);
+            output.writeVarLong(Float.floatToRawIntBits((Float) value));
+        } else if (value instanceof Character) {
+            output.writeByte(CHARACTER);
+            output.writeVarLong((Character) value);
+        } else if (value.getClass() == java.sql.Timestamp.class) {
+            java.sql.Timestamp timestamp = (java.sql.Timestamp) value;
+            output.writeByte(SQL_TIMESTAMP);
+            output.writeVarLong(timestamp.getTime());
+            output.writeVarLong(timestamp.getNanos());
+        } else if (value.getClass() == java.sql.Date.class) {
+            output.writeByte(SQL_DATE);
+            output.writeVarLong(((Date) value).getTime());
+        } else if (value.getClass() == java.sql.Time.class) {
+            output.writeByte(SQL_TIME);
+            output.writeVarLong(((Date) value).getTime());
+        } else if (value.getClass() == Date.class) {
+            output.writeByte(DATE);
+            output.writeVarLong(((Date) value).getTime());
+        } else if (value.getClass() == BigDecimal.class) {
+            BigDecimal decimal = (BigDecimal) value;
+            output.writeByte(BIG_DECIMAL);
+            output.writeVarLong(decimal.scale());
+            output.writeBytes(decimal.unscaledValue().toByteArray());
+        } else if (value.getClass() == BigInteger.class) {
+            output.writeByte(BIG_INTEGER);
+            output.writeBytes(((BigInteger) value).toByteArray());
+        } else if (value instanceof byte[]) {
+            output.writeByte(BYTES);
+            output.writeBytes((byte[]) value);
+        } else if (value.getClass() == Serializable[].class) {
+            Serializable[] array = (Serializable[]) value;
+            output.writeByte(ARRAY);
+            output.writeVarLong(array.length);
+            for (Serializable element : array) {
+                writeValue(output, element);
+            }
+        } else if (value.getClass() == Object[].class) {
+            Object[] array = (Object[]) value;
+            output.writeByte(OBJECT_ARRAY);
+            output.writeVarLong(array.length);
+            for (Object element : array) {
+                writeValue(output, element);
+            }
+        } else if (value == LazyPropertyInitializer.UNFETCHED_PROPERTY) {
+            output.writeByte(UNFETCHED_PROPERTY);
+        } else {
+            output.writeByte(SERIALIZED);
+            output.writeBytes(serialize(value));
+        }
+    }
+
+    static Object readValue(Input input) {
+        byte tag = input.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case INTEGER:
+                return (int) input.readVarLong();
+            case LONG:
+                return input.readVarLong();
+            case STRING:
+                return input.readString();
+            case SHORT:
+                return (short) input.readVarLong();
+            case BYTE:
+                return input.readByte();
+            case DOUBLE:
+                return Double.longBitsToDouble(input.readFixedLong());
+            case FLOAT:
+                return Float.intBitsToFloat((int) input.readVarLong());
+            case CHARACTER:
+                return (char) input.readVarLong();
+            case SQL_TIMESTAMP:
+                java.sql.Timestamp timestamp = new java.sql.Timestamp(input.readVarLong());
+                timestamp.setNanos((int) input.readVarLong());
+                return timestamp;
+            case SQL_DATE:
+                return new java.sql.Date(input.readVarLong());
+            case SQL_TIME:
+                return new java.sql.Time(input.readVarLong());
+            case DATE:
+                return new Date(input.readVarLong());
+            case BIG_DECIMAL:
+                int scale = (int) input.readVarLong();
+                return new BigDecimal(new BigInteger(input.readBytes()), scale);
+            case BIG_INTEGER:
+                return new BigInteger(input.readBytes());
+            case BYTES:
+                return input.readBytes();
+            case ARRAY:
+                Serializable[] array = new Serializable[(int) input.readVarLong()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = (Serializable) readValue(input);
+                }
+                return array;
+            case OBJECT_ARRAY:
+                Object[] objects = new Object[(int) input.readVarLong()];
+                for (int i = 0; i < objects.length; i++) {
+                    objects[i] = readValue(input);
+                }
+                return objects;
+            case UNFETCHED_PROPERTY:
+                return LazyPropertyInitializer.UNFETCHED_PROPERTY;
+            case SERIALIZED:
+                return deserialize(input.readBytes());
+            default:
+                throw new CacheException("Unknown value tag " + tag);
+        }
+    }
+
+    static byte[] serialize(Object value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(value);
+        } catch (IOException e) {
+            throw new CacheException("Could not serialize " + value, e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static Object deserialize(byte[] bytes) {
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return input.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new CacheException("Could not deserialize cache entry value", e);
+        }
+    }
+
+    /**
+     * Growable byte array writer
+     */
+    static class Output {
+
+        private byte[] buffer = new byte[64];
+
+        private int position;
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[position++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            long zigZag = (value << 1) ^ (value >> 63);
+            ensureCapacity(10);
+            while ((zigZag & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((zigZag & 0x7F) | 0x80);
+                zigZag >>>= 7;
+            }
+            buffer[position++] = (byte) zigZag;
+        }
+
+        void writeFixedLong(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarLong(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        void writeString(String value) {
+            writeBytes(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+        private void ensureCapacity(int length) {
+            if (position + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, position + length));
+            }
+        }
+    }
+
+    /**
+     * Byte array reader
+     */
+    static class Input {
+
+        private final byte[] buffer;
+
+        private int position;
+
+        Input(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        byte readByte() {
+            return buffer[position++];
+        }
+
+        long readVarLong() {
+            long zigZag = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer[position++];
+                zigZag |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            return (zigZag >>> 1) ^ -(zigZag & 1);
+        }
+
+        long readFixedLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (buffer[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        byte[] readBytes() {
+            int length = (int) readVarLong();
+            byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+            position += length;
+            return bytes;
+        }
+
+        String readString() {
+            int length = (int) readVarLong();
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,703 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util.cache;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.CollectionRegion;
+import org.hibernate.cache.spi.EntityRegion;
+import org.hibernate.cache.spi.NaturalIdRegion;
+import org.hibernate.cache.spi.TransactionalDataRegion;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.access.CollectionRegionAccessStrategy;
+import org.hibernate.cache.spi.access.EntityRegionAccessStrategy;
+import org.hibernate.cache.spi.access.NaturalIdRegionAccessStrategy;
+import org.hibernate.cache.spi.access.RegionAccessStrategy;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <code>TinyLfuAccessStrategy</code> - READ_ONLY, NONSTRICT_READ_WRITE and READ_WRITE access strategies
+ * of the {@link TinyLfuRegionFactory} regions, following the hibernate-ehcache ones.
+ * <p>
+ * Instead of guarding every region with a read-write lock, every READ_WRITE item change is applied through
+ * {@link WTinyLfuCache#compute}, so concurrent transactions only contend when they change the very same key.
+ * <p>
+ * The entity, natural id and collection region access strategies forward to one of these access type strategies,
+ * the natural id ones being unversioned.
+ * <p>
+ * When the region is given an {@link OffHeapStorage}, the cached values are stored off-heap on every put, and
+ * loaded back on every get, a value whose chunk was freed concurrently being a cache miss. Since storing may
+ * evict region entries, values are stored before any {@link WTinyLfuCache#compute} call, and released
+ * if they didn't make it into the region.
+ *
+ * @author Vlad Mihalcea
+ */
+abstract class TinyLfuAccessStrategy implements RegionAccessStrategy {
+
+    protected final TransactionalDataRegion region;
+
+    protected final WTinyLfuCache<Object, Object> cache;
+
+    private final OffHeapStorage storage;
+
+    TinyLfuAccessStrategy(TransactionalDataRegion region, WTinyLfuCache<Object, Object> cache,
+            OffHeapStorage storage) {
+        this.region = region;
+        this.cache = cache;
+        this.storage = storage;
+    }
+
+    static TinyLfuAccessStrategy newInstance(AccessType accessType, TransactionalDataRegion region,
+            WTinyLfuCache<Object, Object> cache, long lockTimeout) {
+        return newInstance(accessType, region, cache, null, lockTimeout);
+    }
+
+    /**
+     * @param storage     off-heap storage of the region values, or null to keep them on-heap
+     * @param lockTimeout READ_WRITE soft lock timeout, in region timestamp units, which the int
+     *                    {@link TransactionalDataRegion#getTimeout()} cannot always hold
+     */
+    static TinyLfuAccessStrategy newInstance(AccessType accessType, TransactionalDataRegion region,
+            WTinyLfuCache<Object, Object> cache, OffHeapStorage storage, long lockTimeout) {
+        switch (accessType) {
+            case READ_ONLY:
+                if (region.getCacheDataDescription().isMutable()) {
+                    LoggerFactory.getLogger(TinyLfuAccessStrategy.class).warn(
+                        "read-only cache configured for mutable region [{}]", region.getName());
+                }
+                return new ReadOnly(region, cache, storage);
+            case NONSTRICT_READ_WRITE:
+                return new NonStrictReadWrite(region, cache, storage);
+            case READ_WRITE:
+                return new ReadWrite(region, cache, storage, lockTimeout);
+            default:
+                throw new CacheException("Unsupported access type [" + accessType.getExternalName() +
+                    "] for region [" + region.getName() + "]");
+        }
+    }
+
+    @Override
+    public final boolean putFromLoad(Object key, Object value, long txTimestamp, Object version)
+            throws CacheException {
+        return putFromLoad(key, value, txTimestamp, version, false);
+    }
+
+    @Override
+    public SoftLock lockRegion() throws CacheException {
+        return null;
+    }
+
+    @Override
+    public void unlockRegion(SoftLock lock) throws CacheException {
+        cache.clear();
+    }
+
+    @Override
+    public void remove(Object key) throws CacheException {
+    }
+
+    @Override
+    public void removeAll() throws CacheException {
+        cache.clear();
+    }
+
+    @Override
+    public void evict(Object key) throws CacheException {
+        cache.remove(key);
+    }
+
+    @Override
+    public void evictAll() throws CacheException {
+        cache.clear();
+    }
+
+    /**
+     * @param key   cache key
+     * @param value value to be cached
+     * @return the value to be put into the region cache, or null if it can't be cached
+     */
+    protected Object store(Object key, Object value) {
+        return storage != null ? storage.store(key, value) : value;
+    }
+
+    /**
+     * @param key    cache key
+     * @param stored value returned by {@link #store(Object, Object)} which was not put into the region cache
+     */
+    protected void release(Object key, Object stored) {
+        if (storage != null && stored != null) {
+            storage.release(key, stored);
+        }
+    }
+
+    /**
+     * @param key   cache key
+     * @param value value to be cached
+     * @return whether the value was cached, the previous one being removed otherwise
+     */
+    protected boolean put(Object key, Object value) {
+        Object stored = store(key, value);
+        if (stored == null) {
+            cache.remove(key);
+            return false;
+        }
+        cache.put(key, stored);
+        return true;
+    }
+
+    /**
+     * @param key    cache key
+     * @param stored value taken from the region cache
+     * @return the cached value, or null
+     */
+    protected Object load(Object key, Object stored) {
+        return storage != null && stored != null ? storage.load(key, stored) : stored;
+    }
+
+    abstract boolean insert(Object key, Object value, Object version) throws CacheException;
+
+    abstract boolean afterInsert(Object key, Object value, Object version) throws CacheException;
+
+    abstract boolean update(Object key, Object value, Object currentVersion, Object previousVersion)
+        throws CacheException;
+
+    abstract boolean afterUpdate(Object key, Object value, Object currentVersion, Object previousVersion,
+        SoftLock lock) throws CacheException;
+
+    /**
+     * Immutable data, so the cached value is never replaced, and updates are rejected
+     */
+    static class ReadOnly extends TinyLfuAccessStrategy {
+
+        ReadOnly(TransactionalDataRegion region, WTinyLfuCache<Object, Object> cache,
+                OffHeapStorage storage) {
+            super(region, cache, storage);
+        }
+
+        @Override
+        public Object get(Object key, long txTimestamp) throws CacheException {
+            return load(key, cache.get(key));
+        }
+
+        @Override
+        public boolean putFromLoad(Object key, Object value, long txTimestamp, Object version,
+                boolean minimalPutOverride) throws CacheException {
+            if (minimalPutOverride && cache.containsKey(key)) {
+                return false;
+            }
+            return put(key, value);
+        }
+
+        @Override
+        public SoftLock lockItem(Object key, Object version) throws CacheException {
+            return null;
+        }
+
+        @Override
+        public void unlockItem(Object key, SoftLock lock) throws CacheException {
+            evict(key);
+        }
+
+        @Override
+        public void remove(Object key) throws CacheException {
+            cache.remove(key);
+        }
+
+        @Override
+        boolean insert(Object key, Object value, Object version) throws CacheException {
+            return false;
+        }
+
+        @Override
+        boolean afterInsert(Object key, Object value, Object version) throws CacheException {
+            return put(key, value);
+        }
+
+        @Override
+        boolean update(Object key, Object value, Object currentVersion, Object previousVersion)
+                throws CacheException {
+            throw new UnsupportedOperationException("Can't write to a readonly object");
+        }
+
+        @Override
+        boolean afterUpdate(Object key, Object value, Object currentVersion, Object previousVersion,
+                SoftLock lock) throws CacheException {
+            throw new UnsupportedOperationException("Can't write to a readonly object");
+        }
+    }
+
+    /**
+     * No locking at all, a changed item is simply removed, so a concurrent load may cache a stale value
+     */
+    static class NonStrictReadWrite extends TinyLfuAccessStrategy {
+
+        NonStrictReadWrite(TransactionalDataRegion region, WTinyLfuCache<Object, Object> cache,
+                OffHeapStorage storage) {
+            super(region, cache, storage);
+        }
+
+        @Override
+        public Object get(Object key, long txTimestamp) throws CacheException {
+            return load(key, cache.get(key));
+        }
+
+        @Override
+        public boolean putFromLoad(Object key, Object value, long txTimestamp, Object version,
+                boolean minimalPutOverride) throws CacheException {
+            if (minimalPutOverride && cache.containsKey(key)) {
+                return false;
+            }
+            return put(key, value);
+        }
+
+        @Override
+        public SoftLock lockItem(Object key, Object version) throws CacheException {
+            return null;
+        }
+
+        @Override
+        public void unlockItem(Object key, SoftLock lock) throws CacheException {
+            cache.remove(key);
+        }
+
+        @Override
+        public void remove(Object key) throws CacheException {
+            cache.remove(key);
+        }
+
+        @Override
+        boolean insert(Object key, Object value, Object version) throws CacheException {
+            return false;
+        }
+
+        @Override
+        boolean afterInsert(Object key, Object value, Object version) throws CacheException {
+            return false;
+        }
+
+        @Override
+        boolean update(Object key, Object value, Object currentVersion, Object previousVersion)
+                throws CacheException {
+            remove(key);
+            return false;
+        }
+
+        @Override
+        boolean afterUpdate(Object key, Object value, Object currentVersion, Object previousVersion,
+                SoftLock lock) throws CacheException {
+            unlockItem(key, lock);
+            return false;
+        }
+    }
+
+    /**
+     * Soft-locks the changed items until the transaction ends, and only serves an item to the
+     * transactions which started after it was cached
+     */
+    static class ReadWrite extends TinyLfuAccessStrategy {
+
+        private static final Logger LOGGER = LoggerFactory.getLogger(ReadWrite.class);
+
+        private static final AtomicLong LOCK_ID_SEQUENCE = new AtomicLong();
+
+        private final Comparator versionComparator;
+
+        private final long lockTimeout;
+
+        ReadWrite(TransactionalDataRegion region, WTinyLfuCache<Object, Object> cache,
+                OffHeapStorage storage, long lockTimeout) {
+            super(region, cache, storage);
+            this.versionComparator = region.getCacheDataDescription().getVersionComparator();
+            this.lockTimeout = lockTimeout;
+        }
+
+        @Override
+        public Object get(Object key, long txTimestamp) throws CacheException {
+            Lockable item = (Lockable) cache.get(key);
+            return item != null && item.isReadable(txTimestamp) ? load(key, ((Item) item).value) : null;
+        }
+
+        @Override
+        public boolean putFromLoad(Object key, Object value, long txTimestamp, Object version,
+                boolean minimalPutOverride) throws CacheException {
+            Object stored = store(key, value);
+            if (stored == null) {
+                return false;
+            }
+            boolean[] put = new boolean[1];
+            cache.compute(key, (k, current) -> {
+                Lockable item = (Lockable) current;
+                if (item == null || item.isWriteable(txTimestamp, version, versionComparator)) {
+                    put[0] = true;
+                    return new Item(stored, version, region.nextTimestamp());
+                }
+                return current;
+            });
+            if (!put[0]) {
+                release(key, stored);
+            }
+            return put[0];
+        }
+
+        @Override
+        public SoftLock lockItem(Object key, Object version) throws CacheException {
+            long timeout = region.nextTimestamp() + lockTimeout;
+            long lockId = LOCK_ID_SEQUENCE.incrementAndGet();
+            return (Lock) cache.compute(key, (k, current) -> current instanceof Lock ?
+                ((Lock) current).lock(timeout) :
+                new Lock(lockId, timeout, current != null ? ((Item) current).version : version)
+            );
+        }
+
+        @Override
+        public void unlockItem(Object key, SoftLock lock) throws CacheException {
+            cache.compute(key, (k, current) -> unlock(k, current, lock));
+        }
+
+        @Override
+        boolean insert(Object key, Object value, Object version) throws CacheException {
+            return false;
+        }
+
+        @Override
+        boolean afterInsert(Object key, Object value, Object version) throws CacheException {
+            Object stored = store(key, value);
+            if (stored == null) {
+                return false;
+            }
+            boolean[] inserted = new boolean[1];
+            cache.compute(key, (k, current) -> {
+                if (current == null) {
+                    inserted[0] = true;
+                    return new Item(stored, version, region.nextTimestamp());
+                }
+                return current;
+            });
+            if (!inserted[0]) {
+                release(key, stored);
+            }
+            return inserted[0];
+        }
+
+        @Override
+        boolean update(Object key, Object value, Object currentVersion, Object previousVersion)
+                throws CacheException {
+            return false;
+        }
+
+        @Override
+        boolean afterUpdate(Object key, Object value, Object currentVersion, Object previousVersion,
+                SoftLock lock) throws CacheException {
+            Object stored = store(key, value);
+            boolean[] updated = new boolean[1];
+            cache.compute(key, (k, current) -> {
+                if (stored != null && current instanceof Lock && current.equals(lock) &&
+                        !((Lock) current).concurrent) {
+                    updated[0] = true;
+                    return new Item(stored, currentVersion, region.nextTimestamp());
+                }
+                return unlock(k, current, lock);
+            });
+            if (!updated[0]) {
+                release(key, stored);
+            }
+            return updated[0];
+        }
+
+        /**
+         * Release the given lock, or replace an expired one with a lock that keeps the item unwriteable
+         * until the lock timeout elapses
+         */
+        private Object unlock(Object key, Object current, SoftLock lock) {
+            if (current instanceof Lock && current.equals(lock)) {
+                return ((Lock) current).unlock(region.nextTimestamp());
+            }
+            LOGGER.warn("Cache {} Key {} Lockable : {}\n" +
+                "A soft-locked cache entry was expired by the underlying cache. " +
+                "If this happens regularly you should consider increasing the cache timeouts and/or capacity limits",
+                region.getName(), key, current);
+            long timeout = region.nextTimestamp() + lockTimeout;
+            return new Lock(LOCK_ID_SEQUENCE.incrementAndGet(), timeout, null).unlock(timeout);
+        }
+    }
+
+    /**
+     * Cached value or soft lock of a READ_WRITE region
+     */
+    interface Lockable extends Serializable {
+
+        boolean isReadable(long txTimestamp);
+
+        boolean isWriteable(long txTimestamp, Object newVersion, Comparator versionComparator);
+    }
+
+    static final class Item implements Lockable {
+
+        private final Object value;
+
+        private final Object version;
+
+        private final long timestamp;
+
+        Item(Object value, Object version, long timestamp) {
+            this.value = value;
+            this.version = version;
+            this.timestamp = timestamp;
+        }
+
+        Object getValue() {
+            return value;
+        }
+
+        @Override
+        public boolean isReadable(long txTimestamp) {
+            return txTimestamp > timestamp;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean isWriteable(long txTimestamp, Object newVersion, Comparator versionComparator) {
+            return version != null && versionComparator.compare(version, newVersion) < 0;
+        }
+
+        @Override
+        public String toString() {
+            return "Item{value=" + value + ", version=" + version + ", timestamp=" + timestamp + "}";
+        }
+    }
+
+    /**
+     * Immutable soft lock, every lock and unlock creating a new instance with the same identifier
+     */
+    static final class Lock implements Lockable, SoftLock {
+
+        private final long id;
+
+        private final long timeout;
+
+        private final Object version;
+
+        private final int multiplicity;
+
+        private final boolean concurrent;
+
+        private final long unlockTimestamp;
+
+        Lock(long id, long timeout, Object version) {
+            this(id, timeout, version, 1, false, 0);
+        }
+
+        private Lock(long id, long timeout, Object version, int multiplicity, boolean concurrent,
+                long unlockTimestamp) {
+            this.id = id;
+            this.timeout = timeout;
+            this.version = version;
+            this.multiplicity = multiplicity;
+            this.concurrent = concurrent;
+            this.unlockTimestamp = unlockTimestamp;
+        }
+
+        Lock lock(long timeout) {
+            return new Lock(id, timeout, version, multiplicity + 1, true, unlockTimestamp);
+        }
+
+        Lock unlock(long timestamp) {
+            int remaining = multiplicity - 1;
+            return new Lock(id, timeout, version, remaining, concurrent,
+                remaining == 0 ? timestamp : unlockTimestamp);
+        }
+
+        @Override
+        public boolean isReadable(long txTimestamp) {
+            return false;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean isWriteable(long txTimestamp, Object newVersion, Comparator versionComparator) {
+            if (txTimestamp > timeout) {
+                return true;
+            }
+            if (multiplicity > 0) {
+                return false;
+            }
+            return version == null ?
+                txTimestamp > unlockTimestamp :
+                versionComparator.compare(version, newVersion) < 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Lock && ((Lock) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(id);
+        }
+
+        @Override
+        public String toString() {
+            return "Lock{id=" + id + ", timeout=" + timeout + ", multiplicity=" + multiplicity + "}";
+        }
+    }
+
+    /**
+     * Region access strategy forwarding to the access type one
+     */
+    abstract static class Forwarding implements RegionAccessStrategy {
+
+        protected final TinyLfuAccessStrategy accessStrategy;
+
+        Forwarding(TinyLfuAccessStrategy accessStrategy) {
+            this.accessStrategy = accessStrategy;
+        }
+
+        @Override
+        public Object get(Object key, long txTimestamp) throws CacheException {
+            return accessStrategy.get(key, txTimestamp);
+        }
+
+        @Override
+        public boolean putFromLoad(Object key, Object value, long txTimestamp, Object version)
+                throws CacheException {
+            return accessStrategy.putFromLoad(key, value, txTimestamp, version);
+        }
+
+        @Override
+        public boolean putFromLoad(Object key, Object value, long txTimestamp, Object version,
+                boolean minimalPutOverride) throws CacheException {
+            return accessStrategy.putFromLoad(key, value, txTimestamp, version, minimalPutOverride);
+        }
+
+        @Override
+        public SoftLock lockItem(Object key, Object version) throws CacheException {
+            return accessStrategy.lockItem(key, version);
+        }
+
+        @Override
+        public SoftLock lockRegion() throws CacheException {
+            return accessStrategy.lockRegion();
+        }
+
+        @Override
+        public void unlockItem(Object key, SoftLock lock) throws CacheException {
+            accessStrategy.unlockItem(key, lock);
+        }
+
+        @Override
+        public void unlockRegion(SoftLock lock) throws CacheException {
+            accessStrategy.unlockRegion(lock);
+        }
+
+        @Override
+        public void remove(Object key) throws CacheException {
+            accessStrategy.remove(key);
+        }
+
+        @Override
+        public void removeAll() throws CacheException {
+            accessStrategy.removeAll();
+        }
+
+        @Override
+        public void evict(Object key) throws CacheException {
+            accessStrategy.evict(key);
+        }
+
+        @Override
+        public void evictAll() throws CacheException {
+            accessStrategy.evictAll();
+        }
+    }
+
+    static class Entity extends Forwarding implements EntityRegionAccessStrategy {
+
+        private final EntityRegion region;
+
+        Entity(EntityRegion region, TinyLfuAccessStrategy accessStrategy) {
+            super(accessStrategy);
+            this.region = region;
+        }
+
+        @Override
+        public EntityRegion getRegion() {
+            return region;
+        }
+
+        @Override
+        public boolean insert(Object key, Object value, Object version) throws CacheException {
+            return accessStrategy.insert(key, value, version);
+        }
+
+        @Override
+        public boolean afterInsert(Object key, Object value, Object version) throws CacheException {
+            return accessStrategy.afterInsert(key, value, version);
+        }
+
+        @Override
+        public boolean update(Object key, Object value, Object currentVersion, Object previousVersion)
+                throws CacheException {
+            return accessStrategy.update(key, value, currentVersion, previousVersion);
+        }
+
+        @Override
+        public boolean afterUpdate(Object key, Object value, Object currentVersion, Object previousVersion,
+                SoftLock lock) throws CacheException {
+            return accessStrategy.afterUpdate(key, value, currentVersion, previousVersion, lock);
+        }
+    }
+
+    static class NaturalId extends Forwarding implements NaturalIdRegionAccessStrategy {
+
+        private final NaturalIdRegion region;
+
+        NaturalId(NaturalIdRegion region, TinyLfuAccessStrategy accessStrategy) {
+            super(accessStrategy);
+            this.region = region;
+        }
+
+        @Override
+        public NaturalIdRegion getRegion() {
+            return region;
+        }
+
+        @Override
+        public boolean insert(Object key, Object value) throws CacheException {
+            return accessStrategy.insert(key, value, null);
+        }
+
+        @Override
+        public boolean afterInsert(Object key, Object value) throws CacheException {
+            return accessStrategy.afterInsert(key, value, null);
+        }
+
+        @Override
+        public boolean update(Object key, Object value) throws CacheException {
+            return accessStrategy.update(key, value, null, null);
+        }
+
+        @Override
+        public boolean afterUpdate(Object key, Object value, SoftLock lock) throws CacheException {
+            return accessStrategy.afterUpdate(key, value, null, null, lock);
+        }
+    }
+
+    static class Collection extends Forwarding implements CollectionRegionAccessStrategy {
+
+        private final CollectionRegion region;
+
+        Collection(CollectionRegion region, TinyLfuAccessStrategy accessStrategy) {
+            super(accessStrategy);
+            this.region = region;
+        }
+
+        @Override
+        public CollectionRegion getRegion() {
+            return region;
+        }
+    }
+}
@@ -0,0 +1,535 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util.cache;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.CacheDataDescription;
+import org.hibernate.cache.spi.CollectionRegion;
+import org.hibernate.cache.spi.EntityRegion;
+import org.hibernate.cache.spi.NaturalIdRegion;
+import org.hibernate.cache.spi.QueryResultsRegion;
+import org.hibernate.cache.spi.Region;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cache.spi.TimestampsRegion;
+import org.hibernate.cache.spi.TransactionalDataRegion;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.access.CollectionRegionAccessStrategy;
+import org.hibernate.cache.spi.access.EntityRegionAccessStrategy;
+import org.hibernate.cache.spi.access.NaturalIdRegionAccessStrategy;
+import org.hibernate.cache.spi.entry.CacheEntry;
+import org.hibernate.cache.spi.entry.CollectionCacheEntry;
+import org.hibernate.cfg.Settings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.internal.util.ReflectHelper;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <code>TinyLfuRegionFactory</code> - In-process {@link RegionFactory} storing every entity, natural id, collection
+ * and query results region into a {@link WTinyLfuCache}, and supporting the READ_ONLY, NONSTRICT_READ_WRITE
+ * and READ_WRITE access strategies.
+ * <p>
+ * Unlike EhCache 2.6, whose lock striping and synchronized LRU bookkeeping limit the number of threads that can
+ * read a region at once, a cache hit only takes a {@link ConcurrentHashMap} lookup. The update timestamps region is
+ * never evicted, since the query cache would otherwise return stale results.
+ * <p>
+ * The factory is configured through the following properties, each one of them accepting a
+ * region-specific override suffixed by the region name, like hibernate.cache.tinylfu.maximum_size.Post:
+ * <ul>
+ * <li>hibernate.cache.tinylfu.maximum_size: the maximum number of entries of every region</li>
+ * <li>hibernate.cache.tinylfu.maximum_weight: the maximum weight of every region, an entry weighing as much as
+ * its disassembled state, collection elements or query results, overrides the maximum size when set</li>
+ * <li>hibernate.cache.tinylfu.lock_timeout: the READ_WRITE soft lock timeout in milliseconds</li>
+ * <li>hibernate.cache.tinylfu.off_heap.maximum_bytes: the maximum number of bytes every entity and collection
+ * region stores off-heap, which overrides the maximum size and weight when set</li>
+ * <li>hibernate.cache.tinylfu.off_heap.slab_size: the size of the direct memory slabs, 1 MB by default</li>
+ * <li>hibernate.cache.tinylfu.off_heap.codec: the {@link CacheEntryCodec} class name, the
+ * {@link TaggedCacheEntryCodec} by default, while the codecs taking the SessionFactoryImplementor, like the
+ * {@link TypeAwareCacheEntryCodec}, need the {@link TinyLfuRegionFactoryIntegrator} to be registered</li>
+ * </ul>
+ * <p>
+ * The off-heap regions are bounded by the size of the {@link OffHeapStorage} chunks, so they can hold lots of
+ * reference data without adding to the heap the garbage collector has to trace. The JVM must be started with a
+ * large enough -XX:MaxDirectMemorySize.
+ *
+ * @author Vlad Mihalcea
+ */
+public class TinyLfuRegionFactory implements RegionFactory {
+
+    public static final String MAXIMUM_SIZE = "hibernate.cache.tinylfu.maximum_size";
+
+    public static final String MAXIMUM_WEIGHT = "hibernate.cache.tinylfu.maximum_weight";
+
+    public static final String LOCK_TIMEOUT = "hibernate.cache.tinylfu.lock_timeout";
+
+    public static final String OFF_HEAP_MAXIMUM_BYTES = "hibernate.cache.tinylfu.off_heap.maximum_bytes";
+
+    public static final String OFF_HEAP_SLAB_SIZE = "hibernate.cache.tinylfu.off_heap.slab_size";
+
+    public static final String OFF_HEAP_CODEC = "hibernate.cache.tinylfu.off_heap.codec";
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 10_000;
+
+    public static final int DEFAULT_LOCK_TIMEOUT = 60_000;
+
+    public static final int DEFAULT_OFF_HEAP_SLAB_SIZE = 1 << 20;
+
+    /**
+     * Timestamps are shifted by 12 bits, so up to 4096 timestamps can be issued every millisecond
+     */
+    private static final int TIMESTAMP_SHIFT = 12;
+
+    private final AtomicLong lastTimestamp = new AtomicLong();
+
+    private final Map<String, WTinyLfuCache<Object, Object>> caches = new ConcurrentHashMap<>();
+
+    private final Map<String, CacheEntryCodec> codecs = new ConcurrentHashMap<>();
+
+    private Properties properties;
+
+    private volatile SessionFactoryImplementor sessionFactory;
+
+    public TinyLfuRegionFactory() {
+        this(new Properties());
+    }
+
+    public TinyLfuRegionFactory(Properties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public void start(Settings settings, Properties properties) throws CacheException {
+        this.properties = properties;
+    }
+
+    @Override
+    public void stop() {
+        for (WTinyLfuCache<Object, Object> cache : caches.values()) {
+            cache.clear();
+        }
+        caches.clear();
+        codecs.clear();
+        sessionFactory = null;
+    }
+
+    @Override
+    public boolean isMinimalPutsEnabledByDefault() {
+        return true;
+    }
+
+    @Override
+    public AccessType getDefaultAccessType() {
+        return AccessType.READ_WRITE;
+    }
+
+    @Override
+    public long nextTimestamp() {
+        long timestamp = System.currentTimeMillis() << TIMESTAMP_SHIFT;
+        while (true) {
+            long last = lastTimestamp.get();
+            long next = timestamp > last ? timestamp : last + 1;
+            if (lastTimestamp.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    @Override
+    public EntityRegion buildEntityRegion(String regionName, Properties properties,
+            CacheDataDescription metadata) throws CacheException {
+        OffHeapStorage storage = newStorage(regionName);
+        return new TinyLfuEntityRegion(regionName, newCache(regionName, storage), metadata, storage);
+    }
+
+    @Override
+    public NaturalIdRegion buildNaturalIdRegion(String regionName, Properties properties,
+            CacheDataDescription metadata) throws CacheException {
+        return new TinyLfuNaturalIdRegion(regionName, newCache(regionName, null), metadata, null);
+    }
+
+    @Override
+    public CollectionRegion buildCollectionRegion(String regionName, Properties properties,
+            CacheDataDescription metadata) throws CacheException {
+        OffHeapStorage storage = newStorage(regionName);
+        return new TinyLfuCollectionRegion(regionName, newCache(regionName, storage), metadata, storage);
+    }
+
+    @Override
+    public QueryResultsRegion buildQueryResultsRegion(String regionName, Properties properties)
+            throws CacheException {
+        return new TinyLfuQueryResultsRegion(regionName, newCache(regionName, null));
+    }
+
+    @Override
+    public TimestampsRegion buildTimestampsRegion(String regionName, Properties properties)
+            throws CacheException {
+        return new TinyLfuTimestampsRegion(regionName);
+    }
+
+    /**
+     * @param regionName region name
+     * @return the cache backing the given region, or null if there's no such region
+     */
+    public WTinyLfuCache<Object, Object> getCache(String regionName) {
+        return caches.get(regionName);
+    }
+
+    /**
+     * Bind the SessionFactory whose persisters the off-heap region codecs can use
+     *
+     * @param sessionFactory SessionFactory
+     */
+    void setSessionFactory(SessionFactoryImplementor sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * Estimate the entry weight out of the number of disassembled properties, collection elements or query results
+     *
+     * @param key   key
+     * @param value cached value
+     * @return entry weight
+     */
+    static int weigh(Object key, Object value) {
+        if (value instanceof TinyLfuAccessStrategy.Item) {
+            value = ((TinyLfuAccessStrategy.Item) value).getValue();
+        }
+        if (value instanceof CacheEntry) {
+            Serializable[] state = ((CacheEntry) value).getDisassembledState();
+            return state != null ? state.length + 1 : 1;
+        }
+        if (value instanceof CollectionCacheEntry) {
+            return ((CollectionCacheEntry) value).getState().length + 1;
+        }
+        if (value instanceof Collection) {
+            return ((Collection) value).size() + 1;
+        }
+        if (value instanceof Map) {
+            return ((Map) value).size() + 1;
+        }
+        return 1;
+    }
+
+    private OffHeapStorage newStorage(String regionName) {
+        long maximumBytes = getLong(OFF_HEAP_MAXIMUM_BYTES, regionName, 0);
+        if (maximumBytes <= 0) {
+            return null;
+        }
+        long slabSize = Math.min(maximumBytes, getLong(OFF_HEAP_SLAB_SIZE, regionName, DEFAULT_OFF_HEAP_SLAB_SIZE));
+        String codecClassName = ConfigurationHelper.getString(OFF_HEAP_CODEC + "." + regionName, properties,
+            ConfigurationHelper.getString(OFF_HEAP_CODEC, properties, TaggedCacheEntryCodec.class.getName()));
+        return new OffHeapStorage(maximumBytes, (int) slabSize,
+            () -> codecs.computeIfAbsent(codecClassName, this::newCodec));
+    }
+
+    private CacheEntryCodec newCodec(String codecClassName) {
+        try {
+            Class<?> codecClass = ReflectHelper.classForName(codecClassName, getClass());
+            try {
+                Constructor<?> constructor = codecClass.getConstructor(SessionFactoryImplementor.class);
+                if (sessionFactory == null) {
+                    throw new CacheException("The " + codecClassName + " codec needs the SessionFactory, " +
+                        "so the " + TinyLfuRegionFactoryIntegrator.class.getName() + " must be registered");
+                }
+                return (CacheEntryCodec) constructor.newInstance(sessionFactory);
+            } catch (NoSuchMethodException e) {
+                return (CacheEntryCodec) codecClass.getDeclaredConstructor().newInstance();
+            }
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new CacheException("Could not instantiate the " + codecClassName + " codec", e);
+        }
+    }
+
+    private WTinyLfuCache<Object, Object> newCache(String regionName, OffHeapStorage storage) {
+        long maximumWeight = getLong(MAXIMUM_WEIGHT, regionName, 0);
+        WTinyLfuCache<Object, Object> cache;
+        if (storage != null) {
+            cache = new WTinyLfuCache<>(getLong(OFF_HEAP_MAXIMUM_BYTES, regionName, 0),
+                storage::weigh, storage::release);
+            storage.setCache(cache);
+        } else if (maximumWeight > 0) {
+            cache = new WTinyLfuCache<>(maximumWeight, TinyLfuRegionFactory::weigh);
+        } else {
+            cache = new WTinyLfuCache<>(ConfigurationHelper.getInt(
+                MAXIMUM_SIZE + "." + regionName, properties,
+                ConfigurationHelper.getInt(MAXIMUM_SIZE, properties, DEFAULT_MAXIMUM_SIZE)
+            ));
+        }
+        caches.put(regionName, cache);
+        return cache;
+    }
+
+
+    /**
+     * @return the region-specific property value, the global one, or the given default value
+     */
+    private long getLong(String propertyName, String regionName, long defaultValue) {
+        String value = ConfigurationHelper.getString(propertyName + "." + regionName, properties,
+            ConfigurationHelper.getString(propertyName, properties, null));
+        return value != null ? Long.parseLong(value.trim()) : defaultValue;
+    }
+
+    /**
+     * @return the lock timeout in timestamp units, which overflows an int for lock timeouts longer than 524 seconds
+     */
+    private long lockTimeout(String regionName) {
+        int lockTimeout = ConfigurationHelper.getInt(
+            LOCK_TIMEOUT + "." + regionName, properties,
+            ConfigurationHelper.getInt(LOCK_TIMEOUT, properties, DEFAULT_LOCK_TIMEOUT)
+        );
+        return (long) lockTimeout << TIMESTAMP_SHIFT;
+    }
+
+    /**
+     * @return the lock timeout, saturated to the int range of the {@link Region#getTimeout()} contract
+     */
+    private int regionTimeout(String regionName) {
+        return (int) Math.min(lockTimeout(regionName), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Region backed by a {@link WTinyLfuCache}
+     */
+    private abstract class TinyLfuRegion implements Region {
+
+        private final String name;
+
+        protected final WTinyLfuCache<Object, Object> cache;
+
+        TinyLfuRegion(String name, WTinyLfuCache<Object, Object> cache) {
+            this.name = name;
+            this.cache = cache;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void destroy() throws CacheException {
+            cache.clear();
+            caches.remove(name, cache);
+        }
+
+        @Override
+        public boolean contains(Object key) {
+            return cache.containsKey(key);
+        }
+
+        @Override
+        public long getSizeInMemory() {
+            return -1;
+        }
+
+        @Override
+        public long getElementCountInMemory() {
+            return cache.size();
+        }
+
+        @Override
+        public long getElementCountOnDisk() {
+            return 0;
+        }
+
+        @Override
+        public Map toMap() {
+            Map<Object, Object> map = new HashMap<>();
+            cache.forEach(map::put);
+            return map;
+        }
+
+        @Override
+        public long nextTimestamp() {
+            return TinyLfuRegionFactory.this.nextTimestamp();
+        }
+
+        @Override
+        public int getTimeout() {
+            return regionTimeout(name);
+        }
+    }
+
+    private abstract class TinyLfuTransactionalRegion extends TinyLfuRegion implements TransactionalDataRegion {
+
+        private final CacheDataDescription metadata;
+
+        protected final OffHeapStorage storage;
+
+        TinyLfuTransactionalRegion(String name, WTinyLfuCache<Object, Object> cache, CacheDataDescription metadata,
+                OffHeapStorage storage) {
+            super(name, cache);
+            this.metadata = metadata;
+            this.storage = storage;
+        }
+
+        @Override
+        public long getSizeInMemory() {
+            return storage != null ? storage.getUsedBytes() : super.getSizeInMemory();
+        }
+
+        @Override
+        public boolean isTransactionAware() {
+            return false;
+        }
+
+        @Override
+        public CacheDataDescription getCacheDataDescription() {
+            return metadata;
+        }
+    }
+
+    private class TinyLfuEntityRegion extends TinyLfuTransactionalRegion implements EntityRegion {
+
+        TinyLfuEntityRegion(String name, WTinyLfuCache<Object, Object> cache, CacheDataDescription metadata,
+                OffHeapStorage storage) {
+            super(name, cache, metadata, storage);
+        }
+
+        @Override
+        public EntityRegionAccessStrategy buildAccessStrategy(AccessType accessType) throws CacheException {
+            return new TinyLfuAccessStrategy.Entity(this,
+                TinyLfuAccessStrategy.newInstance(accessType, this, cache, storage, lockTimeout(getName())));
+        }
+    }
+
+    private class TinyLfuNaturalIdRegion extends TinyLfuTransactionalRegion implements NaturalIdRegion {
+
+        TinyLfuNaturalIdRegion(String name, WTinyLfuCache<Object, Object> cache, CacheDataDescription metadata,
+                OffHeapStorage storage) {
+            super(name, cache, metadata, storage);
+        }
+
+        @Override
+        public NaturalIdRegionAccessStrategy buildAccessStrategy(AccessType accessType) throws CacheException {
+            return new TinyLfuAccessStrategy.NaturalId(this,
+                TinyLfuAccessStrategy.newInstance(accessType, this, cache, storage, lockTimeout(getName())));
+        }
+    }
+
+    private class TinyLfuCollectionRegion extends TinyLfuTransactionalRegion implements CollectionRegion {
+
+        TinyLfuCollectionRegion(String name, WTinyLfuCache<Object, Object> cache, CacheDataDescription metadata,
+                OffHeapStorage storage) {
+            super(name, cache, metadata, storage);
+        }
+
+        @Override
+        public CollectionRegionAccessStrategy buildAccessStrategy(AccessType accessType) throws CacheException {
+            return new TinyLfuAccessStrategy.Collection(this,
+                TinyLfuAccessStrategy.newInstance(accessType, this, cache, storage, lockTimeout(getName())));
+        }
+    }
+
+    private class TinyLfuQueryResultsRegion extends TinyLfuRegion implements QueryResultsRegion {
+
+        TinyLfuQueryResultsRegion(String name, WTinyLfuCache<Object, Object> cache) {
+            super(name, cache);
+        }
+
+        @Override
+        public Object get(Object key) throws CacheException {
+            return cache.get(key);
+        }
+
+        @Override
+        public void put(Object key, Object value) throws CacheException {
+            cache.put(key, value);
+        }
+
+        @Override
+        public void evict(Object key) throws CacheException {
+            cache.remove(key);
+        }
+
+        @Override
+        public void evictAll() throws CacheException {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Unbounded region, since it only holds one timestamp per table
+     */
+    private class TinyLfuTimestampsRegion implements TimestampsRegion {
+
+        private final String name;
+
+        private final Map<Object, Object> timestamps = new ConcurrentHashMap<>();
+
+        TinyLfuTimestampsRegion(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Object get(Object key) throws CacheException {
+            return timestamps.get(key);
+        }
+
+        @Override
+        public void put(Object key, Object value) throws CacheException {
+            timestamps.put(key, value);
+        }
+
+        @Override
+        public void evict(Object key) throws CacheException {
+            timestamps.remove(key);
+        }
+
+        @Override
+        public void evictAll() throws CacheException {
+            timestamps.clear();
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void destroy() throws CacheException {
+            timestamps.clear();
+        }
+
+        @Override
+        public boolean contains(Object key) {
+            return timestamps.containsKey(key);
+        }
+
+        @Override
+        public long getSizeInMemory() {
+            return -1;
+        }
+
+        @Override
+        public long getElementCountInMemory() {
+            return timestamps.size();
+        }
+
+        @Override
+        public long getElementCountOnDisk() {
+            return 0;
+        }
+
+        @Override
+        public Map toMap() {
+            return new HashMap<>(timestamps);
+        }
+
+        @Override
+        public long nextTimestamp() {
+            return TinyLfuRegionFactory.this.nextTimestamp();
+        }
+
+        @Override
+        public int getTimeout() {
+            return regionTimeout(name);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util.cache;
+
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.metamodel.source.MetadataImplementor;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+/**
+ * <code>TinyLfuRegionFactoryIntegrator</code> - Binds the SessionFactory to its {@link TinyLfuRegionFactory}, so that
+ * the off-heap regions can use a {@link CacheEntryCodec} driven by the entity and collection persisters.
+ * <p>
+ * Only the SessionFactories using such a codec register it, through the BootstrapServiceRegistryBuilder or
+ * the hibernate.integrator_provider setting, the regions being built before the SessionFactory is.
+ *
+ * @author Vlad Mihalcea
+ */
+public class TinyLfuRegionFactoryIntegrator implements Integrator {
+
+    @Override
+    public void integrate(Configuration configuration, SessionFactoryImplementor sessionFactory,
+            SessionFactoryServiceRegistry serviceRegistry) {
+        bind(sessionFactory);
+    }
+
+    @Override
+    public void integrate(MetadataImplementor metadata, SessionFactoryImplementor sessionFactory,
+            SessionFactoryServiceRegistry serviceRegistry) {
+        bind(sessionFactory);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory,
+            SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    private void bind(SessionFactoryImplementor sessionFactory) {
+        RegionFactory regionFactory = sessionFactory.getSettings().getRegionFactory();
+        if (regionFactory instanceof TinyLfuRegionFactory) {
+            ((TinyLfuRegionFactory) regionFactory).setSessionFactory(sessionFactory);
+        }
+    }
+}
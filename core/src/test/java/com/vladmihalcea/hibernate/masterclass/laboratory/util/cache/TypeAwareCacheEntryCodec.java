@@ -0,0 +1,592 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util.cache;
+
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.TaggedCacheEntryCodec.Input;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.cache.TaggedCacheEntryCodec.Output;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.CacheKey;
+import org.hibernate.cache.spi.entry.CacheEntry;
+import org.hibernate.cache.spi.entry.CollectionCacheEntry;
+import org.hibernate.cache.spi.entry.StandardCacheEntryImpl;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.CollectionType;
+import org.hibernate.type.CompositeType;
+import org.hibernate.type.DateType;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.IdentifierBagType;
+import org.hibernate.type.MapType;
+import org.hibernate.type.TimeType;
+import org.hibernate.type.TimestampType;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * <code>TypeAwareCacheEntryCodec</code> - Encodes the entity and collection cache entries according to the
+ * persister {@link Type} metadata, so that neither type tags nor class descriptors are written along with the values.
+ * <p>
+ * Every state array is written as a null bitmap followed by the non-null values, each one of them being encoded
+ * according to its property type: integral values are zig-zag varints, dates are epoch millisecond varints,
+ * enums are ordinals, associations and collection keys are written as identifiers, and components are nested
+ * state arrays. A value which doesn't match its property type, like an unfetched lazy property, is flagged in an
+ * exception bitmap and written by the {@link TaggedCacheEntryCodec}, like the values of the property types
+ * with no dedicated encoding.
+ * <p>
+ * Entity names are written as their index in the sorted entity names of the SessionFactory, so the encoded
+ * entries don't depend on the codec instance. Strings up to {@link #MAXIMUM_DICTIONARY_STRING_LENGTH} characters
+ * can optionally be dictionary-encoded too, so a repeated name or code only takes its varint index, but the
+ * dictionary is append-only and local to the codec instance, so it's disabled by default and must only be enabled,
+ * with a {@code maximumDictionarySize}, for the entries which are never decoded by another codec instance or JVM,
+ * unlike the replicated or persisted ones.
+ * <p>
+ * The structured cache entries are encoded as the standard ones, and structured back when decoded.
+ *
+ * @author Vlad Mihalcea
+ */
+public class TypeAwareCacheEntryCodec implements CacheEntryCodec {
+
+    public static final int LOCAL_DICTIONARY_SIZE = 1 << 16;
+
+    public static final int MAXIMUM_DICTIONARY_STRING_LENGTH = 32;
+
+    private static final int LAZY_PROPERTIES_UNFETCHED = 1;
+
+    private static final int VERSION = 1 << 1;
+
+    private static final int TAGGED_VERSION = 1 << 2;
+
+    private static final int TAGGED_STATE = 1 << 3;
+
+    private static final Map<Class<?>, Slot> BASIC_SLOTS = new HashMap<>();
+
+    private static final Slot TAGGED_SLOT = new Slot() {
+        @Override
+        boolean accepts(Object value) {
+            return true;
+        }
+
+        @Override
+        void write(Output output, Object value) {
+            TaggedCacheEntryCodec.writeValue(output, value);
+        }
+
+        @Override
+        Object read(Input input) {
+            return TaggedCacheEntryCodec.readValue(input);
+        }
+    };
+
+    static {
+        basicSlot(Long.class, (output, value) -> output.writeVarLong((Long) value), Input::readVarLong);
+        basicSlot(Integer.class, (output, value) -> output.writeVarLong((Integer) value),
+            input -> (int) input.readVarLong());
+        basicSlot(Short.class, (output, value) -> output.writeVarLong((Short) value),
+            input -> (short) input.readVarLong());
+        basicSlot(Byte.class, (output, value) -> output.writeByte((Byte) value), Input::readByte);
+        basicSlot(Boolean.class, (output, value) -> output.writeByte((Boolean) value ? 1 : 0),
+            input -> input.readByte() != 0);
+        basicSlot(Character.class, (output, value) -> output.writeVarLong((Character) value),
+            input -> (char) input.readVarLong());
+        basicSlot(Double.class, (output, value) -> output.writeFixedLong(Double.doubleToRawLongBits((Double) value)),
+            input -> Double.longBitsToDouble(input.readFixedLong()));
+        basicSlot(Float.class, (output, value) -> output.writeVarLong(Float.floatToRawIntBits((Float) value)),
+            input -> Float.intBitsToFloat((int) input.readVarLong()));
+        basicSlot(BigDecimal.class, (output, value) -> {
+            BigDecimal decimal = (BigDecimal) value;
+            output.writeVarLong(decimal.scale());
+            output.writeBytes(decimal.unscaledValue().toByteArray());
+        }, input -> {
+            int scale = (int) input.readVarLong();
+            return new BigDecimal(new BigInteger(input.readBytes()), scale);
+        });
+        basicSlot(BigInteger.class, (output, value) -> output.writeBytes(((BigInteger) value).toByteArray()),
+            input -> new BigInteger(input.readBytes()));
+        basicSlot(byte[].class, (output, value) -> output.writeBytes((byte[]) value), Input::readBytes);
+        basicSlot(java.sql.Timestamp.class, (output, value) -> {
+            java.sql.Timestamp timestamp = (java.sql.Timestamp) value;
+            output.writeVarLong(timestamp.getTime());
+            output.writeVarLong(timestamp.getNanos());
+        }, input -> {
+            java.sql.Timestamp timestamp = new java.sql.Timestamp(input.readVarLong());
+            timestamp.setNanos((int) input.readVarLong());
+            return timestamp;
+        });
+        basicSlot(java.sql.Date.class, (output, value) -> output.writeVarLong(((Date) value).getTime()),
+            input -> new java.sql.Date(input.readVarLong()));
+        basicSlot(java.sql.Time.class, (output, value) -> output.writeVarLong(((Date) value).getTime()),
+            input -> new java.sql.Time(input.readVarLong()));
+        basicSlot(Date.class, (output, value) -> output.writeVarLong(((Date) value).getTime()),
+            input -> new Date(input.readVarLong()));
+    }
+
+    private final SessionFactoryImplementor factory;
+
+    private final StringDictionary dictionary;
+
+    private final Slot stringSlot = new StringSlot();
+
+    private final Map<String, EntitySchema> entitySchemas = new ConcurrentHashMap<>();
+
+    private final Map<String, Slot[]> collectionSchemas = new ConcurrentHashMap<>();
+
+    private volatile String[] entityNames;
+
+    /**
+     * @param factory SessionFactory whose persisters describe the cache entries
+     */
+    public TypeAwareCacheEntryCodec(SessionFactoryImplementor factory) {
+        this(factory, 0);
+    }
+
+    /**
+     * @param factory               SessionFactory whose persisters describe the cache entries
+     * @param maximumDictionarySize maximum number of dictionary-encoded strings, like {@link #LOCAL_DICTIONARY_SIZE},
+     *                              0 disabling the codec instance local dictionary
+     */
+    public TypeAwareCacheEntryCodec(SessionFactoryImplementor factory, int maximumDictionarySize) {
+        this.factory = factory;
+        this.dictionary = maximumDictionarySize > 0 ? new StringDictionary(maximumDictionarySize) : null;
+    }
+
+    @Override
+    public boolean isEncodable(Object key, Object value) {
+        if (!(key instanceof CacheKey)) {
+            return false;
+        }
+        String name = ((CacheKey) key).getEntityOrRoleName();
+        if (factory.getEntityPersisters().containsKey(name)) {
+            return value instanceof StandardCacheEntryImpl || value instanceof Map;
+        }
+        if (factory.getCollectionPersisters().containsKey(name)) {
+            return value instanceof CollectionCacheEntry || value instanceof List;
+        }
+        return false;
+    }
+
+    @Override
+    public byte[] encode(Object key, Object value) {
+        String name = ((CacheKey) key).getEntityOrRoleName();
+        Output output = new Output();
+        EntityPersister entityPersister = factory.getEntityPersisters().get(name);
+        if (entityPersister != null) {
+            writeEntity(output, (CacheEntry) entityPersister.getCacheEntryStructure().destructure(value, factory));
+        } else {
+            CollectionPersister collectionPersister = collectionPersister(name);
+            CollectionCacheEntry entry = (CollectionCacheEntry)
+                collectionPersister.getCacheEntryStructure().destructure(value, factory);
+            Serializable[] state = entry.getState();
+            output.writeVarLong(state.length);
+            writeValues(output, collectionSchema(collectionPersister), state);
+        }
+        return output.toByteArray();
+    }
+
+    @Override
+    public Object decode(Object key, byte[] bytes) {
+        String name = ((CacheKey) key).getEntityOrRoleName();
+        Input input = new Input(bytes);
+        EntityPersister entityPersister = factory.getEntityPersisters().get(name);
+        if (entityPersister != null) {
+            return entityPersister.getCacheEntryStructure().structure(readEntity(input));
+        }
+        CollectionPersister collectionPersister = collectionPersister(name);
+        Serializable[] state = new Serializable[(int) input.readVarLong()];
+        readValues(input, collectionSchema(collectionPersister), state);
+        return collectionPersister.getCacheEntryStructure().structure(
+            TaggedCacheEntryCodec.newCollectionEntry(state));
+    }
+
+    private void writeEntity(Output output, CacheEntry entry) {
+        EntitySchema schema = entitySchema(entry.getSubclass());
+        Object version = entry.getVersion();
+        Serializable[] state = entry.getDisassembledState();
+        int flags = entry.areLazyPropertiesUnfetched() ? LAZY_PROPERTIES_UNFETCHED : 0;
+        if (version != null) {
+            flags |= schema.version.accepts(version) ? VERSION : TAGGED_VERSION;
+        }
+        if (state.length != schema.properties.length) {
+            flags |= TAGGED_STATE;
+        }
+        output.writeVarLong(schema.index);
+        output.writeByte(flags);
+        if ((flags & VERSION) != 0) {
+            schema.version.write(output, version);
+        } else if ((flags & TAGGED_VERSION) != 0) {
+            TaggedCacheEntryCodec.writeValue(output, version);
+        }
+        if ((flags & TAGGED_STATE) != 0) {
+            TaggedCacheEntryCodec.writeValue(output, state);
+        } else {
+            writeValues(output, schema.properties, state);
+        }
+    }
+
+    private StandardCacheEntryImpl readEntity(Input input) {
+        String subclass = entityNames()[(int) input.readVarLong()];
+        EntitySchema schema = entitySchema(subclass);
+        int flags = input.readByte();
+        Object version = null;
+        if ((flags & VERSION) != 0) {
+            version = schema.version.read(input);
+        } else if ((flags & TAGGED_VERSION) != 0) {
+            version = TaggedCacheEntryCodec.readValue(input);
+        }
+        Serializable[] state;
+        if ((flags & TAGGED_STATE) != 0) {
+            state = (Serializable[]) TaggedCacheEntryCodec.readValue(input);
+        } else {
+            state = new Serializable[schema.properties.length];
+            readValues(input, schema.properties, state);
+        }
+        return TaggedCacheEntryCodec.newEntityEntry(state, subclass,
+            (flags & LAZY_PROPERTIES_UNFETCHED) != 0, version);
+    }
+
+    /**
+     * Write the null and exception bitmaps, followed by the non-null values, the slots being cycled through
+     * when there are more values than slots, like the index and element pairs of a map
+     */
+    private void writeValues(Output output, Slot[] slots, Object[] values) {
+        byte[] nulls = new byte[(values.length + 7) >>> 3];
+        byte[] exceptions = null;
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value == null) {
+                nulls[i >>> 3] |= 1 << (i & 7);
+            } else if (!slots[i % slots.length].accepts(value)) {
+                if (exceptions == null) {
+                    exceptions = new byte[nulls.length];
+                }
+                exceptions[i >>> 3] |= 1 << (i & 7);
+            }
+        }
+        output.writeByte(exceptions != null ? 1 : 0);
+        writeBitmap(output, nulls);
+        if (exceptions != null) {
+            writeBitmap(output, exceptions);
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (isSet(nulls, i)) {
+                continue;
+            }
+            if (exceptions != null && isSet(exceptions, i)) {
+                TaggedCacheEntryCodec.writeValue(output, values[i]);
+            } else {
+                slots[i % slots.length].write(output, values[i]);
+            }
+        }
+    }
+
+    private void readValues(Input input, Slot[] slots, Object[] values) {
+        boolean hasExceptions = input.readByte() != 0;
+        byte[] nulls = readBitmap(input, values.length);
+        byte[] exceptions = hasExceptions ? readBitmap(input, values.length) : null;
+        for (int i = 0; i < values.length; i++) {
+            if (isSet(nulls, i)) {
+                continue;
+            }
+            values[i] = exceptions != null && isSet(exceptions, i) ?
+                TaggedCacheEntryCodec.readValue(input) :
+                slots[i % slots.length].read(input);
+        }
+    }
+
+    private static void writeBitmap(Output output, byte[] bitmap) {
+        for (byte b : bitmap) {
+            output.writeByte(b);
+        }
+    }
+
+    private static byte[] readBitmap(Input input, int length) {
+        byte[] bitmap = new byte[(length + 7) >>> 3];
+        for (int i = 0; i < bitmap.length; i++) {
+            bitmap[i] = input.readByte();
+        }
+        return bitmap;
+    }
+
+    private static boolean isSet(byte[] bitmap, int index) {
+        return (bitmap[index >>> 3] & (1 << (index & 7))) != 0;
+    }
+
+    private EntitySchema entitySchema(String entityName) {
+        EntitySchema schema = entitySchemas.get(entityName);
+        if (schema == null) {
+            schema = entitySchemas.computeIfAbsent(entityName, name -> {
+                int index = Arrays.binarySearch(entityNames(), name);
+                if (index < 0) {
+                    throw new CacheException("Unknown entity " + name);
+                }
+                return new EntitySchema(index, factory.getEntityPersister(name));
+            });
+        }
+        return schema;
+    }
+
+    private Slot[] collectionSchema(CollectionPersister persister) {
+        Slot[] slots = collectionSchemas.get(persister.getRole());
+        if (slots == null) {
+            slots = collectionSchemas.computeIfAbsent(persister.getRole(), role -> {
+                Slot element = slotOf(persister.getElementType());
+                if (persister.getCollectionType() instanceof MapType) {
+                    return new Slot[] {slotOf(persister.getIndexType()), element};
+                }
+                if (persister.getCollectionType() instanceof IdentifierBagType) {
+                    return new Slot[] {slotOf(persister.getIdentifierType()), element};
+                }
+                return new Slot[] {element};
+            });
+        }
+        return slots;
+    }
+
+    private CollectionPersister collectionPersister(String role) {
+        CollectionPersister persister = factory.getCollectionPersisters().get(role);
+        if (persister == null) {
+            throw new CacheException("Unknown entity or collection " + role);
+        }
+        return persister;
+    }
+
+    private String[] entityNames() {
+        String[] names = entityNames;
+        if (names == null) {
+            names = factory.getEntityPersisters().keySet().toArray(new String[0]);
+            Arrays.sort(names);
+            entityNames = names;
+        }
+        return names;
+    }
+
+    /**
+     * Resolve the encoding of the disassembled values of the given type
+     */
+    private Slot slotOf(Type type) {
+        if (type.isEntityType()) {
+            return slotOf(factory.getIdentifierType(((EntityType) type).getAssociatedEntityName()));
+        }
+        if (type.isCollectionType()) {
+            return slotOf(factory.getCollectionPersister(((CollectionType) type).getRole()).getKeyType());
+        }
+        if (type.isComponentType() && !type.isAnyType()) {
+            Type[] subtypes = ((CompositeType) type).getSubtypes();
+            Slot[] slots = new Slot[subtypes.length];
+            for (int i = 0; i < subtypes.length; i++) {
+                slots[i] = slotOf(subtypes[i]);
+            }
+            return new ComponentSlot(slots);
+        }
+        if (type instanceof TimestampType) {
+            return BASIC_SLOTS.get(java.sql.Timestamp.class);
+        }
+        if (type instanceof DateType) {
+            return BASIC_SLOTS.get(java.sql.Date.class);
+        }
+        if (type instanceof TimeType) {
+            return BASIC_SLOTS.get(java.sql.Time.class);
+        }
+        Class<?> returnedClass = type.getReturnedClass();
+        if (returnedClass == String.class) {
+            return stringSlot;
+        }
+        if (returnedClass.isEnum()) {
+            return new EnumSlot(returnedClass);
+        }
+        Slot slot = BASIC_SLOTS.get(returnedClass);
+        return slot != null ? slot : TAGGED_SLOT;
+    }
+
+    private static void basicSlot(Class<?> valueClass, BiConsumer<Output, Object> writer,
+            Function<Input, Object> reader) {
+        BASIC_SLOTS.put(valueClass, new Slot() {
+            @Override
+            boolean accepts(Object value) {
+                return value.getClass() == valueClass;
+            }
+
+            @Override
+            void write(Output output, Object value) {
+                writer.accept(output, value);
+            }
+
+            @Override
+            Object read(Input input) {
+                return reader.apply(input);
+            }
+        });
+    }
+
+    /**
+     * Encoding of the non-null values of a property type
+     */
+    abstract static class Slot {
+
+        abstract boolean accepts(Object value);
+
+        abstract void write(Output output, Object value);
+
+        abstract Object read(Input input);
+    }
+
+    private final class EntitySchema {
+
+        private final int index;
+
+        private final Slot version;
+
+        private final Slot[] properties;
+
+        EntitySchema(int index, EntityPersister persister) {
+            this.index = index;
+            this.version = persister.isVersioned() ? slotOf(persister.getVersionType()) : TAGGED_SLOT;
+            Type[] propertyTypes = persister.getPropertyTypes();
+            this.properties = new Slot[propertyTypes.length];
+            for (int i = 0; i < propertyTypes.length; i++) {
+                properties[i] = slotOf(propertyTypes[i]);
+            }
+        }
+    }
+
+    private final class StringSlot extends Slot {
+
+        @Override
+        boolean accepts(Object value) {
+            return value.getClass() == String.class;
+        }
+
+        @Override
+        void write(Output output, Object value) {
+            String string = (String) value;
+            int index = dictionary != null ? dictionary.indexOf(string) : -1;
+            output.writeVarLong(index + 1);
+            if (index < 0) {
+                output.writeString(string);
+            }
+        }
+
+        @Override
+        Object read(Input input) {
+            int index = (int) input.readVarLong() - 1;
+            return index < 0 ? input.readString() : dictionary.get(index);
+        }
+    }
+
+    private static final class EnumSlot extends Slot {
+
+        private final Class<?> enumClass;
+
+        private final Object[] constants;
+
+        EnumSlot(Class<?> enumClass) {
+            this.enumClass = enumClass;
+            this.constants = enumClass.getEnumConstants();
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return enumClass.isInstance(value);
+        }
+
+        @Override
+        void write(Output output, Object value) {
+            output.writeVarLong(((Enum<?>) value).ordinal());
+        }
+
+        @Override
+        Object read(Input input) {
+            return constants[(int) input.readVarLong()];
+        }
+    }
+
+    /**
+     * Component properties, disassembled into an Object[]
+     */
+    private final class ComponentSlot extends Slot {
+
+        private final Slot[] slots;
+
+        ComponentSlot(Slot[] slots) {
+            this.slots = slots;
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return value.getClass() == Object[].class && ((Object[]) value).length == slots.length;
+        }
+
+        @Override
+        void write(Output output, Object value) {
+            writeValues(output, slots, (Object[]) value);
+        }
+
+        @Override
+        Object read(Input input) {
+            Object[] values = new Object[slots.length];
+            readValues(input, slots, values);
+            return values;
+        }
+    }
+
+    /**
+     * Append-only string dictionary, an index being published to the readers along with the encoded entry
+     * which refers to it
+     */
+    private static final class StringDictionary {
+
+        private final int maximumSize;
+
+        private final Map<String, Integer> indexes = new ConcurrentHashMap<>();
+
+        private volatile String[] strings;
+
+        private int size;
+
+        StringDictionary(int maximumSize) {
+            this.maximumSize = maximumSize;
+            this.strings = new String[Math.min(maximumSize, 64)];
+        }
+
+        /**
+         * @return the dictionary index of the given string, or -1 if it's too long or the dictionary is full
+         */
+        int indexOf(String value) {
+            if (value.length() > MAXIMUM_DICTIONARY_STRING_LENGTH) {
+                return -1;
+            }
+            Integer index = indexes.get(value);
+            if (index != null) {
+                return index;
+            }
+            synchronized (this) {
+                index = indexes.get(value);
+                if (index != null) {
+                    return index;
+                }
+                if (size == maximumSize) {
+                    return -1;
+                }
+                if (size == strings.length) {
+                    strings = Arrays.copyOf(strings, Math.min(maximumSize, size << 1));
+                }
+                strings[size] = value;
+                indexes.put(value, size);
+                return size++;
+            }
+        }
+
+        String get(int index) {
+            return strings[index];
+        }
+    }
+}
@@ -0,0 +1,515 @@
+package com.vladmihalcea.hibernate.masterclass.laboratory.util.cache;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.ToIntBiFunction;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <code>WTinyLfuCache</code> - Bounded cache using the Window TinyLFU eviction policy.
+ * <p>
+ * New entries enter a small LRU window, taking 1% of the maximum weight. The entries evicted from the window
+ * compete for the main segmented LRU space against its probation victim, and only the one with the higher
+ * {@link FrequencySketch} estimate is kept. Entries read while on probation are promoted to the protected
+ * segment, which takes 80% of the main space.
+ * <p>
+ * Every entry weighs 1 unless a weigher is given, in which case the maximum weight bounds the sum
+ * of the entry weights instead of the number of entries. The optional removal listener is notified once for every
+ * entry which left the cache, whether it was removed, replaced or evicted.
+ * <p>
+ * Reads are lock-free: they only hit a {@link ConcurrentHashMap} and record the access into a lossy ring buffer.
+ * Writes are applied to the map right away, while their policy update is queued. Both buffers are drained by
+ * whichever thread acquires the eviction lock with a non-blocking tryLock, so the cache size may briefly
+ * exceed its maximum size under concurrent writes.
+ *
+ * @author Vlad Mihalcea
+ */
+public class WTinyLfuCache<K, V> {
+
+    private static final int READ_BUFFER_SIZE = 128;
+
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+
+    private static final int READ_BUFFER_DRAIN_THRESHOLD = 32;
+
+    private static final int WINDOW = 0;
+
+    private static final int PROBATION = 1;
+
+    private static final int PROTECTED = 2;
+
+    private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+
+    private static final int MAXIMUM_SKETCH_SIZE = 1 << 20;
+
+    private final long maximumWeight;
+
+    private final long windowMaximum;
+
+    private final long protectedMaximum;
+
+    private final ToIntBiFunction<? super K, ? super V> weigher;
+
+    private final BiConsumer<? super K, ? super V> removalListener;
+
+    private final FrequencySketch sketch;
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final AtomicReferenceArray<Node<K, V>> readBuffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+
+    private final AtomicLong readBufferWriteCount = new AtomicLong();
+
+    private volatile long readBufferReadCount;
+
+    private final Queue<Runnable> writeBuffer = new ConcurrentLinkedQueue<>();
+
+    private final AccessOrderDeque<K, V> window = new AccessOrderDeque<>();
+
+    private final AccessOrderDeque<K, V> probation = new AccessOrderDeque<>();
+
+    private final AccessOrderDeque<K, V> protectedDeque = new AccessOrderDeque<>();
+
+    private long windowWeight;
+
+    private long probationWeight;
+
+    private long protectedWeight;
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder evictionCount = new LongAdder();
+
+    public WTinyLfuCache(int maximumSize) {
+        this(maximumSize, (key, value) -> 1);
+    }
+
+    /**
+     * @param maximumWeight maximum sum of the entry weights
+     * @param weigher       entry weight function, which must not return a negative weight
+     */
+    public WTinyLfuCache(long maximumWeight, ToIntBiFunction<? super K, ? super V> weigher) {
+        this(maximumWeight, weigher, (key, value) -> {});
+    }
+
+    /**
+     * @param maximumWeight   maximum sum of the entry weights
+     * @param weigher         entry weight function, which must not return a negative weight
+     * @param removalListener called by the thread which removed, replaced or evicted an entry
+     */
+    public WTinyLfuCache(long maximumWeight, ToIntBiFunction<? super K, ? super V> weigher,
+            BiConsumer<? super K, ? super V> removalListener) {
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("The maximum weight must be positive");
+        }
+        if (weigher == null) {
+            throw new IllegalArgumentException("The weigher is required");
+        }
+        this.maximumWeight = maximumWeight;
+        this.windowMaximum = Math.max(1, maximumWeight / 100);
+        this.protectedMaximum = (maximumWeight - windowMaximum) * 80 / 100;
+        this.weigher = weigher;
+        this.removalListener = removalListener;
+        this.sketch = new FrequencySketch((int) Math.min(maximumWeight, MAXIMUM_SKETCH_SIZE));
+    }
+
+    /**
+     * @param key key
+     * @return the cached value, or null
+     */
+    public V get(K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        afterRead(node);
+        return node.value;
+    }
+
+    /**
+     * @param key key
+     * @return whether the key is cached, without counting it as a hit or miss
+     */
+    public boolean containsKey(K key) {
+        return data.containsKey(key);
+    }
+
+    public void put(K key, V value) {
+        Node<K, V> node = newNode(key, value);
+        Node<K, V> previous = data.put(key, node);
+        if (previous != null) {
+            retire(previous);
+        }
+        afterWrite(() -> onAdd(node));
+    }
+
+    /**
+     * Atomically replace the value of the given key, the remapping function being called while holding
+     * the key lock of the underlying map, so it must be short and must not access this cache.
+     *
+     * @param key               key
+     * @param remappingFunction takes the key and its current value, or null, and returns the new value,
+     *                          null removing the entry
+     * @return the new value, or null
+     */
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        Object[] previous = new Object[1];
+        Node<K, V> node = data.compute(key, (k, current) -> {
+            previous[0] = current;
+            V value = remappingFunction.apply(k, current != null ? current.value : null);
+            if (current != null && value == current.value) {
+                return current;
+            }
+            return value != null ? newNode(k, value) : null;
+        });
+        @SuppressWarnings("unchecked")
+        Node<K, V> replaced = (Node<K, V>) previous[0];
+        if (replaced != node) {
+            if (replaced != null) {
+                retire(replaced);
+            }
+            if (node != null) {
+                afterWrite(() -> onAdd(node));
+            }
+        }
+        return node != null ? node.value : null;
+    }
+
+    public void remove(K key) {
+        Node<K, V> node = data.remove(key);
+        if (node != null) {
+            retire(node);
+        }
+    }
+
+    /**
+     * Remove the given key only if it's still mapped to the given value
+     *
+     * @param key   key
+     * @param value expected value
+     */
+    public void remove(K key, V value) {
+        Node<K, V> node = data.get(key);
+        if (node != null && Objects.equals(node.value, value) && data.remove(key, node)) {
+            retire(node);
+        }
+    }
+
+    public void clear() {
+        for (K key : data.keySet()) {
+            remove(key);
+        }
+    }
+
+    /**
+     * @param action called for every entry, without counting it as a hit
+     */
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (Node<K, V> node : data.values()) {
+            action.accept(node.key, node.value);
+        }
+    }
+
+    public int size() {
+        return data.size();
+    }
+
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * Apply all pending policy updates, waiting for the eviction lock if necessary
+     */
+    public void cleanUp() {
+        evictionLock.lock();
+        try {
+            maintenance();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Evict the entry the policy would evict next, even if the maximum weight is not reached, so that a resource
+     * the weights don't account for, like the fragmented off-heap slabs, can be reclaimed. It must not be called
+     * by a {@link #compute} remapping function.
+     *
+     * @return whether an entry was evicted
+     */
+    public boolean evictVictim() {
+        evictionLock.lock();
+        try {
+            maintenance();
+            Node<K, V> victim = victim();
+            if (victim == null) {
+                return false;
+            }
+            evict(victim);
+            return true;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private Node<K, V> newNode(K key, V value) {
+        int weight = weigher.applyAsInt(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("The weight of " + key + " is negative");
+        }
+        return new Node<>(key, value, weight);
+    }
+
+    private void retire(Node<K, V> node) {
+        node.alive = false;
+        removalListener.accept(node.key, node.value);
+        afterWrite(() -> onRemove(node));
+    }
+
+    private void afterRead(Node<K, V> node) {
+        long writeCount = readBufferWriteCount.get();
+        long pending = writeCount - readBufferReadCount;
+        if (pending < READ_BUFFER_SIZE && readBufferWriteCount.compareAndSet(writeCount, writeCount + 1)) {
+            readBuffer.lazySet((int) (writeCount & READ_BUFFER_MASK), node);
+            if (pending + 1 < READ_BUFFER_DRAIN_THRESHOLD) {
+                return;
+            }
+        }
+        tryMaintenance();
+    }
+
+    private void afterWrite(Runnable task) {
+        writeBuffer.add(task);
+        tryMaintenance();
+    }
+
+    private void tryMaintenance() {
+        do {
+            if (!evictionLock.tryLock()) {
+                return;
+            }
+            try {
+                maintenance();
+            } finally {
+                evictionLock.unlock();
+            }
+        } while (!writeBuffer.isEmpty());
+    }
+
+    private void maintenance() {
+        long readCount = readBufferReadCount;
+        long writeCount = readBufferWriteCount.get();
+        for (; readCount < writeCount; readCount++) {
+            int index = (int) (readCount & READ_BUFFER_MASK);
+            Node<K, V> node = readBuffer.get(index);
+            if (node == null) {
+                break;
+            }
+            readBuffer.lazySet(index, null);
+            onAccess(node);
+        }
+        readBufferReadCount = readCount;
+
+        Runnable task;
+        while ((task = writeBuffer.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private void onAdd(Node<K, V> node) {
+        if (!node.alive) {
+            return;
+        }
+        sketch.increment(node.key);
+        node.queue = WINDOW;
+        window.addLast(node);
+        windowWeight += node.weight;
+        evict();
+    }
+
+    private void onRemove(Node<K, V> node) {
+        if (node.linked) {
+            unlink(node);
+        }
+    }
+
+    private void onAccess(Node<K, V> node) {
+        if (!node.alive || !node.linked) {
+            return;
+        }
+        sketch.increment(node.key);
+        switch (node.queue) {
+            case WINDOW:
+                window.moveToLast(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                probationWeight -= node.weight;
+                node.queue = PROTECTED;
+                protectedDeque.addLast(node);
+                protectedWeight += node.weight;
+                while (protectedWeight > protectedMaximum) {
+                    Node<K, V> demoted = protectedDeque.pollFirst();
+                    protectedWeight -= demoted.weight;
+                    demoted.queue = PROBATION;
+                    probation.addLast(demoted);
+                    probationWeight += demoted.weight;
+                }
+                break;
+            default:
+                protectedDeque.moveToLast(node);
+        }
+    }
+
+    private void evict() {
+        while (windowWeight > windowMaximum) {
+            Node<K, V> candidate = window.pollFirst();
+            windowWeight -= candidate.weight;
+            candidate.queue = PROBATION;
+            probation.addLast(candidate);
+            probationWeight += candidate.weight;
+        }
+        while (windowWeight + probationWeight + protectedWeight > maximumWeight) {
+            evict(victim());
+        }
+    }
+
+    /**
+     * @return the next entry to evict, or null if the policy holds no entry
+     */
+    private Node<K, V> victim() {
+        Node<K, V> victim = probation.peekFirst() != null ? probation.peekFirst() : protectedDeque.peekFirst();
+        if (victim == null) {
+            victim = window.peekFirst();
+        }
+        Node<K, V> candidate = probation.peekLast();
+        if (candidate != null && candidate != victim &&
+            sketch.frequency(candidate.key) <= sketch.frequency(victim.key)) {
+            victim = candidate;
+        }
+        return victim;
+    }
+
+    private void evict(Node<K, V> victim) {
+        unlink(victim);
+        victim.alive = false;
+        if (data.remove(victim.key, victim)) {
+            evictionCount.increment();
+            removalListener.accept(victim.key, victim.value);
+        }
+    }
+
+    private void unlink(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW:
+                window.remove(node);
+                windowWeight -= node.weight;
+                break;
+            case PROBATION:
+                probation.remove(node);
+                probationWeight -= node.weight;
+                break;
+            default:
+                protectedDeque.remove(node);
+                protectedWeight -= node.weight;
+        }
+    }
+
+    private static class Node<K, V> {
+
+        private final K key;
+
+        private final V value;
+
+        private final int weight;
+
+        private volatile boolean alive = true;
+
+        private int queue;
+
+        private boolean linked;
+
+        private Node<K, V> previous;
+
+        private Node<K, V> next;
+
+        Node(K key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Intrusive doubly-linked list, only accessed while holding the eviction lock
+     */
+    private static class AccessOrderDeque<K, V> {
+
+        private final Node<K, V> head = new Node<>(null, null, 0);
+
+        AccessOrderDeque() {
+            head.previous = head;
+            head.next = head;
+        }
+
+        void addLast(Node<K, V> node) {
+            node.previous = head.previous;
+            node.next = head;
+            head.previous.next = node;
+            head.previous = node;
+            node.linked = true;
+        }
+
+        void remove(Node<K, V> node) {
+            node.previous.next = node.next;
+            node.next.previous = node.previous;
+            node.previous = null;
+            node.next = null;
+            node.linked = false;
+        }
+
+        void moveToLast(Node<K, V> node) {
+            remove(node);
+            addLast(node);
+        }
+
+        Node<K, V> peekFirst() {
+            return head.next != head ? head.next : null;
+        }
+
+        Node<K, V> peekLast() {
+            return head.previous != head ? head.previous : null;
+        }
+
+        Node<K, V> pollFirst() {
+            Node<K, V> first = peekFirst();
+            if (first != null) {
+                remove(first);
+            }
+            return first;
+        }
+    }
+}
@@ -1,12 +1,15 @@
 package com.vladmihalcea.hibernate.masterclass.laboratory.util.providers;
 
 import com.vladmihalcea.hibernate.masterclass.laboratory.util.EntityProvider;
+import com.vladmihalcea.hibernate.masterclass.laboratory.util.ResultSetGraphMapper;
 
 import javax.persistence.*;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
+import static com.vladmihalcea.hibernate.masterclass.laboratory.util.ResultSetGraphMapper.entity;
+
 /**
  * <code>BatchEntityProvider</code> - Batch Entity Provider
  *
@@ -14,6 +17,25 @@ import java.util.List;
  */
 public class BlogEntityProvider implements EntityProvider {
 
+    /**
+     * Maps the post and post_comment join rows to Post entities along with their PostComment children
+     */
+    public static final ResultSetGraphMapper<Post> POST_COMMENTS_MAPPER = ResultSetGraphMapper.of(
+        entity("post", "id", Post::new)
+            .stringColumn("title", Post::setTitle)
+            .intColumn("version", Post::setVersion)
+            .oneToMany(
+                entity("post_comment", "id", id -> {
+                    PostComment comment = new PostComment();
+                    comment.setId(id);
+                    return comment;
+                })
+                    .stringColumn("review", PostComment::setReview)
+                    .intColumn("version", PostComment::setVersion),
+                Post::addComment
+            )
+    );
+
     @Override
     public Class<?>[] entities() {
         return new Class<?>[]{